@@ -0,0 +1,204 @@
+package org.restonfire;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Local HTTP server emitting a Firebase formatted <code>text/event-stream</code> for every request. The stream contains
+ * the configured number of <code>put</code> and <code>patch</code> events at a fixed rate, interleaved with
+ * <code>keep-alive</code> events, and is closed once all events were sent.<br>
+ * <br>
+ * The data of each event is a {@link Payload} containing the {@link System#nanoTime()} at which it was written, so
+ * clients in the same JVM can measure the end-to-end latency of an event. The first event is delayed by
+ * {@link #START_DELAY_MILLIS}, like the round trip to a Firebase server, since the progress callbacks of the client can
+ * only be registered once {@link FirebaseRestEventStream#startListening()} returned.
+ */
+final class EventStreamBenchmarkServer {
+
+  static final int UNLIMITED_RATE = 0;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final long START_DELAY_MILLIS = 100;
+  private static final int BATCH_SIZE = 8 * 1024;
+  private static final int PATCH_INTERVAL = 10;
+  private static final int KEEP_ALIVE_INTERVAL = 1000;
+  private static final byte[] KEEP_ALIVE_EVENT = "event: keep-alive\ndata: null\n\n".getBytes(UTF_8);
+  private static final long SLEEP_THRESHOLD_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+  private final HttpServer server;
+  private final int eventCount;
+  private final int eventsPerSecond;
+  private final String padding;
+  private final ChunkingPattern chunkingPattern;
+
+  /**
+   * Creates a server bound to a free port of the loopback interface.
+   *
+   * @param eventCount The number of <code>put</code> and <code>patch</code> events sent for each request.
+   * @param eventsPerSecond The rate of the events, or {@link #UNLIMITED_RATE} to send them as fast as possible.
+   * @param payloadSize The approximate size of the data of each event in bytes.
+   * @param chunkingPattern The way the events are split into HTTP chunks.
+   */
+  EventStreamBenchmarkServer(int eventCount, int eventsPerSecond, int payloadSize, ChunkingPattern chunkingPattern) throws IOException {
+    this.eventCount = eventCount;
+    this.eventsPerSecond = eventsPerSecond;
+    this.chunkingPattern = chunkingPattern;
+
+    final char[] paddingChars = new char[Math.max(0, payloadSize - 60)];
+    Arrays.fill(paddingChars, 'x');
+    this.padding = new String(paddingChars);
+
+    // Chunks must be sent immediately, otherwise the measured latency depends on the TCP delay
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+    this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    this.server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        stream(exchange);
+      }
+    });
+  }
+
+  void start() {
+    server.start();
+  }
+
+  void stop() {
+    server.stop(0);
+  }
+
+  String getBaseUrl() {
+    return "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  private void stream(HttpExchange exchange) throws IOException {
+    exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+    exchange.sendResponseHeaders(200, 0);
+
+    final ByteArrayOutputStream batch = new ByteArrayOutputStream(BATCH_SIZE * 2);
+    final long intervalNanos = eventsPerSecond == UNLIMITED_RATE ? 0 : TimeUnit.SECONDS.toNanos(1) / eventsPerSecond;
+
+    try (OutputStream out = exchange.getResponseBody()) {
+      final long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(START_DELAY_MILLIS);
+      waitUntil(start);
+
+      for (int index = 0; index < eventCount; index++) {
+        final long due = start + index * intervalNanos;
+        if (System.nanoTime() < due) {
+          // Batched events are not held back while the server is waiting for the next event
+          flush(out, batch);
+          waitUntil(due);
+        }
+
+        if (index % KEEP_ALIVE_INTERVAL == 0) {
+          write(out, batch, KEEP_ALIVE_EVENT);
+        }
+        write(out, batch, createEvent(index));
+      }
+
+      flush(out, batch);
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private byte[] createEvent(int index) {
+    final String eventType = index % PATCH_INTERVAL == 0 ? "patch" : "put";
+
+    return ("event: " + eventType + "\ndata: {\"path\":\"/\",\"data\":{\"sent\":" + System.nanoTime()
+      + ",\"sequence\":" + index + ",\"padding\":\"" + padding + "\"}}\n\n").getBytes(UTF_8);
+  }
+
+  private void write(OutputStream out, ByteArrayOutputStream batch, byte[] event) throws IOException {
+    switch (chunkingPattern) {
+      case EventPerChunk:
+        out.write(event);
+        out.flush();
+        break;
+      case Split:
+        final int half = event.length / 2;
+        out.write(event, 0, half);
+        out.flush();
+        out.write(event, half, event.length - half);
+        out.flush();
+        break;
+      default:
+        batch.write(event);
+        if (batch.size() >= BATCH_SIZE) {
+          flush(out, batch);
+        }
+        break;
+    }
+  }
+
+  private static void flush(OutputStream out, ByteArrayOutputStream batch) throws IOException {
+    if (batch.size() > 0) {
+      batch.writeTo(out);
+      batch.reset();
+    }
+    out.flush();
+  }
+
+  private static void waitUntil(long due) throws IOException {
+    long remaining = due - System.nanoTime();
+    while (remaining > 0) {
+      if (remaining > SLEEP_THRESHOLD_NANOS) {
+        try {
+          Thread.sleep(TimeUnit.NANOSECONDS.toMillis(remaining - SLEEP_THRESHOLD_NANOS / 2));
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException("Interrupted while waiting for the next event", e);
+        }
+      } else {
+        LockSupport.parkNanos(remaining);
+      }
+      remaining = due - System.nanoTime();
+    }
+  }
+
+  /**
+   * Describes how the events of the stream are split into HTTP chunks.
+   */
+  enum ChunkingPattern {
+    /**
+     * Every event is sent in a chunk of its own.
+     */
+    EventPerChunk,
+    /**
+     * Events are collected into chunks of 8 KB, so chunks contain multiple events and events are split across chunks.
+     */
+    Batched,
+    /**
+     * Every event is split into two chunks.
+     */
+    Split
+  }
+
+  /**
+   * The data of the events emitted by the server.
+   */
+  static final class Payload {
+    private long sent;
+    private int sequence;
+    private String padding;
+
+    long getSent() {
+      return sent;
+    }
+
+    int getSequence() {
+      return sequence;
+    }
+  }
+}
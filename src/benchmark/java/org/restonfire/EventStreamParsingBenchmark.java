@@ -0,0 +1,171 @@
+package org.restonfire;
+
+import org.restonfire.responses.StreamingEvent;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures the cost of parsing one second of an event stream at 10k, 100k and 1M events per second with the
+ * incremental {@link EventStreamParser}, compared to the previous line reader based parsing, which required every
+ * body part to contain exactly one event. The incremental parser receives the stream in 8 KB body parts, so events
+ * are split across parts. The load column is the share of one second spent parsing, values above 100% mean the rate
+ * cannot be sustained by a single stream.<br>
+ * <br>
+ * Run with <code>gradlew benchmark -PbenchmarkClass=org.restonfire.EventStreamParsingBenchmark</code>.
+ */
+public final class EventStreamParsingBenchmark {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int CHUNK_SIZE = 8 * 1024;
+  private static final int[] EVENTS_PER_SECOND = {10000, 100000, 1000000};
+  private static final int WARMUP_ITERATIONS = 3;
+  private static final int ITERATIONS = 5;
+
+  private static final Map<String, StreamingEvent.EventType> EVENT_TYPE_MAPPER = new HashMap<>();
+  static {
+    EVENT_TYPE_MAPPER.put("put", StreamingEvent.EventType.Set);
+    EVENT_TYPE_MAPPER.put("patch", StreamingEvent.EventType.Update);
+    EVENT_TYPE_MAPPER.put("keep-alive", StreamingEvent.EventType.KeepAlive);
+  }
+
+  private int eventCount;
+
+  private final EventStreamParser.EventHandler handler = new EventStreamParser.EventHandler() {
+    @Override
+    public void onEvent(StreamingEvent.EventType eventType, byte[] eventData) {
+      eventCount++;
+    }
+  };
+
+  private EventStreamParsingBenchmark() {
+    // do nothing
+  }
+
+  public static void main(String[] args) throws Exception {
+    final EventStreamParsingBenchmark benchmark = new EventStreamParsingBenchmark();
+
+    System.out.println(String.format("%-10s %-12s %15s %10s %20s", "events/s", "mode", "avg time (ms)", "load", "avg allocated (MB)"));
+    for (int rate : EVENTS_PER_SECOND) {
+      final List<byte[]> events = createEvents(rate);
+      final List<byte[]> chunks = createChunks(events);
+
+      for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+        benchmark.parseLegacy(events);
+        benchmark.parseIncremental(chunks);
+      }
+
+      benchmark.run(rate, "legacy", events, false);
+      benchmark.run(rate, "incremental", chunks, true);
+    }
+  }
+
+  private void run(int rate, String mode, List<byte[]> parts, boolean incremental) throws Exception {
+    long time = 0;
+    long allocated = 0;
+
+    for (int i = 0; i < ITERATIONS; i++) {
+      final long allocatedBefore = getAllocatedBytes();
+      final long start = System.nanoTime();
+
+      final int count = incremental ? parseIncremental(parts) : parseLegacy(parts);
+
+      time += System.nanoTime() - start;
+      allocated += getAllocatedBytes() - allocatedBefore;
+
+      if (count != rate) {
+        throw new IllegalStateException("Parsing failed, " + count + " of " + rate + " events received");
+      }
+    }
+
+    final double averageMs = time / (double) ITERATIONS / 1000000;
+    System.out.println(String.format("%-10d %-12s %15.2f %9.1f%% %20.1f", rate, mode,
+      averageMs, averageMs / 10, allocated / (double) ITERATIONS / (1024 * 1024)));
+  }
+
+  private int parseIncremental(List<byte[]> chunks) {
+    eventCount = 0;
+    final EventStreamParser parser = new EventStreamParser(handler);
+
+    for (byte[] chunk : chunks) {
+      parser.parse(chunk);
+    }
+    return eventCount;
+  }
+
+  private int parseLegacy(List<byte[]> events) throws IOException {
+    eventCount = 0;
+
+    for (byte[] event : events) {
+      // Mirrors the previous FirebaseRestEventStreamImpl.parseResponse implementation
+      try (ByteArrayInputStream is = new ByteArrayInputStream(event);
+           BufferedReader reader = new BufferedReader(new InputStreamReader(is, UTF_8))) {
+
+        final StreamingEvent.EventType eventType = EVENT_TYPE_MAPPER.get(
+          reader.readLine().replaceFirst("event:", "").trim().toLowerCase()
+        );
+        final String eventData = reader.readLine().replaceFirst("data:", "").trim();
+
+        onLegacyEvent(eventType, eventData);
+      }
+    }
+    return eventCount;
+  }
+
+  private void onLegacyEvent(StreamingEvent.EventType eventType, String eventData) {
+    eventCount++;
+  }
+
+  private static List<byte[]> createEvents(int count) {
+    final List<byte[]> events = new ArrayList<>(count);
+
+    for (int index = 0; index < count; index++) {
+      final String eventType = index % 10 == 0 ? "patch" : "put";
+      events.add(("event: " + eventType + "\ndata: {\"path\":\"/metrics/node" + (index % 100) + "\",\"data\":{\"value\":"
+        + index + ",\"timestamp\":1467000000000}}\n\n").getBytes(UTF_8));
+    }
+    return events;
+  }
+
+  private static List<byte[]> createChunks(List<byte[]> events) {
+    final List<byte[]> chunks = new ArrayList<>();
+    final byte[] buffer = new byte[CHUNK_SIZE];
+    int length = 0;
+
+    for (byte[] event : events) {
+      int offset = 0;
+      while (offset < event.length) {
+        final int copied = Math.min(event.length - offset, CHUNK_SIZE - length);
+        System.arraycopy(event, offset, buffer, length, copied);
+        offset += copied;
+        length += copied;
+
+        if (length == CHUNK_SIZE) {
+          chunks.add(buffer.clone());
+          length = 0;
+        }
+      }
+    }
+    if (length > 0) {
+      chunks.add(Arrays.copyOf(buffer, length));
+    }
+    return chunks;
+  }
+
+  private static long getAllocatedBytes() {
+    final java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    if (threadBean instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return 0;
+  }
+}
@@ -0,0 +1,177 @@
+package org.restonfire;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import com.ning.http.client.AsyncHttpClient;
+import org.jdeferred.AlwaysCallback;
+import org.jdeferred.ProgressCallback;
+import org.jdeferred.Promise;
+import org.restonfire.exceptions.FirebaseRuntimeException;
+import org.restonfire.responses.StreamingEvent;
+import org.restonfire.responses.StreamingEventData;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput, the end-to-end latency and the allocations per event of {@link FirebaseRestEventStream}
+ * against the local {@link EventStreamBenchmarkServer}, for different event rates, payload sizes and chunking
+ * patterns. The latency is the time between writing an event on the server and publishing its decoded data to the
+ * progress callback. The allocations are measured on the I/O thread receiving the stream, so they include the HTTP
+ * decoding, the event parsing and the decoding of the event data.<br>
+ * <br>
+ * A rate of <code>max</code> sends the events as fast as possible, so its throughput is the maximum rate a single
+ * stream can sustain. For the paced rates, a throughput below the rate or a growing p99 latency indicate that the
+ * client cannot keep up.<br>
+ * <br>
+ * Run with <code>gradlew benchmark -PbenchmarkClass=org.restonfire.EventStreamThroughputBenchmark</code>.
+ */
+public final class EventStreamThroughputBenchmark {
+
+  private static final TypeToken<StreamingEventData<EventStreamBenchmarkServer.Payload>> PAYLOAD_TYPE =
+    new TypeToken<StreamingEventData<EventStreamBenchmarkServer.Payload>>() { };
+
+  private static final int[] EVENTS_PER_SECOND = {10000, 100000, EventStreamBenchmarkServer.UNLIMITED_RATE};
+  private static final int[] PAYLOAD_SIZES = {100, 1000};
+  private static final int DURATION_SECONDS = 2;
+  private static final int UNLIMITED_EVENT_COUNT = 200000;
+  private static final int WARMUP_EVENT_COUNT = 100000;
+  private static final long TIMEOUT_SECONDS = 60;
+
+  private final AsyncHttpClient asyncHttpClient = new AsyncHttpClient();
+  private final Gson gson = new GsonBuilder().create();
+
+  private EventStreamThroughputBenchmark() {
+    // do nothing
+  }
+
+  public static void main(String[] args) throws Exception {
+    final EventStreamThroughputBenchmark benchmark = new EventStreamThroughputBenchmark();
+
+    try {
+      for (EventStreamBenchmarkServer.ChunkingPattern chunkingPattern : EventStreamBenchmarkServer.ChunkingPattern.values()) {
+        benchmark.stream(WARMUP_EVENT_COUNT, EventStreamBenchmarkServer.UNLIMITED_RATE, PAYLOAD_SIZES[0], chunkingPattern);
+      }
+
+      System.out.println(String.format("%-8s %-8s %-14s %15s %10s %10s %10s %18s",
+        "rate", "payload", "chunking", "throughput/s", "p50 (us)", "p99 (us)", "p999 (us)", "allocated/event"));
+
+      for (int rate : EVENTS_PER_SECOND) {
+        for (int payloadSize : PAYLOAD_SIZES) {
+          for (EventStreamBenchmarkServer.ChunkingPattern chunkingPattern : EventStreamBenchmarkServer.ChunkingPattern.values()) {
+            final int eventCount = rate == EventStreamBenchmarkServer.UNLIMITED_RATE ? UNLIMITED_EVENT_COUNT : rate * DURATION_SECONDS;
+            final Result result = benchmark.stream(eventCount, rate, payloadSize, chunkingPattern);
+
+            System.out.println(String.format("%-8s %-8d %-14s %15.0f %10.1f %10.1f %10.1f %16.0f B",
+              rate == EventStreamBenchmarkServer.UNLIMITED_RATE ? "max" : String.valueOf(rate),
+              payloadSize,
+              chunkingPattern,
+              result.getThroughput(),
+              result.getLatencyPercentile(0.5),
+              result.getLatencyPercentile(0.99),
+              result.getLatencyPercentile(0.999),
+              result.getAllocatedBytesPerEvent()));
+          }
+        }
+      }
+    } finally {
+      benchmark.asyncHttpClient.close();
+    }
+  }
+
+  private Result stream(int eventCount, int rate, int payloadSize, EventStreamBenchmarkServer.ChunkingPattern chunkingPattern) throws Exception {
+    final EventStreamBenchmarkServer server = new EventStreamBenchmarkServer(eventCount, rate, payloadSize, chunkingPattern);
+    server.start();
+
+    try {
+      final FirebaseRestDatabase database = new BaseFirebaseRestDatabaseFactory(asyncHttpClient, gson).create(server.getBaseUrl(), null);
+      final Result result = new Result(eventCount);
+      final CountDownLatch closed = new CountDownLatch(1);
+      final FirebaseRuntimeException[] error = new FirebaseRuntimeException[1];
+
+      database.getEventStream("benchmark")
+        .startListening(PAYLOAD_TYPE)
+        .progress(new ProgressCallback<StreamingEvent>() {
+          @Override
+          public void onProgress(StreamingEvent event) {
+            result.onEvent(event.getEventData(PAYLOAD_TYPE).getData());
+          }
+        })
+        .always(new AlwaysCallback<Void, FirebaseRuntimeException>() {
+          @Override
+          public void onAlways(Promise.State state, Void resolved, FirebaseRuntimeException rejected) {
+            error[0] = rejected;
+            closed.countDown();
+          }
+        });
+
+      if (!closed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS) || result.count != eventCount) {
+        throw new IllegalStateException("Streaming failed, " + result.count + " of " + eventCount + " events received", error[0]);
+      }
+      return result;
+    } finally {
+      server.stop();
+    }
+  }
+
+  private static long getAllocatedBytes() {
+    final java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    if (threadBean instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return 0;
+  }
+
+  /**
+   * The measurements of a single stream. The events of a stream are published by a single I/O thread, and the results
+   * are read after the stream was closed.
+   */
+  private static final class Result {
+    private final long[] latencies;
+    private int count;
+    private long firstReceived;
+    private long lastReceived;
+    private long allocatedAtFirstEvent;
+    private long allocatedAtLastEvent;
+
+    private Result(int eventCount) {
+      this.latencies = new long[eventCount];
+    }
+
+    private void onEvent(EventStreamBenchmarkServer.Payload payload) {
+      final long now = System.nanoTime();
+
+      if (count == 0) {
+        firstReceived = now;
+        allocatedAtFirstEvent = getAllocatedBytes();
+      } else if (count == latencies.length - 1) {
+        lastReceived = now;
+        allocatedAtLastEvent = getAllocatedBytes();
+      }
+
+      if (payload.getSequence() != count) {
+        throw new IllegalStateException("Expected event " + count + " but received event " + payload.getSequence());
+      }
+      latencies[count++] = now - payload.getSent();
+    }
+
+    private double getThroughput() {
+      return (count - 1) / ((lastReceived - firstReceived) / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    private double getLatencyPercentile(double percentile) {
+      final long[] sorted = Arrays.copyOf(latencies, count);
+      Arrays.sort(sorted);
+
+      final int index = Math.min(count - 1, (int) Math.ceil(percentile * count) - 1);
+      return sorted[Math.max(0, index)] / 1000.0;
+    }
+
+    private double getAllocatedBytesPerEvent() {
+      return (allocatedAtLastEvent - allocatedAtFirstEvent) / (double) (count - 1);
+    }
+  }
+}
@@ -0,0 +1,150 @@
+package org.restonfire;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.ning.http.client.AsyncHttpClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.jdeferred.AlwaysCallback;
+import org.jdeferred.Promise;
+import org.restonfire.exceptions.FirebaseRuntimeException;
+import org.restonfire.transport.AsyncHttpClientTransport;
+import org.restonfire.transport.HttpTransport;
+import org.restonfire.transport.UrlConnectionTransport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the throughput and the number of opened connections of bursts of concurrent <code>getValue()</code>
+ * requests against a local HTTP server, with and without a limit of requests per host
+ * ({@link BaseFirebaseRestDatabaseFactory#setMaxRequestsPerHost(int)}). The server delays every response by a fixed
+ * time, like the round trip to a Firebase server, and counts the distinct client connections. Against Firebase, every
+ * connection additionally requires a TLS handshake, which is not part of the measured time.<br>
+ * <br>
+ * Run with <code>gradlew benchmark -PbenchmarkClass=org.restonfire.RequestBurstBenchmark</code>.
+ */
+public final class RequestBurstBenchmark {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int BURST_SIZE = 500;
+  private static final int BURSTS = 10;
+  private static final int WARMUP_BURSTS = 3;
+  private static final int[] MAX_REQUESTS_PER_HOST = {0, 64, 16};
+  private static final long SERVER_LATENCY_MILLIS = 5;
+  private static final long TIMEOUT_SECONDS = 60;
+  private static final byte[] RESPONSE_BODY = "{\"name\":\"benchmark\",\"value\":123}".getBytes(UTF_8);
+
+  private final Gson gson = new GsonBuilder().create();
+  private final Set<String> connections = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  private final ExecutorService serverExecutor = Executors.newCachedThreadPool();
+  private final HttpServer server;
+
+  private RequestBurstBenchmark() throws IOException {
+    // Responses must be sent immediately, otherwise the measured latency depends on the TCP delay
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), BURST_SIZE * 2);
+    server.setExecutor(serverExecutor);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        // Every connection has its own remote port
+        connections.add(exchange.getRemoteAddress().toString());
+        try {
+          Thread.sleep(SERVER_LATENCY_MILLIS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, RESPONSE_BODY.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+          out.write(RESPONSE_BODY);
+        }
+      }
+    });
+  }
+
+  public static void main(String[] args) throws Exception {
+    // The keep-alive cache of the HttpURLConnection keeps 5 idle connections per host by default
+    System.setProperty("http.maxConnections", String.valueOf(MAX_REQUESTS_PER_HOST[1]));
+    final RequestBurstBenchmark benchmark = new RequestBurstBenchmark();
+    benchmark.server.start();
+
+    try {
+      System.out.println(String.format("%-16s %-14s %15s %12s", "transport", "max requests", "requests/s", "connections"));
+
+      for (int maxRequestsPerHost : MAX_REQUESTS_PER_HOST) {
+        final AsyncHttpClient asyncHttpClient = new AsyncHttpClient();
+        benchmark.run("AsyncHttpClient", new AsyncHttpClientTransport(asyncHttpClient), maxRequestsPerHost);
+      }
+      for (int maxRequestsPerHost : MAX_REQUESTS_PER_HOST) {
+        benchmark.run("HttpURLConnection", new UrlConnectionTransport(), maxRequestsPerHost);
+      }
+    } finally {
+      benchmark.server.stop(0);
+      benchmark.serverExecutor.shutdownNow();
+    }
+  }
+
+  private void run(String name, HttpTransport transport, int maxRequestsPerHost) throws Exception {
+    try {
+      final BaseFirebaseRestDatabaseFactory factory = new BaseFirebaseRestDatabaseFactory(transport, gson);
+      factory.setMaxRequestsPerHost(maxRequestsPerHost);
+      final FirebaseRestDatabase database = factory.create("http://127.0.0.1:" + server.getAddress().getPort(), null);
+
+      for (int i = 0; i < WARMUP_BURSTS; i++) {
+        burst(database);
+      }
+
+      connections.clear();
+      final long start = System.nanoTime();
+      for (int i = 0; i < BURSTS; i++) {
+        burst(database);
+      }
+      final double seconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+
+      System.out.println(String.format("%-16s %-14s %15.0f %12d",
+        name,
+        maxRequestsPerHost == 0 ? "unlimited" : String.valueOf(maxRequestsPerHost),
+        BURSTS * BURST_SIZE / seconds,
+        connections.size()));
+    } finally {
+      transport.close();
+    }
+  }
+
+  private void burst(FirebaseRestDatabase database) throws InterruptedException {
+    final CountDownLatch completed = new CountDownLatch(BURST_SIZE);
+    final AtomicInteger failures = new AtomicInteger();
+
+    for (int i = 0; i < BURST_SIZE; i++) {
+      database.getReference("items/item" + i).getValue(JsonElement.class).always(new AlwaysCallback<JsonElement, FirebaseRuntimeException>() {
+        @Override
+        public void onAlways(Promise.State state, JsonElement resolved, FirebaseRuntimeException rejected) {
+          if (rejected != null) {
+            failures.incrementAndGet();
+          }
+          completed.countDown();
+        }
+      });
+    }
+
+    if (!completed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS) || failures.get() > 0) {
+      throw new IllegalStateException("Burst failed, " + failures.get() + " of " + BURST_SIZE + " requests failed");
+    }
+  }
+}
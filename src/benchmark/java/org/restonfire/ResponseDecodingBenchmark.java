@@ -0,0 +1,148 @@
+package org.restonfire;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the heap usage of decoding a response body via an intermediate {@link String} with the streaming
+ * decode path used by {@link RestUtil#handleResponse}. The body is held as a list of chunks, the same way the
+ * {@link com.ning.http.client.AsyncHttpClient} keeps the received body parts of a response.<br>
+ * <br>
+ * Run with <code>gradlew benchmark -PbenchmarkClass=org.restonfire.ResponseDecodingBenchmark</code>.
+ */
+public final class ResponseDecodingBenchmark {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final int CHUNK_SIZE = 8 * 1024;
+  private static final int ONE_MB = 1024 * 1024;
+  private static final int[] NODE_SIZES_IN_MB = {1, 10, 50};
+  private static final int ITERATIONS = 3;
+
+  private final Gson gson = new GsonBuilder().create();
+
+  private ResponseDecodingBenchmark() {
+    // do nothing
+  }
+
+  public static void main(String[] args) throws Exception {
+    final ResponseDecodingBenchmark benchmark = new ResponseDecodingBenchmark();
+
+    System.out.println(String.format("%-10s %-10s %20s %20s", "node", "mode", "peak heap delta (MB)", "allocated (MB)"));
+    for (int size : NODE_SIZES_IN_MB) {
+      final List<byte[]> bodyParts = createBodyParts(size * ONE_MB);
+
+      for (int i = 0; i < ITERATIONS; i++) {
+        benchmark.run(size, "string", bodyParts, false);
+        benchmark.run(size, "stream", bodyParts, true);
+      }
+    }
+  }
+
+  private void run(int size, String mode, List<byte[]> bodyParts, boolean streaming) throws Exception {
+    final long baseline = resetPeakHeapUsage();
+    final long allocatedBefore = getAllocatedBytes();
+
+    final Object result = streaming
+      ? RestUtil.decode(gson, toStream(bodyParts), Map.class)
+      : gson.fromJson(toString(bodyParts), Map.class);
+
+    final long allocated = getAllocatedBytes() - allocatedBefore;
+    final long peak = getPeakHeapUsage() - baseline;
+
+    if (result == null) {
+      throw new IllegalStateException("Decoding failed");
+    }
+
+    System.out.println(String.format("%-10s %-10s %20.1f %20.1f", size + "MB", mode, toMb(peak), toMb(allocated)));
+  }
+
+  private static String toString(List<byte[]> bodyParts) {
+    // Mirrors Response.getResponseBody(), which first joins the parts and then decodes them into a String
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (byte[] part : bodyParts) {
+      out.write(part, 0, part.length);
+    }
+    return new String(out.toByteArray(), UTF_8);
+  }
+
+  private static InputStream toStream(List<byte[]> bodyParts) {
+    final List<InputStream> streams = new ArrayList<>(bodyParts.size());
+    for (byte[] part : bodyParts) {
+      streams.add(new ByteArrayInputStream(part));
+    }
+    return new SequenceInputStream(Collections.enumeration(streams));
+  }
+
+  private static List<byte[]> createBodyParts(int targetSize) {
+    final StringBuilder json = new StringBuilder(targetSize + 128);
+    json.append('{');
+
+    int index = 0;
+    while (json.length() < targetSize) {
+      if (index > 0) {
+        json.append(',');
+      }
+      json.append("\"child").append(index).append("\":{\"aString\":\"value-").append(index)
+        .append("\",\"anInt\":").append(index).append('}');
+      index++;
+    }
+    json.append('}');
+
+    final byte[] bytes = json.toString().getBytes(UTF_8);
+    final List<byte[]> parts = new ArrayList<>(bytes.length / CHUNK_SIZE + 1);
+    for (int offset = 0; offset < bytes.length; offset += CHUNK_SIZE) {
+      final byte[] part = new byte[Math.min(CHUNK_SIZE, bytes.length - offset)];
+      System.arraycopy(bytes, offset, part, 0, part.length);
+      parts.add(part);
+    }
+    return parts;
+  }
+
+  private static long resetPeakHeapUsage() {
+    System.gc();
+
+    long used = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        pool.resetPeakUsage();
+        used += pool.getUsage().getUsed();
+      }
+    }
+    return used;
+  }
+
+  private static long getPeakHeapUsage() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    return peak;
+  }
+
+  private static long getAllocatedBytes() {
+    final java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    if (threadBean instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return 0;
+  }
+
+  private static double toMb(long bytes) {
+    return bytes / (double) ONE_MB;
+  }
+}
@@ -0,0 +1,116 @@
+package org.restonfire;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.Map;
+
+/**
+ * Compares decoding a collection-shaped node into <code>Map&lt;String, Pojo&gt;</code> with the two-pass approach
+ * required by the {@link Class} based API (decode into {@link Object}, re-serialize, decode again) with the single
+ * pass used by the {@link TypeToken} overloads of {@link FirebaseRestReference#getValue(TypeToken)} and
+ * {@link FirebaseRestQuery#run(TypeToken)}.<br>
+ * <br>
+ * Run with <code>gradlew benchmark -PbenchmarkClass=org.restonfire.TypedDecodingBenchmark</code>.
+ */
+public final class TypedDecodingBenchmark {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final Type RESULT_TYPE = new TypeToken<Map<String, Child>>() { }.getType();
+  private static final int[] CHILD_COUNTS = {1000, 10000, 100000};
+  private static final int WARMUP_ITERATIONS = 5;
+  private static final int ITERATIONS = 10;
+
+  private final Gson gson = new GsonBuilder().create();
+
+  private TypedDecodingBenchmark() {
+    // do nothing
+  }
+
+  public static void main(String[] args) throws Exception {
+    final TypedDecodingBenchmark benchmark = new TypedDecodingBenchmark();
+
+    System.out.println(String.format("%-10s %-10s %15s %20s", "children", "mode", "avg time (ms)", "avg allocated (MB)"));
+    for (int count : CHILD_COUNTS) {
+      final byte[] body = createBody(count);
+
+      for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+        benchmark.decodeTwoPass(body);
+        benchmark.decodeSinglePass(body);
+      }
+
+      benchmark.run(count, "two-pass", body, false);
+      benchmark.run(count, "typed", body, true);
+    }
+  }
+
+  private void run(int count, String mode, byte[] body, boolean singlePass) throws Exception {
+    long time = 0;
+    long allocated = 0;
+
+    for (int i = 0; i < ITERATIONS; i++) {
+      final long allocatedBefore = getAllocatedBytes();
+      final long start = System.nanoTime();
+
+      final Map<String, Child> result = singlePass ? decodeSinglePass(body) : decodeTwoPass(body);
+
+      time += System.nanoTime() - start;
+      allocated += getAllocatedBytes() - allocatedBefore;
+
+      if (result.size() != count) {
+        throw new IllegalStateException("Decoding failed");
+      }
+    }
+
+    System.out.println(String.format("%-10d %-10s %15.2f %20.1f", count, mode,
+      time / (double) ITERATIONS / 1000000, allocated / (double) ITERATIONS / (1024 * 1024)));
+  }
+
+  private Map<String, Child> decodeTwoPass(byte[] body) throws Exception {
+    // Mirrors the workaround for the Class based API: LinkedTreeMap with boxed Doubles, then a second conversion
+    final Object untyped = RestUtil.decode(gson, new ByteArrayInputStream(body), Object.class);
+    return gson.fromJson(gson.toJson(untyped), RESULT_TYPE);
+  }
+
+  private Map<String, Child> decodeSinglePass(byte[] body) throws Exception {
+    return RestUtil.decode(gson, new ByteArrayInputStream(body), RESULT_TYPE);
+  }
+
+  private static byte[] createBody(int count) {
+    final StringBuilder json = new StringBuilder(count * 48);
+    json.append('{');
+
+    for (int index = 0; index < count; index++) {
+      if (index > 0) {
+        json.append(',');
+      }
+      json.append("\"child").append(index).append("\":{\"name\":\"value-").append(index)
+        .append("\",\"count\":").append(index).append(",\"active\":true}");
+    }
+    json.append('}');
+
+    return json.toString().getBytes(UTF_8);
+  }
+
+  private static long getAllocatedBytes() {
+    final java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    if (threadBean instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return 0;
+  }
+
+  /**
+   * Sample child node of the decoded collection.
+   */
+  private static final class Child {
+    private String name;
+    private int count;
+    private boolean active;
+  }
+}
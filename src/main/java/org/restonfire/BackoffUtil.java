@@ -0,0 +1,36 @@
+package org.restonfire;
+
+import java.util.Random;
+
+/**
+ * Utility class for the calculation of retry delays.
+ */
+final class BackoffUtil {
+
+  private static final Random RANDOM = new Random();
+
+  private BackoffUtil() {
+    // do nothing
+  }
+
+  /**
+   * Calculates an exponential backoff delay with "full jitter", which is a random value between zero and
+   * <code>min(maxDelay, initialDelay * 2^(attempt - 1))</code>. The jitter spreads the retries of concurrent
+   * clients over time, so they don't hit the server again at the same moment.
+   *
+   * @param attempt The number of the attempt that failed, starting with 1.
+   * @param initialDelay The upper bound of the delay after the first failed attempt.
+   * @param maxDelay The maximum delay.
+   * @return The delay before the next attempt, in the same unit as the provided delays.
+   */
+  public static long jitteredDelay(int attempt, long initialDelay, long maxDelay) {
+    final int exponent = Math.max(0, Math.min(attempt - 1, 30));
+    final long upperBound = initialDelay > (maxDelay >> exponent)
+      ? maxDelay
+      : initialDelay << exponent;
+
+    return upperBound <= 0
+      ? 0
+      : (long) (RANDOM.nextDouble() * (upperBound + 1));
+  }
+}
@@ -2,21 +2,35 @@ package org.restonfire;
 
 import com.google.gson.Gson;
 import com.ning.http.client.AsyncHttpClient;
+import org.restonfire.transport.AsyncHttpClientTransport;
+import org.restonfire.transport.ConnectionLimitingTransport;
+import org.restonfire.transport.HttpTransport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * {@link FirebaseRestDatabaseFactory} implementation using {@link AsyncHttpClient} as the HTTP
- * transport library. This factory also requires the Firebase access token to be provided
+ * {@link FirebaseRestDatabaseFactory} implementation using an {@link HttpTransport} for the requests, which is
+ * the {@link AsyncHttpClient} by default. This factory also requires the Firebase access token to be provided
  * for the creation.
  */
 public final class BaseFirebaseRestDatabaseFactory implements FirebaseRestDatabaseFactory {
 
   private static final Logger LOG = LoggerFactory.getLogger(BaseFirebaseRestDatabaseFactory.class);
 
-  private final AsyncHttpClient asyncHttpClient;
+  private final HttpTransport transport;
   private final Gson gson;
 
+  private HttpTransport requestTransport;
+  private ValueCacheSettings valueCacheSettings;
+  private boolean requestCoalescingEnabled;
+  private WriteCoalescingSettings writeCoalescingSettings;
+  private EventStreamReconnector eventStreamReconnector = EventStreamReconnector.disabled();
+  private EventDeliverySettings eventDeliverySettings;
+  private EventStreamWatchdog eventStreamWatchdog = EventStreamWatchdog.disabled();
+  private ConcurrencyLimitSettings concurrencyLimitSettings;
+  private RetrySettings retrySettings;
+  private HedgingSettings hedgingSettings;
+
   /**
    * Base factory which requires the {@link AsyncHttpClient} and {@link Gson} dependencies to be injected.
    *
@@ -27,10 +41,148 @@ public final class BaseFirebaseRestDatabaseFactory implements FirebaseRestDataba
     AsyncHttpClient asyncHttpClient,
     Gson gson
   ) {
-    this.asyncHttpClient = asyncHttpClient;
+    this(new AsyncHttpClientTransport(asyncHttpClient), gson);
+  }
+
+  /**
+   * Base factory which requires the {@link HttpTransport} and {@link Gson} dependencies to be injected, i.e. the
+   * {@link org.restonfire.transport.UrlConnectionTransport} for applications that do not use the
+   * {@link AsyncHttpClient}.
+   *
+   * @param transport {@link HttpTransport} instance, which will be used for the HTTP requests.
+   * @param gson {@link Gson} instance used for deserialization of all reference responses.
+   */
+  public BaseFirebaseRestDatabaseFactory(
+    HttpTransport transport,
+    Gson gson
+  ) {
+    this.transport = transport;
+    this.requestTransport = transport;
     this.gson = gson;
   }
 
+  /**
+   * Limits the number of requests in flight per host for all databases created by this factory afterwards. Further
+   * requests are queued until a previous request completed, so a burst of concurrent requests reuses a few pooled
+   * connections instead of opening a connection for every request. The limit is shared by all of these databases and
+   * does not apply to event streams.
+   *
+   * @param maxRequestsPerHost The maximum number of requests in flight per host, or 0 to disable the limit.
+   * @see ConnectionLimitingTransport
+   */
+  public void setMaxRequestsPerHost(int maxRequestsPerHost) {
+    if (maxRequestsPerHost < 0) {
+      throw new IllegalArgumentException("The maximum number of requests per host must not be negative");
+    }
+
+    this.requestTransport = maxRequestsPerHost == 0 ? transport : new ConnectionLimitingTransport(transport, maxRequestsPerHost);
+  }
+
+  /**
+   * Enables the read-through cache for {@link FirebaseRestReference#getValue(Class)} on all databases created
+   * by this factory afterwards. Each database maintains its own cache, which is invalidated by the writes issued
+   * through that database. Writes by other clients will not be visible until the cached value expires.
+   *
+   * @param valueCacheSettings The {@link ValueCacheSettings} for new databases, or <code>null</code> to disable caching.
+   */
+  public void setValueCacheSettings(ValueCacheSettings valueCacheSettings) {
+    this.valueCacheSettings = valueCacheSettings;
+  }
+
+  /**
+   * Enables the coalescing of concurrent, identical read requests for all databases created by this factory
+   * afterwards. While a <code>getValue()</code>, <code>getShallowValue()</code> or <code>query().run()</code> request
+   * is in flight, all identical requests for the same URL, query parameters and result type share its HTTP request
+   * and its decoded result.<br>
+   * <br>
+   * <b>Note:</b> Coalesced callers receive the same result instance, which must therefore not be modified.
+   *
+   * @param requestCoalescingEnabled <code>true</code> to enable the request coalescing, disabled by default.
+   */
+  public void setRequestCoalescingEnabled(boolean requestCoalescingEnabled) {
+    this.requestCoalescingEnabled = requestCoalescingEnabled;
+  }
+
+  /**
+   * Enables the coalescing of <code>setValue()</code> and <code>updateValue()</code> requests to the same location
+   * for all databases created by this factory afterwards. Only the merged result of the coalesced writes is sent
+   * to Firebase and the promises of all merged writes are settled once it was written.
+   *
+   * @param writeCoalescingSettings The {@link WriteCoalescingSettings} for new databases, or <code>null</code> to
+   *                                disable the write coalescing.
+   */
+  public void setWriteCoalescingSettings(WriteCoalescingSettings writeCoalescingSettings) {
+    this.writeCoalescingSettings = writeCoalescingSettings;
+  }
+
+  /**
+   * Enables the automatic reconnect of the {@link FirebaseRestEventStream} connections of all databases created by
+   * this factory afterwards. The limit of concurrent reconnect attempts applies to all of these databases.
+   *
+   * @param eventStreamReconnectSettings The {@link EventStreamReconnectSettings} for new databases, or
+   *                                     <code>null</code> to disable the automatic reconnect.
+   */
+  public void setEventStreamReconnectSettings(EventStreamReconnectSettings eventStreamReconnectSettings) {
+    this.eventStreamReconnector = EventStreamReconnector.create(eventStreamReconnectSettings);
+  }
+
+  /**
+   * Enables the delivery of {@link FirebaseRestEventStream} events through a bounded queue per stream for all
+   * databases created by this factory afterwards. The events are published by the configured executor instead of
+   * the threads of the {@link HttpTransport}, so slow consumers do not delay the reading of the connections.
+   *
+   * @param eventDeliverySettings The {@link EventDeliverySettings} for new databases, or <code>null</code> to
+   *                              publish the events on the I/O threads.
+   */
+  public void setEventDeliverySettings(EventDeliverySettings eventDeliverySettings) {
+    this.eventDeliverySettings = eventDeliverySettings;
+  }
+
+  /**
+   * Enables the stall detection of {@link FirebaseRestEventStream} connections for all databases created by this
+   * factory afterwards. Connections that did not receive any data, including <code>keep-alive</code> events, within
+   * the timeout are closed and reopened by the automatic reconnect, if enabled.
+   *
+   * @param eventStreamWatchdogSettings The {@link EventStreamWatchdogSettings} for new databases, or
+   *                                    <code>null</code> to disable the stall detection.
+   */
+  public void setEventStreamWatchdogSettings(EventStreamWatchdogSettings eventStreamWatchdogSettings) {
+    this.eventStreamWatchdog = EventStreamWatchdog.create(eventStreamWatchdogSettings);
+  }
+
+  /**
+   * Enables the adaptive concurrency limit of the requests of each database created by this factory afterwards.
+   * Each database adjusts its own limit to the latency and the errors of its requests, and rejects the requests
+   * exceeding the limit and its queue with the error code
+   * {@link org.restonfire.exceptions.FirebaseRuntimeException.ErrorCode#ConcurrencyLimitExceeded}.
+   *
+   * @param concurrencyLimitSettings The {@link ConcurrencyLimitSettings} for new databases, or <code>null</code> to
+   *                                 disable the limit.
+   */
+  public void setConcurrencyLimitSettings(ConcurrencyLimitSettings concurrencyLimitSettings) {
+    this.concurrencyLimitSettings = concurrencyLimitSettings;
+  }
+
+  /**
+   * Enables the automatic retry of the idempotent requests of each database created by this factory afterwards.
+   * Each database has its own retry budget. The retries pass the concurrency limit again, if enabled.
+   *
+   * @param retrySettings The {@link RetrySettings} for new databases, or <code>null</code> to disable the retries.
+   */
+  public void setRetrySettings(RetrySettings retrySettings) {
+    this.retrySettings = retrySettings;
+  }
+
+  /**
+   * Enables the hedging of the read requests of each database created by this factory afterwards. Each database
+   * measures its own hedge delay and has its own hedge budget.
+   *
+   * @param hedgingSettings The {@link HedgingSettings} for new databases, or <code>null</code> to disable the hedging.
+   */
+  public void setHedgingSettings(HedgingSettings hedgingSettings) {
+    this.hedgingSettings = hedgingSettings;
+  }
+
   @Override
   public FirebaseRestDatabase create(
     String databaseUrl,
@@ -41,6 +193,30 @@ public final class BaseFirebaseRestDatabaseFactory implements FirebaseRestDataba
       StringUtil.notNullOrEmpty(firebaseAccessToken) ? "with" : "without"
     );
 
-    return new FirebaseRestDatabaseImpl(asyncHttpClient, gson, databaseUrl, firebaseAccessToken);
+    final ConcurrencyLimiter concurrencyLimiter = ConcurrencyLimiter.create(concurrencyLimitSettings);
+    final RequestHedger requestHedger = RequestHedger.create(hedgingSettings);
+    // The retried and the hedged requests pass the concurrency limit like any other request
+    final HttpTransport databaseTransport = requestHedger.decorate(
+      RequestRetrier.create(retrySettings).decorate(concurrencyLimiter.decorate(requestTransport))
+    );
+
+    // The warmup measures the latency of the connections, so its requests are neither limited, retried nor hedged
+    return new FirebaseRestDatabaseImpl(
+      databaseTransport,
+      requestTransport,
+      gson,
+      databaseUrl,
+      firebaseAccessToken,
+      new DatabaseResources(
+        ValueCache.create(valueCacheSettings),
+        new RequestCoalescer(requestCoalescingEnabled),
+        WriteCoalescer.create(writeCoalescingSettings),
+        eventStreamReconnector,
+        EventDelivery.create(eventDeliverySettings, gson),
+        eventStreamWatchdog,
+        concurrencyLimiter,
+        requestHedger
+      )
+    );
   }
 }
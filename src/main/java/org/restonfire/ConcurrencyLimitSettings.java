@@ -0,0 +1,98 @@
+package org.restonfire;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration of the adaptive concurrency limit of a {@link FirebaseRestDatabase}'s requests. The limit is adjusted
+ * with an AIMD algorithm: it grows by one for every <code>limit</code> requests that completed within the latency
+ * threshold while the limit was utilized, and it is reduced by 10% for every request that failed, was answered with
+ * the status code 429 or 5xx, or exceeded the latency threshold.<br>
+ * <br>
+ * Requests exceeding the limit wait in a bounded queue. They are rejected with the error code
+ * {@link org.restonfire.exceptions.FirebaseRuntimeException.ErrorCode#ConcurrencyLimitExceeded} if the queue is full or
+ * their maximum waiting time elapsed. Event streams are not limited.
+ *
+ * @see BaseFirebaseRestDatabaseFactory#setConcurrencyLimitSettings(ConcurrencyLimitSettings)
+ */
+public final class ConcurrencyLimitSettings {
+
+  private final int initialLimit;
+  private final int minLimit;
+  private final int maxLimit;
+  private final int maxQueueSize;
+  private final long latencyThreshold;
+  private final long maxQueueWait;
+  private final TimeUnit timeUnit;
+
+  /**
+   * Creates the concurrency limit settings.
+   *
+   * @param initialLimit The limit of concurrent requests until the first adjustment.
+   * @param minLimit The lower bound of the limit.
+   * @param maxLimit The upper bound of the limit.
+   * @param maxQueueSize The maximum number of requests waiting for a free slot, 0 rejects requests immediately.
+   * @param latencyThreshold The time from sending a request until its response headers arrived, above which the
+   *                         request is considered a sign of overload.
+   * @param maxQueueWait The maximum time a request waits for a free slot.
+   * @param timeUnit The {@link TimeUnit} of the <code>latencyThreshold</code> and <code>maxQueueWait</code> parameters.
+   */
+  public ConcurrencyLimitSettings(int initialLimit, int minLimit, int maxLimit, int maxQueueSize, long latencyThreshold, long maxQueueWait, TimeUnit timeUnit) {
+    if (minLimit <= 0) {
+      throw new IllegalArgumentException("minLimit must be greater than 0");
+    }
+    if (maxLimit < minLimit) {
+      throw new IllegalArgumentException("maxLimit cannot be less than minLimit");
+    }
+    if (initialLimit < minLimit || initialLimit > maxLimit) {
+      throw new IllegalArgumentException("initialLimit must be between minLimit and maxLimit");
+    }
+    if (maxQueueSize < 0) {
+      throw new IllegalArgumentException("maxQueueSize cannot be negative");
+    }
+    if (latencyThreshold <= 0) {
+      throw new IllegalArgumentException("latencyThreshold must be greater than 0");
+    }
+    if (maxQueueWait <= 0) {
+      throw new IllegalArgumentException("maxQueueWait must be greater than 0");
+    }
+    if (timeUnit == null) {
+      throw new IllegalArgumentException("timeUnit cannot be null");
+    }
+
+    this.initialLimit = initialLimit;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.maxQueueSize = maxQueueSize;
+    this.latencyThreshold = latencyThreshold;
+    this.maxQueueWait = maxQueueWait;
+    this.timeUnit = timeUnit;
+  }
+
+  public int getInitialLimit() {
+    return initialLimit;
+  }
+
+  public int getMinLimit() {
+    return minLimit;
+  }
+
+  public int getMaxLimit() {
+    return maxLimit;
+  }
+
+  public int getMaxQueueSize() {
+    return maxQueueSize;
+  }
+
+  public long getLatencyThreshold() {
+    return latencyThreshold;
+  }
+
+  public long getMaxQueueWait() {
+    return maxQueueWait;
+  }
+
+  public TimeUnit getTimeUnit() {
+    return timeUnit;
+  }
+}
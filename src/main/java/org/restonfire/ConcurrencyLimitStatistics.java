@@ -0,0 +1,75 @@
+package org.restonfire;
+
+/**
+ * Point-in-time snapshot of the gauges and counters of a {@link FirebaseRestDatabase}'s concurrency limiter.
+ *
+ * @see FirebaseRestDatabase#getConcurrencyLimitStatistics()
+ */
+public final class ConcurrencyLimitStatistics {
+
+  private final int limit;
+  private final int inFlightCount;
+  private final int queuedCount;
+  private final double averageQueueTimeMillis;
+  private final long maxQueueTimeMillis;
+  private final long rejectedCount;
+
+  public ConcurrencyLimitStatistics(int limit, int inFlightCount, int queuedCount, double averageQueueTimeMillis, long maxQueueTimeMillis, long rejectedCount) {
+    this.limit = limit;
+    this.inFlightCount = inFlightCount;
+    this.queuedCount = queuedCount;
+    this.averageQueueTimeMillis = averageQueueTimeMillis;
+    this.maxQueueTimeMillis = maxQueueTimeMillis;
+    this.rejectedCount = rejectedCount;
+  }
+
+  /**
+   * @return The current limit of concurrent requests.
+   */
+  public int getLimit() {
+    return limit;
+  }
+
+  /**
+   * @return The number of requests currently sent and waiting for their response.
+   */
+  public int getInFlightCount() {
+    return inFlightCount;
+  }
+
+  /**
+   * @return The number of requests currently waiting for a free slot.
+   */
+  public int getQueuedCount() {
+    return queuedCount;
+  }
+
+  /**
+   * @return The average time in milliseconds the sent requests waited for a free slot, including the requests that
+   * did not have to wait.
+   */
+  public double getAverageQueueTimeMillis() {
+    return averageQueueTimeMillis;
+  }
+
+  /**
+   * @return The time in milliseconds the oldest currently queued request has been waiting.
+   */
+  public long getMaxQueueTimeMillis() {
+    return maxQueueTimeMillis;
+  }
+
+  /**
+   * @return The number of requests rejected because the queue was full or their maximum waiting time elapsed.
+   */
+  public long getRejectedCount() {
+    return rejectedCount;
+  }
+
+  @Override
+  public String toString() {
+    return "ConcurrencyLimitStatistics{limit=" + limit + ", inFlight=" + inFlightCount + ", queued=" + queuedCount
+      + ", averageQueueTimeMillis=" + averageQueueTimeMillis + ", maxQueueTimeMillis=" + maxQueueTimeMillis
+      + ", rejected=" + rejectedCount + '}';
+  }
+}
@@ -0,0 +1,352 @@
+package org.restonfire;
+
+import org.restonfire.exceptions.FirebaseRequestRejectedException;
+import org.restonfire.exceptions.FirebaseRuntimeException;
+import org.restonfire.transport.HttpCall;
+import org.restonfire.transport.HttpHeaders;
+import org.restonfire.transport.HttpRequest;
+import org.restonfire.transport.HttpResponse;
+import org.restonfire.transport.HttpResponseHandler;
+import org.restonfire.transport.HttpStatus;
+import org.restonfire.transport.HttpStream;
+import org.restonfire.transport.HttpStreamHandler;
+import org.restonfire.transport.HttpTransport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Adaptive limit of the concurrent requests of a database, as configured by the {@link ConcurrencyLimitSettings}.
+ * The limit follows an AIMD algorithm: it is increased additively while the requests complete within the latency
+ * threshold and the limit is utilized, and it is decreased multiplicatively as soon as a request indicates that
+ * Firebase or the connection is overloaded, so the number of requests in flight converges to what the database
+ * serves without queueing.<br>
+ * <br>
+ * Requests exceeding the limit are queued until a slot is released or their maximum waiting time elapsed, and they
+ * are rejected immediately if the queue is full. The rejections are passed to
+ * {@link HttpResponseHandler#onThrowable(Throwable)} as {@link FirebaseRequestRejectedException}.
+ */
+final class ConcurrencyLimiter {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ConcurrencyLimiter.class);
+
+  private static final ConcurrencyLimiter DISABLED = new ConcurrencyLimiter(null);
+
+  private static final double BACKOFF_RATIO = 0.9;
+  private static final int STATUS_TOO_MANY_REQUESTS = 429;
+  private static final int STATUS_SERVER_ERROR = 500;
+
+  private final ConcurrencyLimitSettings settings;
+  private final long latencyThresholdNanos;
+
+  // guarded by "this"
+  private final Deque<LimitedRequest> queue = new ArrayDeque<>();
+  private double limit;
+  private int inFlight;
+  private long sentCount;
+  private long queueTimeNanos;
+  private long rejectedCount;
+
+  ConcurrencyLimiter(ConcurrencyLimitSettings settings) {
+    this.settings = settings;
+    this.latencyThresholdNanos = settings == null ? 0 : settings.getTimeUnit().toNanos(settings.getLatencyThreshold());
+    this.limit = settings == null ? 0 : settings.getInitialLimit();
+  }
+
+  static ConcurrencyLimiter disabled() {
+    return DISABLED;
+  }
+
+  static ConcurrencyLimiter create(ConcurrencyLimitSettings settings) {
+    return settings == null ? DISABLED : new ConcurrencyLimiter(settings);
+  }
+
+  boolean isEnabled() {
+    return settings != null;
+  }
+
+  /**
+   * @return A transport sending the requests of the given transport within the limit, or the given transport if the
+   * limiter is disabled.
+   */
+  HttpTransport decorate(HttpTransport transport) {
+    return isEnabled() ? new LimitingTransport(transport) : transport;
+  }
+
+  synchronized ConcurrencyLimitStatistics getStatistics() {
+    final LimitedRequest oldest = queue.peekFirst();
+    final long maxQueueTimeNanos = oldest == null ? 0 : System.nanoTime() - oldest.enqueueTime;
+
+    return new ConcurrencyLimitStatistics(
+      (int) limit,
+      inFlight,
+      queue.size(),
+      sentCount == 0 ? 0 : queueTimeNanos / (double) sentCount / TimeUnit.MILLISECONDS.toNanos(1),
+      TimeUnit.NANOSECONDS.toMillis(maxQueueTimeNanos),
+      rejectedCount
+    );
+  }
+
+  private HttpCall submit(HttpTransport transport, HttpRequest request, HttpResponseHandler handler) {
+    final LimitedRequest limited = new LimitedRequest(transport, request, handler);
+    boolean queued = false;
+    boolean rejected = false;
+    synchronized (this) {
+      if (inFlight < (int) limit) {
+        inFlight++;
+        sentCount++;
+      } else if (queue.size() < settings.getMaxQueueSize()) {
+        queue.add(limited);
+        queued = true;
+      } else {
+        rejectedCount++;
+        rejected = true;
+      }
+    }
+
+    if (rejected) {
+      reject(request, handler, "the queue is full");
+    } else if (queued) {
+      limited.timeout = SchedulerUtil.schedule(limited, settings.getMaxQueueWait(), settings.getTimeUnit());
+    } else {
+      send(limited);
+    }
+    return limited;
+  }
+
+  private static void reject(HttpRequest request, HttpResponseHandler handler, String reason) {
+    LOG.debug("Rejected the request to {}, as {}", request.getUrl(), reason);
+    handler.onThrowable(new FirebaseRequestRejectedException(
+      FirebaseRuntimeException.ErrorCode.ConcurrencyLimitExceeded,
+      "The request to '" + request.getUrl() + "' was rejected by the concurrency limiter, as " + reason
+    ));
+  }
+
+  private void timeOut(LimitedRequest queued) {
+    synchronized (this) {
+      if (!queue.remove(queued)) {
+        // the request was sent in the meantime
+        return;
+      }
+      rejectedCount++;
+    }
+
+    reject(queued.request, queued.handler, "it waited longer than " + settings.getMaxQueueWait() + " "
+      + settings.getTimeUnit().toString().toLowerCase() + " for a free slot");
+  }
+
+  private void send(LimitedRequest limited) {
+    final HttpCall call;
+    try {
+      call = limited.transport.execute(limited.request, new LimitedHandler(limited.handler));
+    } catch (RuntimeException e) {
+      release(Outcome.IGNORED);
+      limited.handler.onThrowable(e);
+      return;
+    }
+
+    limited.call = call;
+    if (limited.cancelled) {
+      // cancel() was invoked while the request was sent
+      call.cancel();
+    }
+  }
+
+  /**
+   * @return <code>true</code> if the request was removed from the queue before it was sent.
+   */
+  private synchronized boolean dequeue(LimitedRequest queued) {
+    return queue.remove(queued);
+  }
+
+  private void release(Outcome outcome) {
+    final List<LimitedRequest> next = new ArrayList<>();
+    synchronized (this) {
+      if (outcome == Outcome.OVERLOADED) {
+        limit = Math.max(settings.getMinLimit(), limit * BACKOFF_RATIO);
+      } else if (outcome == Outcome.SUCCEEDED && inFlight * 2 >= limit) {
+        // only a utilized limit is increased, otherwise it grows without bounds during periods of low load
+        limit = Math.min(settings.getMaxLimit(), limit + 1 / limit);
+      }
+      inFlight--;
+
+      final long now = System.nanoTime();
+      while (inFlight < (int) limit && !queue.isEmpty()) {
+        final LimitedRequest queued = queue.poll();
+        inFlight++;
+        sentCount++;
+        queueTimeNanos += now - queued.enqueueTime;
+        next.add(queued);
+      }
+    }
+
+    for (LimitedRequest queued : next) {
+      queued.cancelTimeout();
+      send(queued);
+    }
+  }
+
+  private void cancelQueued() {
+    final List<LimitedRequest> cancelled;
+    synchronized (this) {
+      cancelled = new ArrayList<>(queue);
+      queue.clear();
+    }
+
+    for (LimitedRequest queued : cancelled) {
+      queued.handler.onThrowable(new CancellationException("The transport was closed"));
+    }
+  }
+
+  private enum Outcome {
+    SUCCEEDED,
+    OVERLOADED,
+    // the request does not tell anything about the load, i.e. because it failed before it was sent or was cancelled
+    IGNORED
+  }
+
+  /**
+   * A request submitted to the limiter. While it waits for a free slot, it is rejected when it is run as the timeout
+   * task and removed from the queue when it is cancelled.
+   */
+  private final class LimitedRequest implements HttpCall, Runnable {
+    private final HttpTransport transport;
+    private final HttpRequest request;
+    private final HttpResponseHandler handler;
+    private final long enqueueTime = System.nanoTime();
+    private volatile ScheduledFuture<?> timeout;
+    private volatile HttpCall call;
+    private volatile boolean cancelled;
+
+    private LimitedRequest(HttpTransport transport, HttpRequest request, HttpResponseHandler handler) {
+      this.transport = transport;
+      this.request = request;
+      this.handler = handler;
+    }
+
+    @Override
+    public void run() {
+      timeOut(this);
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+      if (dequeue(this)) {
+        cancelTimeout();
+        handler.onThrowable(new CancellationException("The request was cancelled"));
+        return;
+      }
+
+      final HttpCall current = call;
+      if (current != null) {
+        current.cancel();
+      }
+    }
+
+    private void cancelTimeout() {
+      final ScheduledFuture<?> currentTimeout = timeout;
+      if (currentTimeout != null) {
+        currentTimeout.cancel(false);
+      }
+    }
+  }
+
+  /**
+   * {@link HttpTransport} submitting its requests to the limiter.
+   */
+  private final class LimitingTransport implements HttpTransport {
+    private final HttpTransport delegate;
+
+    private LimitingTransport(HttpTransport delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public HttpCall execute(HttpRequest request, HttpResponseHandler handler) {
+      return submit(delegate, request, handler);
+    }
+
+    @Override
+    public HttpStream stream(HttpRequest request, HttpStreamHandler handler) {
+      return delegate.stream(request, handler);
+    }
+
+    /**
+     * Closes the delegate and fails the queued requests with a {@link CancellationException}.
+     */
+    @Override
+    public void close() {
+      cancelQueued();
+      delegate.close();
+    }
+  }
+
+  /**
+   * {@link HttpResponseHandler} releasing the slot of its request with the outcome derived from the response status
+   * and latency, before the response is passed on. The latency is measured until the headers were received, like
+   * the latency of the hedged requests, so the download of a large body does not look like an overload. It starts
+   * once the delegate sent the request, excluding the time it waited in a queue of the delegate.
+   */
+  private final class LimitedHandler extends HttpResponseHandler {
+    private final HttpResponseHandler handler;
+    private final AtomicBoolean released = new AtomicBoolean();
+    private volatile long startTime = System.nanoTime();
+    // the outcome derived from the headers, or null until they were received
+    private volatile Outcome outcome;
+
+    private LimitedHandler(HttpResponseHandler handler) {
+      this.handler = handler;
+    }
+
+    @Override
+    public void onRequestSent() {
+      startTime = System.nanoTime();
+    }
+
+    @Override
+    public boolean onHeadersReceived(HttpStatus status, HttpHeaders headers) {
+      final int statusCode = status.getStatusCode();
+      outcome = getOutcome(statusCode == STATUS_TOO_MANY_REQUESTS || statusCode >= STATUS_SERVER_ERROR);
+
+      final boolean proceed = handler.onHeadersReceived(status, headers);
+      if (!proceed) {
+        // No further callback is invoked for aborted requests
+        release(outcome);
+      }
+      return proceed;
+    }
+
+    @Override
+    public void onCompleted(HttpResponse response) {
+      final Outcome currentOutcome = outcome;
+      release(currentOutcome == null ? getOutcome(false) : currentOutcome);
+      handler.onCompleted(response);
+    }
+
+    @Override
+    public void onThrowable(Throwable t) {
+      // A cancelled request, i.e. the loser of a hedged request, failed without a hint of the load
+      release(t instanceof CancellationException ? Outcome.IGNORED : Outcome.OVERLOADED);
+      handler.onThrowable(t);
+    }
+
+    private Outcome getOutcome(boolean overloadedStatus) {
+      return overloadedStatus || System.nanoTime() - startTime > latencyThresholdNanos ? Outcome.OVERLOADED : Outcome.SUCCEEDED;
+    }
+
+    private void release(Outcome outcome) {
+      if (released.compareAndSet(false, true)) {
+        ConcurrencyLimiter.this.release(outcome);
+      }
+    }
+  }
+}
@@ -0,0 +1,75 @@
+package org.restonfire;
+
+/**
+ * Resources of a {@link FirebaseRestDatabase}, which are shared by all references created for the same database.
+ */
+final class DatabaseResources {
+
+  private final ValueCache valueCache;
+  private final RequestCoalescer requestCoalescer;
+  private final WriteCoalescer writeCoalescer;
+  private final EventStreamReconnector eventStreamReconnector;
+  private final EventDelivery eventDelivery;
+  private final EventStreamWatchdog eventStreamWatchdog;
+  private final ConcurrencyLimiter concurrencyLimiter;
+  private final RequestHedger requestHedger;
+
+  DatabaseResources(
+    ValueCache valueCache,
+    RequestCoalescer requestCoalescer,
+    WriteCoalescer writeCoalescer,
+    EventStreamReconnector eventStreamReconnector,
+    EventDelivery eventDelivery,
+    EventStreamWatchdog eventStreamWatchdog,
+    ConcurrencyLimiter concurrencyLimiter,
+    RequestHedger requestHedger) {
+
+    this.valueCache = valueCache;
+    this.requestCoalescer = requestCoalescer;
+    this.writeCoalescer = writeCoalescer;
+    this.eventStreamReconnector = eventStreamReconnector;
+    this.eventDelivery = eventDelivery;
+    this.eventStreamWatchdog = eventStreamWatchdog;
+    this.concurrencyLimiter = concurrencyLimiter;
+    this.requestHedger = requestHedger;
+  }
+
+  /**
+   * Creates the resources for a database without any of the optional features enabled.
+   */
+  static DatabaseResources createDefault() {
+    return new DatabaseResources(ValueCache.disabled(), new RequestCoalescer(false), WriteCoalescer.disabled(), EventStreamReconnector.disabled(), EventDelivery.disabled(), EventStreamWatchdog.disabled(), ConcurrencyLimiter.disabled(), RequestHedger.disabled());
+  }
+
+  ValueCache getValueCache() {
+    return valueCache;
+  }
+
+  RequestCoalescer getRequestCoalescer() {
+    return requestCoalescer;
+  }
+
+  WriteCoalescer getWriteCoalescer() {
+    return writeCoalescer;
+  }
+
+  EventStreamReconnector getEventStreamReconnector() {
+    return eventStreamReconnector;
+  }
+
+  EventDelivery getEventDelivery() {
+    return eventDelivery;
+  }
+
+  EventStreamWatchdog getEventStreamWatchdog() {
+    return eventStreamWatchdog;
+  }
+
+  ConcurrencyLimiter getConcurrencyLimiter() {
+    return concurrencyLimiter;
+  }
+
+  RequestHedger getRequestHedger() {
+    return requestHedger;
+  }
+}
@@ -0,0 +1,174 @@
+package org.restonfire;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.jdeferred.Deferred;
+import org.jdeferred.Promise;
+import org.jdeferred.impl.DeferredObject;
+import org.restonfire.exceptions.FirebaseRestException;
+import org.restonfire.exceptions.FirebaseRuntimeException;
+import org.restonfire.transport.HttpRequest;
+import org.restonfire.transport.HttpResponse;
+import org.restonfire.transport.HttpResponseHandler;
+import org.restonfire.transport.HttpTransport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warms up the connections of a database with rounds of concurrent, shallow requests to its root, as configured by
+ * the {@link WarmupSettings}. Each round is published through the progress callback of the promise, and the promise
+ * resolves with the last round once the latency is stable or the maximum number of rounds was reached. It is rejected
+ * if all requests of a round failed, i.e. because the host is not reachable.<br>
+ * <br>
+ * The response status is irrelevant for the warmup, so requests rejected by the security rules warm the connections
+ * as well.
+ */
+final class DatabaseWarmup {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DatabaseWarmup.class);
+
+  private static final String SHALLOW_PARAM = "shallow";
+  private static final double STABLE_LATENCY_DEVIATION = 0.2;
+  private static final double PERCENTILE = 0.99;
+
+  private final HttpTransport transport;
+  private final Gson gson;
+  private final String requestUrl;
+  private final String accessToken;
+  private final WarmupSettings settings;
+
+  private final Deferred<WarmupResult, FirebaseRuntimeException, WarmupResult> deferred = new DeferredObject<>();
+  private long startTime;
+
+  // guarded by "this", as the requests of a round complete on the I/O threads
+  private int round;
+  private long[] latencies;
+  private int completedCount;
+  private int failedCount;
+  private Throwable lastError;
+  private double previousP99LatencyMillis = -1;
+
+  DatabaseWarmup(HttpTransport transport, Gson gson, String databaseUrl, String accessToken, WarmupSettings settings) {
+    this.transport = transport;
+    this.gson = gson;
+    this.requestUrl = PathUtil.concatenatePath(databaseUrl, "") + FirebaseDocumentLocation.JSON_SUFFIX;
+    this.accessToken = accessToken;
+    this.settings = settings;
+  }
+
+  Promise<WarmupResult, FirebaseRuntimeException, WarmupResult> start() {
+    startTime = System.nanoTime();
+    primeTypeAdapters();
+    startRound();
+
+    return deferred.promise();
+  }
+
+  private void primeTypeAdapters() {
+    for (Type type : settings.getPrimedTypes()) {
+      try {
+        // Gson caches the adapter, so the reflective analysis of the type is not part of the first request
+        gson.getAdapter(TypeToken.get(type));
+      } catch (RuntimeException e) {
+        LOG.warn("Failed to create the Gson type adapter for {}", type, e);
+      }
+    }
+  }
+
+  private void startRound() {
+    final int currentRound;
+    synchronized (this) {
+      currentRound = ++round;
+      latencies = new long[settings.getConnectionCount()];
+      completedCount = 0;
+      failedCount = 0;
+    }
+
+    LOG.debug("Starting warmup round {} with {} requests to {}", currentRound, settings.getConnectionCount(), requestUrl);
+    for (int i = 0; i < settings.getConnectionCount(); i++) {
+      final long requestStartTime = System.nanoTime();
+      final HttpRequest request = RequestBuilderUtil.createGet(requestUrl, accessToken).addQueryParam(SHALLOW_PARAM, "true");
+
+      transport.execute(request, new HttpResponseHandler() {
+        @Override
+        public void onCompleted(HttpResponse response) {
+          onRequestCompleted(System.nanoTime() - requestStartTime, null);
+        }
+
+        @Override
+        public void onThrowable(Throwable t) {
+          onRequestCompleted(0, t);
+        }
+      });
+    }
+  }
+
+  private void onRequestCompleted(long latencyNanos, Throwable error) {
+    final WarmupResult result;
+    final int currentRound;
+    final Throwable roundError;
+    synchronized (this) {
+      currentRound = round;
+      if (error == null) {
+        latencies[completedCount++] = latencyNanos;
+      } else {
+        failedCount++;
+        lastError = error;
+      }
+
+      if (completedCount + failedCount < settings.getConnectionCount()) {
+        return;
+      }
+
+      roundError = lastError;
+      if (completedCount == 0) {
+        result = null;
+      } else {
+        final double p99LatencyMillis = getPercentileMillis(Arrays.copyOf(latencies, completedCount));
+        final boolean stable = isStable(previousP99LatencyMillis, p99LatencyMillis);
+        previousP99LatencyMillis = p99LatencyMillis;
+
+        result = new WarmupResult(currentRound, completedCount, failedCount, p99LatencyMillis, stable,
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+      }
+    }
+
+    if (result == null) {
+      LOG.warn("All requests of warmup round {} to {} failed", currentRound, requestUrl);
+      deferred.reject(new FirebaseRestException(
+        FirebaseRuntimeException.ErrorCode.WarmupFailed,
+        "All requests of warmup round " + currentRound + " to '" + requestUrl + "' failed",
+        roundError
+      ));
+      return;
+    }
+
+    LOG.debug("Warmup round completed: {}", result);
+    deferred.notify(result);
+
+    if (result.isStable() || result.getRound() >= settings.getMaxRounds()) {
+      LOG.info("Warmup of {} completed: {}", requestUrl, result);
+      deferred.resolve(result);
+    } else {
+      startRound();
+    }
+  }
+
+  /**
+   * @return <code>true</code> if the latency differs by less than {@link #STABLE_LATENCY_DEVIATION} from the latency
+   * of the previous round, which is negative for the first round.
+   */
+  static boolean isStable(double previousLatency, double latency) {
+    return previousLatency >= 0 && Math.abs(latency - previousLatency) <= previousLatency * STABLE_LATENCY_DEVIATION;
+  }
+
+  private static double getPercentileMillis(long[] latencies) {
+    Arrays.sort(latencies);
+    final int index = Math.max(0, Math.min(latencies.length - 1, (int) Math.ceil(PERCENTILE * latencies.length) - 1));
+    return latencies[index] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+}
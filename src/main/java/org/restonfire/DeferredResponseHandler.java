@@ -0,0 +1,30 @@
+package org.restonfire;
+
+import org.jdeferred.Deferred;
+import org.restonfire.exceptions.FirebaseRestException;
+import org.restonfire.exceptions.FirebaseRuntimeException;
+import org.restonfire.transport.HttpResponseHandler;
+
+/**
+ * {@link HttpResponseHandler} rejecting the {@link Deferred} of its request if the request failed without a
+ * response, i.e. because the connection failed or the request was rejected by the concurrency limiter.
+ */
+abstract class DeferredResponseHandler extends HttpResponseHandler {
+
+  private final Deferred<?, FirebaseRuntimeException, ?> deferred;
+
+  DeferredResponseHandler(Deferred<?, FirebaseRuntimeException, ?> deferred) {
+    this.deferred = deferred;
+  }
+
+  @Override
+  public void onThrowable(Throwable t) {
+    if (!deferred.isPending()) {
+      return;
+    }
+
+    deferred.reject(t instanceof FirebaseRuntimeException
+      ? (FirebaseRuntimeException) t
+      : new FirebaseRestException(FirebaseRuntimeException.ErrorCode.RequestFailed, "The REST request failed", t));
+  }
+}
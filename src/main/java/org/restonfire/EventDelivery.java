@@ -0,0 +1,465 @@
+package org.restonfire;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.reflect.TypeToken;
+import org.jdeferred.AlwaysCallback;
+import org.jdeferred.Deferred;
+import org.jdeferred.ProgressCallback;
+import org.jdeferred.Promise;
+import org.jdeferred.impl.DeferredObject;
+import org.restonfire.exceptions.FirebaseInvalidStateException;
+import org.restonfire.exceptions.FirebaseRuntimeException;
+import org.restonfire.responses.StreamingEvent;
+import org.restonfire.responses.StreamingEventData;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivery of event stream events through a bounded queue per stream, which decouples the I/O threads receiving
+ * the events from the consumers. The queue of a stream is drained by a task of the configured executor, which
+ * publishes a limited number of events before it yields the executor to the queues of other streams.<br>
+ * <br>
+ * Only <code>Set</code> and <code>Update</code> events are subject to the capacity, since discarding a
+ * <code>Resync</code> event or the completion of a stream would leave the consumer in an inconsistent state.<br>
+ * <br>
+ * In the conflating mode, each queue indexes its <code>Set</code> and <code>Update</code> events by their trimmed
+ * path. A new event is merged into the latest queued event for the same path, as long as no queued event affects an
+ * ancestor or a descendant of the path, which would make the result depend on the order of the merged events.
+ */
+final class EventDelivery {
+
+  private static final EventDelivery DISABLED = new EventDelivery(null, null);
+
+  private static final TypeToken<StreamingEventData<JsonElement>> EVENT_DATA_TYPE = new TypeToken<StreamingEventData<JsonElement>>() { };
+
+  // the number of events published by a single task before the executor is yielded
+  private static final int MAX_BATCH_SIZE = 64;
+
+  private final EventDeliverySettings settings;
+  private final Gson gson;
+  private final Set<DeliveryQueue> queues = Collections.newSetFromMap(new ConcurrentHashMap<DeliveryQueue, Boolean>());
+
+  private final AtomicLong deliveredCount = new AtomicLong();
+  private final AtomicLong droppedCount = new AtomicLong();
+  private final AtomicLong conflatedCount = new AtomicLong();
+  private final AtomicLong failedStreamCount = new AtomicLong();
+
+  EventDelivery(EventDeliverySettings settings, Gson gson) {
+    this.settings = settings;
+    this.gson = gson;
+  }
+
+  static EventDelivery disabled() {
+    return DISABLED;
+  }
+
+  static EventDelivery create(EventDeliverySettings settings, Gson gson) {
+    return settings == null ? DISABLED : new EventDelivery(settings, gson);
+  }
+
+  boolean isEnabled() {
+    return settings != null;
+  }
+
+  /**
+   * Returns a promise that publishes the events and the completion of the given promise through a new queue.
+   *
+   * @param source The promise of the event stream connection.
+   * @param overflowHandler Invoked with the error the stream should be rejected with, if the queue overflows
+   *                        with the {@link EventDeliverySettings.OverflowPolicy#FailStream} policy.
+   */
+  Promise<Void, FirebaseRuntimeException, StreamingEvent> deliver(Promise<Void, FirebaseRuntimeException, StreamingEvent> source, OverflowHandler overflowHandler) {
+    final DeliveryQueue queue = new DeliveryQueue(overflowHandler);
+    queues.add(queue);
+
+    source
+      .progress(new ProgressCallback<StreamingEvent>() {
+        @Override
+        public void onProgress(StreamingEvent event) {
+          queue.offer(event);
+        }
+      })
+      .always(new AlwaysCallback<Void, FirebaseRuntimeException>() {
+        @Override
+        public void onAlways(Promise.State state, Void resolved, FirebaseRuntimeException rejected) {
+          queue.complete(rejected);
+        }
+      });
+
+    return queue.deferred.promise();
+  }
+
+  EventDeliveryStatistics getStatistics() {
+    final long now = System.nanoTime();
+    int queuedCount = 0;
+    long maxLagNanos = 0;
+
+    for (DeliveryQueue queue : queues) {
+      synchronized (queue) {
+        final QueuedEvent oldest = queue.events.peek();
+        if (oldest != null) {
+          queuedCount += queue.events.size();
+          maxLagNanos = Math.max(maxLagNanos, now - oldest.enqueuedNanos);
+        }
+      }
+    }
+
+    return new EventDeliveryStatistics(
+      queuedCount,
+      TimeUnit.NANOSECONDS.toMillis(maxLagNanos),
+      deliveredCount.get(),
+      droppedCount.get(),
+      conflatedCount.get(),
+      failedStreamCount.get()
+    );
+  }
+
+  private static boolean isBounded(StreamingEvent event) {
+    return event.getEventType() == StreamingEvent.EventType.Set || event.getEventType() == StreamingEvent.EventType.Update;
+  }
+
+  private static int getCount(Map<String, Integer> counts, String path) {
+    final Integer count = counts.get(path);
+    return count == null ? 0 : count;
+  }
+
+  private static void increment(Map<String, Integer> counts, String path) {
+    counts.put(path, getCount(counts, path) + 1);
+  }
+
+  private static void decrement(Map<String, Integer> counts, String path) {
+    final int count = getCount(counts, path) - 1;
+    if (count > 0) {
+      counts.put(path, count);
+    } else {
+      counts.remove(path);
+    }
+  }
+
+  /**
+   * Callback to fail the stream of an overflowing queue.
+   */
+  interface OverflowHandler {
+    void onOverflow(FirebaseRuntimeException error);
+  }
+
+  /**
+   * An event waiting to be published. The event data is only decoded in the conflating mode, where the event may be
+   * replaced by the result of a merge.
+   */
+  private static final class QueuedEvent {
+    private final long enqueuedNanos;
+    private final String path;
+
+    private StreamingEvent event;
+    private StreamingEventData<JsonElement> eventData;
+
+    private QueuedEvent(StreamingEvent event, StreamingEventData<JsonElement> eventData, long enqueuedNanos) {
+      this.event = event;
+      this.eventData = eventData;
+      this.enqueuedNanos = enqueuedNanos;
+      this.path = eventData == null ? null : PathUtil.trimPath(eventData.getPath());
+    }
+  }
+
+  /**
+   * The queue of a single stream, guarded by its own monitor. The draining task is scheduled once the first event
+   * was added to an idle queue and remains scheduled until the queue is empty.
+   */
+  private final class DeliveryQueue implements Runnable {
+    private final Deferred<Void, FirebaseRuntimeException, StreamingEvent> deferred = new DeferredObject<>();
+    private final Deque<QueuedEvent> events = new ArrayDeque<>();
+    private final OverflowHandler overflowHandler;
+
+    // indexes of the queued Set and Update events, only maintained in the conflating mode
+    private final Map<String, QueuedEvent> latestEvents = new HashMap<>();
+    private final Map<String, Integer> pathCounts = new HashMap<>();
+    private final Map<String, Integer> subtreeCounts = new HashMap<>();
+
+    private int boundedCount;
+    private int blockedProducers;
+    private boolean scheduled;
+    private boolean overflowed;
+    private boolean completed;
+    private boolean settled;
+    private FirebaseRuntimeException error;
+
+    private DeliveryQueue(OverflowHandler overflowHandler) {
+      this.overflowHandler = overflowHandler;
+    }
+
+    void offer(StreamingEvent event) {
+      final boolean bounded = isBounded(event);
+      // Decoded before acquiring the monitor, so the consumer is not blocked by the decoding
+      final StreamingEventData<JsonElement> eventData = bounded && settings.isConflating() ? event.getEventData(EVENT_DATA_TYPE) : null;
+      final QueuedEvent queuedEvent = new QueuedEvent(event, eventData, System.nanoTime());
+      final boolean schedule;
+      final boolean fail;
+
+      synchronized (this) {
+        if (completed || overflowed) {
+          return;
+        }
+
+        if (queuedEvent.path != null && conflate(queuedEvent)) {
+          conflatedCount.incrementAndGet();
+          return;
+        }
+
+        if (bounded && boundedCount >= settings.getCapacity() && !makeRoom()) {
+          droppedCount.incrementAndGet();
+          schedule = false;
+          fail = overflowed;
+        } else {
+          add(queuedEvent);
+          schedule = !scheduled;
+          scheduled = true;
+          fail = false;
+        }
+      }
+
+      if (schedule) {
+        settings.getExecutor().execute(this);
+      } else if (fail) {
+        failStream();
+      }
+    }
+
+    private void add(QueuedEvent queuedEvent) {
+      events.add(queuedEvent);
+
+      if (isBounded(queuedEvent.event)) {
+        boundedCount++;
+      } else if (settings.isConflating()) {
+        // Changes received after a Resync must not be merged with the changes of the previous connection
+        latestEvents.clear();
+      }
+
+      if (queuedEvent.path != null) {
+        latestEvents.put(queuedEvent.path, queuedEvent);
+        increment(pathCounts, queuedEvent.path);
+        for (String path = queuedEvent.path; path != null; path = PathUtil.getParent(path)) {
+          increment(subtreeCounts, path);
+        }
+      }
+    }
+
+    private void remove(QueuedEvent queuedEvent) {
+      if (isBounded(queuedEvent.event)) {
+        boundedCount--;
+      }
+
+      if (queuedEvent.path != null) {
+        if (latestEvents.get(queuedEvent.path) == queuedEvent) {
+          latestEvents.remove(queuedEvent.path);
+        }
+        decrement(pathCounts, queuedEvent.path);
+        for (String path = queuedEvent.path; path != null; path = PathUtil.getParent(path)) {
+          decrement(subtreeCounts, path);
+        }
+      }
+    }
+
+    /**
+     * Merges the event into the latest queued event for its path. Returns <code>false</code> if the event has to be
+     * queued on its own.
+     */
+    private boolean conflate(QueuedEvent queuedEvent) {
+      final QueuedEvent latest = latestEvents.get(queuedEvent.path);
+      if (latest == null || hasOverlappingEvents(queuedEvent.path)) {
+        return false;
+      }
+
+      final StreamingEvent.EventType eventType = queuedEvent.event.getEventType();
+      final JsonElement data = queuedEvent.eventData.getData();
+
+      if (eventType == StreamingEvent.EventType.Set) {
+        latest.event = queuedEvent.event;
+        latest.eventData = queuedEvent.eventData;
+        return true;
+      }
+
+      if (data == null || !data.isJsonObject()) {
+        return false;
+      }
+
+      final JsonElement latestData = latest.eventData.getData();
+      if (latest.event.getEventType() == StreamingEvent.EventType.Set) {
+        final JsonElement merged = JsonTreeUtil.update(latestData, "", data.getAsJsonObject());
+        replace(latest, StreamingEvent.EventType.Set, merged == null ? JsonNull.INSTANCE : merged);
+        return true;
+      }
+
+      if (latestData == null || !latestData.isJsonObject()) {
+        return false;
+      }
+
+      final Map<String, JsonElement> children = new LinkedHashMap<>();
+      for (Map.Entry<String, JsonElement> child : latestData.getAsJsonObject().entrySet()) {
+        JsonTreeUtil.addMultiPathWrite(children, PathUtil.trimPath(child.getKey()), child.getValue());
+      }
+      for (Map.Entry<String, JsonElement> child : data.getAsJsonObject().entrySet()) {
+        JsonTreeUtil.addMultiPathWrite(children, PathUtil.trimPath(child.getKey()), child.getValue());
+      }
+
+      final JsonObject merged = new JsonObject();
+      for (Map.Entry<String, JsonElement> child : children.entrySet()) {
+        merged.add(child.getKey(), child.getValue());
+      }
+      replace(latest, StreamingEvent.EventType.Update, merged);
+      return true;
+    }
+
+    /**
+     * Returns <code>true</code> if an event for an ancestor or a descendant of the path is queued.
+     */
+    private boolean hasOverlappingEvents(String path) {
+      if (getCount(subtreeCounts, path) != getCount(pathCounts, path)) {
+        return true;
+      }
+
+      for (String ancestor = PathUtil.getParent(path); ancestor != null; ancestor = PathUtil.getParent(ancestor)) {
+        if (getCount(pathCounts, ancestor) > 0) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private void replace(QueuedEvent queuedEvent, StreamingEvent.EventType eventType, JsonElement data) {
+      final String eventPath = queuedEvent.eventData.getPath();
+      queuedEvent.event = StreamingEventUtil.createEvent(gson, eventType, eventPath, data);
+      queuedEvent.eventData = new StreamingEventData<>(eventPath, data);
+    }
+
+    /**
+     * Applies the overflow policy. Returns <code>false</code> if the new event has to be discarded.
+     */
+    private boolean makeRoom() {
+      switch (settings.getOverflowPolicy()) {
+        case Block:
+          return awaitRoom();
+        case DropOldest:
+          removeOldestBoundedEvent();
+          droppedCount.incrementAndGet();
+          return true;
+        default:
+          overflowed = true;
+          return false;
+      }
+    }
+
+    private boolean awaitRoom() {
+      blockedProducers++;
+      try {
+        while (boundedCount >= settings.getCapacity() && !completed) {
+          wait();
+        }
+        return !completed;
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        return false;
+      } finally {
+        blockedProducers--;
+      }
+    }
+
+    private void removeOldestBoundedEvent() {
+      final Iterator<QueuedEvent> iterator = events.iterator();
+      while (iterator.hasNext()) {
+        final QueuedEvent queuedEvent = iterator.next();
+        if (isBounded(queuedEvent.event)) {
+          iterator.remove();
+          remove(queuedEvent);
+          return;
+        }
+      }
+    }
+
+    private void failStream() {
+      failedStreamCount.incrementAndGet();
+
+      overflowHandler.onOverflow(new FirebaseInvalidStateException(
+        FirebaseRuntimeException.ErrorCode.EventDeliveryQueueOverflow,
+        "The event delivery queue exceeded its capacity of " + settings.getCapacity() + " events"
+      ));
+    }
+
+    void complete(FirebaseRuntimeException completionError) {
+      final boolean schedule;
+      synchronized (this) {
+        if (completed) {
+          return;
+        }
+        completed = true;
+        error = completionError;
+        notifyAll();
+
+        schedule = !scheduled;
+        scheduled = true;
+      }
+
+      if (schedule) {
+        settings.getExecutor().execute(this);
+      }
+    }
+
+    @Override
+    public void run() {
+      for (int i = 0; i < MAX_BATCH_SIZE; i++) {
+        final QueuedEvent next;
+        final boolean settle;
+        synchronized (this) {
+          next = events.poll();
+          if (next == null) {
+            scheduled = false;
+            settle = completed && !settled;
+            settled |= settle;
+          } else {
+            settle = false;
+            remove(next);
+            if (blockedProducers > 0) {
+              notifyAll();
+            }
+          }
+        }
+
+        if (next == null) {
+          if (settle) {
+            settle();
+          }
+          return;
+        }
+
+        deferred.notify(next.event);
+        deliveredCount.incrementAndGet();
+      }
+
+      // Yields the executor to the queues of other streams, the task remains scheduled
+      settings.getExecutor().execute(this);
+    }
+
+    private void settle() {
+      queues.remove(this);
+
+      if (error != null) {
+        deferred.reject(error);
+      } else {
+        deferred.resolve(null);
+      }
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package org.restonfire;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Configuration of the delivery of {@link FirebaseRestEventStream} events. By default, the events are published on
+ * the thread of the {@link org.restonfire.transport.HttpTransport} that received them, so a slow progress callback
+ * delays the reading of the connection and all other connections served by the same thread. With these settings,
+ * the I/O thread only adds the events to a bounded queue per stream, which is drained by the given executor.<br>
+ * <br>
+ * The events of a stream are always published in order and never concurrently, even if the executor runs multiple
+ * threads. <code>Resync</code> events and the completion of a stream are not subject to the queue's capacity.<br>
+ * <br>
+ * In the conflating mode, a <code>Set</code> or <code>Update</code> event for a location that already has a queued
+ * event is merged into the queued event: a <code>Set</code> replaces it, while the children of an
+ * <code>Update</code> are applied to it. The consumer therefore skips intermediate values, but the resulting data is
+ * the same. Events are only merged if no event for an ancestor or descendant of the location is queued, so the
+ * order of changes to overlapping locations is preserved.
+ *
+ * @see BaseFirebaseRestDatabaseFactory#setEventDeliverySettings(EventDeliverySettings)
+ */
+public final class EventDeliverySettings {
+
+  private final int capacity;
+  private final OverflowPolicy overflowPolicy;
+  private final Executor executor;
+  private final boolean conflating;
+
+  /**
+   * Creates the delivery settings.
+   *
+   * @param capacity The maximum number of <code>Set</code> and <code>Update</code> events queued per stream.
+   * @param overflowPolicy The {@link OverflowPolicy} applied once the queue of a stream is full.
+   * @param executor The {@link Executor} publishing the events. It must not run the tasks on the threads of the
+   *                 {@link org.restonfire.transport.HttpTransport}, if the {@link OverflowPolicy#Block} policy is used.
+   */
+  public EventDeliverySettings(int capacity, OverflowPolicy overflowPolicy, Executor executor) {
+    this(capacity, overflowPolicy, executor, false);
+  }
+
+  /**
+   * Creates the delivery settings.
+   *
+   * @param capacity The maximum number of <code>Set</code> and <code>Update</code> events queued per stream.
+   * @param overflowPolicy The {@link OverflowPolicy} applied once the queue of a stream is full.
+   * @param executor The {@link Executor} publishing the events. It must not run the tasks on the threads of the
+   *                 {@link org.restonfire.transport.HttpTransport}, if the {@link OverflowPolicy#Block} policy is used.
+   * @param conflating <code>true</code> to merge the queued events for the same location.
+   */
+  public EventDeliverySettings(int capacity, OverflowPolicy overflowPolicy, Executor executor, boolean conflating) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be greater than 0");
+    }
+    if (overflowPolicy == null) {
+      throw new IllegalArgumentException("overflowPolicy cannot be null");
+    }
+    if (executor == null) {
+      throw new IllegalArgumentException("executor cannot be null");
+    }
+
+    this.capacity = capacity;
+    this.overflowPolicy = overflowPolicy;
+    this.executor = executor;
+    this.conflating = conflating;
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public OverflowPolicy getOverflowPolicy() {
+    return overflowPolicy;
+  }
+
+  public Executor getExecutor() {
+    return executor;
+  }
+
+  public boolean isConflating() {
+    return conflating;
+  }
+
+  /**
+   * Enum describing how a new event is handled while the queue of its stream is full.
+   */
+  public enum OverflowPolicy {
+    /**
+     * The I/O thread waits until the consumer published an event, which stops reading from the connection.
+     */
+    Block,
+    /**
+     * The oldest queued event is discarded. The consumer misses the changes of the discarded events.
+     */
+    DropOldest,
+    /**
+     * The connection is closed and the promise of the stream is rejected once the queued events were published.
+     */
+    FailStream
+  }
+}
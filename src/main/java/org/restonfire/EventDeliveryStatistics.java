@@ -0,0 +1,73 @@
+package org.restonfire;
+
+/**
+ * Point-in-time snapshot of the gauges and counters of a {@link FirebaseRestDatabase}'s event delivery.
+ *
+ * @see FirebaseRestDatabase#getEventDeliveryStatistics()
+ */
+public final class EventDeliveryStatistics {
+
+  private final int queuedCount;
+  private final long maxDeliveryLagMillis;
+  private final long deliveredCount;
+  private final long droppedCount;
+  private final long conflatedCount;
+  private final long failedStreamCount;
+
+  public EventDeliveryStatistics(int queuedCount, long maxDeliveryLagMillis, long deliveredCount, long droppedCount, long conflatedCount, long failedStreamCount) {
+    this.queuedCount = queuedCount;
+    this.maxDeliveryLagMillis = maxDeliveryLagMillis;
+    this.deliveredCount = deliveredCount;
+    this.droppedCount = droppedCount;
+    this.conflatedCount = conflatedCount;
+    this.failedStreamCount = failedStreamCount;
+  }
+
+  /**
+   * @return The number of events currently waiting to be published, for all streams of the database.
+   */
+  public int getQueuedCount() {
+    return queuedCount;
+  }
+
+  /**
+   * @return The time in milliseconds the oldest currently queued event has been waiting to be published.
+   */
+  public long getMaxDeliveryLagMillis() {
+    return maxDeliveryLagMillis;
+  }
+
+  /**
+   * @return The number of events published to the consumers.
+   */
+  public long getDeliveredCount() {
+    return deliveredCount;
+  }
+
+  /**
+   * @return The number of events discarded due to a full queue.
+   */
+  public long getDroppedCount() {
+    return droppedCount;
+  }
+
+  /**
+   * @return The number of events that were merged into a queued event for the same location.
+   */
+  public long getConflatedCount() {
+    return conflatedCount;
+  }
+
+  /**
+   * @return The number of streams that were failed due to a full queue.
+   */
+  public long getFailedStreamCount() {
+    return failedStreamCount;
+  }
+
+  @Override
+  public String toString() {
+    return "EventDeliveryStatistics{queued=" + queuedCount + ", maxDeliveryLagMillis=" + maxDeliveryLagMillis
+      + ", delivered=" + deliveredCount + ", dropped=" + droppedCount + ", conflated=" + conflatedCount + ", failedStreams=" + failedStreamCount + '}';
+  }
+}
@@ -0,0 +1,63 @@
+package org.restonfire;
+
+import org.restonfire.responses.StreamingEvent;
+
+/**
+ * An event read from a {@link FirebaseEventJournal}.
+ */
+public final class EventJournalEntry {
+
+  private final long sequence;
+  private final long receivedAtMillis;
+  private final String path;
+  private final StreamingEvent event;
+  // position of the following record within the segment
+  private final int nextPosition;
+
+  EventJournalEntry(long sequence, long receivedAtMillis, String path, StreamingEvent event, int nextPosition) {
+    this.sequence = sequence;
+    this.receivedAtMillis = receivedAtMillis;
+    this.path = path;
+    this.event = event;
+    this.nextPosition = nextPosition;
+  }
+
+  /**
+   * @return The sequence number of the entry, which is assigned in the order the events were appended to the journal.
+   */
+  public long getSequence() {
+    return sequence;
+  }
+
+  /**
+   * @return The time in milliseconds since the epoch at which the event was appended to the journal.
+   */
+  public long getReceivedAtMillis() {
+    return receivedAtMillis;
+  }
+
+  /**
+   * @return The path of the event relative to the location of its event stream, or an empty string for events
+   *         without data.
+   */
+  public String getPath() {
+    return path;
+  }
+
+  /**
+   * @return The {@link StreamingEvent} with the raw data as it was received, which is decoded once it is requested.
+   */
+  public StreamingEvent getEvent() {
+    return event;
+  }
+
+  int getNextPosition() {
+    return nextPosition;
+  }
+
+  @Override
+  public String toString() {
+    return "EventJournalEntry{sequence=" + sequence + ", receivedAtMillis=" + receivedAtMillis + ", eventType=" + event.getEventType()
+      + ", path='" + path + "'}";
+  }
+}
@@ -0,0 +1,237 @@
+package org.restonfire;
+
+import com.google.gson.Gson;
+import org.restonfire.responses.StreamingEvent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+
+/**
+ * A memory-mapped segment file of an event journal, containing the records of consecutive sequence numbers. The
+ * segment is written by a single thread at a time, while any number of readers may read the records below the
+ * published write position.<br>
+ * <br>
+ * Each record consists of its length, the CRC32 checksum of its payload and the payload itself, which contains the
+ * sequence number, the receive timestamp, the event type, the path and the raw event data. A length of 0 marks the
+ * end of the written records, since the unused part of a mapped file is zero filled. When a segment is reopened, the
+ * records are validated up to the first incomplete or corrupted record, which is overwritten by the next append.
+ */
+final class EventJournalSegment {
+
+  static final String FILE_SUFFIX = ".segment";
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final StreamingEvent.EventType[] EVENT_TYPES = StreamingEvent.EventType.values();
+  private static final int RECORD_HEADER_SIZE = 8;
+  // sequence, timestamp, event type, path length and data length
+  private static final int PAYLOAD_HEADER_SIZE = 8 + 8 + 1 + 4 + 4;
+  private static final int NO_DATA = -1;
+
+  private final File file;
+  private final long baseSequence;
+  private final MappedByteBuffer buffer;
+
+  // published after the record was written, so readers never see an incomplete record
+  private volatile int writePosition;
+  private volatile long lastSequence;
+  private volatile long lastTimestamp;
+
+  private EventJournalSegment(File file, long baseSequence, MappedByteBuffer buffer) {
+    this.file = file;
+    this.baseSequence = baseSequence;
+    this.buffer = buffer;
+    this.lastSequence = baseSequence - 1;
+  }
+
+  /**
+   * Creates a new segment file for the records starting with the given sequence number.
+   */
+  static EventJournalSegment create(File directory, long baseSequence, int size) throws IOException {
+    final File file = new File(directory, String.format("%020d", baseSequence) + FILE_SUFFIX);
+    return new EventJournalSegment(file, baseSequence, map(file, size));
+  }
+
+  /**
+   * Opens an existing segment file and recovers the position after its last valid record.
+   */
+  static EventJournalSegment open(File file) throws IOException {
+    final String name = file.getName();
+    final long baseSequence = Long.parseLong(name.substring(0, name.length() - FILE_SUFFIX.length()));
+
+    final EventJournalSegment segment = new EventJournalSegment(file, baseSequence, map(file, (int) file.length()));
+    segment.recover();
+    return segment;
+  }
+
+  static int getRecordSize(String path, byte[] data) {
+    return RECORD_HEADER_SIZE + PAYLOAD_HEADER_SIZE + path.getBytes(UTF_8).length + (data == null ? 0 : data.length);
+  }
+
+  long getBaseSequence() {
+    return baseSequence;
+  }
+
+  /**
+   * @return The sequence number of the last record, or <code>baseSequence - 1</code> if the segment is empty.
+   */
+  long getLastSequence() {
+    return lastSequence;
+  }
+
+  long getLastTimestamp() {
+    return lastTimestamp;
+  }
+
+  int getWritePosition() {
+    return writePosition;
+  }
+
+  long getSize() {
+    return buffer.capacity();
+  }
+
+  /**
+   * Appends a record with the next sequence number of this segment.
+   *
+   * @return <code>false</code> if the remaining space of the segment is too small for the record.
+   */
+  boolean append(long timestamp, StreamingEvent.EventType eventType, String path, byte[] data) {
+    final byte[] pathBytes = path.getBytes(UTF_8);
+    final int payloadSize = PAYLOAD_HEADER_SIZE + pathBytes.length + (data == null ? 0 : data.length);
+    final int position = writePosition;
+
+    if (position + RECORD_HEADER_SIZE + payloadSize > buffer.capacity()) {
+      return false;
+    }
+
+    final long sequence = lastSequence + 1;
+    final ByteBuffer payload = buffer.duplicate();
+    payload.position(position + RECORD_HEADER_SIZE);
+    payload.putLong(sequence);
+    payload.putLong(timestamp);
+    payload.put((byte) eventType.ordinal());
+    payload.putInt(pathBytes.length);
+    payload.put(pathBytes);
+    payload.putInt(data == null ? NO_DATA : data.length);
+    if (data != null) {
+      payload.put(data);
+    }
+
+    final int nextPosition = payload.position();
+    if (nextPosition + RECORD_HEADER_SIZE <= buffer.capacity()) {
+      // Terminates the records, in case the rest of the segment contains an incomplete record of a previous process
+      buffer.putInt(nextPosition, 0);
+    }
+    buffer.putInt(position + 4, checksum(position + RECORD_HEADER_SIZE, payloadSize));
+    buffer.putInt(position, payloadSize);
+
+    lastTimestamp = timestamp;
+    lastSequence = sequence;
+    writePosition = nextPosition;
+    return true;
+  }
+
+  /**
+   * Reads the record at the given position, which must be the position of a record below the write position.
+   */
+  EventJournalEntry read(int position, Gson gson) {
+    final ByteBuffer payload = buffer.duplicate();
+    payload.position(position);
+
+    final int payloadSize = payload.getInt();
+    payload.getInt();
+    final long sequence = payload.getLong();
+    final long timestamp = payload.getLong();
+    final StreamingEvent.EventType eventType = EVENT_TYPES[payload.get()];
+
+    final byte[] pathBytes = new byte[payload.getInt()];
+    payload.get(pathBytes);
+
+    final int dataLength = payload.getInt();
+    byte[] data = null;
+    if (dataLength != NO_DATA) {
+      data = new byte[dataLength];
+      payload.get(data);
+    }
+
+    return new EventJournalEntry(
+      sequence,
+      timestamp,
+      new String(pathBytes, UTF_8),
+      StreamingEvent.fromBytes(gson, eventType, data),
+      position + RECORD_HEADER_SIZE + payloadSize
+    );
+  }
+
+  /**
+   * Returns the position of the record with the given sequence number, which must not be greater than the sequence
+   * number of the next record.
+   */
+  int getPosition(long sequence) {
+    int position = 0;
+    for (long current = baseSequence; current < sequence; current++) {
+      position += RECORD_HEADER_SIZE + buffer.getInt(position);
+    }
+    return position;
+  }
+
+  void force() {
+    buffer.force();
+  }
+
+  boolean delete() {
+    // The mapping is released once the buffer was garbage collected, readers may still access it until then
+    return file.delete();
+  }
+
+  private void recover() {
+    int position = 0;
+    long sequence = baseSequence - 1;
+    long timestamp = 0;
+
+    while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+      final int payloadSize = buffer.getInt(position);
+      if (payloadSize < PAYLOAD_HEADER_SIZE
+        || position + RECORD_HEADER_SIZE + payloadSize > buffer.capacity()
+        || buffer.getInt(position + 4) != checksum(position + RECORD_HEADER_SIZE, payloadSize)
+        || buffer.getLong(position + RECORD_HEADER_SIZE) != sequence + 1) {
+        break;
+      }
+
+      sequence++;
+      timestamp = buffer.getLong(position + RECORD_HEADER_SIZE + 8);
+      position += RECORD_HEADER_SIZE + payloadSize;
+    }
+
+    lastSequence = sequence;
+    lastTimestamp = timestamp;
+    writePosition = position;
+  }
+
+  private int checksum(int position, int length) {
+    final ByteBuffer payload = buffer.duplicate();
+    payload.position(position);
+    payload.limit(position + length);
+
+    final byte[] bytes = new byte[length];
+    payload.get(bytes);
+
+    final CRC32 crc = new CRC32();
+    crc.update(bytes);
+    return (int) crc.getValue();
+  }
+
+  private static MappedByteBuffer map(File file, int size) throws IOException {
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+         FileChannel channel = randomAccessFile.getChannel()) {
+      // The mapping stays valid after the channel was closed
+      return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package org.restonfire;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration of a {@link FirebaseEventJournal}. The journal stores the events in memory-mapped segment files of a
+ * fixed size within its directory. Once a segment is full, the oldest segments are removed while the journal exceeds
+ * the maximum size or their newest event is older than the maximum age.
+ *
+ * @see FirebaseRestDatabase#openEventJournal(EventJournalSettings)
+ */
+public final class EventJournalSettings {
+
+  private static final int MIN_SEGMENT_SIZE = 4096;
+
+  private final File directory;
+  private final int segmentSize;
+  private final long maxSize;
+  private final long maxAge;
+  private final TimeUnit timeUnit;
+
+  /**
+   * Creates the journal settings.
+   *
+   * @param directory The directory of the journal's files, which is created if it does not exist. A directory must
+   *                  not be used by more than one journal at a time.
+   * @param segmentSize The size of a segment file in bytes. Events larger than a segment are stored in a segment of
+   *                    their own.
+   * @param maxSize The maximum size of all segment files in bytes, which must be at least the size of one segment.
+   * @param maxAge The maximum age of the events, the newest segment is retained regardless of its age.
+   * @param timeUnit The {@link TimeUnit} of the <code>maxAge</code> parameter.
+   */
+  public EventJournalSettings(File directory, int segmentSize, long maxSize, long maxAge, TimeUnit timeUnit) {
+    if (directory == null) {
+      throw new IllegalArgumentException("directory cannot be null");
+    }
+    if (segmentSize < MIN_SEGMENT_SIZE) {
+      throw new IllegalArgumentException("segmentSize must be at least " + MIN_SEGMENT_SIZE);
+    }
+    if (maxSize < segmentSize) {
+      throw new IllegalArgumentException("maxSize cannot be less than segmentSize");
+    }
+    if (maxAge <= 0) {
+      throw new IllegalArgumentException("maxAge must be greater than 0");
+    }
+    if (timeUnit == null) {
+      throw new IllegalArgumentException("timeUnit cannot be null");
+    }
+
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.maxSize = maxSize;
+    this.maxAge = maxAge;
+    this.timeUnit = timeUnit;
+  }
+
+  public File getDirectory() {
+    return directory;
+  }
+
+  public int getSegmentSize() {
+    return segmentSize;
+  }
+
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+  public long getMaxAge() {
+    return maxAge;
+  }
+
+  public TimeUnit getTimeUnit() {
+    return timeUnit;
+  }
+}
@@ -0,0 +1,92 @@
+package org.restonfire;
+
+import org.restonfire.responses.StreamingEvent;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe counters of a single {@link FirebaseRestEventStream}, which are updated by the I/O threads receiving
+ * the stream and read by {@link FirebaseRestEventStream#getStatistics()}.
+ */
+final class EventStreamMetrics {
+
+  private static final long UNSET = Long.MIN_VALUE;
+
+  private final Map<StreamingEvent.EventType, AtomicLong> eventCounts = new EnumMap<>(StreamingEvent.EventType.class);
+  private final AtomicLong bytesReceived = new AtomicLong();
+  private final AtomicLong reconnectCount = new AtomicLong();
+  private final AtomicLong stallCount = new AtomicLong();
+  private volatile long startedNanos = UNSET;
+  private volatile long lastActivityNanos = UNSET;
+
+  EventStreamMetrics() {
+    for (StreamingEvent.EventType eventType : StreamingEvent.EventType.values()) {
+      eventCounts.put(eventType, new AtomicLong());
+    }
+  }
+
+  /**
+   * Resets all counters, once the stream is started.
+   */
+  void onStarted() {
+    for (AtomicLong count : eventCounts.values()) {
+      count.set(0);
+    }
+    bytesReceived.set(0);
+    reconnectCount.set(0);
+    stallCount.set(0);
+    startedNanos = System.nanoTime();
+  }
+
+  void onConnecting() {
+    lastActivityNanos = System.nanoTime();
+  }
+
+  void onDisconnected() {
+    lastActivityNanos = UNSET;
+  }
+
+  void onBytesReceived(int count) {
+    bytesReceived.addAndGet(count);
+    lastActivityNanos = System.nanoTime();
+  }
+
+  void onEvent(StreamingEvent.EventType eventType) {
+    eventCounts.get(eventType).incrementAndGet();
+  }
+
+  void onReconnected() {
+    reconnectCount.incrementAndGet();
+  }
+
+  void onStalled() {
+    stallCount.incrementAndGet();
+  }
+
+  long getLastActivityNanos() {
+    return lastActivityNanos;
+  }
+
+  EventStreamStatistics getStatistics() {
+    final long now = System.nanoTime();
+    final long started = startedNanos;
+    final long lastActivity = lastActivityNanos;
+
+    final Map<StreamingEvent.EventType, Long> counts = new EnumMap<>(StreamingEvent.EventType.class);
+    for (Map.Entry<StreamingEvent.EventType, AtomicLong> entry : eventCounts.entrySet()) {
+      counts.put(entry.getKey(), entry.getValue().get());
+    }
+
+    return new EventStreamStatistics(
+      counts,
+      bytesReceived.get(),
+      started == UNSET ? 0 : TimeUnit.NANOSECONDS.toMillis(now - started),
+      lastActivity == UNSET ? -1 : TimeUnit.NANOSECONDS.toMillis(now - lastActivity),
+      reconnectCount.get(),
+      stallCount.get()
+    );
+  }
+}
@@ -0,0 +1,225 @@
+package org.restonfire;
+
+import org.restonfire.responses.StreamingEvent;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * <b>Non-thread safe</b> incremental parser for the <code>text/event-stream</code> format used by Firebase's REST
+ * streaming API. The parser keeps its state across body parts, so events can be split over multiple parts and a
+ * single part can contain multiple events. Field and event names are matched on the raw bytes and the data of a
+ * dispatched event is passed on as UTF-8 encoded bytes, so it is only decoded once a consumer requests it.<br>
+ * <br>
+ * Lines may be terminated by <code>\n</code>, <code>\r\n</code> or <code>\r</code>. Multiple <code>data</code>
+ * fields of an event are joined with <code>\n</code>, comments and unknown fields are ignored and an event is
+ * dispatched once an empty line is received.
+ *
+ * @see <a href="https://html.spec.whatwg.org/multipage/server-sent-events.html#event-stream-interpretation">Event stream interpretation</a>
+ */
+final class EventStreamParser {
+
+  private static final int INITIAL_BUFFER_SIZE = 256;
+
+  private static final byte[] EVENT_FIELD = ascii("event");
+  private static final byte[] DATA_FIELD = ascii("data");
+
+  private static final byte[][] EVENT_NAMES = {
+    ascii("put"),
+    ascii("patch"),
+    ascii("keep-alive"),
+    ascii("cancel"),
+    ascii("auth_revoked")
+  };
+  private static final StreamingEvent.EventType[] EVENT_TYPES = {
+    StreamingEvent.EventType.Set,
+    StreamingEvent.EventType.Update,
+    StreamingEvent.EventType.KeepAlive,
+    StreamingEvent.EventType.Cancel,
+    StreamingEvent.EventType.Expired
+  };
+
+  private final EventHandler handler;
+
+  // Incomplete line of the previous body part
+  private byte[] lineBuffer = new byte[INITIAL_BUFFER_SIZE];
+  private int lineLength;
+  private boolean skipLineFeed;
+
+  // Fields of the event currently being parsed
+  private byte[] dataBuffer = new byte[INITIAL_BUFFER_SIZE];
+  private int dataLength;
+  private boolean hasData;
+  private StreamingEvent.EventType eventType;
+
+  EventStreamParser(EventHandler handler) {
+    this.handler = handler;
+  }
+
+  /**
+   * Parses the next part of the event stream and dispatches all events completed by it.
+   */
+  void parse(byte[] bytes) {
+    parse(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Parses the next part of the event stream and dispatches all events completed by it.
+   */
+  void parse(byte[] bytes, int offset, int length) {
+    final int end = offset + length;
+    int lineStart = offset;
+
+    for (int i = offset; i < end; i++) {
+      final byte current = bytes[i];
+
+      if (current == '\n' && skipLineFeed && i == lineStart) {
+        // Second half of a \r\n line ending
+        skipLineFeed = false;
+        lineStart = i + 1;
+        continue;
+      }
+      skipLineFeed = false;
+
+      if (current == '\n' || current == '\r') {
+        if (lineLength == 0) {
+          processLine(bytes, lineStart, i);
+        } else {
+          appendToLine(bytes, lineStart, i);
+          processLine(lineBuffer, 0, lineLength);
+          lineLength = 0;
+        }
+
+        skipLineFeed = current == '\r';
+        lineStart = i + 1;
+      }
+    }
+
+    if (lineStart < end) {
+      appendToLine(bytes, lineStart, end);
+    }
+  }
+
+  private void processLine(byte[] bytes, int start, int end) {
+    if (start == end) {
+      dispatchEvent();
+      return;
+    }
+    if (bytes[start] == ':') {
+      // comment
+      return;
+    }
+
+    int colon = start;
+    while (colon < end && bytes[colon] != ':') {
+      colon++;
+    }
+
+    int valueStart = colon < end ? colon + 1 : end;
+    if (valueStart < end && bytes[valueStart] == ' ') {
+      valueStart++;
+    }
+
+    if (equalsIgnoreCase(bytes, start, colon, DATA_FIELD)) {
+      appendToData(bytes, valueStart, end);
+    } else if (equalsIgnoreCase(bytes, start, colon, EVENT_FIELD)) {
+      eventType = toEventType(bytes, valueStart, trimEnd(bytes, valueStart, end));
+    }
+  }
+
+  private void dispatchEvent() {
+    final StreamingEvent.EventType type = eventType;
+    final boolean dispatch = hasData && type != null;
+    final byte[] data = dispatch ? trimmedCopy(dataBuffer, 0, dataLength) : null;
+
+    eventType = null;
+    hasData = false;
+    dataLength = 0;
+
+    if (dispatch) {
+      handler.onEvent(type, data);
+    }
+  }
+
+  private void appendToData(byte[] bytes, int start, int end) {
+    if (hasData) {
+      dataBuffer = ensureCapacity(dataBuffer, dataLength + 1);
+      dataBuffer[dataLength++] = '\n';
+    }
+
+    dataBuffer = ensureCapacity(dataBuffer, dataLength + end - start);
+    System.arraycopy(bytes, start, dataBuffer, dataLength, end - start);
+    dataLength += end - start;
+    hasData = true;
+  }
+
+  private void appendToLine(byte[] bytes, int start, int end) {
+    lineBuffer = ensureCapacity(lineBuffer, lineLength + end - start);
+    System.arraycopy(bytes, start, lineBuffer, lineLength, end - start);
+    lineLength += end - start;
+  }
+
+  private static StreamingEvent.EventType toEventType(byte[] bytes, int start, int end) {
+    for (int i = 0; i < EVENT_NAMES.length; i++) {
+      if (equalsIgnoreCase(bytes, start, end, EVENT_NAMES[i])) {
+        return EVENT_TYPES[i];
+      }
+    }
+    return null;
+  }
+
+  private static int trimEnd(byte[] bytes, int start, int end) {
+    int result = end;
+    while (result > start && bytes[result - 1] == ' ') {
+      result--;
+    }
+    return result;
+  }
+
+  private static byte[] trimmedCopy(byte[] bytes, int start, int end) {
+    // Matches String.trim(), the bytes of multi-byte UTF-8 sequences are negative and therefore never trimmed
+    int from = start;
+    int to = end;
+    while (from < to && bytes[from] >= 0 && bytes[from] <= ' ') {
+      from++;
+    }
+    while (to > from && bytes[to - 1] >= 0 && bytes[to - 1] <= ' ') {
+      to--;
+    }
+    return Arrays.copyOfRange(bytes, from, to);
+  }
+
+  private static boolean equalsIgnoreCase(byte[] bytes, int start, int end, byte[] expected) {
+    if (end - start != expected.length) {
+      return false;
+    }
+
+    for (int i = 0; i < expected.length; i++) {
+      byte current = bytes[start + i];
+      if (current >= 'A' && current <= 'Z') {
+        current += 'a' - 'A';
+      }
+      if (current != expected[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static byte[] ensureCapacity(byte[] buffer, int capacity) {
+    return capacity <= buffer.length
+      ? buffer
+      : Arrays.copyOf(buffer, Math.max(capacity, buffer.length * 2));
+  }
+
+  private static byte[] ascii(String value) {
+    return value.getBytes(Charset.forName("US-ASCII"));
+  }
+
+  /**
+   * Receives the events parsed from the event stream. Events with an unknown event name are not dispatched.
+   */
+  interface EventHandler {
+    void onEvent(StreamingEvent.EventType eventType, byte[] eventData);
+  }
+}
@@ -0,0 +1,68 @@
+package org.restonfire;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration of the automatic reconnect of {@link FirebaseRestEventStream} connections. A stream that was closed
+ * by the server or failed with an I/O error or the status code 429 or 5xx is reopened after an exponential backoff
+ * with full jitter, until {@link FirebaseRestEventStream#stopListening()} is called. Other client errors, access
+ * violations and revoked authentication are not retried.<br>
+ * <br>
+ * Once a stream was reopened, a {@link org.restonfire.responses.StreamingEvent.EventType#Resync} event is published,
+ * followed by a <code>Set</code> event containing the complete value of the location.
+ *
+ * @see BaseFirebaseRestDatabaseFactory#setEventStreamReconnectSettings(EventStreamReconnectSettings)
+ */
+public final class EventStreamReconnectSettings {
+
+  private final long initialDelay;
+  private final long maxDelay;
+  private final TimeUnit timeUnit;
+  private final int maxConcurrentReconnects;
+
+  /**
+   * Creates the reconnect settings.
+   *
+   * @param initialDelay The upper bound of the delay before the first reconnect attempt, which doubles with every
+   *                     failed attempt.
+   * @param maxDelay The maximum delay between two reconnect attempts.
+   * @param timeUnit The {@link TimeUnit} of the <code>initialDelay</code> and <code>maxDelay</code> parameters.
+   * @param maxConcurrentReconnects The maximum number of reconnect attempts in progress at the same time for all
+   *                                streams of the factory. Further attempts wait until one of them completes.
+   */
+  public EventStreamReconnectSettings(long initialDelay, long maxDelay, TimeUnit timeUnit, int maxConcurrentReconnects) {
+    if (initialDelay < 0) {
+      throw new IllegalArgumentException("initialDelay cannot be negative");
+    }
+    if (maxDelay < initialDelay) {
+      throw new IllegalArgumentException("maxDelay cannot be less than initialDelay");
+    }
+    if (timeUnit == null) {
+      throw new IllegalArgumentException("timeUnit cannot be null");
+    }
+    if (maxConcurrentReconnects <= 0) {
+      throw new IllegalArgumentException("maxConcurrentReconnects must be greater than 0");
+    }
+
+    this.initialDelay = initialDelay;
+    this.maxDelay = maxDelay;
+    this.timeUnit = timeUnit;
+    this.maxConcurrentReconnects = maxConcurrentReconnects;
+  }
+
+  public long getInitialDelay() {
+    return initialDelay;
+  }
+
+  public long getMaxDelay() {
+    return maxDelay;
+  }
+
+  public TimeUnit getTimeUnit() {
+    return timeUnit;
+  }
+
+  public int getMaxConcurrentReconnects() {
+    return maxConcurrentReconnects;
+  }
+}
@@ -0,0 +1,107 @@
+package org.restonfire;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules the reconnect attempts of event streams. Each attempt is delayed by an exponential backoff with full
+ * jitter and has to acquire one of a limited number of permits, which are shared by all streams of a factory. This
+ * prevents a fleet of clients from reopening all of their streams at the same moment after an outage.<br>
+ * <br>
+ * A permit is held until {@link #release()} is invoked, i.e. once the new connection was established or failed.
+ * Attempts without an available permit are queued in the order their backoff expired.
+ */
+final class EventStreamReconnector {
+
+  private static final EventStreamReconnector DISABLED = new EventStreamReconnector();
+
+  private final boolean enabled;
+  private final long initialDelayNanos;
+  private final long maxDelayNanos;
+  private final int maxConcurrentReconnects;
+
+  private final Queue<Runnable> waitingReconnects = new ArrayDeque<>();
+  private int activeReconnects;
+
+  private EventStreamReconnector() {
+    this.enabled = false;
+    this.initialDelayNanos = 0;
+    this.maxDelayNanos = 0;
+    this.maxConcurrentReconnects = 0;
+  }
+
+  EventStreamReconnector(EventStreamReconnectSettings settings) {
+    this.enabled = true;
+    this.initialDelayNanos = settings.getTimeUnit().toNanos(settings.getInitialDelay());
+    this.maxDelayNanos = settings.getTimeUnit().toNanos(settings.getMaxDelay());
+    this.maxConcurrentReconnects = settings.getMaxConcurrentReconnects();
+  }
+
+  static EventStreamReconnector disabled() {
+    return DISABLED;
+  }
+
+  static EventStreamReconnector create(EventStreamReconnectSettings settings) {
+    return settings == null ? DISABLED : new EventStreamReconnector(settings);
+  }
+
+  boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Runs the reconnect once the backoff for the given attempt expired and a permit is available. The reconnect
+   * must eventually {@link #release()} the permit.
+   *
+   * @param attempt The number of the reconnect attempt, starting with 1.
+   */
+  void scheduleReconnect(int attempt, final Runnable reconnect) {
+    final long delay = BackoffUtil.jitteredDelay(attempt, initialDelayNanos, maxDelayNanos);
+
+    SchedulerUtil.schedule(new Runnable() {
+      @Override
+      public void run() {
+        acquire(reconnect);
+      }
+    }, delay, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Releases the permit of a reconnect attempt and starts the next waiting attempt, if any.
+   */
+  void release() {
+    final Runnable next;
+    synchronized (this) {
+      next = waitingReconnects.poll();
+      if (next == null) {
+        activeReconnects--;
+      }
+    }
+
+    if (next != null) {
+      // The permit is handed over to the waiting attempt, which is started off the caller's I/O thread
+      SchedulerUtil.schedule(next, 0, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  synchronized int getActiveReconnects() {
+    return activeReconnects;
+  }
+
+  synchronized int getWaitingReconnects() {
+    return waitingReconnects.size();
+  }
+
+  private void acquire(Runnable reconnect) {
+    synchronized (this) {
+      if (activeReconnects >= maxConcurrentReconnects) {
+        waitingReconnects.add(reconnect);
+        return;
+      }
+      activeReconnects++;
+    }
+
+    reconnect.run();
+  }
+}
@@ -0,0 +1,101 @@
+package org.restonfire;
+
+import org.restonfire.responses.StreamingEvent;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Point-in-time snapshot of the health of a {@link FirebaseRestEventStream}. The counters cover the time since the
+ * stream was last started, including all of its reconnects.
+ *
+ * @see FirebaseRestEventStream#getStatistics()
+ */
+public final class EventStreamStatistics {
+
+  private final Map<StreamingEvent.EventType, Long> eventCounts;
+  private final long bytesReceived;
+  private final long listeningMillis;
+  private final long millisSinceLastActivity;
+  private final long reconnectCount;
+  private final long stallCount;
+
+  public EventStreamStatistics(
+    Map<StreamingEvent.EventType, Long> eventCounts,
+    long bytesReceived,
+    long listeningMillis,
+    long millisSinceLastActivity,
+    long reconnectCount,
+    long stallCount) {
+
+    final Map<StreamingEvent.EventType, Long> counts = new EnumMap<>(StreamingEvent.EventType.class);
+    counts.putAll(eventCounts);
+    this.eventCounts = Collections.unmodifiableMap(counts);
+    this.bytesReceived = bytesReceived;
+    this.listeningMillis = listeningMillis;
+    this.millisSinceLastActivity = millisSinceLastActivity;
+    this.reconnectCount = reconnectCount;
+    this.stallCount = stallCount;
+  }
+
+  /**
+   * @param eventType The {@link StreamingEvent.EventType} of the events.
+   * @return The number of received events of the given type.
+   */
+  public long getEventCount(StreamingEvent.EventType eventType) {
+    final Long count = eventCounts.get(eventType);
+    return count == null ? 0 : count;
+  }
+
+  /**
+   * @param eventType The {@link StreamingEvent.EventType} of the events.
+   * @return The average number of received events of the given type per second while the stream was listening.
+   */
+  public double getEventsPerSecond(StreamingEvent.EventType eventType) {
+    return listeningMillis == 0 ? 0 : getEventCount(eventType) * 1000.0 / listeningMillis;
+  }
+
+  /**
+   * @return The number of bytes received from the event stream connections.
+   */
+  public long getBytesReceived() {
+    return bytesReceived;
+  }
+
+  /**
+   * @return The time in milliseconds since the stream was started, or 0 if it was never started.
+   */
+  public long getListeningMillis() {
+    return listeningMillis;
+  }
+
+  /**
+   * @return The time in milliseconds since the current connection was opened or received any data, including
+   *         <code>keep-alive</code> events, or -1 if the stream is not connected.
+   */
+  public long getMillisSinceLastActivity() {
+    return millisSinceLastActivity;
+  }
+
+  /**
+   * @return The number of times the stream was reopened by the automatic reconnect.
+   */
+  public long getReconnectCount() {
+    return reconnectCount;
+  }
+
+  /**
+   * @return The number of connections that were closed by the watchdog, since they did not receive any data within
+   *         the timeout.
+   */
+  public long getStallCount() {
+    return stallCount;
+  }
+
+  @Override
+  public String toString() {
+    return "EventStreamStatistics{events=" + eventCounts + ", bytesReceived=" + bytesReceived + ", listeningMillis=" + listeningMillis
+      + ", millisSinceLastActivity=" + millisSinceLastActivity + ", reconnects=" + reconnectCount + ", stalls=" + stallCount + '}';
+  }
+}
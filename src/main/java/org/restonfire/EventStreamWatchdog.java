@@ -0,0 +1,84 @@
+package org.restonfire;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detects stalled event stream connections. Instead of a check for every received body part, a single task per
+ * connection is scheduled for the moment the connection would exceed the timeout, and rescheduled based on the time of
+ * the last activity as long as data keeps arriving.
+ */
+final class EventStreamWatchdog {
+
+  private static final EventStreamWatchdog DISABLED = new EventStreamWatchdog(0);
+
+  private final long timeoutNanos;
+
+  private EventStreamWatchdog(long timeoutNanos) {
+    this.timeoutNanos = timeoutNanos;
+  }
+
+  static EventStreamWatchdog disabled() {
+    return DISABLED;
+  }
+
+  static EventStreamWatchdog create(EventStreamWatchdogSettings settings) {
+    return settings == null ? DISABLED : new EventStreamWatchdog(settings.getTimeUnit().toNanos(settings.getTimeout()));
+  }
+
+  boolean isEnabled() {
+    return timeoutNanos > 0;
+  }
+
+  long getTimeoutNanos() {
+    return timeoutNanos;
+  }
+
+  /**
+   * Watches the given connection until it is closed or stalled.
+   */
+  void watch(WatchedConnection connection) {
+    if (isEnabled()) {
+      schedule(connection, timeoutNanos);
+    }
+  }
+
+  private void schedule(final WatchedConnection connection, long delayNanos) {
+    SchedulerUtil.schedule(new Runnable() {
+      @Override
+      public void run() {
+        check(connection);
+      }
+    }, delayNanos, TimeUnit.NANOSECONDS);
+  }
+
+  private void check(WatchedConnection connection) {
+    if (!connection.isOpen()) {
+      return;
+    }
+
+    final long idleNanos = System.nanoTime() - connection.getLastActivityNanos();
+    if (idleNanos >= timeoutNanos) {
+      connection.onStalled();
+    } else {
+      schedule(connection, timeoutNanos - idleNanos);
+    }
+  }
+
+  /**
+   * A connection watched by the {@link EventStreamWatchdog}.
+   */
+  interface WatchedConnection {
+
+    boolean isOpen();
+
+    /**
+     * @return The {@link System#nanoTime()} at which the connection was opened or last received any data.
+     */
+    long getLastActivityNanos();
+
+    /**
+     * Invoked on the scheduler thread once the connection did not receive any data within the timeout.
+     */
+    void onStalled();
+  }
+}
@@ -0,0 +1,45 @@
+package org.restonfire;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration of the stall detection of {@link FirebaseRestEventStream} connections. Firebase sends a
+ * <code>keep-alive</code> event roughly every 30 seconds, so a connection that did not receive any data within the
+ * timeout is considered stalled, i.e. a half-open TCP connection. A stalled connection is closed and handled like a
+ * failed connection: it is reopened if the automatic reconnect is enabled, otherwise the stream's promise is rejected
+ * with the error code {@link org.restonfire.exceptions.FirebaseRuntimeException.ErrorCode#EventStreamStalled}.
+ *
+ * @see BaseFirebaseRestDatabaseFactory#setEventStreamWatchdogSettings(EventStreamWatchdogSettings)
+ */
+public final class EventStreamWatchdogSettings {
+
+  private final long timeout;
+  private final TimeUnit timeUnit;
+
+  /**
+   * Creates the watchdog settings.
+   *
+   * @param timeout The maximum time without any data received on a connection, which should be well above the
+   *                keep-alive interval of 30 seconds.
+   * @param timeUnit The {@link TimeUnit} of the <code>timeout</code> parameter.
+   */
+  public EventStreamWatchdogSettings(long timeout, TimeUnit timeUnit) {
+    if (timeout <= 0) {
+      throw new IllegalArgumentException("timeout must be greater than 0");
+    }
+    if (timeUnit == null) {
+      throw new IllegalArgumentException("timeUnit cannot be null");
+    }
+
+    this.timeout = timeout;
+    this.timeUnit = timeUnit;
+  }
+
+  public long getTimeout() {
+    return timeout;
+  }
+
+  public TimeUnit getTimeUnit() {
+    return timeUnit;
+  }
+}
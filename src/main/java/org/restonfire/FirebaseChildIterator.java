@@ -0,0 +1,233 @@
+package org.restonfire;
+
+import com.google.gson.reflect.TypeToken;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.FailCallback;
+import org.restonfire.exceptions.FirebaseRestException;
+import org.restonfire.exceptions.FirebaseRuntimeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Blocking {@link Iterator} over the children of a location in key order. The children are retrieved in pages
+ * with key-ordered range queries, where every page starts at the last key of the previous page.<br>
+ * <br>
+ * Since a page can only be requested once the previous page was received, the pages are prefetched in a pipeline:
+ * while the consumer processes the current page, up to <code>prefetchPages</code> following pages are requested
+ * one after another. Memory is therefore bounded to <code>prefetchPages + 1</code> pages, regardless of the size of
+ * the collection.<br>
+ * <br>
+ * The iterator itself is not thread safe and must not be consumed on the threads of the
+ * {@link org.restonfire.transport.HttpTransport}, as it blocks until the pages are received.
+ *
+ * @param <T> The type of the children.
+ */
+final class FirebaseChildIterator<T> implements Iterator<Map.Entry<String, T>> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FirebaseChildIterator.class);
+
+  private final FirebaseRestReference reference;
+  private final TypeToken<Map<String, T>> pageType;
+  private final int pageSize;
+  private final int prefetchPages;
+
+  // guarded by "this", as the pages are completed on the I/O threads
+  private final Queue<PageRequest<T>> pageRequests = new ArrayDeque<>();
+  private String deferredStartKey;
+
+  private Iterator<Map.Entry<String, T>> currentPage = Collections.<Map.Entry<String, T>>emptyList().iterator();
+  private FirebaseRuntimeException failure;
+
+  @SuppressWarnings("unchecked")
+  FirebaseChildIterator(FirebaseRestReference reference, Class<T> clazz, int pageSize, int prefetchPages) {
+    if (pageSize < 1 || prefetchPages < 1) {
+      throw new IllegalArgumentException("pageSize and prefetchPages must be greater than zero");
+    }
+
+    this.reference = reference;
+    this.pageType = (TypeToken<Map<String, T>>) TypeToken.get(new ChildMapType(clazz));
+    this.pageSize = pageSize;
+    this.prefetchPages = prefetchPages;
+
+    synchronized (this) {
+      requestPage(null);
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (!currentPage.hasNext()) {
+      if (failure != null) {
+        throw failure;
+      }
+
+      final PageRequest<T> pageRequest;
+      synchronized (this) {
+        pageRequest = pageRequests.poll();
+        if (pageRequest == null) {
+          return false;
+        }
+
+        // The consumed page frees a slot for the page that could not be requested yet
+        if (deferredStartKey != null) {
+          final String startKey = deferredStartKey;
+          deferredStartKey = null;
+          requestPage(startKey);
+        }
+      }
+
+      final Page<T> page = pageRequest.await();
+      if (page == null) {
+        failure = pageRequest.failure;
+        throw failure;
+      }
+      currentPage = page.children.entrySet().iterator();
+    }
+
+    return true;
+  }
+
+  @Override
+  public Map.Entry<String, T> next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return currentPage.next();
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException("remove");
+  }
+
+  private void requestPage(final String startKey) {
+    LOG.debug("Requesting page of children starting at key '{}' for reference {}", startKey, reference.getReferenceUrl());
+
+    final PageRequest<T> pageRequest = new PageRequest<>();
+    pageRequests.add(pageRequest);
+
+    // Range queries include the start key, so one additional child is requested to fill the page
+    final int limit = startKey == null ? pageSize : pageSize + 1;
+    final FirebaseRestQuery query = reference.query().orderByKey().limitToFirst(limit);
+    if (startKey != null) {
+      query.startAt(startKey);
+    }
+
+    query.run(pageType)
+      .done(new DoneCallback<Map<String, T>>() {
+        @Override
+        public void onDone(Map<String, T> result) {
+          onPageReceived(pageRequest, startKey, limit, result);
+        }
+      })
+      .fail(new FailCallback<FirebaseRuntimeException>() {
+        @Override
+        public void onFail(FirebaseRuntimeException ex) {
+          pageRequest.fail(ex);
+        }
+      });
+  }
+
+  private void onPageReceived(PageRequest<T> pageRequest, String startKey, int limit, Map<String, T> result) {
+    // The REST API does not preserve the order of the query results, so the page has to be sorted locally
+    final SortedMap<String, T> children = new TreeMap<>(FirebaseKeyComparator.INSTANCE);
+    if (result != null) {
+      children.putAll(result);
+    }
+    if (startKey != null) {
+      children.remove(startKey);
+    }
+
+    final boolean lastPage = result == null || result.size() < limit || children.isEmpty();
+
+    synchronized (this) {
+      if (!lastPage) {
+        if (pageRequests.size() < prefetchPages) {
+          requestPage(children.lastKey());
+        } else {
+          deferredStartKey = children.lastKey();
+        }
+      }
+    }
+
+    pageRequest.complete(new Page<>(children));
+  }
+
+  /**
+   * A page of children, sorted by key.
+   */
+  private static final class Page<T> {
+    private final SortedMap<String, T> children;
+
+    private Page(SortedMap<String, T> children) {
+      this.children = children;
+    }
+  }
+
+  /**
+   * The pending or completed request for a single page.
+   */
+  private static final class PageRequest<T> {
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private volatile Page<T> page;
+    private volatile FirebaseRuntimeException failure;
+
+    private void complete(Page<T> result) {
+      page = result;
+      latch.countDown();
+    }
+
+    private void fail(FirebaseRuntimeException ex) {
+      failure = ex;
+      latch.countDown();
+    }
+
+    private Page<T> await() {
+      try {
+        latch.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        failure = new FirebaseRestException(FirebaseRuntimeException.ErrorCode.ChildIterationInterrupted, "Interrupted while waiting for the next page of children", e);
+      }
+      return page;
+    }
+  }
+
+  /**
+   * The {@link ParameterizedType} for a page of children, <code>Map&lt;String, T&gt;</code>.
+   */
+  private static final class ChildMapType implements ParameterizedType {
+    private final Type childType;
+
+    private ChildMapType(Type childType) {
+      this.childType = childType;
+    }
+
+    @Override
+    public Type[] getActualTypeArguments() {
+      return new Type[] {String.class, childType};
+    }
+
+    @Override
+    public Type getRawType() {
+      return Map.class;
+    }
+
+    @Override
+    public Type getOwnerType() {
+      return null;
+    }
+  }
+}
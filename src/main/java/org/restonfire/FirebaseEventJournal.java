@@ -0,0 +1,111 @@
+package org.restonfire;
+
+import org.jdeferred.Promise;
+import org.restonfire.exceptions.FirebaseRuntimeException;
+import org.restonfire.responses.StreamingEvent;
+
+/**
+ * A {@link FirebaseEventJournal} is a durable append-only log of {@link StreamingEvent}s on the local disk. Consumers
+ * read the journal through cursors at their own pace, so they can fall behind or restart without losing events and
+ * catch up from the disk instead of retrieving the complete value of a location again.<br>
+ * <br>
+ * The events are written to memory-mapped files, so they survive a crash of the process once they were appended.
+ * Use {@link #flush()} to write them to the storage device, i.e. to survive a crash of the operating system. Events
+ * removed by the retention of the journal are skipped by the cursors.
+ *
+ * @see FirebaseRestDatabase#openEventJournal(EventJournalSettings)
+ */
+public interface FirebaseEventJournal {
+
+  /**
+   * Appends all events published by the given promise of an event stream to the journal. <code>KeepAlive</code>
+   * events are not recorded. Failures to append an event are logged, since they cannot be reported to the stream.
+   *
+   * @param events The {@link Promise} returned by {@link FirebaseRestEventStream#startListening()}.
+   */
+  void record(Promise<Void, FirebaseRuntimeException, StreamingEvent> events);
+
+  /**
+   * Appends the given event to the journal.
+   *
+   * @param event The {@link StreamingEvent} to append.
+   * @return The sequence number assigned to the event.
+   *
+   * @throws org.restonfire.exceptions.FirebaseInvalidStateException The journal was closed.
+   * @throws org.restonfire.exceptions.FirebaseJournalException The event could not be written.
+   */
+  long append(StreamingEvent event);
+
+  /**
+   * @return The sequence number of the oldest event retained by the journal.
+   */
+  long getFirstSequence();
+
+  /**
+   * @return The sequence number the next appended event will be assigned.
+   */
+  long getNextSequence();
+
+  /**
+   * Opens the durable cursor with the given name. The position of the cursor is persisted by
+   * {@link Cursor#commit()}, so a consumer continues with the first uncommitted event after a restart. A new cursor
+   * starts with the oldest retained event.
+   *
+   * @param name The name of the cursor, consisting of letters, digits, <code>_</code> and <code>-</code>.
+   * @return The {@link Cursor} positioned after the last committed event.
+   */
+  Cursor openCursor(String name);
+
+  /**
+   * Returns a cursor replaying the events starting with the given sequence number. The position of the cursor is not
+   * persisted.
+   *
+   * @param fromSequence The sequence number of the first event to read.
+   * @return The {@link Cursor} positioned at the given sequence number.
+   */
+  Cursor replay(long fromSequence);
+
+  /**
+   * Writes the appended events to the storage device.
+   */
+  void flush();
+
+  /**
+   * Flushes and closes the journal. Events can no longer be appended, while the cursors can still read the
+   * events appended so far.
+   */
+  void close();
+
+  /**
+   * Reads the events of a {@link FirebaseEventJournal} in the order they were appended. A cursor is not thread-safe.
+   */
+  interface Cursor {
+
+    /**
+     * Returns the next event and advances the cursor, if an event is available.
+     *
+     * @return The next {@link EventJournalEntry}, or <code>null</code> if the cursor reached the end of the journal.
+     */
+    EventJournalEntry next();
+
+    /**
+     * @return The sequence number of the event the next call to {@link #next()} will return.
+     */
+    long getPosition();
+
+    /**
+     * Moves the cursor to the given sequence number.
+     *
+     * @param sequence The sequence number of the next event to read.
+     */
+    void seek(long sequence);
+
+    /**
+     * Persists the position of a durable cursor. This has no effect for cursors created by
+     * {@link FirebaseEventJournal#replay(long)}.
+     *
+     * @throws org.restonfire.exceptions.FirebaseJournalException The position could not be written.
+     */
+    void commit();
+  }
+}
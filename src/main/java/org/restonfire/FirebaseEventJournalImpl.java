@@ -0,0 +1,320 @@
+package org.restonfire;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.reflect.TypeToken;
+import org.jdeferred.ProgressCallback;
+import org.jdeferred.Promise;
+import org.restonfire.exceptions.FirebaseInvalidStateException;
+import org.restonfire.exceptions.FirebaseJournalException;
+import org.restonfire.exceptions.FirebaseRuntimeException;
+import org.restonfire.responses.StreamingEvent;
+import org.restonfire.responses.StreamingEventData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * {@link FirebaseEventJournal} implementation. Appends are serialized by the instance's monitor, while the cursors
+ * read the segments without locking: a record becomes visible to them once the next sequence number was published.
+ */
+class FirebaseEventJournalImpl implements FirebaseEventJournal {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FirebaseEventJournalImpl.class);
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final TypeToken<StreamingEventData<JsonElement>> EVENT_DATA_TYPE = new TypeToken<StreamingEventData<JsonElement>>() { };
+  private static final Pattern CURSOR_NAME = Pattern.compile("[A-Za-z0-9_-]+");
+  private static final String CURSOR_SUFFIX = ".cursor";
+
+  private final Gson gson;
+  private final File directory;
+  private final int segmentSize;
+  private final long maxSize;
+  private final long maxAgeMillis;
+
+  // by base sequence
+  private final ConcurrentSkipListMap<Long, EventJournalSegment> segments = new ConcurrentSkipListMap<>();
+  private EventJournalSegment activeSegment;
+  private volatile long nextSequence;
+  private boolean closed;
+
+  FirebaseEventJournalImpl(Gson gson, EventJournalSettings settings) {
+    this.gson = gson;
+    this.directory = settings.getDirectory();
+    this.segmentSize = settings.getSegmentSize();
+    this.maxSize = settings.getMaxSize();
+    this.maxAgeMillis = settings.getTimeUnit().toMillis(settings.getMaxAge());
+
+    try {
+      open();
+    } catch (IOException e) {
+      throw new FirebaseJournalException(FirebaseRuntimeException.ErrorCode.EventJournalIOFailure, "Failed to open the event journal in '" + directory + "'", e);
+    }
+  }
+
+  @Override
+  public void record(Promise<Void, FirebaseRuntimeException, StreamingEvent> events) {
+    events.progress(new ProgressCallback<StreamingEvent>() {
+      @Override
+      public void onProgress(StreamingEvent event) {
+        if (event.getEventType() == StreamingEvent.EventType.KeepAlive) {
+          return;
+        }
+
+        try {
+          append(event);
+        } catch (RuntimeException e) {
+          LOG.error("Failed to append event to the journal in '{}'", directory, e);
+        }
+      }
+    });
+  }
+
+  @Override
+  public long append(StreamingEvent event) {
+    // The event is decoded outside of the lock, the result is memoized for consumers using the same TypeToken
+    final String path = getPath(event);
+    final byte[] data = getData(event);
+    final long timestamp = System.currentTimeMillis();
+
+    synchronized (this) {
+      if (closed) {
+        throw new FirebaseInvalidStateException(FirebaseRuntimeException.ErrorCode.EventJournalClosed, "The event journal was closed");
+      }
+
+      if (!activeSegment.append(timestamp, event.getEventType(), path, data)) {
+        rollSegment(EventJournalSegment.getRecordSize(path, data));
+        activeSegment.append(timestamp, event.getEventType(), path, data);
+      }
+
+      final long sequence = activeSegment.getLastSequence();
+      nextSequence = sequence + 1;
+      return sequence;
+    }
+  }
+
+  @Override
+  public long getFirstSequence() {
+    return segments.firstKey();
+  }
+
+  @Override
+  public long getNextSequence() {
+    return nextSequence;
+  }
+
+  @Override
+  public Cursor openCursor(String name) {
+    if (name == null || !CURSOR_NAME.matcher(name).matches()) {
+      throw new IllegalArgumentException("Invalid cursor name: " + name);
+    }
+
+    final File positionFile = new File(directory, name + CURSOR_SUFFIX);
+    long position = getFirstSequence();
+    if (positionFile.exists()) {
+      try {
+        position = Long.parseLong(new String(Files.readAllBytes(positionFile.toPath()), UTF_8).trim());
+      } catch (IOException | NumberFormatException e) {
+        throw new FirebaseJournalException(FirebaseRuntimeException.ErrorCode.EventJournalIOFailure, "Failed to read the position of cursor '" + name + "'", e);
+      }
+    }
+
+    return new JournalCursor(positionFile, position);
+  }
+
+  @Override
+  public Cursor replay(long fromSequence) {
+    return new JournalCursor(null, fromSequence);
+  }
+
+  @Override
+  public synchronized void flush() {
+    activeSegment.force();
+    applyRetention();
+  }
+
+  @Override
+  public synchronized void close() {
+    if (!closed) {
+      activeSegment.force();
+      closed = true;
+    }
+  }
+
+  private void open() throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Failed to create directory " + directory);
+    }
+
+    final File[] files = directory.listFiles(new FilenameFilter() {
+      @Override
+      public boolean accept(File dir, String name) {
+        return name.endsWith(EventJournalSegment.FILE_SUFFIX);
+      }
+    });
+    if (files == null) {
+      throw new IOException("Failed to list the files of directory " + directory);
+    }
+
+    // The names are the zero padded base sequences, so the segments are recovered in order
+    Arrays.sort(files);
+    for (File file : files) {
+      final EventJournalSegment segment = EventJournalSegment.open(file);
+      segments.put(segment.getBaseSequence(), segment);
+    }
+
+    if (segments.isEmpty()) {
+      activeSegment = EventJournalSegment.create(directory, 0, segmentSize);
+      segments.put(0L, activeSegment);
+    } else {
+      activeSegment = segments.lastEntry().getValue();
+    }
+    nextSequence = activeSegment.getLastSequence() + 1;
+
+    applyRetention();
+  }
+
+  private void rollSegment(int recordSize) {
+    final long baseSequence = activeSegment.getLastSequence() + 1;
+    activeSegment.force();
+
+    if (baseSequence == activeSegment.getBaseSequence()) {
+      // The empty segment is too small for the record and is replaced by a larger one. It stays in the map until
+      // the new segment replaces it, so the readers never observe a journal without segments.
+      activeSegment.delete();
+    }
+
+    try {
+      activeSegment = EventJournalSegment.create(directory, baseSequence, Math.max(segmentSize, recordSize));
+    } catch (IOException e) {
+      throw new FirebaseJournalException(FirebaseRuntimeException.ErrorCode.EventJournalIOFailure, "Failed to create a segment in '" + directory + "'", e);
+    }
+    segments.put(baseSequence, activeSegment);
+
+    applyRetention();
+  }
+
+  private void applyRetention() {
+    final long minTimestamp = System.currentTimeMillis() - maxAgeMillis;
+    long totalSize = 0;
+    for (EventJournalSegment segment : segments.values()) {
+      totalSize += segment.getSize();
+    }
+
+    while (segments.size() > 1) {
+      final Map.Entry<Long, EventJournalSegment> oldest = segments.firstEntry();
+      if (totalSize <= maxSize && oldest.getValue().getLastTimestamp() >= minTimestamp) {
+        return;
+      }
+
+      LOG.debug("Removing segment {} of the event journal in '{}'", oldest.getKey(), directory);
+      segments.remove(oldest.getKey());
+      totalSize -= oldest.getValue().getSize();
+
+      if (!oldest.getValue().delete()) {
+        LOG.warn("Failed to delete segment {} of the event journal in '{}'", oldest.getKey(), directory);
+      }
+    }
+  }
+
+  private static String getPath(StreamingEvent event) {
+    final StreamingEventData<JsonElement> eventData = event.getEventData(EVENT_DATA_TYPE);
+    return eventData == null || eventData.getPath() == null ? "" : eventData.getPath();
+  }
+
+  private static byte[] getData(StreamingEvent event) {
+    final ByteBuffer buffer = event.getEventDataBuffer();
+    if (buffer == null) {
+      return null;
+    }
+
+    final byte[] data = new byte[buffer.remaining()];
+    buffer.get(data);
+    return data;
+  }
+
+  /**
+   * {@link Cursor} implementation, which remembers the segment and the position of the next record for sequential reads.
+   */
+  private final class JournalCursor implements Cursor {
+
+    private final File positionFile;
+    private long position;
+    private EventJournalSegment segment;
+    private int segmentPosition;
+
+    private JournalCursor(File positionFile, long position) {
+      this.positionFile = positionFile;
+      this.position = position;
+    }
+
+    @Override
+    public EventJournalEntry next() {
+      if (position >= nextSequence) {
+        return null;
+      }
+
+      if (segment == null || position > segment.getLastSequence()) {
+        locate();
+      }
+
+      final EventJournalEntry entry = segment.read(segmentPosition, gson);
+      segmentPosition = entry.getNextPosition();
+      position++;
+      return entry;
+    }
+
+    @Override
+    public long getPosition() {
+      return position;
+    }
+
+    @Override
+    public void seek(long sequence) {
+      position = sequence;
+      segment = null;
+    }
+
+    @Override
+    public void commit() {
+      if (positionFile == null) {
+        return;
+      }
+
+      final File tempFile = new File(positionFile.getPath() + ".tmp");
+      try {
+        Files.write(tempFile.toPath(), String.valueOf(position).getBytes(UTF_8));
+        Files.move(tempFile.toPath(), positionFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        throw new FirebaseJournalException(FirebaseRuntimeException.ErrorCode.EventJournalIOFailure, "Failed to write the position of cursor '" + positionFile.getName() + "'", e);
+      }
+    }
+
+    private void locate() {
+      Map.Entry<Long, EventJournalSegment> entry = segments.floorEntry(position);
+      if (entry == null) {
+        // The events were removed by the retention
+        final long firstSequence = getFirstSequence();
+        LOG.warn("Cursor skipped the events {} to {} removed from the event journal in '{}'", position, firstSequence - 1, directory);
+
+        position = firstSequence;
+        entry = segments.floorEntry(position);
+      }
+
+      segment = entry.getValue();
+      segmentPosition = segment.getPosition(position);
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package org.restonfire;
+
+/**
+ * A {@link FirebaseEventStreamMultiplexer} shares a single event stream connection for a location within a Firebase
+ * database between many listeners of the location and its descendants. The {@link FirebaseRestEventStream} objects
+ * returned by {@link #getEventStream(String)} behave like regular event streams, but starting or stopping them only
+ * registers or removes a listener, without opening or closing a connection.<br>
+ * <br>
+ * The connection is opened once the first listener is started and remains open until {@link #close()} is invoked.
+ * Every listener receives the events of its own location with paths relative to that location, starting with a
+ * <code>Set</code> event containing the current value.
+ *
+ * @see FirebaseRestDatabase#getEventStreamMultiplexer(String)
+ */
+public interface FirebaseEventStreamMultiplexer {
+
+  /**
+   * Returns the fully qualified URL for the location of the shared connection.
+   *
+   * @return The absolute URL of the shared location as a String.
+   */
+  String getReferenceUrl();
+
+  /**
+   * Returns an event stream for the given location, which will be served by the shared connection.
+   *
+   * @param path The location of the event stream, relative to the location of this multiplexer.
+   * @return The {@link FirebaseRestEventStream} representing the given location.
+   */
+  FirebaseRestEventStream getEventStream(String path);
+
+  /**
+   * Returns the number of currently started event streams of this multiplexer.
+   *
+   * @return The number of listeners.
+   */
+  int getListenerCount();
+
+  /**
+   * Closes the shared connection and resolves the promises of all started event streams. The multiplexer cannot
+   * be used anymore afterwards.
+   */
+  void close();
+}
@@ -0,0 +1,527 @@
+package org.restonfire;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.reflect.TypeToken;
+import org.jdeferred.AlwaysCallback;
+import org.jdeferred.Deferred;
+import org.jdeferred.ProgressCallback;
+import org.jdeferred.Promise;
+import org.jdeferred.impl.DeferredObject;
+import org.restonfire.exceptions.FirebaseInvalidStateException;
+import org.restonfire.exceptions.FirebaseRestException;
+import org.restonfire.exceptions.FirebaseRuntimeException;
+import org.restonfire.responses.StreamingEvent;
+import org.restonfire.responses.StreamingEventData;
+import org.restonfire.transport.HttpResponse;
+import org.restonfire.transport.HttpResponseHandler;
+import org.restonfire.transport.HttpTransport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * {@link FirebaseEventStreamMultiplexer} implementation. The listeners are registered in a {@link PathTrie}, so an
+ * event only visits the listeners of the changed location, its ancestors and its descendants. The trie and the
+ * connection state are guarded by the instance's monitor, while the events are published to the listeners outside
+ * of it, in the order they were dispatched.
+ */
+@SuppressWarnings({"PMD.CyclomaticComplexity", "PMD.StdCyclomaticComplexity", "checkstyle:classdataabstractioncoupling", "checkstyle:classfanoutcomplexity"})
+final class FirebaseEventStreamMultiplexerImpl extends FirebaseDocumentLocation implements FirebaseEventStreamMultiplexer {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FirebaseEventStreamMultiplexerImpl.class);
+
+  private static final TypeToken<StreamingEventData<JsonElement>> EVENT_DATA_TYPE = new TypeToken<StreamingEventData<JsonElement>>() { };
+
+  private final HttpTransport transport;
+  private final Gson gson;
+  private final FirebaseRestEventStream connection;
+  private final PathTrie<Listener> listeners = new PathTrie<>();
+
+  private boolean connected;
+  private boolean closed;
+  // the connection has published the complete value of the location since it was (re)opened
+  private boolean synced;
+  // identifies the current connection, so late events of a stopped connection are ignored
+  private int session;
+
+  FirebaseEventStreamMultiplexerImpl(
+    HttpTransport transport,
+    Gson gson,
+    String fbBaseUrl,
+    String fbAccessToken,
+    String path,
+    FirebaseRestEventStream connection) {
+
+    super(fbBaseUrl, PathUtil.trimPath(path), fbAccessToken);
+
+    this.transport = transport;
+    this.gson = gson;
+    this.connection = connection;
+  }
+
+  @Override
+  public FirebaseRestEventStream getEventStream(String relativePath) {
+    LOG.debug("getEventStream({}) invoked for multiplexer {}", relativePath, referenceUrl);
+    return new MultiplexedEventStream(this, connection, PathUtil.trimPath(relativePath));
+  }
+
+  @Override
+  public synchronized int getListenerCount() {
+    return listeners.size();
+  }
+
+  @Override
+  public void close() {
+    LOG.debug("close() invoked for multiplexer {}", referenceUrl);
+
+    final boolean stopConnection;
+    final List<Listener> removedListeners;
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      stopConnection = connected;
+      removedListeners = disconnect();
+    }
+
+    if (stopConnection) {
+      stopConnection();
+    }
+    finish(removedListeners, null);
+  }
+
+  boolean isRoot() {
+    return path.length() == 0;
+  }
+
+  /**
+   * Returns the URL of the given location without the JSON suffix.
+   */
+  String getReferenceUrl(String relativePath) {
+    return PathUtil.concatenatePath(fbBaseUrl, getAbsolutePath(relativePath));
+  }
+
+  void register(Listener listener) {
+    final boolean connect;
+    final boolean retrieveSnapshot;
+    final int connectionSession;
+    synchronized (this) {
+      if (closed) {
+        throw new FirebaseInvalidStateException(FirebaseRuntimeException.ErrorCode.EventStreamMultiplexerClosed, "The EventStream multiplexer for " + getReferenceUrl() + " was closed");
+      }
+
+      listeners.add(listener.path, listener);
+
+      // The connection publishes the complete value as its first event, which covers the new listener as well.
+      // Otherwise, the events are held back until the current value of the listener's location was retrieved.
+      connect = !connected;
+      retrieveSnapshot = connected && synced;
+      if (connect) {
+        connected = true;
+        synced = false;
+        session++;
+      } else if (retrieveSnapshot) {
+        listener.startBuffering();
+      }
+      connectionSession = session;
+    }
+
+    // The event stream invokes the callbacks while holding its own monitor, so it must not be called under this one
+    if (connect) {
+      connect(connectionSession);
+    } else if (retrieveSnapshot) {
+      requestSnapshot(listener);
+    }
+  }
+
+  void unregister(Listener listener) {
+    synchronized (this) {
+      listeners.remove(listener.path, listener);
+    }
+
+    listener.finish(null);
+    listener.drain();
+  }
+
+  private String getAbsolutePath(String relativePath) {
+    return relativePath.length() == 0
+      ? path
+      : PathUtil.concatenatePath(path, relativePath);
+  }
+
+  private void connect(final int connectionSession) {
+    final Promise<Void, FirebaseRuntimeException, StreamingEvent> promise;
+    try {
+      promise = connection.startListening();
+    } catch (RuntimeException ex) {
+      final List<Listener> removedListeners;
+      synchronized (this) {
+        removedListeners = connectionSession == session ? disconnect() : new ArrayList<Listener>();
+      }
+      finish(removedListeners, new FirebaseRestException(FirebaseRuntimeException.ErrorCode.EventStreamRequestFailed, "The shared EventStream of multiplexer " + getReferenceUrl() + " could not be started", ex));
+      throw ex;
+    }
+
+    promise
+      .progress(new ProgressCallback<StreamingEvent>() {
+        @Override
+        public void onProgress(StreamingEvent event) {
+          onEvent(connectionSession, event);
+        }
+      })
+      .always(new AlwaysCallback<Void, FirebaseRuntimeException>() {
+        @Override
+        public void onAlways(Promise.State state, Void resolved, FirebaseRuntimeException rejected) {
+          onConnectionClosed(connectionSession, rejected);
+        }
+      });
+  }
+
+  /**
+   * Removes all listeners and invalidates the current connection. Requires the instance's monitor.
+   */
+  private List<Listener> disconnect() {
+    final List<Listener> removedListeners = listeners.values();
+    listeners.clear();
+    connected = false;
+    synced = false;
+    session++;
+    return removedListeners;
+  }
+
+  private void onConnectionClosed(int connectionSession, FirebaseRuntimeException rejected) {
+    synchronized (this) {
+      if (connectionSession != session) {
+        return;
+      }
+    }
+
+    if (rejected != null) {
+      LOG.warn("The shared EventStream of multiplexer {} failed", referenceUrl, rejected);
+    }
+
+    // The event stream remains active after it was closed by the server, so it has to be stopped before it can be
+    // reopened by the next listener
+    stopConnection();
+
+    final List<Listener> removedListeners;
+    synchronized (this) {
+      if (connectionSession != session) {
+        return;
+      }
+      removedListeners = disconnect();
+    }
+    finish(removedListeners, rejected);
+  }
+
+  private void stopConnection() {
+    try {
+      connection.stopListening();
+    } catch (FirebaseInvalidStateException ex) {
+      // The connection was already stopped by a concurrent close
+      LOG.debug("The shared EventStream of multiplexer {} is not active", referenceUrl);
+    }
+  }
+
+  private void onEvent(int connectionSession, StreamingEvent event) {
+    final List<Listener> receivers = new ArrayList<>();
+    synchronized (this) {
+      if (connectionSession != session) {
+        return;
+      }
+
+      if (event.getEventType() == StreamingEvent.EventType.Resync) {
+        // The next Set event of the root location contains the complete value for all listeners
+        synced = false;
+        for (Listener listener : listeners.values()) {
+          listener.enqueue(event);
+          receivers.add(listener);
+        }
+      } else {
+        dispatch(event, receivers);
+      }
+    }
+
+    for (Listener listener : receivers) {
+      listener.drain();
+    }
+  }
+
+  /**
+   * Publishes the event to the listeners of the changed location and its ancestors, with paths relative to the
+   * listeners' locations, and the resulting values to the listeners of all descendants. Requires the instance's monitor.
+   */
+  private void dispatch(StreamingEvent event, List<Listener> receivers) {
+    final StreamingEventData<JsonElement> eventData = event.getEventData(EVENT_DATA_TYPE);
+    if (eventData == null) {
+      return;
+    }
+
+    final String[] segments = PathTrie.split(eventData.getPath());
+    final JsonElement data = eventData.getData();
+
+    PathTrie.Node<Listener> node = listeners.getRoot();
+    for (int depth = 0; ; depth++) {
+      if (!node.getValues().isEmpty()) {
+        final StreamingEvent relativeEvent = depth == 0
+          ? event
+          : StreamingEventUtil.createEvent(gson, event.getEventType(), getRelativePath(segments, depth), data);
+        publish(node, relativeEvent, receivers);
+      }
+
+      if (depth == segments.length) {
+        break;
+      }
+
+      node = node.getChild(segments[depth]);
+      if (node == null) {
+        return;
+      }
+    }
+
+    if (event.getEventType() == StreamingEvent.EventType.Set) {
+      if (segments.length == 0) {
+        synced = true;
+      }
+      for (PathTrie.Node<Listener> child : node.getChildren()) {
+        dispatchValue(child, getChildValue(data, child.getSegment()), receivers);
+      }
+    } else if (data != null && data.isJsonObject()) {
+      dispatchUpdate(node, data.getAsJsonObject(), receivers);
+    }
+  }
+
+  /**
+   * Publishes the children of an update to the listeners below the updated location. The listeners between the
+   * updated location and a changed child receive an update with the relative paths of the changed children, while
+   * the listeners at or below a changed child receive its new value.
+   */
+  private void dispatchUpdate(PathTrie.Node<Listener> updatedNode, JsonObject data, List<Listener> receivers) {
+    final Map<PathTrie.Node<Listener>, JsonObject> intermediateUpdates = new LinkedHashMap<>();
+
+    for (Map.Entry<String, JsonElement> entry : data.entrySet()) {
+      final String[] segments = PathTrie.split(entry.getKey());
+
+      PathTrie.Node<Listener> node = updatedNode;
+      for (int depth = 0; depth < segments.length && node != null; depth++) {
+        if (depth > 0 && !node.getValues().isEmpty()) {
+          JsonObject update = intermediateUpdates.get(node);
+          if (update == null) {
+            update = new JsonObject();
+            intermediateUpdates.put(node, update);
+          }
+          update.add(getRelativePath(segments, depth).substring(1), entry.getValue());
+        }
+        node = node.getChild(segments[depth]);
+      }
+
+      if (node != null && node != updatedNode) {
+        dispatchValue(node, entry.getValue(), receivers);
+      }
+    }
+
+    for (Map.Entry<PathTrie.Node<Listener>, JsonObject> entry : intermediateUpdates.entrySet()) {
+      publish(entry.getKey(), StreamingEventUtil.createEvent(gson, StreamingEvent.EventType.Update, PathUtil.FORWARD_SLASH, entry.getValue()), receivers);
+    }
+  }
+
+  /**
+   * Publishes the new value of a location to its listeners and the listeners of all its descendants.
+   */
+  private void dispatchValue(PathTrie.Node<Listener> node, JsonElement value, List<Listener> receivers) {
+    if (!node.getValues().isEmpty()) {
+      publish(node, StreamingEventUtil.createEvent(gson, StreamingEvent.EventType.Set, PathUtil.FORWARD_SLASH, value), receivers);
+    }
+
+    for (PathTrie.Node<Listener> child : node.getChildren()) {
+      dispatchValue(child, getChildValue(value, child.getSegment()), receivers);
+    }
+  }
+
+  private static void publish(PathTrie.Node<Listener> node, StreamingEvent event, List<Listener> receivers) {
+    for (Listener listener : node.getValues()) {
+      listener.enqueue(event);
+      receivers.add(listener);
+    }
+  }
+
+  private static JsonElement getChildValue(JsonElement value, String segment) {
+    return value != null && value.isJsonObject()
+      ? value.getAsJsonObject().get(segment)
+      : null;
+  }
+
+  private static String getRelativePath(String[] segments, int depth) {
+    final StringBuilder relativePath = new StringBuilder();
+    for (int i = depth; i < segments.length; i++) {
+      relativePath.append(PathUtil.FORWARD_SLASH).append(segments[i]);
+    }
+
+    return relativePath.length() == 0
+      ? PathUtil.FORWARD_SLASH
+      : relativePath.toString();
+  }
+
+  /**
+   * Retrieves the current value of a listener's location, since the connection published the complete value
+   * before the listener was registered.
+   */
+  private void requestSnapshot(final Listener listener) {
+    final String requestUrl = getReferenceUrl(listener.path) + JSON_SUFFIX;
+    LOG.debug("Retrieving initial value for multiplexed EventStream {}", requestUrl);
+
+    transport.execute(
+      RequestBuilderUtil.createGet(requestUrl, fbAccessToken),
+      new HttpResponseHandler() {
+        @Override
+        public void onCompleted(HttpResponse response) {
+          final JsonElement value;
+          try {
+            value = RestUtil.handleResponse(gson, requestUrl, response, JsonElement.class);
+          } catch (FirebaseRuntimeException ex) {
+            onSnapshotFailed(listener, ex);
+            return;
+          }
+
+          listener.endBuffering(StreamingEventUtil.createEvent(gson, StreamingEvent.EventType.Set, PathUtil.FORWARD_SLASH, value));
+          listener.drain();
+        }
+
+        @Override
+        public void onThrowable(Throwable t) {
+          final String message = "Initial value request for multiplexed EventStream '" + requestUrl + "' failed";
+          LOG.error(message, t);
+          onSnapshotFailed(listener, new FirebaseRestException(FirebaseRuntimeException.ErrorCode.EventStreamRequestFailed, message, t));
+        }
+      });
+  }
+
+  private void onSnapshotFailed(Listener listener, FirebaseRuntimeException error) {
+    synchronized (this) {
+      listeners.remove(listener.path, listener);
+    }
+
+    listener.finish(error);
+    listener.drain();
+  }
+
+  private static void finish(List<Listener> removedListeners, FirebaseRuntimeException error) {
+    for (Listener listener : removedListeners) {
+      listener.finish(error);
+      listener.drain();
+    }
+  }
+
+  /**
+   * A started {@link MultiplexedEventStream}. The events are queued by the dispatching thread and published by the
+   * first thread draining the queue, so the events of a listener are never published concurrently or out of order.
+   */
+  static final class Listener {
+    private final String path;
+    private final Deferred<Void, FirebaseRuntimeException, StreamingEvent> deferred = new DeferredObject<>();
+    private final Queue<StreamingEvent> queue = new ArrayDeque<>();
+
+    // events received while the initial value of the location is retrieved
+    private List<StreamingEvent> buffer;
+    private boolean draining;
+    private boolean finished;
+    private boolean settled;
+    private FirebaseRuntimeException error;
+
+    Listener(String path) {
+      this.path = path;
+    }
+
+    Promise<Void, FirebaseRuntimeException, StreamingEvent> promise() {
+      return deferred.promise();
+    }
+
+    synchronized void enqueue(StreamingEvent event) {
+      if (finished) {
+        return;
+      }
+
+      if (buffer != null) {
+        buffer.add(event);
+      } else {
+        queue.add(event);
+      }
+    }
+
+    synchronized void startBuffering() {
+      buffer = new ArrayList<>();
+    }
+
+    synchronized void endBuffering(StreamingEvent initialEvent) {
+      if (finished || buffer == null) {
+        return;
+      }
+
+      queue.add(initialEvent);
+      queue.addAll(buffer);
+      buffer = null;
+    }
+
+    /**
+     * Settles the promise once all queued events were published. Buffered events are discarded, since they cannot
+     * be applied without the initial value.
+     */
+    synchronized void finish(FirebaseRuntimeException finishError) {
+      if (finished) {
+        return;
+      }
+
+      finished = true;
+      error = finishError;
+      buffer = null;
+    }
+
+    void drain() {
+      synchronized (this) {
+        if (draining) {
+          return;
+        }
+        draining = true;
+      }
+
+      while (true) {
+        final StreamingEvent event;
+        final boolean settle;
+        synchronized (this) {
+          event = queue.poll();
+          settle = event == null && finished && !settled;
+          if (event == null) {
+            draining = false;
+            settled |= settle;
+          }
+        }
+
+        if (event != null) {
+          deferred.notify(event);
+        } else {
+          if (settle) {
+            settle();
+          }
+          return;
+        }
+      }
+    }
+
+    private void settle() {
+      if (error != null) {
+        deferred.reject(error);
+      } else {
+        deferred.resolve(null);
+      }
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package org.restonfire;
+
+import java.util.Comparator;
+
+/**
+ * {@link Comparator} implementing Firebase's ordering of keys: keys that can be parsed as a 32-bit integer come
+ * first, sorted numerically, followed by all other keys, sorted lexicographically.
+ *
+ * @see <a href="https://firebase.google.com/docs/database/rest/retrieve-data#orderbykey">Firebase Order By Key Documentation</a>
+ */
+final class FirebaseKeyComparator implements Comparator<String> {
+
+  public static final FirebaseKeyComparator INSTANCE = new FirebaseKeyComparator();
+
+  private static final int MAX_INTEGER_LENGTH = 11;
+
+  private FirebaseKeyComparator() {
+    // do nothing
+  }
+
+  @Override
+  public int compare(String key1, String key2) {
+    final Integer int1 = tryParseInt(key1);
+    final Integer int2 = tryParseInt(key2);
+
+    if (int1 != null && int2 != null) {
+      return int1.compareTo(int2);
+    } else if (int1 != null) {
+      return -1;
+    } else if (int2 != null) {
+      return 1;
+    }
+
+    return key1.compareTo(key2);
+  }
+
+  /**
+   * Returns the integer value of the key, if it is the canonical representation of a 32-bit integer, i.e. "12"
+   * but not "012" or "-0". Otherwise, <code>null</code> is returned.
+   */
+  static Integer tryParseInt(String key) {
+    final int length = key.length();
+    if (length == 0 || length > MAX_INTEGER_LENGTH) {
+      return null;
+    }
+
+    final int start = key.charAt(0) == '-' ? 1 : 0;
+    if (start == length || key.charAt(start) == '0' && (length - start > 1 || start == 1)) {
+      return null;
+    }
+
+    for (int i = start; i < length; i++) {
+      if (key.charAt(i) < '0' || key.charAt(i) > '9') {
+        return null;
+      }
+    }
+
+    final long value = Long.parseLong(key);
+    return value < Integer.MIN_VALUE || value > Integer.MAX_VALUE
+      ? null
+      : (int) value;
+  }
+}
@@ -0,0 +1,64 @@
+package org.restonfire;
+
+import org.jdeferred.Promise;
+import org.restonfire.exceptions.FirebaseRuntimeException;
+
+/**
+ * A {@link FirebaseLocalMirror} keeps an in-memory copy of a specific location within a Firebase database. The copy
+ * is kept up to date by listening to the {@link FirebaseRestEventStream} of the location, so values can be read
+ * without any network requests.<br>
+ * <br>
+ * The mirror holds the complete data of the location on the heap. It should therefore only be used for locations
+ * with a limited amount of data.
+ *
+ * @see FirebaseRestDatabase#getLocalMirror(String)
+ */
+public interface FirebaseLocalMirror {
+
+  /**
+   * Returns the fully qualified URL for the location mirrored by this {@link FirebaseLocalMirror} instance.
+   *
+   * @return The absolute URL of the mirrored location as a String.
+   */
+  String getReferenceUrl();
+
+  /**
+   * Starts listening for the events on the mirrored location. The promise will be resolved once the initial value of
+   * the location was received, which means that the mirror can be used to read values.<br>
+   * <br>
+   * The promise will be rejected if the event stream fails before the initial value was received.
+   *
+   * @throws org.restonfire.exceptions.FirebaseInvalidStateException The mirror has already been started.
+   *
+   * @return A {@link Promise} that will be resolved once the mirror is in sync with the database.
+   */
+  Promise<FirebaseLocalMirror, FirebaseRuntimeException, Void> start();
+
+  /**
+   * Stops listening for the events on the mirrored location and discards the local copy of the data.
+   *
+   * @throws org.restonfire.exceptions.FirebaseInvalidStateException The mirror is currently not running.
+   */
+  void stop();
+
+  /**
+   * Returns <code>true</code> if the initial value was received and the event stream is still active, which means
+   * that reads reflect the latest state of the location received from Firebase.
+   *
+   * @return <code>true</code> if the mirror is in sync with the database.
+   */
+  boolean isSynced();
+
+  /**
+   * Returns the value at the given path, relative to the mirrored location, from the local copy of the data.
+   * No network request will be made.
+   *
+   * @param path The path relative to the mirrored location. An empty string represents the mirrored location itself.
+   * @param clazz The {@link Class} type for the POJO to be created for the data at the location.
+   * @param <T> The type of the result object.
+   * @return The value at the given path or <code>null</code> if no data exists at this location.
+   *
+   * @throws org.restonfire.exceptions.FirebaseInvalidStateException The mirror is not in sync with the database.
+   */
+  <T> T getValue(String path, Class<T> clazz);
+}
@@ -0,0 +1,203 @@
+package org.restonfire;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.reflect.TypeToken;
+import org.jdeferred.AlwaysCallback;
+import org.jdeferred.Deferred;
+import org.jdeferred.ProgressCallback;
+import org.jdeferred.Promise;
+import org.jdeferred.impl.DeferredObject;
+import org.restonfire.exceptions.FirebaseInvalidStateException;
+import org.restonfire.exceptions.FirebaseRuntimeException;
+import org.restonfire.responses.StreamingEvent;
+import org.restonfire.responses.StreamingEventData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * {@link FirebaseLocalMirror} implementation. The events are applied to the tree on the I/O thread of the
+ * event stream, while reads may happen on any thread, so the tree is guarded by a {@link ReadWriteLock}.
+ */
+final class FirebaseLocalMirrorImpl implements FirebaseLocalMirror {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FirebaseLocalMirrorImpl.class);
+
+  private static final TypeToken<StreamingEventData<JsonElement>> EVENT_DATA_TYPE = new TypeToken<StreamingEventData<JsonElement>>() { };
+
+  private final Gson gson;
+  private final FirebaseRestEventStream eventStream;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private JsonElement root;
+  private boolean running;
+  private boolean synced;
+  // identifies the current event stream, so late events of a stopped stream are ignored
+  private int session;
+
+  FirebaseLocalMirrorImpl(Gson gson, FirebaseRestEventStream eventStream) {
+    this.gson = gson;
+    this.eventStream = eventStream;
+  }
+
+  @Override
+  public String getReferenceUrl() {
+    return eventStream.getReferenceUrl();
+  }
+
+  @Override
+  public Promise<FirebaseLocalMirror, FirebaseRuntimeException, Void> start() {
+    LOG.debug("start() invoked for mirror {}", getReferenceUrl());
+
+    final int currentSession;
+    lock.writeLock().lock();
+    try {
+      if (running) {
+        throw new FirebaseInvalidStateException(FirebaseRuntimeException.ErrorCode.LocalMirrorAlreadyActive, "The local mirror is already running");
+      }
+      running = true;
+      synced = false;
+      root = null;
+      currentSession = ++session;
+    } finally {
+      lock.writeLock().unlock();
+    }
+
+    final Deferred<FirebaseLocalMirror, FirebaseRuntimeException, Void> deferred = new DeferredObject<>();
+
+    eventStream.startListening()
+      .progress(new ProgressCallback<StreamingEvent>() {
+        @Override
+        public void onProgress(StreamingEvent event) {
+          applyEvent(currentSession, event, deferred);
+        }
+      })
+      .always(new AlwaysCallback<Void, FirebaseRuntimeException>() {
+        @Override
+        public void onAlways(Promise.State state, Void resolved, FirebaseRuntimeException rejected) {
+          onStreamClosed(currentSession, rejected, deferred);
+        }
+      });
+
+    return deferred.promise();
+  }
+
+  @Override
+  public void stop() {
+    LOG.debug("stop() invoked for mirror {}", getReferenceUrl());
+
+    lock.writeLock().lock();
+    try {
+      if (!running) {
+        throw new FirebaseInvalidStateException(FirebaseRuntimeException.ErrorCode.LocalMirrorNotActive, "The local mirror is currently not active");
+      }
+      running = false;
+      synced = false;
+      root = null;
+    } finally {
+      lock.writeLock().unlock();
+    }
+
+    eventStream.stopListening();
+  }
+
+  @Override
+  public boolean isSynced() {
+    lock.readLock().lock();
+    try {
+      return synced;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public <T> T getValue(String path, Class<T> clazz) {
+    lock.readLock().lock();
+    try {
+      if (!synced) {
+        throw new FirebaseInvalidStateException(FirebaseRuntimeException.ErrorCode.LocalMirrorNotSynced, "The local mirror is not in sync with " + getReferenceUrl());
+      }
+
+      // Deserializing under the read lock creates a copy, so the caller never sees concurrent modifications
+      final JsonElement value = JsonTreeUtil.get(root, path);
+      return value == null ? null : gson.fromJson(value, clazz);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private void applyEvent(int eventSession, StreamingEvent event, Deferred<FirebaseLocalMirror, FirebaseRuntimeException, Void> deferred) {
+    if (event.getEventType() == StreamingEvent.EventType.Resync) {
+      onResync(eventSession);
+      return;
+    }
+
+    final StreamingEventData<JsonElement> eventData = event.getEventData(EVENT_DATA_TYPE);
+    if (eventData == null) {
+      return;
+    }
+
+    final boolean initialValue;
+    lock.writeLock().lock();
+    try {
+      if (!running || eventSession != session) {
+        return;
+      }
+
+      if (event.getEventType() == StreamingEvent.EventType.Set) {
+        root = JsonTreeUtil.set(root, eventData.getPath(), eventData.getData());
+      } else if (eventData.getData() != null && eventData.getData().isJsonObject()) {
+        root = JsonTreeUtil.update(root, eventData.getPath(), eventData.getData().getAsJsonObject());
+      }
+
+      // The first event of a stream always contains the complete value of the location
+      initialValue = !synced;
+      synced = true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+
+    if (initialValue && deferred.isPending()) {
+      LOG.debug("Local mirror {} received its initial value", getReferenceUrl());
+      deferred.resolve(this);
+    }
+  }
+
+  private void onResync(int eventSession) {
+    lock.writeLock().lock();
+    try {
+      if (running && eventSession == session) {
+        // The data may be outdated until the complete value is received from the reopened stream
+        LOG.debug("Local mirror {} is waiting for the complete value after a reconnect", getReferenceUrl());
+        synced = false;
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void onStreamClosed(int eventSession, FirebaseRuntimeException rejected, Deferred<FirebaseLocalMirror, FirebaseRuntimeException, Void> deferred) {
+    lock.writeLock().lock();
+    try {
+      if (eventSession == session) {
+        synced = false;
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+
+    if (rejected != null) {
+      LOG.warn("The event stream of the local mirror {} failed", getReferenceUrl(), rejected);
+    }
+
+    if (deferred.isPending()) {
+      deferred.reject(rejected != null
+        ? rejected
+        : new FirebaseInvalidStateException(FirebaseRuntimeException.ErrorCode.LocalMirrorNotSynced, "The event stream of " + getReferenceUrl() + " was closed before the initial value was received"));
+    }
+  }
+}
@@ -1,5 +1,8 @@
 package org.restonfire;
 
+import org.jdeferred.Promise;
+import org.restonfire.exceptions.FirebaseRuntimeException;
+
 /**
  * A {@link FirebaseRestDatabase} is a base representation of a Firebase database. It
  * manages all resources for the {@link FirebaseRestReference} implementations as well as
@@ -27,6 +30,58 @@ public interface FirebaseRestDatabase {
    */
   FirebaseRestEventStream getEventStream(String path);
 
+  /**
+   * Returns a {@link FirebaseLocalMirror} object for the provided location of the database. Once started,
+   * the mirror keeps a local copy of the data at this location in sync through an event stream, so the
+   * data can be read without any network requests.
+   *
+   * @param path The location within database to create a local mirror for.
+   * @return The {@link FirebaseLocalMirror} for the given path.
+   */
+  FirebaseLocalMirror getLocalMirror(String path);
+
+  /**
+   * Returns a {@link FirebaseEventStreamMultiplexer} for the provided location of the database. The multiplexer
+   * serves the event streams of the location and all its descendants through a single shared connection, which
+   * avoids opening a connection for every listener.
+   *
+   * @param path The location within database to create the shared event stream for.
+   * @return The {@link FirebaseEventStreamMultiplexer} for the given path.
+   */
+  FirebaseEventStreamMultiplexer getEventStreamMultiplexer(String path);
+
+  /**
+   * Opens the {@link FirebaseEventJournal} in the directory of the given settings, which recovers the events of a
+   * previous process. The events of an event stream are appended with {@link FirebaseEventJournal#record(org.jdeferred.Promise)}.
+   *
+   * @param settings The {@link EventJournalSettings} of the journal.
+   * @return The {@link FirebaseEventJournal} for the given directory.
+   *
+   * @throws org.restonfire.exceptions.FirebaseJournalException The journal files could not be opened.
+   */
+  FirebaseEventJournal openEventJournal(EventJournalSettings settings);
+
+  /**
+   * Returns a new {@link FirebaseWriteBatch}, which can be used to write to multiple locations of this database
+   * with a single atomic request.
+   *
+   * @return A new and empty {@link FirebaseWriteBatch}.
+   */
+  FirebaseWriteBatch createWriteBatch();
+
+  /**
+   * Warms up the connections of this database before it serves traffic, i.e. to pass a readiness probe only once the
+   * latency of the requests is stable. The warmup opens the configured number of pooled connections with concurrent
+   * requests, creates the Gson type adapters of the configured types and measures the latency of the warm connections
+   * until it is stable.
+   *
+   * @param settings The {@link WarmupSettings} of the warmup.
+   * @return A promise, which publishes the {@link WarmupResult} of each round through its progress callback and
+   * resolves with the last round once the warmup completed. It is rejected with the error code
+   * {@link org.restonfire.exceptions.FirebaseRuntimeException.ErrorCode#WarmupFailed} if all requests of a round failed.
+   */
+  Promise<WarmupResult, FirebaseRuntimeException, WarmupResult> warmUp(WarmupSettings settings);
+
   /**
    * Returns a {@link FirebaseSecurityRulesReference} object for this namespaces. The object can be used
    * to retrieve or modify the access rules, add validation or indexes.
@@ -34,4 +89,49 @@ public interface FirebaseRestDatabase {
    * @return The {@link FirebaseSecurityRulesReference} for this namespace.
    */
   FirebaseSecurityRulesReference getSecurityRules();
+
+  /**
+   * Returns the counters of the value cache of this database. If no cache was configured for the factory
+   * that created this database, all counters will be zero.
+   *
+   * @return A snapshot of the {@link ValueCacheStatistics} for this database.
+   * @see BaseFirebaseRestDatabaseFactory#setValueCacheSettings(ValueCacheSettings)
+   */
+  ValueCacheStatistics getValueCacheStatistics();
+
+  /**
+   * Returns the counters of the write coalescing of this database. If no write coalescing was configured for the
+   * factory that created this database, all counters will be zero.
+   *
+   * @return A snapshot of the {@link WriteCoalescingStatistics} for this database.
+   * @see BaseFirebaseRestDatabaseFactory#setWriteCoalescingSettings(WriteCoalescingSettings)
+   */
+  WriteCoalescingStatistics getWriteCoalescingStatistics();
+
+  /**
+   * Returns the gauges and counters of the event delivery of this database's event streams. If no event delivery
+   * was configured for the factory that created this database, all values will be zero.
+   *
+   * @return A snapshot of the {@link EventDeliveryStatistics} for this database.
+   * @see BaseFirebaseRestDatabaseFactory#setEventDeliverySettings(EventDeliverySettings)
+   */
+  EventDeliveryStatistics getEventDeliveryStatistics();
+
+  /**
+   * Returns the gauges and counters of the concurrency limit of this database's requests. If no concurrency limit
+   * was configured for the factory that created this database, all values will be zero.
+   *
+   * @return A snapshot of the {@link ConcurrencyLimitStatistics} for this database.
+   * @see BaseFirebaseRestDatabaseFactory#setConcurrencyLimitSettings(ConcurrencyLimitSettings)
+   */
+  ConcurrencyLimitStatistics getConcurrencyLimitStatistics();
+
+  /**
+   * Returns the counters of the hedged read requests of this database. If no hedging was configured for the factory
+   * that created this database, all values will be zero.
+   *
+   * @return A snapshot of the {@link HedgingStatistics} for this database.
+   * @see BaseFirebaseRestDatabaseFactory#setHedgingSettings(HedgingSettings)
+   */
+  HedgingStatistics getHedgingStatistics();
 }
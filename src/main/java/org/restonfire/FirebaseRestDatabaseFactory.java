@@ -2,7 +2,7 @@ package org.restonfire;
 
 /**
  * A factory to create {@link FirebaseRestDatabase} instances. The implementation will
- * take care of the configuration of the {@link com.ning.http.client.AsyncHttpClient} and
+ * take care of the configuration of the {@link org.restonfire.transport.HttpTransport} and
  * {@link com.google.gson.Gson}.
  */
 public interface FirebaseRestDatabaseFactory {
@@ -1,7 +1,9 @@
 package org.restonfire;
 
 import com.google.gson.Gson;
-import com.ning.http.client.AsyncHttpClient;
+import org.jdeferred.Promise;
+import org.restonfire.exceptions.FirebaseRuntimeException;
+import org.restonfire.transport.HttpTransport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -12,21 +14,41 @@ class FirebaseRestDatabaseImpl implements FirebaseRestDatabase {
 
   private static final Logger LOG = LoggerFactory.getLogger(FirebaseRestDatabaseImpl.class);
 
-  private final AsyncHttpClient asyncHttpClient;
+  private final HttpTransport transport;
+  private final HttpTransport warmupTransport;
   private final Gson gson;
   private final String namespaceUrl;
   private final String firebaseAccessToken;
+  private final DatabaseResources resources;
 
   FirebaseRestDatabaseImpl(
-    AsyncHttpClient asyncHttpClient,
+    HttpTransport transport,
     Gson gson,
     String namespaceUrl,
     String firebaseAccessToken
   ) {
-    this.asyncHttpClient = asyncHttpClient;
+    this(transport, transport, gson, namespaceUrl, firebaseAccessToken, DatabaseResources.createDefault());
+  }
+
+  /**
+   * @param transport The {@link HttpTransport} of the database's requests.
+   * @param warmupTransport The {@link HttpTransport} of the warmup requests, which bypass the concurrency limit, the
+   *                        retries and the hedging of the database's requests.
+   */
+  FirebaseRestDatabaseImpl(
+    HttpTransport transport,
+    HttpTransport warmupTransport,
+    Gson gson,
+    String namespaceUrl,
+    String firebaseAccessToken,
+    DatabaseResources resources
+  ) {
+    this.transport = transport;
+    this.warmupTransport = warmupTransport;
     this.gson = gson;
     this.namespaceUrl = PathUtil.normalizePath(namespaceUrl);
     this.firebaseAccessToken = firebaseAccessToken;
+    this.resources = resources;
   }
 
   @Override
@@ -34,11 +56,12 @@ class FirebaseRestDatabaseImpl implements FirebaseRestDatabase {
     LOG.info("Creating new FirebaseRestReference for path '{}'", path);
 
     return new FirebaseRestReferenceImpl(
-      asyncHttpClient,
+      transport,
       gson,
       namespaceUrl,
       firebaseAccessToken,
-      path
+      path,
+      resources
     );
   }
 
@@ -47,23 +70,98 @@ class FirebaseRestDatabaseImpl implements FirebaseRestDatabase {
     LOG.info("Creating new FirebaseEventStream for path '{}'", path);
 
     return new FirebaseRestEventStreamImpl(
-      asyncHttpClient,
+      transport,
       gson,
       namespaceUrl,
       firebaseAccessToken,
-      path
+      path,
+      resources
     );
   }
 
+  @Override
+  public FirebaseLocalMirror getLocalMirror(String path) {
+    LOG.info("Creating new FirebaseLocalMirror for path '{}'", path);
+
+    return new FirebaseLocalMirrorImpl(gson, getEventStream(path));
+  }
+
+  @Override
+  public FirebaseEventStreamMultiplexer getEventStreamMultiplexer(String path) {
+    LOG.info("Creating new FirebaseEventStreamMultiplexer for path '{}'", path);
+
+    final String trimmedPath = PathUtil.trimPath(path);
+    return new FirebaseEventStreamMultiplexerImpl(
+      transport,
+      gson,
+      namespaceUrl,
+      firebaseAccessToken,
+      trimmedPath,
+      getEventStream(trimmedPath)
+    );
+  }
+
+  @Override
+  public FirebaseEventJournal openEventJournal(EventJournalSettings settings) {
+    LOG.info("Opening FirebaseEventJournal in directory '{}'", settings.getDirectory());
+
+    return new FirebaseEventJournalImpl(gson, settings);
+  }
+
+  @Override
+  public FirebaseWriteBatch createWriteBatch() {
+    LOG.info("Creating new FirebaseWriteBatch");
+
+    return new FirebaseWriteBatchImpl(
+      transport,
+      gson,
+      namespaceUrl,
+      firebaseAccessToken,
+      resources
+    );
+  }
+
+  @Override
+  public Promise<WarmupResult, FirebaseRuntimeException, WarmupResult> warmUp(WarmupSettings settings) {
+    LOG.info("Warming up {} connections", settings.getConnectionCount());
+
+    return new DatabaseWarmup(warmupTransport, gson, namespaceUrl, firebaseAccessToken, settings).start();
+  }
+
   @Override
   public FirebaseSecurityRulesReference getSecurityRules() {
     LOG.info("Creating new FirebaseSecurityRulesReference");
 
     // FirebaseSecurityRulesReferenceImpl has its own Gson instance, in order to apply special configuration settings
     return new FirebaseSecurityRulesReferenceImpl(
-      asyncHttpClient,
+      transport,
       namespaceUrl,
       firebaseAccessToken
     );
   }
+
+  @Override
+  public ValueCacheStatistics getValueCacheStatistics() {
+    return resources.getValueCache().getStatistics();
+  }
+
+  @Override
+  public WriteCoalescingStatistics getWriteCoalescingStatistics() {
+    return resources.getWriteCoalescer().getStatistics();
+  }
+
+  @Override
+  public EventDeliveryStatistics getEventDeliveryStatistics() {
+    return resources.getEventDelivery().getStatistics();
+  }
+
+  @Override
+  public ConcurrencyLimitStatistics getConcurrencyLimitStatistics() {
+    return resources.getConcurrencyLimiter().getStatistics();
+  }
+
+  @Override
+  public HedgingStatistics getHedgingStatistics() {
+    return resources.getRequestHedger().getStatistics();
+  }
 }
@@ -1,9 +1,11 @@
 package org.restonfire;
 
+import com.google.gson.reflect.TypeToken;
 import org.jdeferred.ProgressCallback;
 import org.jdeferred.Promise;
 import org.restonfire.exceptions.FirebaseRuntimeException;
 import org.restonfire.responses.StreamingEvent;
+import org.restonfire.responses.StreamingEventData;
 
 /**
  * A {@link FirebaseRestEventStream} represents a specific location within a Firebase database and allows
@@ -45,6 +47,22 @@ public interface FirebaseRestEventStream {
    */
   Promise<Void, FirebaseRuntimeException, StreamingEvent> startListening();
 
+  /**
+   * Starts listening for the events on the current document location of this database, like {@link #startListening()}.
+   * The data of each <code>Set</code> and <code>Update</code> event is decoded into the given type once, before the
+   * event is published, so {@link StreamingEvent#getEventData(TypeToken)} returns the decoded data for the same
+   * {@link TypeToken} without any further conversion, no matter how many callbacks retrieve it.
+   *
+   * @param typeToken The {@link TypeToken} representing the {@link StreamingEventData} type of the events, including
+   *                  the type parameter.
+   * @param <T> The type of the actual data node.
+   *
+   * @throws org.restonfire.exceptions.FirebaseInvalidStateException The listener for the events has already been started.
+   *
+   * @return A {@link Promise} for the active request.
+   */
+  <T> Promise<Void, FirebaseRuntimeException, StreamingEvent> startListening(TypeToken<StreamingEventData<T>> typeToken);
+
   /**
    * Closes the event stream, which will resolve the promise created for this location.
    *
@@ -52,6 +70,14 @@ public interface FirebaseRestEventStream {
    */
   void stopListening();
 
+  /**
+   * Returns the health of this event stream, i.e. the number of received events by type, the time since the
+   * connection last received any data and the number of reconnects.
+   *
+   * @return A snapshot of the {@link EventStreamStatistics} for this event stream.
+   */
+  EventStreamStatistics getStatistics();
+
   /**
    * Returns the streaming reference for the root of this Firebase database.
    *
@@ -1,102 +1,152 @@
 package org.restonfire;
 
 import com.google.gson.Gson;
-import com.ning.http.client.*;
+import com.google.gson.reflect.TypeToken;
 import org.jdeferred.Deferred;
 import org.jdeferred.Promise;
 import org.jdeferred.impl.DeferredObject;
 import org.restonfire.exceptions.*;
 import org.restonfire.responses.StreamingEvent;
+import org.restonfire.responses.StreamingEventData;
+import org.restonfire.transport.HttpRequest;
+import org.restonfire.transport.HttpStatus;
+import org.restonfire.transport.HttpStream;
+import org.restonfire.transport.HttpStreamHandler;
+import org.restonfire.transport.HttpTransport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
-import java.nio.charset.Charset;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * <b>Non-thread safe</b> {@link FirebaseRestEventStream} implementation.
+ * {@link FirebaseRestEventStream} implementation. The connection state is guarded by the instance's monitor,
+ * since the reconnect attempts are started by the scheduler thread and the connection callbacks are invoked by the
+ * threads of the {@link HttpTransport}.
  */
 @SuppressWarnings({"PMD.CyclomaticComplexity", "PMD.StdCyclomaticComplexity", "checkstyle:classdataabstractioncoupling", "checkstyle:classfanoutcomplexity"})
 class FirebaseRestEventStreamImpl extends FirebaseDocumentLocation implements FirebaseRestEventStream {
 
   private static final Logger LOG = LoggerFactory.getLogger(FirebaseRestEventStreamImpl.class);
 
-  private static final Map<String, StreamingEvent.EventType> EVENT_TYPE_MAPPER;
-  static {
-    EVENT_TYPE_MAPPER = new HashMap<>(5);
-    EVENT_TYPE_MAPPER.put("put", StreamingEvent.EventType.Set);
-    EVENT_TYPE_MAPPER.put("patch", StreamingEvent.EventType.Update);
-    EVENT_TYPE_MAPPER.put("keep-alive", StreamingEvent.EventType.KeepAlive);
-    EVENT_TYPE_MAPPER.put("cancel", StreamingEvent.EventType.Cancel);
-    EVENT_TYPE_MAPPER.put("auth_revoked", StreamingEvent.EventType.Expired);
-  }
+  private static final int STATUS_TOO_MANY_REQUESTS = 429;
+  private static final int STATUS_SERVER_ERROR = 500;
 
   private final Gson gson;
-  private final AsyncHttpClient asyncHttpClient;
-  private final AsyncHttpClient.BoundRequestBuilder eventStreamRequest;
-
-  private ListenableFuture<Void> currentListener;
+  private final HttpTransport transport;
+  private final HttpRequest eventStreamRequest;
+  private final DatabaseResources resources;
+  private final EventStreamReconnector reconnector;
+  private final EventStreamWatchdog watchdog;
+  private final EventStreamMetrics metrics = new EventStreamMetrics();
+
+  private HttpStream currentListener;
+  private Deferred<Void, FirebaseRuntimeException, StreamingEvent> currentDeferred;
+  private boolean active;
+  private int reconnectAttempt;
+  // identifies the current connection, so a replaced connection does not trigger another reconnect
+  private int connectionId;
 
   FirebaseRestEventStreamImpl(
-    AsyncHttpClient asyncHttpClient,
+    HttpTransport transport,
     Gson gson,
     String fbBaseUrl,
     String fbAccessToken,
     String path) {
 
+    this(transport, gson, fbBaseUrl, fbAccessToken, path, DatabaseResources.createDefault());
+  }
+
+  FirebaseRestEventStreamImpl(
+    HttpTransport transport,
+    Gson gson,
+    String fbBaseUrl,
+    String fbAccessToken,
+    String path,
+    DatabaseResources resources) {
+
     super(fbBaseUrl, path, fbAccessToken);
 
-    this.asyncHttpClient = asyncHttpClient;
+    this.transport = transport;
     this.gson = gson;
+    this.resources = resources;
+    this.reconnector = resources.getEventStreamReconnector();
+    this.watchdog = resources.getEventStreamWatchdog();
 
-    this.eventStreamRequest = RequestBuilderUtil.createGet(
-        asyncHttpClient,
-        referenceUrl,
-        fbAccessToken
-      ).addHeader("Accept", "text/event-stream")
-       .setFollowRedirects(true);
+    this.eventStreamRequest = RequestBuilderUtil.createGet(referenceUrl, fbAccessToken)
+      .addHeader("Accept", "text/event-stream")
+      .setFollowRedirects(true);
   }
 
   @Override
   public Promise<Void, FirebaseRuntimeException, StreamingEvent> startListening() {
+    return start(null);
+  }
+
+  @Override
+  public <T> Promise<Void, FirebaseRuntimeException, StreamingEvent> startListening(TypeToken<StreamingEventData<T>> typeToken) {
+    return start(typeToken);
+  }
+
+  private synchronized <T> Promise<Void, FirebaseRuntimeException, StreamingEvent> start(TypeToken<StreamingEventData<T>> typeToken) {
     LOG.debug("startListening() invoked for reference {}", referenceUrl);
 
-    if (currentListener != null) {
+    if (active) {
       throw new FirebaseInvalidStateException(FirebaseRuntimeException.ErrorCode.EventStreamListenerAlreadyActive, "The EventStream is already running");
     }
 
     final Deferred<Void, FirebaseRuntimeException, StreamingEvent> deferred = new DeferredObject<>();
-    final AsyncHandler<Void> asyncRequestHandler = createAsyncHandler(deferred);
-    currentListener = eventStreamRequest.execute(asyncRequestHandler);
+    active = true;
+    reconnectAttempt = 0;
+    currentDeferred = deferred;
+    metrics.onStarted();
+
+    // The callbacks of the delivery and decoding must be registered before the first event can be received
+    final Promise<Void, FirebaseRuntimeException, StreamingEvent> delivered = deliver(deferred);
+    final Promise<Void, FirebaseRuntimeException, StreamingEvent> result = typeToken == null
+      ? delivered
+      : StreamingEventUtil.decodeEvents(delivered, typeToken);
 
-    return deferred.promise();
+    connect(deferred, false);
+
+    return result;
   }
 
   @Override
-  public void stopListening() {
-    if (currentListener == null) {
+  public synchronized void stopListening() {
+    if (!active) {
       throw new FirebaseInvalidStateException(FirebaseRuntimeException.ErrorCode.EventStreamListenerNotActive, "The EventStream is currently not active");
     }
 
-    currentListener.done();
-    currentListener = null;
+    active = false;
+
+    if (currentListener != null) {
+      // The promise will be resolved once the connection was closed
+      currentListener.close();
+      currentListener = null;
+    } else if (currentDeferred.isPending()) {
+      // Waiting for a reconnect attempt
+      currentDeferred.resolve(null);
+    }
+  }
+
+  @Override
+  public EventStreamStatistics getStatistics() {
+    return metrics.getStatistics();
   }
 
   @Override
   public FirebaseRestEventStream getRoot() {
     LOG.debug("getRoot() invoked for reference {}", referenceUrl);
     return new FirebaseRestEventStreamImpl(
-      asyncHttpClient,
+      transport,
       gson,
       fbBaseUrl,
       fbAccessToken,
-      ""
+      "",
+      resources
     );
   }
 
@@ -104,11 +154,12 @@ class FirebaseRestEventStreamImpl extends FirebaseDocumentLocation implements Fi
   public FirebaseRestEventStream getParent() {
     LOG.debug("getParent() invoked for reference {}", referenceUrl);
     return new FirebaseRestEventStreamImpl(
-      asyncHttpClient,
+      transport,
       gson,
       fbBaseUrl,
       fbAccessToken,
-      PathUtil.getParent(path)
+      PathUtil.getParent(path),
+      resources
     );
   }
 
@@ -116,109 +167,285 @@ class FirebaseRestEventStreamImpl extends FirebaseDocumentLocation implements Fi
   public FirebaseRestEventStream child(String childPath) {
     LOG.debug("child({}) invoked for reference {}", childPath, referenceUrl);
     return new FirebaseRestEventStreamImpl(
-      asyncHttpClient,
+      transport,
       gson,
       fbBaseUrl,
       fbAccessToken,
-      PathUtil.concatenatePath(path, childPath)
+      PathUtil.concatenatePath(path, childPath),
+      resources
     );
   }
 
+  private Promise<Void, FirebaseRuntimeException, StreamingEvent> deliver(final Deferred<Void, FirebaseRuntimeException, StreamingEvent> deferred) {
+    final EventDelivery delivery = resources.getEventDelivery();
+    if (!delivery.isEnabled()) {
+      return deferred.promise();
+    }
+
+    return delivery.deliver(deferred.promise(), new EventDelivery.OverflowHandler() {
+      @Override
+      public void onOverflow(FirebaseRuntimeException error) {
+        failConnection(deferred, error);
+      }
+    });
+  }
+
+  /**
+   * Rejects the promise and closes the connection without a reconnect attempt.
+   */
+  private synchronized void failConnection(Deferred<Void, FirebaseRuntimeException, StreamingEvent> deferred, FirebaseRuntimeException error) {
+    if (!deferred.isPending()) {
+      return;
+    }
+
+    LOG.error("EventStream for location '{}' failed", referenceUrl, error);
+    deferred.reject(error);
+
+    if (deferred == currentDeferred && currentListener != null) {
+      currentListener.close();
+      currentListener = null;
+    }
+  }
+
+  private void connect(Deferred<Void, FirebaseRuntimeException, StreamingEvent> deferred, boolean reconnect) {
+    final HttpStreamHandler streamHandler = createStreamHandler(deferred, ++connectionId, reconnect);
+    metrics.onConnecting();
+    currentListener = transport.stream(eventStreamRequest, streamHandler);
+  }
+
+  /**
+   * Invoked once a connection was closed or failed. The promise is settled, unless the connection is reopened.
+   */
+  private synchronized void onConnectionClosed(Deferred<Void, FirebaseRuntimeException, StreamingEvent> deferred, int closedConnectionId, FirebaseRuntimeException error) {
+    if (!deferred.isPending()) {
+      return;
+    }
+
+    if (active && reconnector.isEnabled() && deferred == currentDeferred) {
+      if (closedConnectionId == connectionId) {
+        currentListener = null;
+        scheduleReconnect(deferred, error);
+      }
+      return;
+    }
+
+    if (error != null) {
+      deferred.reject(error);
+    } else {
+      deferred.resolve(null);
+    }
+  }
+
+  private void scheduleReconnect(final Deferred<Void, FirebaseRuntimeException, StreamingEvent> deferred, FirebaseRuntimeException error) {
+    final int attempt = ++reconnectAttempt;
+    LOG.warn("EventStream for location '{}' was closed, reconnect attempt {} scheduled", referenceUrl, attempt, error);
+
+    reconnector.scheduleReconnect(attempt, new Runnable() {
+      @Override
+      public void run() {
+        reconnect(deferred);
+      }
+    });
+  }
+
+  private synchronized void reconnect(Deferred<Void, FirebaseRuntimeException, StreamingEvent> deferred) {
+    if (!active || deferred != currentDeferred) {
+      reconnector.release();
+      return;
+    }
+
+    LOG.info("Reconnecting EventStream for location '{}'", referenceUrl);
+    try {
+      connect(deferred, true);
+    } catch (RuntimeException ex) {
+      reconnector.release();
+      scheduleReconnect(deferred, new FirebaseRestException(FirebaseRuntimeException.ErrorCode.EventStreamRequestFailed, "EventStream request for location '" + referenceUrl + "' failed", ex));
+    }
+  }
+
+  /**
+   * Cancels the given connection, if it is still the current one. The cancellation is reported to the connection's
+   * handler as a failure.
+   */
+  private void cancelConnection(int cancelledConnectionId) {
+    final HttpStream listener;
+    synchronized (this) {
+      listener = cancelledConnectionId == connectionId ? currentListener : null;
+    }
+
+    if (listener != null) {
+      listener.cancel();
+    }
+  }
+
+  private synchronized void onReconnected(Deferred<Void, FirebaseRuntimeException, StreamingEvent> deferred) {
+    reconnectAttempt = 0;
+    metrics.onReconnected();
+
+    if (deferred.isPending()) {
+      // The next Set event contains the complete value of the location
+      deferred.notify(new StreamingEvent(gson, StreamingEvent.EventType.Resync, null));
+    }
+  }
+
   @SuppressWarnings({"PMD.ExcessiveMethodLength", "checkstyle:anoninnerlength"})
-  private AsyncHandler<Void> createAsyncHandler(final Deferred<Void, FirebaseRuntimeException, StreamingEvent> deferred) {
-    return new AsyncHandler<Void>() {
+  private HttpStreamHandler createStreamHandler(
+    final Deferred<Void, FirebaseRuntimeException, StreamingEvent> deferred,
+    final int handlerConnectionId,
+    final boolean reconnect) {
+
+    // A new parser for every request, since an incomplete event must not be carried over to the next connection
+    final EventStreamParser parser = new EventStreamParser(createEventHandler(deferred));
+    // The permit of a reconnect attempt is held until the connection was established or failed
+    final AtomicBoolean holdsReconnectPermit = new AtomicBoolean(reconnect);
+    // Only the first of the failure and completion callbacks of a connection closes it
+    final AtomicBoolean closed = new AtomicBoolean();
+    // Set by the watchdog before the connection is cancelled, which is reported as a failure of the connection
+    final AtomicBoolean stalled = new AtomicBoolean();
+
+    watchdog.watch(new EventStreamWatchdog.WatchedConnection() {
       @Override
-      public void onThrowable(Throwable t) {
-        final String message = "EventStream request for location '" + referenceUrl + "' failed";
-        LOG.error(message, t);
-        deferred.reject(new FirebaseRestException(FirebaseRuntimeException.ErrorCode.EventStreamRequestFailed, message, t));
+      public boolean isOpen() {
+        return !closed.get();
       }
 
       @Override
-      public STATE onBodyPartReceived(HttpResponseBodyPart bodyPart) throws Exception {
-        LOG.debug("Received event");
+      public long getLastActivityNanos() {
+        return metrics.getLastActivityNanos();
+      }
 
-        final StreamingEvent response = parseResponse(bodyPart.getBodyPartBytes());
+      @Override
+      public void onStalled() {
+        LOG.warn("EventStream for location '{}' did not receive any data within the timeout", referenceUrl);
+        stalled.set(true);
+        metrics.onStalled();
+        cancelConnection(handlerConnectionId);
+      }
+    });
 
-        switch (response.getEventType()) {
-          case KeepAlive:
-            break;
-          case Cancel:
-            deferred.reject(new FirebaseAccessException(referenceUrl));
-            break;
-          case Expired:
-            deferred.reject(new FirebaseAuthenticationExpiredException(referenceUrl));
-            break;
-          default:
-            deferred.notify(response);
-            break;
+    return new HttpStreamHandler() {
+      @Override
+      public void onThrowable(Throwable t) {
+        if (stalled.get()) {
+          close(new FirebaseRestException(
+            FirebaseRuntimeException.ErrorCode.EventStreamStalled,
+            "EventStream for location '" + referenceUrl + "' stalled",
+            new TimeoutException("No data received within " + TimeUnit.NANOSECONDS.toMillis(watchdog.getTimeoutNanos()) + " ms")
+          ));
+          return;
         }
 
-        return STATE.CONTINUE;
+        final String message = "EventStream request for location '" + referenceUrl + "' failed";
+        LOG.error(message, t);
+        close(new FirebaseRestException(FirebaseRuntimeException.ErrorCode.EventStreamRequestFailed, message, t));
       }
 
       @Override
-      public STATE onStatusReceived(HttpResponseStatus responseStatus) throws Exception {
+      public void onBodyPartReceived(byte[] bytes, int offset, int length) {
+        LOG.debug("Received body part");
+
+        metrics.onBytesReceived(length);
+        parser.parse(bytes, offset, length);
+      }
+
+      @Override
+      public boolean onStatusReceived(HttpStatus responseStatus) {
         LOG.info("Received Status: " + responseStatus.getStatusCode());
         switch (responseStatus.getStatusCode()) {
           // 307 = Temporary Redirect
           case 307:
+            break;
           case HttpURLConnection.HTTP_OK:
+            if (releaseReconnectPermit()) {
+              onReconnected(deferred);
+            }
             break;
           case HttpURLConnection.HTTP_UNAUTHORIZED:
           case HttpURLConnection.HTTP_FORBIDDEN:
             LOG.warn("The request to '{}' that violates the Security and Firebase Rules", referenceUrl);
-            deferred.reject(new FirebaseAccessException(responseStatus));
+            releaseReconnectPermit();
+            rejectIfPending(new FirebaseAccessException(responseStatus));
             break;
           default:
             LOG.error("Unsupported status code: " + responseStatus.getStatusCode());
-            deferred.reject(new FirebaseRestException(FirebaseRuntimeException.ErrorCode.UnsupportedStatusCode, responseStatus));
-            break;
+            final FirebaseRestException error = new FirebaseRestException(FirebaseRuntimeException.ErrorCode.UnsupportedStatusCode, responseStatus);
+            if (!isTransient(responseStatus.getStatusCode())) {
+              // Reopening the connection would fail with the same status code
+              rejectIfPending(error);
+            }
+            close(error);
+            // The body of the failed request is of no interest if the connection will be reopened
+            return !reconnector.isEnabled();
         }
 
-        return STATE.CONTINUE;
+        return true;
       }
 
       @Override
-      public STATE onHeadersReceived(HttpResponseHeaders headers) throws Exception {
-        LOG.debug("Received headers");
-        return STATE.CONTINUE;
-      }
-
-      @Override
-      public Void onCompleted() throws Exception {
+      public void onCompleted() {
         LOG.info("DONE");
-        deferred.resolve(null);
-        return null;
+        close(null);
       }
-    };
-  }
-
-  private StreamingEvent parseResponse(byte[] response) throws IOException {
 
-    try (ByteArrayInputStream is = new ByteArrayInputStream(response);
-         BufferedReader reader = new BufferedReader(new InputStreamReader(is, Charset.forName("UTF-8")))) {
+      private void close(FirebaseRuntimeException error) {
+        releaseReconnectPermit();
+        if (closed.compareAndSet(false, true)) {
+          metrics.onDisconnected();
+          onConnectionClosed(deferred, handlerConnectionId, error);
+        }
+      }
 
-      final StreamingEvent.EventType eventType = getEventType(reader.readLine());
-      final String eventData = getEventData(reader.readLine());
+      private boolean releaseReconnectPermit() {
+        if (holdsReconnectPermit.compareAndSet(true, false)) {
+          reconnector.release();
+          return true;
+        }
+        return false;
+      }
 
-      return new StreamingEvent(gson, eventType, eventData);
-    }
+      private void rejectIfPending(FirebaseRuntimeException ex) {
+        synchronized (FirebaseRestEventStreamImpl.this) {
+          if (deferred.isPending()) {
+            deferred.reject(ex);
+          }
+        }
+      }
+    };
   }
 
-  private StreamingEvent.EventType getEventType(String eventString) {
-    LOG.debug("Mapping event type -> " + eventString);
-
-    // eventString format -> event: <eventType>
-    return EVENT_TYPE_MAPPER.get(
-      eventString.replaceFirst("event:", "").trim().toLowerCase()
-    );
+  /**
+   * @return <code>true</code> if the status code is 429 or 5xx, so the stream may be reconnected.
+   */
+  private static boolean isTransient(int statusCode) {
+    return statusCode == STATUS_TOO_MANY_REQUESTS || statusCode >= STATUS_SERVER_ERROR;
   }
 
-  private String getEventData(String dataString) {
-    LOG.debug("Extracting event data -> " + dataString);
+  private EventStreamParser.EventHandler createEventHandler(final Deferred<Void, FirebaseRuntimeException, StreamingEvent> deferred) {
+    return new EventStreamParser.EventHandler() {
+      @Override
+      public void onEvent(StreamingEvent.EventType eventType, byte[] eventData) {
+        LOG.debug("Received event {}", eventType);
+        metrics.onEvent(eventType);
+
+        if (!deferred.isPending()) {
+          // A body part may contain further events after a cancel or auth_revoked event
+          return;
+        }
 
-    // dataString format -> data: <data>
-    return dataString.replaceFirst("data:", "").trim();
+        switch (eventType) {
+          case KeepAlive:
+            break;
+          case Cancel:
+            deferred.reject(new FirebaseAccessException(referenceUrl));
+            break;
+          case Expired:
+            deferred.reject(new FirebaseAuthenticationExpiredException(referenceUrl));
+            break;
+          default:
+            deferred.notify(StreamingEvent.fromBytes(gson, eventType, eventData));
+            break;
+        }
+      }
+    };
   }
 }
@@ -1,5 +1,6 @@
 package org.restonfire;
 
+import com.google.gson.reflect.TypeToken;
 import org.jdeferred.Promise;
 import org.restonfire.exceptions.FirebaseRuntimeException;
 
@@ -125,4 +126,25 @@ public interface FirebaseRestQuery {
    * @return A promise which will be resolved with the POJO generated from the response if the request was successful.
    */
   <T> Promise<T, FirebaseRuntimeException, Void> run(Class<T> clazz);
+
+  /**
+   * Executes the query like {@link #run(Class)}, but deserializes the result into a generic type, i.e.
+   * <code>new TypeToken&lt;Map&lt;String, MyPojo&gt;&gt;() { }</code>. The response is decoded only once, straight
+   * into the target type.<br>
+   * <br>
+   * The promise returned will be rejected with the following two exceptions:<br>
+   * <ul>
+   *   <li><b>org.restonfire.exceptions.FirebaseAccessException</b> - A {@link FirebaseRuntimeException} in the case that
+   *        access to the data for this reference was denied.
+   *   </li>
+   *   <li><b>org.restonfire.exceptions.FirebaseRestException</b> - A {@link FirebaseRuntimeException} in the case that an
+   *        unexpected status code was returned or the deserialization of the response into the type parameter fails.
+   *   </li>
+   * </ul>
+   * @param typeToken The {@link TypeToken} representing the type of the data returned by the request, including its
+   *                  type parameters.
+   * @param <T> The type of the result object.
+   * @return A promise which will be resolved with the object generated from the response if the request was successful.
+   */
+  <T> Promise<T, FirebaseRuntimeException, Void> run(TypeToken<T> typeToken);
 }
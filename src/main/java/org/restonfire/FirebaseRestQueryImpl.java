@@ -1,21 +1,21 @@
 package org.restonfire;
 
 import com.google.gson.Gson;
-import com.ning.http.client.AsyncCompletionHandler;
-import com.ning.http.client.AsyncHttpClient;
-import com.ning.http.client.Param;
-import com.ning.http.client.Response;
+import com.google.gson.reflect.TypeToken;
 import org.jdeferred.Deferred;
 import org.jdeferred.Promise;
 import org.jdeferred.impl.DeferredObject;
 import org.restonfire.exceptions.FirebaseInvalidStateException;
 import org.restonfire.exceptions.FirebaseRuntimeException;
+import org.restonfire.transport.HttpRequest;
+import org.restonfire.transport.HttpResponse;
+import org.restonfire.transport.HttpTransport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
+import java.lang.reflect.Type;
 import java.util.HashMap;
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -33,19 +33,37 @@ class FirebaseRestQueryImpl implements FirebaseRestQuery {
   private static final String LIMIT_LAST = "limitToLast";
 
   private final Gson gson;
+  private final HttpTransport transport;
   private final String referenceUrl;
-  private final AsyncHttpClient.BoundRequestBuilder queryRequest;
+  private final String fbAccessToken;
+  private final String path;
+  private final RequestCoalescer requestCoalescer;
 
   private final Map<String, String> queryParams = new HashMap<>();
 
   FirebaseRestQueryImpl(
     Gson gson,
-    AsyncHttpClient.BoundRequestBuilder requestBuilder,
-    String referenceUrl
+    HttpTransport transport,
+    String referenceUrl,
+    String fbAccessToken
+  ) {
+    this(gson, transport, referenceUrl, fbAccessToken, "", new RequestCoalescer(false));
+  }
+
+  FirebaseRestQueryImpl(
+    Gson gson,
+    HttpTransport transport,
+    String referenceUrl,
+    String fbAccessToken,
+    String path,
+    RequestCoalescer requestCoalescer
   ) {
     this.gson = gson;
-    this.queryRequest = requestBuilder;
+    this.transport = transport;
     this.referenceUrl = referenceUrl;
+    this.fbAccessToken = fbAccessToken;
+    this.path = path;
+    this.requestCoalescer = requestCoalescer;
   }
 
   @Override
@@ -99,33 +117,53 @@ class FirebaseRestQueryImpl implements FirebaseRestQuery {
   }
 
   @Override
-  public <T> Promise<T, FirebaseRuntimeException, Void> run(final Class<T> clazz) {
-    LOG.debug("Running query({}) invoked for reference {}. Filters: {}", clazz, referenceUrl, gson.toJson(queryParams));
+  public <T> Promise<T, FirebaseRuntimeException, Void> run(Class<T> clazz) {
+    return runQuery(clazz);
+  }
+
+  @Override
+  public <T> Promise<T, FirebaseRuntimeException, Void> run(TypeToken<T> typeToken) {
+    return runQuery(typeToken.getType());
+  }
 
-    final List<Param> params = new ArrayList<>(queryParams.size());
+  private <T> Promise<T, FirebaseRuntimeException, Void> runQuery(final Type type) {
+    LOG.debug("Running query({}) invoked for reference {}. Filters: {}", type, referenceUrl, gson.toJson(queryParams));
 
-    for (Map.Entry<String, String> entry : queryParams.entrySet()) {
-      params.add(new Param(entry.getKey(), entry.getValue()));
-    }
+    // A copy, since the query may be modified while the request is in flight
+    final Map<String, String> params = new LinkedHashMap<>(queryParams);
+
+    return requestCoalescer.execute(
+      path,
+      RequestCoalescer.createKey(referenceUrl, queryParams, type),
+      new RequestCoalescer.Request<T>() {
+        @Override
+        public Promise<T, FirebaseRuntimeException, Void> execute() {
+          return executeQuery(params, type);
+        }
+      }
+    );
+  }
 
-    if (!params.isEmpty()) {
-      queryRequest.addQueryParams(params);
+  private <T> Promise<T, FirebaseRuntimeException, Void> executeQuery(Map<String, String> params, final Type type) {
+    // A new request is created for every run, as the request accumulates the query params
+    final HttpRequest queryRequest = RequestBuilderUtil.createGet(referenceUrl, fbAccessToken);
+    for (Map.Entry<String, String> param : params.entrySet()) {
+      queryRequest.addQueryParam(param.getKey(), param.getValue());
     }
 
     final Deferred<T, FirebaseRuntimeException, Void> deferred = new DeferredObject<>();
 
-    queryRequest.execute(new AsyncCompletionHandler<Void>() {
+    transport.execute(queryRequest, new DeferredResponseHandler(deferred) {
 
       @Override
-      public Void onCompleted(Response response) throws Exception {
+      public void onCompleted(HttpResponse response) {
         try {
-          LOG.debug("Request for getValue({}) completed", clazz);
-          final T result = handleResponse(response, clazz);
+          LOG.debug("Request for getValue({}) completed", type);
+          final T result = handleResponse(response, type);
           deferred.resolve(result);
         } catch (FirebaseRuntimeException ex) {
           deferred.reject(ex);
         }
-        return null;
       }
     });
 
@@ -142,7 +180,7 @@ class FirebaseRestQueryImpl implements FirebaseRestQuery {
     return this;
   }
 
-  private <T> T handleResponse(Response response, Class<T> clazz) {
-    return RestUtil.handleResponse(gson, referenceUrl, response, clazz);
+  private <T> T handleResponse(HttpResponse response, Type type) {
+    return RestUtil.handleResponse(gson, referenceUrl, response, type);
   }
 }
@@ -1,8 +1,13 @@
 package org.restonfire;
 
 
+import com.google.gson.reflect.TypeToken;
 import org.jdeferred.Promise;
 import org.restonfire.exceptions.FirebaseRuntimeException;
+import org.restonfire.responses.ETaggedValue;
+
+import java.util.Iterator;
+import java.util.Map;
 
 /**
  * A {@link FirebaseRestReference} represents a specific location within a Firebase database and allows
@@ -40,6 +45,68 @@ public interface FirebaseRestReference {
    */
   <T> Promise<T, FirebaseRuntimeException, Void> getValue(Class<T> clazz);
 
+  /**
+   * Retrieves the value for this reference URL from Firebase and deserializes it into a generic type, i.e.
+   * <code>new TypeToken&lt;Map&lt;String, MyPojo&gt;&gt;() { }</code>. The response is decoded only once, straight
+   * into the target type.<br>
+   * <br>
+   * The promise returned will be rejected with the following two exceptions:<br>
+   * <ul>
+   *   <li><b>org.restonfire.exceptions.FirebaseAccessException</b> - A {@link FirebaseRuntimeException} in the case that
+   *        access to the data for this reference was denied.
+   *   </li>
+   *   <li><b>org.restonfire.exceptions.FirebaseRestException</b> - A {@link FirebaseRuntimeException} in the case that an
+   *        unexpected status code was returned or the deserialization of the response into the type parameter fails.
+   *   </li>
+   * </ul>
+   * @param typeToken The {@link TypeToken} representing the type of the data returned by the request, including its
+   *                  type parameters.
+   * @param <T> The type of the result object.
+   * @return A promise which will be resolved with the object generated from the response if the request was successful.
+   */
+  <T> Promise<T, FirebaseRuntimeException, Void> getValue(TypeToken<T> typeToken);
+
+  /**
+   * Retrieves the value for this reference URL from Firebase together with its ETag. The ETag identifies the
+   * current state of the location and can be passed to {@link #getValueIfChanged(Class, ETaggedValue)}.<br>
+   * <br>
+   * The promise returned will be rejected with the following two exceptions:<br>
+   * <ul>
+   *   <li><b>org.restonfire.exceptions.FirebaseAccessException</b> - A {@link FirebaseRuntimeException} in the case that
+   *        access to the data for this reference was denied.
+   *   </li>
+   *   <li><b>org.restonfire.exceptions.FirebaseRestException</b> - A {@link FirebaseRuntimeException} in the case that an
+   *        unexpected status code was returned or the deserialization of the response into the type parameter fails.
+   *   </li>
+   * </ul>
+   * @param clazz The {@link Class} type for the POJO to be created for the data returned by the request.
+   * @param <T> The type of the result object.
+   * @return A promise which will be resolved with the POJO and the ETag of the location if the request was successful.
+   * @see <a href="https://firebase.google.com/docs/reference/rest/database/#section-conditional-requests">Firebase Conditional Requests Documentation</a>
+   */
+  <T> Promise<ETaggedValue<T>, FirebaseRuntimeException, Void> getValueWithETag(Class<T> clazz);
+
+  /**
+   * Retrieves the value for this reference URL from Firebase, unless its ETag still matches the ETag of the
+   * previously retrieved value. In this case, the download of the response body is skipped and the promise will be
+   * resolved with the provided <code>previousValue</code> instance.<br>
+   * <br>
+   * The promise returned will be rejected with the following two exceptions:<br>
+   * <ul>
+   *   <li><b>org.restonfire.exceptions.FirebaseAccessException</b> - A {@link FirebaseRuntimeException} in the case that
+   *        access to the data for this reference was denied.
+   *   </li>
+   *   <li><b>org.restonfire.exceptions.FirebaseRestException</b> - A {@link FirebaseRuntimeException} in the case that an
+   *        unexpected status code was returned or the deserialization of the response into the type parameter fails.
+   *   </li>
+   * </ul>
+   * @param clazz The {@link Class} type for the POJO to be created for the data returned by the request.
+   * @param previousValue The value previously retrieved by {@link #getValueWithETag(Class)} or this function.
+   * @param <T> The type of the result object.
+   * @return A promise which will be resolved with the current value and ETag of the location.
+   */
+  <T> Promise<ETaggedValue<T>, FirebaseRuntimeException, Void> getValueIfChanged(Class<T> clazz, ETaggedValue<T> previousValue);
+
   /**
    * Retrieves the <b>shallow</b> value for this reference URL from Firebase.
    * This will limit the depth of the data returned at a location. If the data
@@ -102,6 +169,32 @@ public interface FirebaseRestReference {
    */
   <T> Promise updateValue(T value);
 
+  /**
+   * Atomically modifies the value for this reference URL. The current value is retrieved with its ETag and passed to
+   * the {@link TransactionHandler}. The new value is then written with a conditional request, which only succeeds
+   * if the location was not modified in the meantime. Otherwise, the handler is invoked again with the latest value
+   * after a short, randomized delay.<br>
+   * <br>
+   * The promise returned will be rejected with the following exceptions:<br>
+   * <ul>
+   *   <li><b>org.restonfire.exceptions.FirebaseAccessException</b> - A {@link FirebaseRuntimeException} in the case that
+   *        access to the data for this reference was denied.
+   *   </li>
+   *   <li><b>org.restonfire.exceptions.FirebaseRestException</b> - A {@link FirebaseRuntimeException} in the case that an
+   *        unexpected status code was returned or the deserialization of the response into the type parameter fails.
+   *   </li>
+   *   <li><b>org.restonfire.exceptions.FirebaseTransactionException</b> - A {@link FirebaseRuntimeException} in the case
+   *        that the handler threw an exception or the value was modified concurrently too many times.
+   *   </li>
+   * </ul>
+   * @param clazz The {@link Class} type for the POJO to be created for the current value.
+   * @param handler The {@link TransactionHandler} calculating the new value.
+   * @param <T> The type of the value.
+   * @return A promise which will be resolved with the value that was written to Firebase.
+   * @see <a href="https://firebase.google.com/docs/reference/rest/database/#section-conditional-requests">Firebase Conditional Requests Documentation</a>
+   */
+  <T> Promise<T, FirebaseRuntimeException, Void> transaction(Class<T> clazz, TransactionHandler<T> handler);
+
   /**
    * Removes the value for this reference URL from Firebase. This is the equivalent to setting the value
    * to <code>null</code>.<br>
@@ -176,6 +269,59 @@ public interface FirebaseRestReference {
    */
   FirebaseRestQuery query();
 
+  /**
+   * Returns an {@link Iterator} over the children of this location in key order. The children are retrieved in pages
+   * of <code>pageSize</code> children with key-ordered range queries, so collections of any size can be processed
+   * with a bounded amount of memory. While the current page is consumed, up to <code>prefetchPages</code> following
+   * pages are requested in the background.<br>
+   * <br>
+   * The iterator blocks until the next page was received and must therefore not be used on the threads of the
+   * {@link org.restonfire.transport.HttpTransport}, i.e. within the callbacks of a {@link Promise}. A failed request
+   * will be thrown as a {@link FirebaseRuntimeException} by the <code>hasNext()</code> and <code>next()</code>
+   * functions.
+   *
+   * @param clazz The {@link Class} type for the POJOs to be created for the children.
+   * @param pageSize The number of children retrieved with a single request.
+   * @param prefetchPages The maximum number of pages retrieved ahead of the page that is currently consumed.
+   * @param <T> The type of the children.
+   * @return An {@link Iterator} of the keys and values of the children, sorted by key.
+   * @see <a href="https://firebase.google.com/docs/database/rest/retrieve-data#orderbykey">Firebase Order By Key Documentation</a>
+   */
+  <T> Iterator<Map.Entry<String, T>> scanChildren(Class<T> clazz, int pageSize, int prefetchPages);
+
+  /**
+   * Retrieves the value for this reference URL with one request per child instead of a single request. The keys of
+   * the children are retrieved with a shallow request first, then the children are requested concurrently, with at
+   * most <code>maxConcurrentRequests</code> requests in flight at any time. This allows for retrieving values that
+   * exceed the response size limit of Firebase and scales the duration with the concurrency rather than the size of
+   * the value.<br>
+   * <br>
+   * Every child is published through the progress callback of the promise as soon as it was received. Once all
+   * children were received, the promise will be resolved with a map of all children sorted by key.<br>
+   * <br>
+   * The promise will be rejected with the first exception of any of the requests, see {@link #getValue(Class)}. If
+   * the value of this location is a primitive, it will be rejected with a
+   * <b>org.restonfire.exceptions.FirebaseInvalidStateException</b>.
+   *
+   * @param clazz The {@link Class} type for the POJOs to be created for the children.
+   * @param maxConcurrentRequests The maximum number of child requests in flight at the same time.
+   * @param <T> The type of the children.
+   * @return A promise which will be resolved with the children of this location, keyed by their names.
+   */
+  <T> Promise<Map<String, T>, FirebaseRuntimeException, Map.Entry<String, T>> getValueParallel(Class<T> clazz, int maxConcurrentRequests);
+
+  /**
+   * Retrieves the children of this reference URL like {@link #getValueParallel(Class, int)}, but only publishes
+   * them through the progress callback of the promise without retaining them. This allows for processing values
+   * that are too large to be held on the heap at once.
+   *
+   * @param clazz The {@link Class} type for the POJOs to be created for the children.
+   * @param maxConcurrentRequests The maximum number of child requests in flight at the same time.
+   * @param <T> The type of the children.
+   * @return A promise which will be resolved with <code>null</code> once all children were received.
+   */
+  <T> Promise<Void, FirebaseRuntimeException, Map.Entry<String, T>> forEachChildParallel(Class<T> clazz, int maxConcurrentRequests);
+
   /**
    * Sets the priority in Firebase for this reference URL. Providing a <code>null</code> value is the equivalent of
    * removing the priority at this location.<br>
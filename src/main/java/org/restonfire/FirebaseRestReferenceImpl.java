@@ -1,18 +1,34 @@
 package org.restonfire;
 
 import com.google.gson.Gson;
-import com.ning.http.client.AsyncCompletionHandler;
-import com.ning.http.client.AsyncHttpClient;
-import com.ning.http.client.Response;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.reflect.TypeToken;
 import org.jdeferred.Deferred;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.FailCallback;
+import org.jdeferred.ProgressCallback;
 import org.jdeferred.Promise;
 import org.jdeferred.impl.DeferredObject;
+import org.restonfire.exceptions.FirebaseRestException;
 import org.restonfire.exceptions.FirebaseRuntimeException;
+import org.restonfire.exceptions.FirebaseTransactionException;
+import org.restonfire.responses.ETaggedValue;
 import org.restonfire.responses.PushResponse;
+import org.restonfire.transport.HttpHeaders;
+import org.restonfire.transport.HttpRequest;
+import org.restonfire.transport.HttpResponse;
+import org.restonfire.transport.HttpStatus;
+import org.restonfire.transport.HttpTransport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
+import java.lang.reflect.Type;
+import java.net.HttpURLConnection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * {@link FirebaseRestReference} implementation.
@@ -22,42 +38,77 @@ final class FirebaseRestReferenceImpl extends FirebaseDocumentLocation implement
   private static final Logger LOG = LoggerFactory.getLogger(FirebaseRestReferenceImpl.class);
 
   private static final String PRIORITY_PATH = ".priority";
+  private static final String SHALLOW_PARAM = "shallow";
+
+  private static final int MAX_TRANSACTION_ATTEMPTS = 25;
+  private static final long TRANSACTION_INITIAL_RETRY_DELAY_MS = 10;
+  private static final long TRANSACTION_MAX_RETRY_DELAY_MS = 1000;
 
   private final Gson gson;
-  private final AsyncHttpClient asyncHttpClient;
+  private final HttpTransport transport;
+  private final DatabaseResources resources;
+  private final ValueCache valueCache;
+  private final RequestCoalescer requestCoalescer;
+  private final WriteCoalescer writeCoalescer;
+  private final String trimmedPath;
 
   FirebaseRestReferenceImpl(
-    AsyncHttpClient asyncHttpClient,
+    HttpTransport transport,
     Gson gson,
     String fbBaseUrl,
     String fbAccessToken,
     String path) {
 
+    this(transport, gson, fbBaseUrl, fbAccessToken, path, DatabaseResources.createDefault());
+  }
+
+  FirebaseRestReferenceImpl(
+    HttpTransport transport,
+    Gson gson,
+    String fbBaseUrl,
+    String fbAccessToken,
+    String path,
+    DatabaseResources resources) {
+
     super(fbBaseUrl, path, fbAccessToken);
 
     this.gson = gson;
-    this.asyncHttpClient = asyncHttpClient;
+    this.transport = transport;
+    this.resources = resources;
+    this.valueCache = resources.getValueCache();
+    this.requestCoalescer = resources.getRequestCoalescer();
+    this.writeCoalescer = resources.getWriteCoalescer();
+    this.trimmedPath = PathUtil.trimPath(path);
   }
 
   @Override
-  public <T> Promise<T, FirebaseRuntimeException, Void> getValue(final Class<T> clazz) {
-    LOG.debug("getValue({}) invoked for reference {}", clazz, referenceUrl);
-    final Deferred<T, FirebaseRuntimeException, Void> deferred = new DeferredObject<>();
+  public <T> Promise<T, FirebaseRuntimeException, Void> getValue(Class<T> clazz) {
+    return getTypedValue(clazz);
+  }
 
-    final AsyncHttpClient.BoundRequestBuilder getRequest = RequestBuilderUtil.createGet(asyncHttpClient, referenceUrl, fbAccessToken);
+  @Override
+  public <T> Promise<T, FirebaseRuntimeException, Void> getValue(TypeToken<T> typeToken) {
+    return getTypedValue(typeToken.getType());
+  }
+
+  @Override
+  public <T> Promise<ETaggedValue<T>, FirebaseRuntimeException, Void> getValueWithETag(final Class<T> clazz) {
+    LOG.debug("getValueWithETag({}) invoked for reference {}", clazz, referenceUrl);
+    final Deferred<ETaggedValue<T>, FirebaseRuntimeException, Void> deferred = new DeferredObject<>();
+
+    final HttpRequest getRequest = RequestBuilderUtil.createETagGet(referenceUrl, fbAccessToken);
 
-    getRequest.execute(new AsyncCompletionHandler<Void>() {
+    transport.execute(getRequest, new DeferredResponseHandler(deferred) {
 
       @Override
-      public Void onCompleted(Response response) throws Exception {
+      public void onCompleted(HttpResponse response) {
         try {
-          LOG.debug("Request for getValue({}) completed", clazz);
+          LOG.debug("Request for getValueWithETag({}) completed", clazz);
           final T result = handleResponse(response, clazz);
-          deferred.resolve(result);
+          deferred.resolve(new ETaggedValue<>(result, response.getHeader(RequestBuilderUtil.ETAG_HEADER)));
         } catch (FirebaseRuntimeException ex) {
           deferred.reject(ex);
         }
-        return null;
       }
     });
 
@@ -65,44 +116,82 @@ final class FirebaseRestReferenceImpl extends FirebaseDocumentLocation implement
   }
 
   @Override
-  public Promise<Object, FirebaseRuntimeException, Void> getShallowValue() {
-    LOG.debug("getShallowValue() invoked for reference {}", referenceUrl);
-    final Deferred<Object, FirebaseRuntimeException, Void> deferred = new DeferredObject<>();
+  public <T> Promise<ETaggedValue<T>, FirebaseRuntimeException, Void> getValueIfChanged(final Class<T> clazz, final ETaggedValue<T> previousValue) {
+    if (previousValue == null || previousValue.getETag() == null) {
+      return getValueWithETag(clazz);
+    }
 
-    final AsyncHttpClient.BoundRequestBuilder getRequest = RequestBuilderUtil.createGet(asyncHttpClient, referenceUrl, fbAccessToken);
-    getRequest.addQueryParam("shallow", "true");
+    LOG.debug("getValueIfChanged({}, {}) invoked for reference {}", clazz, previousValue.getETag(), referenceUrl);
+    final Deferred<ETaggedValue<T>, FirebaseRuntimeException, Void> deferred = new DeferredObject<>();
 
-    getRequest.execute(new AsyncCompletionHandler<Void>() {
+    final HttpRequest getRequest = RequestBuilderUtil.createETagGet(referenceUrl, fbAccessToken);
+
+    transport.execute(getRequest, new DeferredResponseHandler(deferred) {
+
+      @Override
+      public boolean onHeadersReceived(HttpStatus status, HttpHeaders headers) {
+        final String eTag = headers.getHeader(RequestBuilderUtil.ETAG_HEADER);
+        if (status.getStatusCode() == HttpURLConnection.HTTP_OK && previousValue.getETag().equals(eTag)) {
+          // The value has not changed, so there is no need to download the body
+          LOG.debug("Value for reference {} is unchanged, skipping the response body", referenceUrl);
+          deferred.resolve(previousValue);
+          return false;
+        }
+
+        return true;
+      }
 
       @Override
-      public Void onCompleted(Response response) throws Exception {
+      public void onCompleted(HttpResponse response) {
         try {
-          LOG.debug("Request for getShallowValue() completed");
-          final Object result = handleResponse(response, Object.class);
-          deferred.resolve(result);
+          LOG.debug("Request for getValueIfChanged({}) completed", clazz);
+          final T result = handleResponse(response, clazz);
+          deferred.resolve(new ETaggedValue<>(result, response.getHeader(RequestBuilderUtil.ETAG_HEADER)));
         } catch (FirebaseRuntimeException ex) {
           deferred.reject(ex);
         }
-        return null;
       }
     });
 
     return deferred.promise();
   }
 
+  @Override
+  public Promise<Object, FirebaseRuntimeException, Void> getShallowValue() {
+    LOG.debug("getShallowValue() invoked for reference {}", referenceUrl);
+
+    return requestCoalescer.execute(
+      path,
+      RequestCoalescer.createKey(referenceUrl, Collections.singletonMap(SHALLOW_PARAM, "true"), Object.class),
+      new RequestCoalescer.Request<Object>() {
+        @Override
+        public Promise<Object, FirebaseRuntimeException, Void> execute() {
+          return executeGetShallowValue();
+        }
+      }
+    );
+  }
+
   @Override
   public <T> Promise<T, FirebaseRuntimeException, Void> setValue(final T value) {
     LOG.debug("setValue({}) invoked for reference {}", value, referenceUrl);
+    if (writeCoalescer.isEnabled()) {
+      invalidateReads();
+      return writeCoalescer.submit(trimmedPath, true, gson.toJsonTree(value), value, createCoalescedWriteRequest());
+    }
+
     final Deferred<T, FirebaseRuntimeException, Void> deferred = new DeferredObject<>();
+    invalidateReads();
 
-    final AsyncHttpClient.BoundRequestBuilder putRequest = RequestBuilderUtil.createPut(asyncHttpClient, referenceUrl, fbAccessToken, gson.toJson(value));
+    final HttpRequest putRequest = RequestBuilderUtil.createPut(referenceUrl, fbAccessToken, gson.toJson(value));
 
-    putRequest.execute(new AsyncCompletionHandler<Void>() {
+    transport.execute(putRequest, new DeferredResponseHandler(deferred) {
 
       @Override
-      public Void onCompleted(Response response) throws Exception {
+      public void onCompleted(HttpResponse response) {
         LOG.debug("Request for setValue({}) completed for reference {}", value, referenceUrl);
-        return handleValueModifiedResponse(response, deferred, value);
+        invalidateReads();
+        handleValueModifiedResponse(response, deferred, value);
       }
     });
 
@@ -112,16 +201,59 @@ final class FirebaseRestReferenceImpl extends FirebaseDocumentLocation implement
   @Override
   public <T> Promise<T, FirebaseRuntimeException, Void> updateValue(final T value) {
     LOG.debug("updateValue({}) invoked for reference {}", value, referenceUrl);
+    if (writeCoalescer.isEnabled()) {
+      final JsonElement element = gson.toJsonTree(value);
+      if (element.isJsonObject()) {
+        invalidateReads();
+        return writeCoalescer.submit(trimmedPath, false, element, value, createCoalescedWriteRequest());
+      }
+    }
+
     final Deferred<T, FirebaseRuntimeException, Void> deferred = new DeferredObject<>();
+    invalidateReads();
+
+    final HttpRequest patchRequest = RequestBuilderUtil.createPatch(referenceUrl, fbAccessToken, gson.toJson(value));
 
-    final AsyncHttpClient.BoundRequestBuilder patchRequest = RequestBuilderUtil.createPatch(asyncHttpClient, referenceUrl, fbAccessToken, gson.toJson(value));
+    afterPendingWrites(deferred, new Runnable() {
+      @Override
+      public void run() {
+        transport.execute(patchRequest, new DeferredResponseHandler(deferred) {
+
+          @Override
+          public void onCompleted(HttpResponse response) {
+            LOG.debug("Request for updateValue({}) completed for reference {}", value, referenceUrl);
+            invalidateReads();
+            handleValueModifiedResponse(response, deferred, value);
+          }
+        });
+      }
+    });
+
+    return deferred.promise();
+  }
 
-    patchRequest.execute(new AsyncCompletionHandler<Void>() {
+  @Override
+  public <T> Promise<T, FirebaseRuntimeException, Void> transaction(final Class<T> clazz, final TransactionHandler<T> handler) {
+    LOG.debug("transaction({}) invoked for reference {}", clazz, referenceUrl);
+    final Deferred<T, FirebaseRuntimeException, Void> deferred = new DeferredObject<>();
+    invalidateReads();
 
+    afterPendingWrites(deferred, new Runnable() {
       @Override
-      public Void onCompleted(Response response) throws Exception {
-        LOG.debug("Request for updateValue({}) completed for reference {}", value, referenceUrl);
-        return handleValueModifiedResponse(response, deferred, value);
+      public void run() {
+        getValueWithETag(clazz)
+          .done(new DoneCallback<ETaggedValue<T>>() {
+            @Override
+            public void onDone(ETaggedValue<T> currentValue) {
+              executeTransactionAttempt(clazz, handler, currentValue, 1, deferred);
+            }
+          })
+          .fail(new FailCallback<FirebaseRuntimeException>() {
+            @Override
+            public void onFail(FirebaseRuntimeException ex) {
+              deferred.reject(ex);
+            }
+          });
       }
     });
 
@@ -131,16 +263,24 @@ final class FirebaseRestReferenceImpl extends FirebaseDocumentLocation implement
   @Override
   public Promise<Void, FirebaseRuntimeException, Void> removeValue() {
     LOG.debug("removeValue() invoked for reference {}", referenceUrl);
+    if (writeCoalescer.isEnabled()) {
+      // A remove is a set to null, so it replaces the pending set or update of the location
+      invalidateReads();
+      return writeCoalescer.submit(trimmedPath, true, JsonNull.INSTANCE, (Void) null, createCoalescedWriteRequest());
+    }
+
     final Deferred<Void, FirebaseRuntimeException, Void> deferred = new DeferredObject<>();
+    invalidateReads();
 
-    final AsyncHttpClient.BoundRequestBuilder deleteRequest = RequestBuilderUtil.createDelete(asyncHttpClient, referenceUrl, fbAccessToken);
+    final HttpRequest deleteRequest = RequestBuilderUtil.createDelete(referenceUrl, fbAccessToken);
 
-    deleteRequest.execute(new AsyncCompletionHandler<Void>() {
+    transport.execute(deleteRequest, new DeferredResponseHandler(deferred) {
 
       @Override
-      public Void onCompleted(Response response) throws Exception {
+      public void onCompleted(HttpResponse response) {
         LOG.debug("Request for removeValue() completed for reference {}", referenceUrl);
-        return handleValueModifiedResponse(response, deferred, null);
+        invalidateReads();
+        handleValueModifiedResponse(response, deferred, null);
       }
     });
 
@@ -151,14 +291,21 @@ final class FirebaseRestReferenceImpl extends FirebaseDocumentLocation implement
   public Promise<FirebaseRestReference, FirebaseRuntimeException, Void> push() {
     LOG.debug("push() invoked for reference {}", referenceUrl);
     final Deferred<FirebaseRestReference, FirebaseRuntimeException, Void> deferred = new DeferredObject<>();
+    invalidateReads();
 
-    final AsyncHttpClient.BoundRequestBuilder postRequest = RequestBuilderUtil.createPost(asyncHttpClient, referenceUrl, fbAccessToken, "{}");
-
-    postRequest.execute(new AsyncCompletionHandler<Void>() {
+    final HttpRequest postRequest = RequestBuilderUtil.createPost(referenceUrl, fbAccessToken, "{}");
 
+    afterPendingWrites(deferred, new Runnable() {
       @Override
-      public Void onCompleted(Response response) throws Exception {
-        return handleNewReferenceCreatedResponse(response, deferred);
+      public void run() {
+        transport.execute(postRequest, new DeferredResponseHandler(deferred) {
+
+          @Override
+          public void onCompleted(HttpResponse response) {
+            invalidateReads();
+            handleNewReferenceCreatedResponse(response, deferred);
+          }
+        });
       }
     });
 
@@ -169,11 +316,12 @@ final class FirebaseRestReferenceImpl extends FirebaseDocumentLocation implement
   public FirebaseRestReference getRoot() {
     LOG.debug("getRoot() invoked for reference {}", referenceUrl);
     return new FirebaseRestReferenceImpl(
-      asyncHttpClient,
+      transport,
       gson,
       fbBaseUrl,
       fbAccessToken,
-      ""
+      "",
+      resources
     );
   }
 
@@ -181,11 +329,12 @@ final class FirebaseRestReferenceImpl extends FirebaseDocumentLocation implement
   public FirebaseRestReference getParent() {
     LOG.debug("getParent() invoked for reference {}", referenceUrl);
     return new FirebaseRestReferenceImpl(
-      asyncHttpClient,
+      transport,
       gson,
       fbBaseUrl,
       fbAccessToken,
-      PathUtil.getParent(path)
+      PathUtil.getParent(path),
+      resources
     );
   }
 
@@ -193,11 +342,12 @@ final class FirebaseRestReferenceImpl extends FirebaseDocumentLocation implement
   public FirebaseRestReference child(String childPath) {
     LOG.debug("child({}) invoked for reference {}", childPath, referenceUrl);
     return new FirebaseRestReferenceImpl(
-      asyncHttpClient,
+      transport,
       gson,
       fbBaseUrl,
       fbAccessToken,
-      PathUtil.concatenatePath(path, childPath)
+      PathUtil.concatenatePath(path, childPath),
+      resources
     );
   }
 
@@ -205,25 +355,68 @@ final class FirebaseRestReferenceImpl extends FirebaseDocumentLocation implement
   public FirebaseRestQuery query() {
     return new FirebaseRestQueryImpl(
       gson,
-      RequestBuilderUtil.createGet(asyncHttpClient, referenceUrl, fbAccessToken),
-      referenceUrl
+      transport,
+      referenceUrl,
+      fbAccessToken,
+      path,
+      requestCoalescer
     );
   }
 
+  @Override
+  public <T> Iterator<Map.Entry<String, T>> scanChildren(Class<T> clazz, int pageSize, int prefetchPages) {
+    LOG.debug("scanChildren({}, {}, {}) invoked for reference {}", clazz, pageSize, prefetchPages, referenceUrl);
+    return new FirebaseChildIterator<>(this, clazz, pageSize, prefetchPages);
+  }
+
+  @Override
+  public <T> Promise<Map<String, T>, FirebaseRuntimeException, Map.Entry<String, T>> getValueParallel(Class<T> clazz, int maxConcurrentRequests) {
+    LOG.debug("getValueParallel({}, {}) invoked for reference {}", clazz, maxConcurrentRequests, referenceUrl);
+    return new ParallelChildFetcher<>(this, clazz, maxConcurrentRequests, true).fetch();
+  }
+
+  @Override
+  public <T> Promise<Void, FirebaseRuntimeException, Map.Entry<String, T>> forEachChildParallel(Class<T> clazz, int maxConcurrentRequests) {
+    LOG.debug("forEachChildParallel({}, {}) invoked for reference {}", clazz, maxConcurrentRequests, referenceUrl);
+    final Deferred<Void, FirebaseRuntimeException, Map.Entry<String, T>> deferred = new DeferredObject<>();
+
+    new ParallelChildFetcher<>(this, clazz, maxConcurrentRequests, false).fetch()
+      .progress(new ProgressCallback<Map.Entry<String, T>>() {
+        @Override
+        public void onProgress(Map.Entry<String, T> child) {
+          deferred.notify(child);
+        }
+      })
+      .done(new DoneCallback<Map<String, T>>() {
+        @Override
+        public void onDone(Map<String, T> result) {
+          deferred.resolve(null);
+        }
+      })
+      .fail(new FailCallback<FirebaseRuntimeException>() {
+        @Override
+        public void onFail(FirebaseRuntimeException ex) {
+          deferred.reject(ex);
+        }
+      });
+
+    return deferred.promise();
+  }
+
   @Override
   public Promise<Void, FirebaseRuntimeException, Void> setPriority(final double priority) {
     LOG.debug("setPriority({}) invoked for reference {}", priority, referenceUrl);
     final Deferred<Void, FirebaseRuntimeException, Void> deferred = new DeferredObject<>();
 
     final String priorityUrl = PathUtil.concatenatePath(getReferenceUrl(), PRIORITY_PATH) + JSON_SUFFIX;
-    final AsyncHttpClient.BoundRequestBuilder putRequest = RequestBuilderUtil.createPut(asyncHttpClient, priorityUrl, fbAccessToken, gson.toJson(priority));
+    final HttpRequest putRequest = RequestBuilderUtil.createPut(priorityUrl, fbAccessToken, gson.toJson(priority));
 
-    putRequest.execute(new AsyncCompletionHandler<Void>() {
+    transport.execute(putRequest, new DeferredResponseHandler(deferred) {
 
       @Override
-      public Void onCompleted(Response response) throws Exception {
+      public void onCompleted(HttpResponse response) {
         LOG.debug("Request for setPriority({}) completed for reference {}", priority, referenceUrl);
-        return handleValueModifiedResponse(response, deferred, null);
+        handleValueModifiedResponse(response, deferred, null);
       }
     });
 
@@ -236,12 +429,12 @@ final class FirebaseRestReferenceImpl extends FirebaseDocumentLocation implement
     final Deferred<Double, FirebaseRuntimeException, Void> deferred = new DeferredObject<>();
 
     final String priorityUrl = PathUtil.concatenatePath(getReferenceUrl(), PRIORITY_PATH) + JSON_SUFFIX;
-    final AsyncHttpClient.BoundRequestBuilder getRequest = RequestBuilderUtil.createGet(asyncHttpClient, priorityUrl, fbAccessToken);
+    final HttpRequest getRequest = RequestBuilderUtil.createGet(priorityUrl, fbAccessToken);
 
-    getRequest.execute(new AsyncCompletionHandler<Void>() {
+    transport.execute(getRequest, new DeferredResponseHandler(deferred) {
 
       @Override
-      public Void onCompleted(Response response) throws Exception {
+      public void onCompleted(HttpResponse response) {
         try {
           LOG.debug("Request for getPriority() completed");
           final Double result = handleResponse(response, Double.class);
@@ -249,7 +442,6 @@ final class FirebaseRestReferenceImpl extends FirebaseDocumentLocation implement
         } catch (FirebaseRuntimeException ex) {
           deferred.reject(ex);
         }
-        return null;
       }
     });
 
@@ -262,31 +454,222 @@ final class FirebaseRestReferenceImpl extends FirebaseDocumentLocation implement
     final Deferred<Void, FirebaseRuntimeException, Void> deferred = new DeferredObject<>();
 
     final String priorityUrl = PathUtil.concatenatePath(getReferenceUrl(), PRIORITY_PATH) + JSON_SUFFIX;
-    final AsyncHttpClient.BoundRequestBuilder deleteRequest = RequestBuilderUtil.createDelete(asyncHttpClient, priorityUrl, fbAccessToken);
+    final HttpRequest deleteRequest = RequestBuilderUtil.createDelete(priorityUrl, fbAccessToken);
 
-    deleteRequest.execute(new AsyncCompletionHandler<Void>() {
+    transport.execute(deleteRequest, new DeferredResponseHandler(deferred) {
 
       @Override
-      public Void onCompleted(Response response) throws Exception {
+      public void onCompleted(HttpResponse response) {
         LOG.debug("Request for removePriority() completed for reference {}", referenceUrl);
-        return handleValueModifiedResponse(response, deferred, null);
+        handleValueModifiedResponse(response, deferred, null);
       }
     });
 
     return deferred.promise();
   }
 
-  private <T> Void handleValueModifiedResponse(Response response, Deferred<T, FirebaseRuntimeException, Void> deferred, T value) {
+  private <T> Promise<T, FirebaseRuntimeException, Void> getTypedValue(final Type type) {
+    LOG.debug("getValue({}) invoked for reference {}", type, referenceUrl);
+
+    final ValueCache.CachedValue cachedValue = valueCache.get(path, type);
+    if (cachedValue != null) {
+      LOG.debug("getValue({}) served from cache for reference {}", type, referenceUrl);
+      return new DeferredObject<T, FirebaseRuntimeException, Void>().resolve(cachedValue.<T>getValue()).promise();
+    }
+
+    return requestCoalescer.execute(
+      path,
+      RequestCoalescer.createKey(referenceUrl, null, type),
+      new RequestCoalescer.Request<T>() {
+        @Override
+        public Promise<T, FirebaseRuntimeException, Void> execute() {
+          return executeGetValue(type);
+        }
+      }
+    );
+  }
+
+  private <T> Promise<T, FirebaseRuntimeException, Void> executeGetValue(final Type type) {
+    final Deferred<T, FirebaseRuntimeException, Void> deferred = new DeferredObject<>();
+
+    final long cacheGeneration = valueCache.getGeneration();
+    final HttpRequest getRequest = RequestBuilderUtil.createGet(referenceUrl, fbAccessToken);
+
+    transport.execute(getRequest, new DeferredResponseHandler(deferred) {
+
+      @Override
+      public void onCompleted(HttpResponse response) {
+        try {
+          LOG.debug("Request for getValue({}) completed", type);
+          final T result = handleResponse(response, type);
+          valueCache.put(path, type, result, cacheGeneration);
+          deferred.resolve(result);
+        } catch (FirebaseRuntimeException ex) {
+          deferred.reject(ex);
+        }
+      }
+    });
+
+    return deferred.promise();
+  }
+
+  private Promise<Object, FirebaseRuntimeException, Void> executeGetShallowValue() {
+    final Deferred<Object, FirebaseRuntimeException, Void> deferred = new DeferredObject<>();
+
+    final HttpRequest getRequest = RequestBuilderUtil.createGet(referenceUrl, fbAccessToken);
+    getRequest.addQueryParam(SHALLOW_PARAM, "true");
+
+    transport.execute(getRequest, new DeferredResponseHandler(deferred) {
+
+      @Override
+      public void onCompleted(HttpResponse response) {
+        try {
+          LOG.debug("Request for getShallowValue() completed");
+          final Object result = handleResponse(response, Object.class);
+          deferred.resolve(result);
+        } catch (FirebaseRuntimeException ex) {
+          deferred.reject(ex);
+        }
+      }
+    });
+
+    return deferred.promise();
+  }
+
+  private <T> void executeTransactionAttempt(
+    final Class<T> clazz,
+    final TransactionHandler<T> handler,
+    final ETaggedValue<T> currentValue,
+    final int attempt,
+    final Deferred<T, FirebaseRuntimeException, Void> deferred) {
+
+    final T newValue;
+    try {
+      newValue = handler.doTransaction(currentValue.getValue());
+    } catch (RuntimeException ex) {
+      LOG.debug("Transaction for reference {} was aborted by its handler", referenceUrl, ex);
+      deferred.reject(new FirebaseTransactionException(FirebaseRuntimeException.ErrorCode.TransactionAborted, "The transaction handler failed for reference " + referenceUrl, ex));
+      return;
+    }
+
+    final HttpRequest putRequest = RequestBuilderUtil.createConditionalPut(
+      referenceUrl,
+      fbAccessToken,
+      gson.toJson(newValue),
+      currentValue.getETag()
+    );
+
+    transport.execute(putRequest, new DeferredResponseHandler(deferred) {
+
+      @Override
+      public void onCompleted(HttpResponse response) {
+        LOG.debug("Request for transaction attempt {} completed for reference {}", attempt, referenceUrl);
+        invalidateReads();
+
+        if (response.getStatusCode() != HttpURLConnection.HTTP_PRECON_FAILED) {
+          handleValueModifiedResponse(response, deferred, newValue);
+          return;
+        }
+
+        if (attempt >= MAX_TRANSACTION_ATTEMPTS) {
+          LOG.warn("Transaction for reference {} failed after {} attempts", referenceUrl, attempt);
+          deferred.reject(new FirebaseTransactionException(FirebaseRuntimeException.ErrorCode.TransactionRetriesExceeded, "The value was modified concurrently too many times for reference " + referenceUrl));
+          return;
+        }
+
+        // Firebase returns the latest value and its ETag with the failed request, so it can be used for the next attempt
+        final ETaggedValue<T> latestValue;
+        try {
+          latestValue = new ETaggedValue<>(RestUtil.decodeResponseBody(gson, response, clazz), response.getHeader(RequestBuilderUtil.ETAG_HEADER));
+        } catch (FirebaseRuntimeException ex) {
+          deferred.reject(ex);
+          return;
+        }
+
+        final long delay = BackoffUtil.jitteredDelay(attempt, TRANSACTION_INITIAL_RETRY_DELAY_MS, TRANSACTION_MAX_RETRY_DELAY_MS);
+        LOG.debug("Value for reference {} was modified concurrently, retrying transaction in {}ms", referenceUrl, delay);
+        SchedulerUtil.schedule(new Runnable() {
+          @Override
+          public void run() {
+            executeTransactionAttempt(clazz, handler, latestValue, attempt + 1, deferred);
+          }
+        }, delay, TimeUnit.MILLISECONDS);
+      }
+    });
+  }
+
+  private WriteCoalescer.Request createCoalescedWriteRequest() {
+    return new WriteCoalescer.Request() {
+      @Override
+      public Promise<Void, FirebaseRuntimeException, Void> execute(final boolean set, JsonElement value) {
+        LOG.debug("Coalesced {} request invoked for reference {}", set ? "set" : "update", referenceUrl);
+        final Deferred<Void, FirebaseRuntimeException, Void> deferred = new DeferredObject<>();
+        invalidateReads();
+
+        // JsonElement.toString() retains the null values of the merged update children
+        final HttpRequest request = set
+          ? RequestBuilderUtil.createPut(referenceUrl, fbAccessToken, value.toString())
+          : RequestBuilderUtil.createPatch(referenceUrl, fbAccessToken, value.toString());
+
+        transport.execute(request, new DeferredResponseHandler(deferred) {
+
+          @Override
+          public void onCompleted(HttpResponse response) {
+            LOG.debug("Coalesced {} request completed for reference {}", set ? "set" : "update", referenceUrl);
+            invalidateReads();
+            handleValueModifiedResponse(response, deferred, null);
+          }
+        });
+
+        return deferred.promise();
+      }
+    };
+  }
+
+  /**
+   * Sends a write that cannot be coalesced once the coalesced writes of this location, its ancestors and its
+   * descendants were sent, so it is not overtaken by a write issued before it.
+   */
+  private void afterPendingWrites(final Deferred<?, FirebaseRuntimeException, Void> deferred, final Runnable request) {
+    if (!writeCoalescer.isEnabled()) {
+      request.run();
+      return;
+    }
+
+    writeCoalescer.awaitWrites(trimmedPath).done(new DoneCallback<Void>() {
+      @Override
+      public void onDone(Void result) {
+        // The request may be sent by the thread completing the awaited write, so the exception is not thrown
+        try {
+          request.run();
+        } catch (FirebaseRuntimeException ex) {
+          deferred.reject(ex);
+        } catch (RuntimeException ex) {
+          deferred.reject(new FirebaseRestException(FirebaseRuntimeException.ErrorCode.RequestFailed, "The REST request failed", ex));
+        }
+      }
+    });
+  }
+
+  /**
+   * Invalidates the cached values and detaches the in-flight reads of this location, its ancestors and its
+   * descendants, as they may not reflect a write to this location.
+   */
+  private void invalidateReads() {
+    valueCache.invalidate(path);
+    requestCoalescer.invalidate(path);
+  }
+
+  private <T> void handleValueModifiedResponse(HttpResponse response, Deferred<T, FirebaseRuntimeException, Void> deferred, T value) {
     try {
       handleResponse(response, null);
       deferred.resolve(value);
     } catch (FirebaseRuntimeException ex) {
       deferred.reject(ex);
     }
-    return null;
   }
 
-  private Void handleNewReferenceCreatedResponse(Response response, Deferred<FirebaseRestReference, FirebaseRuntimeException, Void> deferred) throws IOException {
+  private void handleNewReferenceCreatedResponse(HttpResponse response, Deferred<FirebaseRestReference, FirebaseRuntimeException, Void> deferred) {
     try {
       // Note: push() is currently the only function calling handleNewReferenceCreatedResponse
       LOG.debug("Request for push() completed for reference {}", referenceUrl);
@@ -294,20 +677,23 @@ final class FirebaseRestReferenceImpl extends FirebaseDocumentLocation implement
       final PushResponse pushResponse = handleResponse(response, PushResponse.class);
 
       deferred.resolve(new FirebaseRestReferenceImpl(
-        asyncHttpClient,
+        transport,
         gson,
         fbBaseUrl,
         fbAccessToken,
-        PathUtil.concatenatePath(path, pushResponse.getName())
+        PathUtil.concatenatePath(path, pushResponse.getName()),
+        resources
       ));
     } catch (FirebaseRuntimeException ex) {
       deferred.reject(ex);
     }
-
-    return null;
   }
 
-  private <T> T handleResponse(Response response, Class<T> clazz) {
+  private <T> T handleResponse(HttpResponse response, Class<T> clazz) {
     return RestUtil.handleResponse(gson, referenceUrl, response, clazz);
   }
+
+  private <T> T handleResponse(HttpResponse response, Type type) {
+    return RestUtil.handleResponse(gson, referenceUrl, response, type);
+  }
 }
@@ -2,14 +2,14 @@ package org.restonfire;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.ning.http.client.AsyncCompletionHandler;
-import com.ning.http.client.AsyncHttpClient;
-import com.ning.http.client.Response;
 import org.jdeferred.Deferred;
 import org.jdeferred.Promise;
 import org.jdeferred.impl.DeferredObject;
 import org.restonfire.exceptions.FirebaseRuntimeException;
 import org.restonfire.responses.FirebaseSecurityRules;
+import org.restonfire.transport.HttpRequest;
+import org.restonfire.transport.HttpResponse;
+import org.restonfire.transport.HttpTransport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,17 +25,17 @@ class FirebaseSecurityRulesReferenceImpl implements FirebaseSecurityRulesReferen
     .disableHtmlEscaping()
     .create();
 
-  private final AsyncHttpClient asyncHttpClient;
+  private final HttpTransport transport;
 
   private final String fbAccessToken;
   private final String referenceUrl;
 
   FirebaseSecurityRulesReferenceImpl(
-    AsyncHttpClient asyncHttpClient,
+    HttpTransport transport,
     String fbBaseUrl,
     String fbAccessToken
   ) {
-    this.asyncHttpClient = asyncHttpClient;
+    this.transport = transport;
     this.fbAccessToken = fbAccessToken;
     this.referenceUrl = PathUtil.concatenatePath(fbBaseUrl, ".settings/rules") + FirebaseDocumentLocation.JSON_SUFFIX;
   }
@@ -45,12 +45,12 @@ class FirebaseSecurityRulesReferenceImpl implements FirebaseSecurityRulesReferen
     LOG.debug("getValue() invoked for security rules");
     final Deferred<FirebaseSecurityRules, FirebaseRuntimeException, Void> deferred = new DeferredObject<>();
 
-    final AsyncHttpClient.BoundRequestBuilder getRequest = RequestBuilderUtil.createGet(asyncHttpClient, referenceUrl, fbAccessToken);
+    final HttpRequest getRequest = RequestBuilderUtil.createGet(referenceUrl, fbAccessToken);
 
-    getRequest.execute(new AsyncCompletionHandler<Void>() {
+    transport.execute(getRequest, new DeferredResponseHandler(deferred) {
 
       @Override
-      public Void onCompleted(Response response) throws Exception {
+      public void onCompleted(HttpResponse response) {
         try {
           LOG.debug("Request for getValue() completed");
           final FirebaseSecurityRules result = handleResponse(response);
@@ -58,7 +58,6 @@ class FirebaseSecurityRulesReferenceImpl implements FirebaseSecurityRulesReferen
         } catch (FirebaseRuntimeException ex) {
           deferred.reject(ex);
         }
-        return null;
       }
     });
 
@@ -70,31 +69,30 @@ class FirebaseSecurityRulesReferenceImpl implements FirebaseSecurityRulesReferen
     LOG.debug("setValue() invoked for security rules");
     final Deferred<FirebaseSecurityRules, FirebaseRuntimeException, Void> deferred = new DeferredObject<>();
 
-    final AsyncHttpClient.BoundRequestBuilder putRequest = RequestBuilderUtil.createPut(asyncHttpClient, referenceUrl, fbAccessToken, gson.toJson(newRules));
+    final HttpRequest putRequest = RequestBuilderUtil.createPut(referenceUrl, fbAccessToken, gson.toJson(newRules));
 
-    putRequest.execute(new AsyncCompletionHandler<Void>() {
+    transport.execute(putRequest, new DeferredResponseHandler(deferred) {
 
       @Override
-      public Void onCompleted(Response response) throws Exception {
+      public void onCompleted(HttpResponse response) {
         LOG.debug("Request for setValue() completed");
-        return handleValueModifiedResponse(response, deferred, newRules);
+        handleValueModifiedResponse(response, deferred, newRules);
       }
     });
 
     return deferred.promise();
   }
 
-  private Void handleValueModifiedResponse(Response response, Deferred<FirebaseSecurityRules, FirebaseRuntimeException, Void> deferred, FirebaseSecurityRules value) {
+  private void handleValueModifiedResponse(HttpResponse response, Deferred<FirebaseSecurityRules, FirebaseRuntimeException, Void> deferred, FirebaseSecurityRules value) {
     try {
       handleResponse(response);
       deferred.resolve(value);
     } catch (FirebaseRuntimeException ex) {
       deferred.reject(ex);
     }
-    return null;
   }
 
-  private FirebaseSecurityRules handleResponse(Response response) {
+  private FirebaseSecurityRules handleResponse(HttpResponse response) {
     return RestUtil.handleResponse(gson, referenceUrl, response, FirebaseSecurityRules.class);
   }
 }
@@ -0,0 +1,81 @@
+package org.restonfire;
+
+import org.jdeferred.Promise;
+import org.restonfire.exceptions.FirebaseRuntimeException;
+
+/**
+ * A {@link FirebaseWriteBatch} collects write operations on arbitrary locations of a database and applies them
+ * atomically with a single multi-location update request. Either all writes succeed or all of them fail.<br>
+ * <br>
+ * The operations are applied in the order they were added to the batch. A write to a location replaces all
+ * previous writes to the same location and its descendants, while a write to a descendant of a previously written
+ * location modifies the value that was previously written.
+ *
+ * @see FirebaseRestDatabase#createWriteBatch()
+ * @see <a href="https://firebase.google.com/docs/database/rest/save-data#section-patch">Firebase Multi-Path Updates Documentation</a>
+ */
+public interface FirebaseWriteBatch {
+
+  /**
+   * Adds a write operation replacing the value at the given location, equivalent to
+   * {@link FirebaseRestReference#setValue(Object)}.
+   *
+   * @param path The location within the database.
+   * @param value The new value of the location. A <code>null</code> value removes the location.
+   * @return This {@link FirebaseWriteBatch} instance.
+   *
+   * @throws org.restonfire.exceptions.FirebaseInvalidStateException The batch has already been committed.
+   */
+  FirebaseWriteBatch setValue(String path, Object value);
+
+  /**
+   * Adds a write operation replacing the children of the given location with the properties of the value,
+   * equivalent to {@link FirebaseRestReference#updateValue(Object)}.
+   *
+   * @param path The location within the database.
+   * @param value The object containing the children to be written.
+   * @return This {@link FirebaseWriteBatch} instance.
+   *
+   * @throws IllegalArgumentException The value is not serialized to a JSON object.
+   * @throws org.restonfire.exceptions.FirebaseInvalidStateException The batch has already been committed.
+   */
+  FirebaseWriteBatch updateValue(String path, Object value);
+
+  /**
+   * Adds a write operation removing the value at the given location, equivalent to
+   * {@link FirebaseRestReference#removeValue()}.
+   *
+   * @param path The location within the database.
+   * @return This {@link FirebaseWriteBatch} instance.
+   *
+   * @throws org.restonfire.exceptions.FirebaseInvalidStateException The batch has already been committed.
+   */
+  FirebaseWriteBatch removeValue(String path);
+
+  /**
+   * Returns the number of locations that will be written by this batch.
+   *
+   * @return The number of locations.
+   */
+  int size();
+
+  /**
+   * Sends all collected write operations to Firebase with a single request, which targets the deepest common
+   * ancestor of all written locations. A batch can only be committed once.<br>
+   * <br>
+   * The promise returned will be rejected with the following two exceptions:<br>
+   * <ul>
+   *   <li><b>org.restonfire.exceptions.FirebaseAccessException</b> - A {@link FirebaseRuntimeException} in the case that
+   *        access to any of the locations was denied.
+   *   </li>
+   *   <li><b>org.restonfire.exceptions.FirebaseRestException</b> - A {@link FirebaseRuntimeException} in the case that an
+   *        unexpected status code was returned.
+   *   </li>
+   * </ul>
+   *
+   * @throws org.restonfire.exceptions.FirebaseInvalidStateException The batch has already been committed.
+   *
+   * @return A promise which will be resolved once all write operations were applied.
+   */
+  Promise<Void, FirebaseRuntimeException, Void> commit();
+}
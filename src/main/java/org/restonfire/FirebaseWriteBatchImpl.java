@@ -0,0 +1,189 @@
+package org.restonfire;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import org.jdeferred.Deferred;
+import org.jdeferred.Promise;
+import org.jdeferred.impl.DeferredObject;
+import org.restonfire.exceptions.FirebaseInvalidStateException;
+import org.restonfire.exceptions.FirebaseRuntimeException;
+import org.restonfire.transport.HttpRequest;
+import org.restonfire.transport.HttpResponse;
+import org.restonfire.transport.HttpTransport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <b>Non-thread safe</b> {@link FirebaseWriteBatch} implementation.
+ */
+final class FirebaseWriteBatchImpl implements FirebaseWriteBatch {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FirebaseWriteBatchImpl.class);
+
+  private final HttpTransport transport;
+  private final Gson gson;
+  private final String fbBaseUrl;
+  private final String fbAccessToken;
+  private final ValueCache valueCache;
+  private final RequestCoalescer requestCoalescer;
+
+  // trimmed path -> value, where JsonNull represents a removed location
+  private final Map<String, JsonElement> writes = new LinkedHashMap<>();
+  private boolean committed;
+
+  FirebaseWriteBatchImpl(
+    HttpTransport transport,
+    Gson gson,
+    String fbBaseUrl,
+    String fbAccessToken,
+    DatabaseResources resources) {
+
+    this.transport = transport;
+    this.gson = gson;
+    this.fbBaseUrl = fbBaseUrl;
+    this.fbAccessToken = fbAccessToken;
+    this.valueCache = resources.getValueCache();
+    this.requestCoalescer = resources.getRequestCoalescer();
+  }
+
+  @Override
+  public FirebaseWriteBatch setValue(String path, Object value) {
+    addWrite(PathUtil.trimPath(path), gson.toJsonTree(value));
+    return this;
+  }
+
+  @Override
+  public FirebaseWriteBatch updateValue(String path, Object value) {
+    final JsonElement element = gson.toJsonTree(value);
+    if (!element.isJsonObject()) {
+      throw new IllegalArgumentException("The value of an update must be serialized to a JSON object");
+    }
+
+    final String trimmedPath = PathUtil.trimPath(path);
+    for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+      addWrite(PathUtil.concatenatePath(trimmedPath, PathUtil.trimPath(entry.getKey())), entry.getValue());
+    }
+    return this;
+  }
+
+  @Override
+  public FirebaseWriteBatch removeValue(String path) {
+    addWrite(PathUtil.trimPath(path), JsonNull.INSTANCE);
+    return this;
+  }
+
+  @Override
+  public int size() {
+    return writes.size();
+  }
+
+  @Override
+  public Promise<Void, FirebaseRuntimeException, Void> commit() {
+    assertNotCommitted();
+    committed = true;
+
+    final Deferred<Void, FirebaseRuntimeException, Void> deferred = new DeferredObject<>();
+    if (writes.isEmpty()) {
+      return deferred.resolve(null).promise();
+    }
+
+    invalidateCache();
+
+    final String ancestorPath = getCommonAncestorPath();
+    final String requestUrl = PathUtil.concatenatePath(fbBaseUrl, ancestorPath) + FirebaseDocumentLocation.JSON_SUFFIX;
+    final HttpRequest request = createRequest(ancestorPath, requestUrl);
+
+    LOG.debug("commit() invoked for {} locations below {}", writes.size(), requestUrl);
+
+    transport.execute(request, new DeferredResponseHandler(deferred) {
+
+      @Override
+      public void onCompleted(HttpResponse response) {
+        LOG.debug("Request for commit() completed for {}", requestUrl);
+        invalidateCache();
+        try {
+          RestUtil.handleResponse(gson, requestUrl, response, null);
+          deferred.resolve(null);
+        } catch (FirebaseRuntimeException ex) {
+          deferred.reject(ex);
+        }
+      }
+    });
+
+    return deferred.promise();
+  }
+
+  private HttpRequest createRequest(String ancestorPath, String requestUrl) {
+    final JsonElement ancestorValue = writes.get(ancestorPath);
+    if (ancestorValue != null) {
+      // Only possible for a single write to the root, which cannot be expressed as a multi-location update
+      return RequestBuilderUtil.createPut(requestUrl, fbAccessToken, ancestorValue.toString());
+    }
+
+    final JsonObject body = new JsonObject();
+    final int offset = ancestorPath.length() == 0 ? 0 : ancestorPath.length() + 1;
+    for (Map.Entry<String, JsonElement> write : writes.entrySet()) {
+      body.add(write.getKey().substring(offset), write.getValue());
+    }
+
+    // JsonElement.toString() retains the null values, which represent the removed locations
+    return RequestBuilderUtil.createPatch(requestUrl, fbAccessToken, body.toString());
+  }
+
+  private void addWrite(String path, JsonElement value) {
+    assertNotCommitted();
+    JsonTreeUtil.addMultiPathWrite(writes, path, value);
+  }
+
+  private String getCommonAncestorPath() {
+    String ancestor = null;
+
+    for (String path : writes.keySet()) {
+      ancestor = ancestor == null ? path : getCommonAncestorPath(ancestor, path);
+    }
+
+    // A multi-location update requires the written locations to be children of the requested location
+    return writes.size() == 1 && ancestor.length() > 0
+      ? PathUtil.getParent(ancestor)
+      : ancestor;
+  }
+
+  private static String getCommonAncestorPath(String path1, String path2) {
+    final String[] segments1 = path1.split(PathUtil.FORWARD_SLASH);
+    final String[] segments2 = path2.split(PathUtil.FORWARD_SLASH);
+    final List<String> common = new ArrayList<>();
+
+    for (int i = 0; i < segments1.length && i < segments2.length && segments1[i].equals(segments2[i]); i++) {
+      common.add(segments1[i]);
+    }
+
+    final StringBuilder result = new StringBuilder();
+    for (String segment : common) {
+      if (result.length() > 0) {
+        result.append(PathUtil.FORWARD_SLASH);
+      }
+      result.append(segment);
+    }
+    return result.toString();
+  }
+
+  private void invalidateCache() {
+    for (String path : writes.keySet()) {
+      valueCache.invalidate(path);
+      requestCoalescer.invalidate(path);
+    }
+  }
+
+  private void assertNotCommitted() {
+    if (committed) {
+      throw new FirebaseInvalidStateException(FirebaseRuntimeException.ErrorCode.WriteBatchAlreadyCommitted, "The write batch has already been committed");
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package org.restonfire;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration of the hedged read requests of a {@link FirebaseRestDatabase}. If a <code>GET</code> request, i.e.
+ * of <code>getValue()</code>, <code>getShallowValue()</code> or <code>query().run()</code>, did not receive the
+ * status of its response within the hedge delay, an identical request is sent. The request whose response arrives
+ * first is passed on, the other one is cancelled.<br>
+ * <br>
+ * The hedge delay is the configured percentile of the recent response latencies of the database, bounded by the
+ * minimum and maximum delay. The maximum delay is used until enough latencies were measured. The hedged requests are
+ * limited by a budget, which allows the configured percentage of the requests to be hedged.
+ *
+ * @see BaseFirebaseRestDatabaseFactory#setHedgingSettings(HedgingSettings)
+ */
+public final class HedgingSettings {
+
+  private final double delayPercentile;
+  private final long minDelay;
+  private final long maxDelay;
+  private final TimeUnit timeUnit;
+  private final int hedgeBudgetPercent;
+
+  /**
+   * Creates the hedging settings.
+   *
+   * @param delayPercentile The percentile of the response latencies used as hedge delay, i.e. 95 to hedge the
+   *                        slowest 5% of the requests.
+   * @param minDelay The minimum hedge delay.
+   * @param maxDelay The maximum hedge delay.
+   * @param timeUnit The {@link TimeUnit} of the <code>minDelay</code> and <code>maxDelay</code> parameters.
+   * @param hedgeBudgetPercent The hedged requests allowed in percent of the requests.
+   */
+  public HedgingSettings(double delayPercentile, long minDelay, long maxDelay, TimeUnit timeUnit, int hedgeBudgetPercent) {
+    if (delayPercentile <= 0 || delayPercentile > 100) {
+      throw new IllegalArgumentException("delayPercentile must be greater than 0 and at most 100");
+    }
+    if (minDelay < 0) {
+      throw new IllegalArgumentException("minDelay cannot be negative");
+    }
+    if (maxDelay < minDelay) {
+      throw new IllegalArgumentException("maxDelay cannot be less than minDelay");
+    }
+    if (timeUnit == null) {
+      throw new IllegalArgumentException("timeUnit cannot be null");
+    }
+    if (hedgeBudgetPercent < 0) {
+      throw new IllegalArgumentException("hedgeBudgetPercent cannot be negative");
+    }
+
+    this.delayPercentile = delayPercentile;
+    this.minDelay = minDelay;
+    this.maxDelay = maxDelay;
+    this.timeUnit = timeUnit;
+    this.hedgeBudgetPercent = hedgeBudgetPercent;
+  }
+
+  public double getDelayPercentile() {
+    return delayPercentile;
+  }
+
+  public long getMinDelay() {
+    return minDelay;
+  }
+
+  public long getMaxDelay() {
+    return maxDelay;
+  }
+
+  public TimeUnit getTimeUnit() {
+    return timeUnit;
+  }
+
+  public int getHedgeBudgetPercent() {
+    return hedgeBudgetPercent;
+  }
+}
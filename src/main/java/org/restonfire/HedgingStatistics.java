@@ -0,0 +1,78 @@
+package org.restonfire;
+
+/**
+ * Point-in-time snapshot of the counters of a {@link FirebaseRestDatabase}'s hedged read requests.
+ *
+ * @see FirebaseRestDatabase#getHedgingStatistics()
+ */
+public final class HedgingStatistics {
+
+  private final long requestCount;
+  private final long hedgeCount;
+  private final long hedgeWinCount;
+  private final long budgetExhaustedCount;
+  private final double hedgeDelayMillis;
+
+  public HedgingStatistics(long requestCount, long hedgeCount, long hedgeWinCount, long budgetExhaustedCount, double hedgeDelayMillis) {
+    this.requestCount = requestCount;
+    this.hedgeCount = hedgeCount;
+    this.hedgeWinCount = hedgeWinCount;
+    this.budgetExhaustedCount = budgetExhaustedCount;
+    this.hedgeDelayMillis = hedgeDelayMillis;
+  }
+
+  /**
+   * @return The number of read requests that were eligible for hedging.
+   */
+  public long getRequestCount() {
+    return requestCount;
+  }
+
+  /**
+   * @return The number of hedged requests sent.
+   */
+  public long getHedgeCount() {
+    return hedgeCount;
+  }
+
+  /**
+   * @return The number of hedged requests whose response arrived before the response of the original request.
+   */
+  public long getHedgeWinCount() {
+    return hedgeWinCount;
+  }
+
+  /**
+   * @return The number of hedged requests that were not sent, as the hedge budget was exhausted.
+   */
+  public long getBudgetExhaustedCount() {
+    return budgetExhaustedCount;
+  }
+
+  /**
+   * @return The current hedge delay in milliseconds.
+   */
+  public double getHedgeDelayMillis() {
+    return hedgeDelayMillis;
+  }
+
+  /**
+   * @return The ratio of hedged requests to read requests, between 0 and 1.
+   */
+  public double getHedgeRate() {
+    return requestCount == 0 ? 0 : hedgeCount / (double) requestCount;
+  }
+
+  /**
+   * @return The ratio of hedged requests that won against the original request, between 0 and 1.
+   */
+  public double getHedgeWinRate() {
+    return hedgeCount == 0 ? 0 : hedgeWinCount / (double) hedgeCount;
+  }
+
+  @Override
+  public String toString() {
+    return "HedgingStatistics{requests=" + requestCount + ", hedges=" + hedgeCount + ", hedgeWins=" + hedgeWinCount
+      + ", budgetExhausted=" + budgetExhaustedCount + ", hedgeDelayMillis=" + hedgeDelayMillis + '}';
+  }
+}
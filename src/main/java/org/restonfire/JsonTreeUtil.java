@@ -0,0 +1,119 @@
+package org.restonfire;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Utility class for the modification of in-memory JSON trees following Firebase's data semantics: setting a
+ * location to <code>null</code> removes it and empty objects do not exist, so they are removed from their parents.
+ * The root of a tree without any data is represented by <code>null</code>.<br>
+ * <br>
+ * The trees are modified in place and are therefore not thread safe.
+ */
+final class JsonTreeUtil {
+
+  private JsonTreeUtil() {
+    // do nothing
+  }
+
+  /**
+   * Returns the element at the given path, or <code>null</code> if no data exists at this location.
+   */
+  public static JsonElement get(JsonElement root, String path) {
+    JsonElement node = root;
+
+    for (String segment : splitPath(path)) {
+      if (node == null || !node.isJsonObject()) {
+        return null;
+      }
+      node = node.getAsJsonObject().get(segment);
+    }
+
+    return node;
+  }
+
+  /**
+   * Replaces the element at the given path with the value, equivalent to a <code>put</code> request.
+   *
+   * @return The new root of the tree, which may be a different instance than the provided root.
+   */
+  public static JsonElement set(JsonElement root, String path, JsonElement value) {
+    return set(root, splitPath(path), 0, value);
+  }
+
+  /**
+   * Replaces the children of the element at the given path with the properties of the value, equivalent to a
+   * <code>patch</code> request. The keys of the value may be relative paths as well.
+   *
+   * @return The new root of the tree, which may be a different instance than the provided root.
+   */
+  public static JsonElement update(JsonElement root, String path, JsonObject value) {
+    final String trimmedPath = PathUtil.trimPath(path);
+    JsonElement result = root;
+
+    for (Map.Entry<String, JsonElement> entry : value.entrySet()) {
+      result = set(result, PathUtil.concatenatePath(trimmedPath, PathUtil.trimPath(entry.getKey())), entry.getValue());
+    }
+
+    return result;
+  }
+
+  /**
+   * Adds the value to the entries of a multi-location update, which are keyed by trimmed paths. Firebase rejects
+   * updates with overlapping paths, so the entries are kept disjoint: the value replaces all entries for the same
+   * location or its descendants, or is applied to the value of an entry for one of its ancestors.
+   */
+  public static void addMultiPathWrite(Map<String, JsonElement> writes, String path, JsonElement value) {
+    final Iterator<Map.Entry<String, JsonElement>> iterator = writes.entrySet().iterator();
+    while (iterator.hasNext()) {
+      final Map.Entry<String, JsonElement> write = iterator.next();
+
+      if (PathUtil.isSameOrAncestor(path, write.getKey())) {
+        iterator.remove();
+      } else if (PathUtil.isSameOrAncestor(write.getKey(), path)) {
+        final JsonElement merged = set(write.getValue(), path.substring(write.getKey().length()), value);
+        write.setValue(merged == null ? JsonNull.INSTANCE : merged);
+        return;
+      }
+    }
+
+    writes.put(path, value == null ? JsonNull.INSTANCE : value);
+  }
+
+  private static JsonElement set(JsonElement node, String[] segments, int index, JsonElement value) {
+    if (index == segments.length) {
+      return isEmpty(value) ? null : value;
+    }
+
+    final JsonObject object = node != null && node.isJsonObject()
+      ? node.getAsJsonObject()
+      : new JsonObject();
+
+    final JsonElement child = set(object.get(segments[index]), segments, index + 1, value);
+    if (child == null) {
+      object.remove(segments[index]);
+    } else {
+      object.add(segments[index], child);
+    }
+
+    return object.entrySet().isEmpty() ? null : object;
+  }
+
+  private static boolean isEmpty(JsonElement value) {
+    return value == null
+      || value.isJsonNull()
+      || value.isJsonObject() && value.getAsJsonObject().entrySet().isEmpty();
+  }
+
+  private static String[] splitPath(String path) {
+    final String trimmedPath = PathUtil.trimPath(path);
+
+    return trimmedPath.length() == 0
+      ? new String[0]
+      : trimmedPath.split(PathUtil.FORWARD_SLASH);
+  }
+}
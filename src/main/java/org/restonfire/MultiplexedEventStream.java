@@ -0,0 +1,96 @@
+package org.restonfire;
+
+import com.google.gson.reflect.TypeToken;
+import org.jdeferred.Promise;
+import org.restonfire.exceptions.FirebaseInvalidStateException;
+import org.restonfire.exceptions.FirebaseRuntimeException;
+import org.restonfire.responses.StreamingEvent;
+import org.restonfire.responses.StreamingEventData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link FirebaseRestEventStream} implementation for a location served by the shared connection of a
+ * {@link FirebaseEventStreamMultiplexerImpl}. Locations outside of the multiplexer's location are served by
+ * regular event streams.
+ */
+final class MultiplexedEventStream implements FirebaseRestEventStream {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MultiplexedEventStream.class);
+
+  private final FirebaseEventStreamMultiplexerImpl multiplexer;
+  private final FirebaseRestEventStream connection;
+  // relative to the location of the multiplexer
+  private final String path;
+
+  private FirebaseEventStreamMultiplexerImpl.Listener listener;
+
+  MultiplexedEventStream(FirebaseEventStreamMultiplexerImpl multiplexer, FirebaseRestEventStream connection, String path) {
+    this.multiplexer = multiplexer;
+    this.connection = connection;
+    this.path = path;
+  }
+
+  @Override
+  public String getReferenceUrl() {
+    return multiplexer.getReferenceUrl(path);
+  }
+
+  @Override
+  public synchronized Promise<Void, FirebaseRuntimeException, StreamingEvent> startListening() {
+    LOG.debug("startListening() invoked for multiplexed reference {}", getReferenceUrl());
+
+    if (listener != null) {
+      throw new FirebaseInvalidStateException(FirebaseRuntimeException.ErrorCode.EventStreamListenerAlreadyActive, "The EventStream is already running");
+    }
+
+    final FirebaseEventStreamMultiplexerImpl.Listener newListener = new FirebaseEventStreamMultiplexerImpl.Listener(path);
+    multiplexer.register(newListener);
+    listener = newListener;
+
+    return newListener.promise();
+  }
+
+  @Override
+  public <T> Promise<Void, FirebaseRuntimeException, StreamingEvent> startListening(TypeToken<StreamingEventData<T>> typeToken) {
+    return StreamingEventUtil.decodeEvents(startListening(), typeToken);
+  }
+
+  @Override
+  public synchronized void stopListening() {
+    if (listener == null) {
+      throw new FirebaseInvalidStateException(FirebaseRuntimeException.ErrorCode.EventStreamListenerNotActive, "The EventStream is currently not active");
+    }
+
+    multiplexer.unregister(listener);
+    listener = null;
+  }
+
+  /**
+   * Returns the statistics of the multiplexer's shared connection, since the multiplexed streams do not have a
+   * connection of their own.
+   */
+  @Override
+  public EventStreamStatistics getStatistics() {
+    return connection.getStatistics();
+  }
+
+  @Override
+  public FirebaseRestEventStream getRoot() {
+    return multiplexer.isRoot()
+      ? multiplexer.getEventStream("")
+      : connection.getRoot();
+  }
+
+  @Override
+  public FirebaseRestEventStream getParent() {
+    return path.length() == 0
+      ? connection.getParent()
+      : multiplexer.getEventStream(PathUtil.getParent(path));
+  }
+
+  @Override
+  public FirebaseRestEventStream child(String childPath) {
+    return multiplexer.getEventStream(PathUtil.concatenatePath(path, childPath));
+  }
+}
@@ -0,0 +1,168 @@
+package org.restonfire;
+
+import org.jdeferred.Deferred;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.FailCallback;
+import org.jdeferred.Promise;
+import org.jdeferred.impl.DeferredObject;
+import org.restonfire.exceptions.FirebaseInvalidStateException;
+import org.restonfire.exceptions.FirebaseRuntimeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Retrieves the children of a location with individual, concurrent requests. The keys of the children are
+ * determined with a shallow request first. Afterwards, at most <code>maxConcurrentRequests</code> child requests
+ * are in flight at any time, each new request being issued once a previous one completed.<br>
+ * <br>
+ * Each received child is published through the progress callback of the promise. If <code>mergeResult</code> is
+ * set, the children are also collected into a map that resolves the promise, otherwise the promise resolves with
+ * <code>null</code> and the children are not retained.
+ *
+ * @param <T> The type of the children.
+ */
+final class ParallelChildFetcher<T> {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ParallelChildFetcher.class);
+
+  private final FirebaseRestReference reference;
+  private final Class<T> clazz;
+  private final int maxConcurrentRequests;
+  private final boolean mergeResult;
+
+  private final Deferred<Map<String, T>, FirebaseRuntimeException, Map.Entry<String, T>> deferred = new DeferredObject<>();
+  private final SortedMap<String, T> result = new TreeMap<>(FirebaseKeyComparator.INSTANCE);
+
+  // guarded by "this", as the child requests complete on the I/O threads
+  private List<String> keys;
+  private int nextKeyIndex;
+  private int inFlightRequests;
+  private int completedRequests;
+  private boolean dispatching;
+
+  ParallelChildFetcher(FirebaseRestReference reference, Class<T> clazz, int maxConcurrentRequests, boolean mergeResult) {
+    if (maxConcurrentRequests < 1) {
+      throw new IllegalArgumentException("maxConcurrentRequests must be greater than zero");
+    }
+
+    this.reference = reference;
+    this.clazz = clazz;
+    this.maxConcurrentRequests = maxConcurrentRequests;
+    this.mergeResult = mergeResult;
+  }
+
+  Promise<Map<String, T>, FirebaseRuntimeException, Map.Entry<String, T>> fetch() {
+    reference.getShallowValue()
+      .done(new DoneCallback<Object>() {
+        @Override
+        public void onDone(Object shallowValue) {
+          onKeysReceived(shallowValue);
+        }
+      })
+      .fail(new FailCallback<FirebaseRuntimeException>() {
+        @Override
+        public void onFail(FirebaseRuntimeException ex) {
+          fail(ex);
+        }
+      });
+
+    return deferred.promise();
+  }
+
+  private void onKeysReceived(Object shallowValue) {
+    if (shallowValue != null && !(shallowValue instanceof Map)) {
+      fail(new FirebaseInvalidStateException(FirebaseRuntimeException.ErrorCode.ValueHasNoChildren, "The value of " + reference.getReferenceUrl() + " has no children"));
+      return;
+    }
+
+    final List<String> childKeys = new ArrayList<>();
+    if (shallowValue != null) {
+      for (Object key : ((Map<?, ?>) shallowValue).keySet()) {
+        childKeys.add(String.valueOf(key));
+      }
+    }
+
+    LOG.debug("Retrieving {} children of reference {} with at most {} concurrent requests", childKeys.size(), reference.getReferenceUrl(), maxConcurrentRequests);
+
+    synchronized (this) {
+      keys = childKeys;
+      if (keys.isEmpty()) {
+        resolve();
+        return;
+      }
+
+      dispatchRequests();
+    }
+  }
+
+  private synchronized void dispatchRequests() {
+    // Cached children complete synchronously, so the loop is guarded against recursive invocations
+    if (dispatching) {
+      return;
+    }
+
+    dispatching = true;
+    try {
+      while (deferred.isPending() && inFlightRequests < maxConcurrentRequests && nextKeyIndex < keys.size()) {
+        inFlightRequests++;
+        requestChild(keys.get(nextKeyIndex++));
+      }
+    } finally {
+      dispatching = false;
+    }
+  }
+
+  private void requestChild(final String key) {
+    reference.child(key).getValue(clazz)
+      .done(new DoneCallback<T>() {
+        @Override
+        public void onDone(T value) {
+          onChildReceived(key, value);
+        }
+      })
+      .fail(new FailCallback<FirebaseRuntimeException>() {
+        @Override
+        public void onFail(FirebaseRuntimeException ex) {
+          fail(ex);
+        }
+      });
+  }
+
+  private synchronized void onChildReceived(String key, T value) {
+    if (!deferred.isPending()) {
+      return;
+    }
+
+    if (mergeResult) {
+      result.put(key, value);
+    }
+    deferred.notify(new AbstractMap.SimpleImmutableEntry<>(key, value));
+
+    inFlightRequests--;
+    completedRequests++;
+    if (completedRequests == keys.size()) {
+      resolve();
+    } else {
+      dispatchRequests();
+    }
+  }
+
+  private synchronized void resolve() {
+    deferred.resolve(mergeResult ? result : null);
+  }
+
+  private synchronized void fail(FirebaseRuntimeException ex) {
+    // The first failure rejects the promise, all pending requests are ignored afterwards
+    if (deferred.isPending()) {
+      LOG.warn("Retrieving the children of reference {} failed", reference.getReferenceUrl(), ex);
+      deferred.reject(ex);
+    }
+  }
+}
@@ -0,0 +1,168 @@
+package org.restonfire;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <b>Non-thread safe</b> trie of values registered for locations of a database, keyed by the segments of the
+ * locations' paths. Nodes without values and without children are removed, so the trie only contains the paths of
+ * the registered values and their ancestors.
+ *
+ * @param <T> The type of the registered values.
+ */
+final class PathTrie<T> {
+
+  private final Node<T> root = new Node<>(null, null);
+  private int size;
+
+  /**
+   * Splits the path into its segments, the root location has no segments.
+   */
+  static String[] split(String path) {
+    final String trimmedPath = PathUtil.trimPath(path);
+
+    return trimmedPath.length() == 0
+      ? new String[0]
+      : trimmedPath.split(PathUtil.FORWARD_SLASH);
+  }
+
+  Node<T> getRoot() {
+    return root;
+  }
+
+  int size() {
+    return size;
+  }
+
+  void add(String path, T value) {
+    Node<T> node = root;
+    for (String segment : split(path)) {
+      Node<T> child = node.children.get(segment);
+      if (child == null) {
+        child = new Node<>(node, segment);
+        node.children.put(segment, child);
+      }
+      node = child;
+    }
+
+    node.values.add(value);
+    size++;
+  }
+
+  boolean remove(String path, T value) {
+    Node<T> node = root;
+    for (String segment : split(path)) {
+      node = node.children.get(segment);
+      if (node == null) {
+        return false;
+      }
+    }
+
+    if (!node.values.remove(value)) {
+      return false;
+    }
+    size--;
+
+    while (node.parent != null && node.values.isEmpty() && node.children.isEmpty()) {
+      node.parent.children.remove(node.segment);
+      node = node.parent;
+    }
+    return true;
+  }
+
+  /**
+   * Removes and returns the values registered for the given location, its ancestors and its descendants. Only the
+   * nodes along the path and the subtree of the location are visited.
+   */
+  List<T> removeRelated(String path) {
+    final List<T> result = new ArrayList<>();
+
+    Node<T> node = root;
+    boolean found = true;
+    result.addAll(node.values);
+    node.values.clear();
+    for (String segment : split(path)) {
+      final Node<T> child = node.children.get(segment);
+      if (child == null) {
+        found = false;
+        break;
+      }
+      node = child;
+      result.addAll(node.values);
+      node.values.clear();
+    }
+
+    if (found) {
+      for (Node<T> child : node.children.values()) {
+        collectValues(child, result);
+      }
+      node.children.clear();
+    }
+    size -= result.size();
+
+    while (node.parent != null && node.values.isEmpty() && node.children.isEmpty()) {
+      node.parent.children.remove(node.segment);
+      node = node.parent;
+    }
+    return result;
+  }
+
+  /**
+   * Returns all registered values.
+   */
+  List<T> values() {
+    final List<T> result = new ArrayList<>(size);
+    collectValues(root, result);
+    return result;
+  }
+
+  void clear() {
+    root.children.clear();
+    root.values.clear();
+    size = 0;
+  }
+
+  private static <T> void collectValues(Node<T> node, List<T> result) {
+    result.addAll(node.values);
+    for (Node<T> child : node.children.values()) {
+      collectValues(child, result);
+    }
+  }
+
+  /**
+   * A location of the trie.
+   *
+   * @param <T> The type of the registered values.
+   */
+  static final class Node<T> {
+    private final Node<T> parent;
+    private final String segment;
+    private final Map<String, Node<T>> children = new HashMap<>();
+    private final List<T> values = new ArrayList<>(1);
+
+    private Node(Node<T> parent, String segment) {
+      this.parent = parent;
+      this.segment = segment;
+    }
+
+    String getSegment() {
+      return segment;
+    }
+
+    Node<T> getChild(String childSegment) {
+      return children.get(childSegment);
+    }
+
+    Collection<Node<T>> getChildren() {
+      return Collections.unmodifiableCollection(children.values());
+    }
+
+    List<T> getValues() {
+      return Collections.unmodifiableList(values);
+    }
+  }
+}
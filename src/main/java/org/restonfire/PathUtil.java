@@ -49,4 +49,40 @@ final class PathUtil {
       ? path.substring(0, path.length() - 1)
       : path;
   }
+
+  /**
+   * Removes all leading and trailing slashes of the given path, i.e. "/foo/bar/" becomes "foo/bar". The root
+   * location is represented by an empty string.
+   */
+  public static String trimPath(String path) {
+    if (path == null) {
+      throw new IllegalArgumentException(PATH_CANNOT_BE_NULL);
+    }
+
+    int start = 0;
+    int end = path.length();
+
+    while (start < end && path.charAt(start) == '/') {
+      start++;
+    }
+    while (end > start && path.charAt(end - 1) == '/') {
+      end--;
+    }
+
+    return path.substring(start, end);
+  }
+
+  /**
+   * Returns <code>true</code> if the first path is the same location as the second path or one of its ancestors.
+   * Both paths are expected to be trimmed by {@link #trimPath(String)}.
+   */
+  public static boolean isSameOrAncestor(String ancestor, String path) {
+    if (ancestor.length() == 0 || ancestor.equals(path)) {
+      return true;
+    }
+
+    return path.length() > ancestor.length()
+      && path.startsWith(ancestor)
+      && path.charAt(ancestor.length()) == '/';
+  }
 }
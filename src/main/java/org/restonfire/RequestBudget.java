@@ -0,0 +1,45 @@
+package org.restonfire;
+
+/**
+ * Token budget for additional requests, i.e. retries or hedged requests, in relation to the regular requests.
+ * Every regular request deposits a fraction of a token, and every additional request withdraws a whole token. The
+ * balance is capped, so a long period of healthy traffic does not save up for a burst of additional requests, while
+ * a database with little traffic can still send an occasional one.
+ */
+final class RequestBudget {
+
+  private final double deposit;
+  private final double maxBalance;
+
+  // guarded by "this"
+  private double balance;
+
+  /**
+   * @param percent The additional requests allowed in percent of the regular requests.
+   * @param maxBalance The maximum number of additional requests the budget saves up, which is the initial balance.
+   */
+  RequestBudget(int percent, double maxBalance) {
+    this.deposit = percent / 100.0;
+    this.maxBalance = maxBalance;
+    this.balance = maxBalance;
+  }
+
+  synchronized void deposit() {
+    balance = Math.min(maxBalance, balance + deposit);
+  }
+
+  /**
+   * @return <code>true</code> if the balance covered an additional request, which was withdrawn from the balance.
+   */
+  synchronized boolean withdraw() {
+    if (balance < 1) {
+      return false;
+    }
+    balance -= 1;
+    return true;
+  }
+
+  synchronized double getBalance() {
+    return balance;
+  }
+}
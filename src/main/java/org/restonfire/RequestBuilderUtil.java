@@ -1,58 +1,91 @@
 package org.restonfire;
 
-import com.ning.http.client.AsyncHttpClient;
+import org.restonfire.transport.HttpRequest;
+
+import java.util.Map;
 
 /**
- * Utility class to build the requests to Firebase.
+ * Utility class to build the requests to Firebase, which are sent by an {@link org.restonfire.transport.HttpTransport}.
  */
 final class RequestBuilderUtil {
+
+  public static final String ETAG_HEADER = "ETag";
+
+  private static final String ETAG_REQUEST_HEADER = "X-Firebase-ETag";
+  private static final String IF_MATCH_HEADER = "if-match";
+
   private RequestBuilderUtil() {
     //do nothing
   }
 
-  public static AsyncHttpClient.BoundRequestBuilder createGet(AsyncHttpClient asyncHttpClient, String referenceUrl, String accessToken) {
-    final AsyncHttpClient.BoundRequestBuilder requestBuilder = asyncHttpClient
-      .prepareGet(referenceUrl);
+  public static HttpRequest createGet(String referenceUrl, String accessToken) {
+    final HttpRequest request = new HttpRequest(HttpRequest.GET, referenceUrl);
+
+    return addQueryParamsIfApplicable(request, accessToken);
+  }
 
-    return addQueryParamsIfApplicable(requestBuilder, accessToken);
+  /**
+   * Creates a GET request, which asks Firebase to return the ETag of the location in the {@link #ETAG_HEADER} header.
+   */
+  public static HttpRequest createETagGet(String referenceUrl, String accessToken) {
+    return createGet(referenceUrl, accessToken)
+      .addHeader(ETAG_REQUEST_HEADER, "true");
   }
 
-  public static AsyncHttpClient.BoundRequestBuilder createPost(AsyncHttpClient asyncHttpClient, String referenceUrl, String accessToken, String body) {
-    final AsyncHttpClient.BoundRequestBuilder requestBuilder = asyncHttpClient
-      .preparePost(referenceUrl)
+  public static HttpRequest createPost(String referenceUrl, String accessToken, String body) {
+    final HttpRequest request = new HttpRequest(HttpRequest.POST, referenceUrl)
       .setBody(body);
 
-    return addQueryParamsIfApplicable(requestBuilder, accessToken);
+    return addQueryParamsIfApplicable(request, accessToken);
   }
 
-  public static AsyncHttpClient.BoundRequestBuilder createPatch(AsyncHttpClient asyncHttpClient, String referenceUrl, String accessToken, String body) {
-    final AsyncHttpClient.BoundRequestBuilder requestBuilder = asyncHttpClient
-      .preparePatch(referenceUrl)
+  public static HttpRequest createPatch(String referenceUrl, String accessToken, String body) {
+    final HttpRequest request = new HttpRequest(HttpRequest.PATCH, referenceUrl)
       .setBody(body);
 
-    return addQueryParamsIfApplicable(requestBuilder, accessToken);
+    return addQueryParamsIfApplicable(request, accessToken);
   }
 
-  public static AsyncHttpClient.BoundRequestBuilder createPut(AsyncHttpClient asyncHttpClient, String referenceUrl, String accessToken, String body) {
-    final AsyncHttpClient.BoundRequestBuilder requestBuilder = asyncHttpClient
-      .preparePut(referenceUrl)
+  public static HttpRequest createPut(String referenceUrl, String accessToken, String body) {
+    final HttpRequest request = new HttpRequest(HttpRequest.PUT, referenceUrl)
       .setBody(body);
 
-    return addQueryParamsIfApplicable(requestBuilder, accessToken);
+    return addQueryParamsIfApplicable(request, accessToken);
+  }
+
+  /**
+   * Creates a PUT request, which will only be applied by Firebase if the ETag of the location still matches the given
+   * value. Otherwise, the request fails with status code 412.
+   */
+  public static HttpRequest createConditionalPut(String referenceUrl, String accessToken, String body, String eTag) {
+    return createPut(referenceUrl, accessToken, body)
+      .addHeader(IF_MATCH_HEADER, eTag);
+  }
+
+  /**
+   * @return <code>true</code> if the request was created by {@link #createConditionalPut}. Such a request must not be
+   * sent again, as it fails with status code 412 if the first one was applied by Firebase.
+   */
+  public static boolean isConditional(HttpRequest request) {
+    for (Map.Entry<String, String> header : request.getHeaders()) {
+      if (IF_MATCH_HEADER.equalsIgnoreCase(header.getKey())) {
+        return true;
+      }
+    }
+    return false;
   }
 
-  public static AsyncHttpClient.BoundRequestBuilder createDelete(AsyncHttpClient asyncHttpClient, String referenceUrl, String accessToken) {
-    final AsyncHttpClient.BoundRequestBuilder requestBuilder = asyncHttpClient
-      .prepareDelete(referenceUrl);
+  public static HttpRequest createDelete(String referenceUrl, String accessToken) {
+    final HttpRequest request = new HttpRequest(HttpRequest.DELETE, referenceUrl);
 
-    return addQueryParamsIfApplicable(requestBuilder, accessToken);
+    return addQueryParamsIfApplicable(request, accessToken);
   }
 
-  private static AsyncHttpClient.BoundRequestBuilder addQueryParamsIfApplicable(AsyncHttpClient.BoundRequestBuilder requestBuilder, String accessToken) {
+  private static HttpRequest addQueryParamsIfApplicable(HttpRequest request, String accessToken) {
     if (StringUtil.notNullOrEmpty(accessToken)) {
-      return requestBuilder.addQueryParam("auth", accessToken);
+      return request.addQueryParam("auth", accessToken);
     }
 
-    return requestBuilder;
+    return request;
   }
 }
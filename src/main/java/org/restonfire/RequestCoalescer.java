@@ -0,0 +1,145 @@
+package org.restonfire;
+
+import org.jdeferred.Deferred;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.FailCallback;
+import org.jdeferred.Promise;
+import org.jdeferred.impl.DeferredObject;
+import org.restonfire.exceptions.FirebaseRuntimeException;
+
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-flight coalescing of identical read requests. While a request for a given key is in flight, all
+ * further requests with the same key are attached to the promise of the first request instead of sending
+ * another HTTP request. The entry is removed before the promise is settled, so requests issued after the
+ * response arrived will always fetch a fresh value. Likewise, a write detaches the in-flight requests of the written
+ * location, its ancestors and its descendants, so the requests issued after the write do not join a request that
+ * may have been answered before the write was applied.<br>
+ * <br>
+ * <b>Note:</b> All coalesced callers receive the same decoded result instance.
+ */
+final class RequestCoalescer {
+
+  private final boolean enabled;
+  private final ConcurrentMap<String, InFlightRequest> inFlightRequests = new ConcurrentHashMap<>();
+  private final AtomicLong coalescedCount = new AtomicLong();
+
+  RequestCoalescer(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * Creates the key identifying a read request by its URL, its query parameters and the type the response will be
+   * deserialized into. The order of the query parameters is irrelevant for the key.
+   */
+  static String createKey(String url, Map<String, String> queryParams, Type type) {
+    final StringBuilder key = new StringBuilder(url);
+
+    if (queryParams != null && !queryParams.isEmpty()) {
+      for (Map.Entry<String, String> entry : new TreeMap<>(queryParams).entrySet()) {
+        key.append('&').append(entry.getKey()).append('=').append(entry.getValue());
+      }
+    }
+
+    return key.append('#').append(type).toString();
+  }
+
+  /**
+   * Executes the request, unless a request with the same key is already in flight. In this case the promise of
+   * the in-flight request will be returned.
+   *
+   * @param path The path of the location read by the request.
+   */
+  @SuppressWarnings("unchecked")
+  <T> Promise<T, FirebaseRuntimeException, Void> execute(String path, final String key, Request<T> request) {
+    if (!enabled) {
+      return request.execute();
+    }
+
+    final Deferred<T, FirebaseRuntimeException, Void> deferred = new DeferredObject<>();
+    final Promise<T, FirebaseRuntimeException, Void> promise = deferred.promise();
+
+    final InFlightRequest inFlight = new InFlightRequest(PathUtil.trimPath(path), promise);
+    final InFlightRequest existing = inFlightRequests.putIfAbsent(key, inFlight);
+    if (existing != null) {
+      coalescedCount.incrementAndGet();
+      return (Promise<T, FirebaseRuntimeException, Void>) existing.promise;
+    }
+
+    try {
+      request.execute()
+        .done(new DoneCallback<T>() {
+          @Override
+          public void onDone(T result) {
+            inFlightRequests.remove(key, inFlight);
+            deferred.resolve(result);
+          }
+        })
+        .fail(new FailCallback<FirebaseRuntimeException>() {
+          @Override
+          public void onFail(FirebaseRuntimeException result) {
+            inFlightRequests.remove(key, inFlight);
+            deferred.reject(result);
+          }
+        });
+    } catch (RuntimeException ex) {
+      inFlightRequests.remove(key, inFlight);
+      throw ex;
+    }
+
+    return promise;
+  }
+
+  /**
+   * Detaches the in-flight requests of the given location, its ancestors and its descendants. Their callers still
+   * receive their result, but further requests are sent on their own.
+   */
+  void invalidate(String path) {
+    if (!enabled) {
+      return;
+    }
+
+    final String trimmedPath = PathUtil.trimPath(path);
+    for (Map.Entry<String, InFlightRequest> entry : inFlightRequests.entrySet()) {
+      final String inFlightPath = entry.getValue().path;
+      if (PathUtil.isSameOrAncestor(inFlightPath, trimmedPath) || PathUtil.isSameOrAncestor(trimmedPath, inFlightPath)) {
+        inFlightRequests.remove(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * @return The number of requests that were attached to an in-flight request instead of being sent.
+   */
+  long getCoalescedCount() {
+    return coalescedCount.get();
+  }
+
+  /**
+   * The promise of an in-flight request and the path of the location it reads.
+   */
+  private static final class InFlightRequest {
+    private final String path;
+    private final Promise<?, FirebaseRuntimeException, Void> promise;
+
+    private InFlightRequest(String path, Promise<?, FirebaseRuntimeException, Void> promise) {
+      this.path = path;
+      this.promise = promise;
+    }
+  }
+
+  /**
+   * A read request that can be coalesced.
+   *
+   * @param <T> The type of the result object.
+   */
+  interface Request<T> {
+    Promise<T, FirebaseRuntimeException, Void> execute();
+  }
+}
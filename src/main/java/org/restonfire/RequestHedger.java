@@ -0,0 +1,326 @@
+package org.restonfire;
+
+import org.restonfire.transport.HttpCall;
+import org.restonfire.transport.HttpHeaders;
+import org.restonfire.transport.HttpRequest;
+import org.restonfire.transport.HttpResponse;
+import org.restonfire.transport.HttpResponseHandler;
+import org.restonfire.transport.HttpStatus;
+import org.restonfire.transport.HttpStream;
+import org.restonfire.transport.HttpStreamHandler;
+import org.restonfire.transport.HttpTransport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hedges the <code>GET</code> requests of a database, as configured by the {@link HedgingSettings}. The attempt whose
+ * response status arrives first wins and is passed on, and the losing attempt is cancelled, so it releases its
+ * connection and its slots of the concurrency limits right away. The failure of an attempt is only passed on if no
+ * other attempt is left that could still win.<br>
+ * <br>
+ * The hedge delay is recalculated from a sliding window of the latencies of all attempts until their status arrived,
+ * so the hedged requests themselves do not lower the measured tail latency.
+ */
+final class RequestHedger {
+
+  private static final Logger LOG = LoggerFactory.getLogger(RequestHedger.class);
+
+  private static final RequestHedger DISABLED = new RequestHedger(null);
+
+  static final int LATENCY_WINDOW_SIZE = 1024;
+  // the number of latencies measured between two calculations of the hedge delay
+  static final int DELAY_UPDATE_INTERVAL = 64;
+  private static final double MAX_HEDGE_BUDGET = 10;
+
+  private final HedgingSettings settings;
+  private final long minDelayNanos;
+  private final long maxDelayNanos;
+  private final RequestBudget budget;
+
+  // guarded by "latencies"
+  private final long[] latencies;
+  private long latencyCount;
+  private volatile long hedgeDelayNanos;
+
+  private final AtomicLong requestCount = new AtomicLong();
+  private final AtomicLong hedgeCount = new AtomicLong();
+  private final AtomicLong hedgeWinCount = new AtomicLong();
+  private final AtomicLong budgetExhaustedCount = new AtomicLong();
+
+  RequestHedger(HedgingSettings settings) {
+    this.settings = settings;
+    this.minDelayNanos = settings == null ? 0 : settings.getTimeUnit().toNanos(settings.getMinDelay());
+    this.maxDelayNanos = settings == null ? 0 : settings.getTimeUnit().toNanos(settings.getMaxDelay());
+    this.budget = new RequestBudget(settings == null ? 0 : settings.getHedgeBudgetPercent(), MAX_HEDGE_BUDGET);
+    this.latencies = new long[settings == null ? 0 : LATENCY_WINDOW_SIZE];
+    this.hedgeDelayNanos = maxDelayNanos;
+  }
+
+  static RequestHedger disabled() {
+    return DISABLED;
+  }
+
+  static RequestHedger create(HedgingSettings settings) {
+    return settings == null ? DISABLED : new RequestHedger(settings);
+  }
+
+  boolean isEnabled() {
+    return settings != null;
+  }
+
+  /**
+   * @return A transport hedging the <code>GET</code> requests of the given transport, or the given transport if the
+   * hedging is disabled.
+   */
+  HttpTransport decorate(HttpTransport transport) {
+    return isEnabled() ? new HedgingTransport(transport) : transport;
+  }
+
+  HedgingStatistics getStatistics() {
+    return new HedgingStatistics(
+      requestCount.get(),
+      hedgeCount.get(),
+      hedgeWinCount.get(),
+      budgetExhaustedCount.get(),
+      hedgeDelayNanos / (double) TimeUnit.MILLISECONDS.toNanos(1)
+    );
+  }
+
+  long getHedgeDelayNanos() {
+    return hedgeDelayNanos;
+  }
+
+  void recordLatency(long latencyNanos) {
+    final long[] window;
+    synchronized (latencies) {
+      latencies[(int) (latencyCount++ % LATENCY_WINDOW_SIZE)] = latencyNanos;
+      if (latencyCount % DELAY_UPDATE_INTERVAL != 0) {
+        return;
+      }
+      window = Arrays.copyOf(latencies, (int) Math.min(latencyCount, LATENCY_WINDOW_SIZE));
+    }
+
+    // the window is sorted outside the lock, so the I/O threads do not wait for each other
+    Arrays.sort(window);
+    final int index = Math.max(0, (int) Math.ceil(settings.getDelayPercentile() / 100 * window.length) - 1);
+    hedgeDelayNanos = Math.max(minDelayNanos, Math.min(maxDelayNanos, window[index]));
+  }
+
+  /**
+   * {@link HttpTransport} hedging its <code>GET</code> requests.
+   */
+  private final class HedgingTransport implements HttpTransport {
+    private final HttpTransport delegate;
+
+    private HedgingTransport(HttpTransport delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public HttpCall execute(HttpRequest request, HttpResponseHandler handler) {
+      if (!HttpRequest.GET.equals(request.getMethod())) {
+        return delegate.execute(request, handler);
+      }
+
+      requestCount.incrementAndGet();
+      budget.deposit();
+      final HedgedRequest hedgedRequest = new HedgedRequest(delegate, request, handler);
+      hedgedRequest.start();
+      return hedgedRequest;
+    }
+
+    @Override
+    public HttpStream stream(HttpRequest request, HttpStreamHandler handler) {
+      return delegate.stream(request, handler);
+    }
+
+    @Override
+    public void close() {
+      delegate.close();
+    }
+  }
+
+  /**
+   * A request with its attempts, which sends the hedged attempt when it is run as the timer task.
+   */
+  private final class HedgedRequest implements HttpCall, Runnable {
+    private final HttpTransport transport;
+    private final HttpRequest request;
+    private final HttpResponseHandler handler;
+    private final Attempt original = new Attempt(this, false);
+    private volatile ScheduledFuture<?> timer;
+
+    // guarded by "this"
+    private Attempt hedgeAttempt;
+    private Attempt winner;
+    private int pendingCount = 1;
+    private boolean failed;
+    private boolean cancelled;
+
+    private HedgedRequest(HttpTransport transport, HttpRequest request, HttpResponseHandler handler) {
+      this.transport = transport;
+      this.request = request;
+      this.handler = handler;
+    }
+
+    private void start() {
+      original.send();
+      // A timer that expires after the request was decided does not send the hedged request
+      timer = SchedulerUtil.schedule(this, hedgeDelayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void run() {
+      final Attempt attempt;
+      synchronized (this) {
+        if (winner != null || failed || cancelled) {
+          return;
+        }
+        if (!budget.withdraw()) {
+          budgetExhaustedCount.incrementAndGet();
+          return;
+        }
+        pendingCount++;
+        attempt = new Attempt(this, true);
+        hedgeAttempt = attempt;
+      }
+
+      hedgeCount.incrementAndGet();
+      LOG.debug("Hedging {} after {} ms", request, TimeUnit.NANOSECONDS.toMillis(hedgeDelayNanos));
+      try {
+        attempt.send();
+      } catch (RuntimeException e) {
+        attempt.onThrowable(e);
+      }
+    }
+
+    @Override
+    public void cancel() {
+      final Attempt currentHedge;
+      synchronized (this) {
+        cancelled = true;
+        cancelTimer();
+        currentHedge = hedgeAttempt;
+      }
+
+      original.cancel();
+      if (currentHedge != null) {
+        currentHedge.cancel();
+      }
+    }
+
+    /**
+     * Cancels the other attempt, if the given attempt is the winner.
+     *
+     * @return <code>true</code> if the attempt is the winner, which is the first attempt to claim the request.
+     */
+    private boolean claim(Attempt attempt) {
+      final Attempt loser;
+      synchronized (this) {
+        if (winner != null || failed) {
+          return winner == attempt;
+        }
+
+        winner = attempt;
+        cancelTimer();
+        if (attempt.hedge) {
+          hedgeWinCount.incrementAndGet();
+        }
+        loser = attempt == original ? hedgeAttempt : original;
+      }
+
+      // The loser is cancelled outside the lock, as its failure is reported to fail() by the cancelling thread
+      if (loser != null) {
+        loser.cancel();
+      }
+      return true;
+    }
+
+    /**
+     * @return <code>true</code> if the failure of the attempt is passed on, as no other attempt can win.
+     */
+    private synchronized boolean fail(Attempt attempt) {
+      if (winner != null || failed) {
+        return winner == attempt;
+      }
+
+      pendingCount--;
+      if (pendingCount > 0) {
+        return false;
+      }
+      failed = true;
+      cancelTimer();
+      return true;
+    }
+
+    private void cancelTimer() {
+      final ScheduledFuture<?> currentTimer = timer;
+      if (currentTimer != null) {
+        currentTimer.cancel(false);
+      }
+    }
+  }
+
+  /**
+   * {@link HttpResponseHandler} of the original or the hedged attempt of a request.
+   */
+  private final class Attempt extends HttpResponseHandler {
+    private final HedgedRequest owner;
+    private final boolean hedge;
+    private long startTime;
+    private volatile HttpCall call;
+    private volatile boolean cancelled;
+
+    private Attempt(HedgedRequest owner, boolean hedge) {
+      this.owner = owner;
+      this.hedge = hedge;
+    }
+
+    private void send() {
+      startTime = System.nanoTime();
+      final HttpCall currentCall = owner.transport.execute(owner.request, this);
+      call = currentCall;
+      if (cancelled) {
+        // cancel() was invoked while the attempt was sent
+        currentCall.cancel();
+      }
+    }
+
+    private void cancel() {
+      cancelled = true;
+      final HttpCall currentCall = call;
+      if (currentCall != null) {
+        currentCall.cancel();
+      }
+    }
+
+    @Override
+    public boolean onHeadersReceived(HttpStatus status, HttpHeaders headers) {
+      recordLatency(System.nanoTime() - startTime);
+      if (!owner.claim(this)) {
+        // No further callback is invoked for the aborted loser
+        return false;
+      }
+      return owner.handler.onHeadersReceived(status, headers);
+    }
+
+    @Override
+    public void onCompleted(HttpResponse response) {
+      if (owner.claim(this)) {
+        owner.handler.onCompleted(response);
+      }
+    }
+
+    @Override
+    public void onThrowable(Throwable t) {
+      if (owner.fail(this)) {
+        owner.handler.onThrowable(t);
+      }
+    }
+  }
+}
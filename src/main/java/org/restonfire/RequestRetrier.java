@@ -0,0 +1,259 @@
+package org.restonfire;
+
+import org.restonfire.transport.HttpCall;
+import org.restonfire.transport.HttpHeaders;
+import org.restonfire.transport.HttpRequest;
+import org.restonfire.transport.HttpResponse;
+import org.restonfire.transport.HttpResponseHandler;
+import org.restonfire.transport.HttpStatus;
+import org.restonfire.transport.HttpStream;
+import org.restonfire.transport.HttpStreamHandler;
+import org.restonfire.transport.HttpTransport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retries the idempotent requests of a database, as configured by the {@link RetrySettings}. A response with a
+ * retryable status code is aborted once its status was received, so neither the status nor the body of a retried
+ * attempt reach the handler of the request. Only the last attempt is passed on. The conditional requests are never
+ * retried, as a retry would fail with status code 412 if the first attempt was applied.<br>
+ * <br>
+ * The retries are paid from a {@link RequestBudget}, which saves up at most {@link #MAX_RETRY_BUDGET} retries.
+ */
+final class RequestRetrier {
+
+  private static final Logger LOG = LoggerFactory.getLogger(RequestRetrier.class);
+
+  private static final RequestRetrier DISABLED = new RequestRetrier(null);
+
+  static final double MAX_RETRY_BUDGET = 10;
+
+  private static final String RETRY_AFTER_HEADER = "Retry-After";
+
+  private final RetrySettings settings;
+  private final long initialDelayNanos;
+  private final long maxDelayNanos;
+  private final RequestBudget budget;
+
+  RequestRetrier(RetrySettings settings) {
+    this.settings = settings;
+    this.initialDelayNanos = settings == null ? 0 : settings.getTimeUnit().toNanos(settings.getInitialDelay());
+    this.maxDelayNanos = settings == null ? 0 : settings.getTimeUnit().toNanos(settings.getMaxDelay());
+    this.budget = new RequestBudget(settings == null ? 0 : settings.getRetryBudgetPercent(), MAX_RETRY_BUDGET);
+  }
+
+  static RequestRetrier disabled() {
+    return DISABLED;
+  }
+
+  static RequestRetrier create(RetrySettings settings) {
+    return settings == null ? DISABLED : new RequestRetrier(settings);
+  }
+
+  boolean isEnabled() {
+    return settings != null;
+  }
+
+  /**
+   * @return A transport retrying the idempotent requests of the given transport, or the given transport if the
+   * retrier is disabled.
+   */
+  HttpTransport decorate(HttpTransport transport) {
+    return isEnabled() ? new RetryingTransport(transport) : transport;
+  }
+
+  double getBudget() {
+    return budget.getBalance();
+  }
+
+  private boolean isIdempotent(HttpRequest request) {
+    // The transaction of a reference handles the failure of its conditional request by itself
+    if (RequestBuilderUtil.isConditional(request)) {
+      return false;
+    }
+
+    switch (request.getMethod()) {
+      case HttpRequest.GET:
+      case HttpRequest.PUT:
+      case HttpRequest.DELETE:
+        return true;
+      case HttpRequest.PATCH:
+        return settings.isPatchRetryable();
+      default:
+        return false;
+    }
+  }
+
+  private boolean isRetryable(Throwable t) {
+    for (Class<? extends Throwable> retryableException : settings.getRetryableExceptions()) {
+      if (retryableException.isInstance(t)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return The delay in nanoseconds requested by the <code>Retry-After</code> header, or 0 if the header is missing
+   * or specifies an HTTP date.
+   */
+  static long getRetryAfterNanos(HttpHeaders headers) {
+    final String retryAfter = headers == null ? null : headers.getHeader(RETRY_AFTER_HEADER);
+    if (retryAfter == null) {
+      return 0;
+    }
+
+    try {
+      return TimeUnit.SECONDS.toNanos(Long.parseLong(retryAfter.trim()));
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * {@link HttpTransport} retrying its idempotent requests.
+   */
+  private final class RetryingTransport implements HttpTransport {
+    private final HttpTransport delegate;
+
+    private RetryingTransport(HttpTransport delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public HttpCall execute(HttpRequest request, HttpResponseHandler handler) {
+      if (!isIdempotent(request)) {
+        return delegate.execute(request, handler);
+      }
+
+      budget.deposit();
+      final RetriedRequest retried = new RetriedRequest(delegate, request, handler);
+      retried.call = delegate.execute(request, new RetryingHandler(retried, 1));
+      return retried;
+    }
+
+    @Override
+    public HttpStream stream(HttpRequest request, HttpStreamHandler handler) {
+      return delegate.stream(request, handler);
+    }
+
+    @Override
+    public void close() {
+      delegate.close();
+    }
+  }
+
+  /**
+   * A retried request, whose cancellation cancels the current attempt and prevents the next one.
+   */
+  private static final class RetriedRequest implements HttpCall {
+    private final HttpTransport transport;
+    private final HttpRequest request;
+    private final HttpResponseHandler handler;
+    private volatile HttpCall call;
+    private volatile boolean cancelled;
+
+    private RetriedRequest(HttpTransport transport, HttpRequest request, HttpResponseHandler handler) {
+      this.transport = transport;
+      this.request = request;
+      this.handler = handler;
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+      final HttpCall current = call;
+      if (current != null) {
+        current.cancel();
+      }
+    }
+  }
+
+  /**
+   * {@link HttpResponseHandler} of an attempt, which schedules the next attempt instead of passing on a retryable
+   * failure.
+   */
+  private final class RetryingHandler extends HttpResponseHandler {
+    private final RetriedRequest retried;
+    private final HttpRequest request;
+    private final HttpResponseHandler handler;
+    private final int attempt;
+
+    private RetryingHandler(RetriedRequest retried, int attempt) {
+      this.retried = retried;
+      this.request = retried.request;
+      this.handler = retried.handler;
+      this.attempt = attempt;
+    }
+
+    @Override
+    public boolean onHeadersReceived(HttpStatus status, HttpHeaders headers) {
+      if (settings.getRetryableStatusCodes().contains(status.getStatusCode())
+        && retry("status code " + status.getStatusCode(), getRetryAfterNanos(headers))) {
+        // No further callback is invoked for the aborted attempt
+        return false;
+      }
+      return handler.onHeadersReceived(status, headers);
+    }
+
+    @Override
+    public void onCompleted(HttpResponse response) {
+      handler.onCompleted(response);
+    }
+
+    @Override
+    public void onThrowable(Throwable t) {
+      if (!isRetryable(t) || !retry(t.toString(), 0)) {
+        handler.onThrowable(t);
+      }
+    }
+
+    private boolean retry(String reason, long minDelayNanos) {
+      if (attempt >= settings.getMaxAttempts() || retried.cancelled) {
+        return false;
+      }
+      if (!budget.withdraw()) {
+        LOG.debug("Not retrying {} after {}, as the retry budget is exhausted", request, reason);
+        return false;
+      }
+
+      final long delay = Math.max(
+        Math.min(minDelayNanos, maxDelayNanos),
+        BackoffUtil.jitteredDelay(attempt, initialDelayNanos, maxDelayNanos)
+      );
+      LOG.debug("Retrying {} after {} in {} ms (attempt {})", request, reason, TimeUnit.NANOSECONDS.toMillis(delay), attempt + 1);
+
+      SchedulerUtil.schedule(new Runnable() {
+        @Override
+        public void run() {
+          sendNext();
+        }
+      }, delay, TimeUnit.NANOSECONDS);
+      return true;
+    }
+
+    private void sendNext() {
+      if (retried.cancelled) {
+        handler.onThrowable(new CancellationException("The request was cancelled"));
+        return;
+      }
+
+      final HttpCall call;
+      try {
+        call = retried.transport.execute(request, new RetryingHandler(retried, attempt + 1));
+      } catch (RuntimeException e) {
+        handler.onThrowable(e);
+        return;
+      }
+
+      retried.call = call;
+      if (retried.cancelled) {
+        // cancel() was invoked while the attempt was sent
+        call.cancel();
+      }
+    }
+  }
+}
@@ -1,16 +1,23 @@
 package org.restonfire;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
 import com.google.gson.JsonSyntaxException;
-import com.ning.http.client.Response;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import org.restonfire.exceptions.FirebaseAccessException;
 import org.restonfire.exceptions.FirebaseRestException;
 import org.restonfire.exceptions.FirebaseRuntimeException;
+import org.restonfire.transport.HttpResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Type;
 import java.net.HttpURLConnection;
+import java.nio.charset.Charset;
 
 /**
  * Helper class for common REST based functions.
@@ -21,17 +28,27 @@ final class RestUtil {
 
   private static final String FAILED_TO_PARSE_RESPONSE_BODY_FOR_REQUEST = "Failed to parse responses body for request: ";
 
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
   private RestUtil() {
     //do nothing
   }
 
-  public static <T> T handleResponse(Gson gson, String referenceUrl, Response response, Class<T> clazz) {
+  public static <T> T handleResponse(Gson gson, String referenceUrl, HttpResponse response, Class<T> clazz) {
+    return handleResponse(gson, referenceUrl, response, (Type) clazz);
+  }
+
+  /**
+   * Handles the response like {@link #handleResponse(Gson, String, HttpResponse, Class)}, but decodes the body into
+   * a generic type, i.e. a {@link java.util.Map} of POJOs, in a single pass.
+   */
+  public static <T> T handleResponse(Gson gson, String referenceUrl, HttpResponse response, Type type) {
     try {
       switch (response.getStatusCode()) {
         case HttpURLConnection.HTTP_OK:
-          return clazz == null
+          return type == null
             ? null
-            : gson.fromJson(response.getResponseBody(), clazz);
+            : RestUtil.<T>decodeResponseBody(gson, response, type);
         case HttpURLConnection.HTTP_UNAUTHORIZED:
         case HttpURLConnection.HTTP_FORBIDDEN:
           LOG.warn("The request to '{}' that violates the Security and Firebase Rules", referenceUrl);
@@ -40,9 +57,59 @@ final class RestUtil {
           LOG.error("Unsupported status code ({}), body: {}", response.getStatusCode(), response.getResponseBody());
           throw new FirebaseRestException(FirebaseRuntimeException.ErrorCode.UnsupportedStatusCode, response);
       }
-    } catch (JsonSyntaxException | IOException e) {
-      LOG.error(FAILED_TO_PARSE_RESPONSE_BODY_FOR_REQUEST + response.getUri(), e);
-      throw new FirebaseRestException(FirebaseRuntimeException.ErrorCode.ResponseDeserializationFailure, FAILED_TO_PARSE_RESPONSE_BODY_FOR_REQUEST + response.getUri(), e);
+    } catch (IOException e) {
+      throw createDeserializationException(response, e);
+    }
+  }
+
+  /**
+   * Deserializes the body of the response regardless of its status code, i.e. for the current value of a location
+   * returned with a failed conditional request.
+   */
+  public static <T> T decodeResponseBody(Gson gson, HttpResponse response, Class<T> clazz) {
+    return decodeResponseBody(gson, response, (Type) clazz);
+  }
+
+  private static <T> T decodeResponseBody(Gson gson, HttpResponse response, Type type) {
+    try {
+      return decode(gson, response.getResponseBodyAsStream(), type);
+    } catch (JsonSyntaxException | JsonIOException | IOException e) {
+      throw createDeserializationException(response, e);
+    }
+  }
+
+  private static FirebaseRestException createDeserializationException(HttpResponse response, Exception e) {
+    LOG.error(FAILED_TO_PARSE_RESPONSE_BODY_FOR_REQUEST + response.getUri(), e);
+    return new FirebaseRestException(FirebaseRuntimeException.ErrorCode.ResponseDeserializationFailure, FAILED_TO_PARSE_RESPONSE_BODY_FOR_REQUEST + response.getUri(), e);
+  }
+
+  /**
+   * Deserializes the JSON document provided by the stream directly into the requested type. The body is never
+   * materialized as a {@link String}, which avoids keeping multiple copies of large payloads on the heap while
+   * decoding. An empty stream is treated like a JSON <code>null</code> value.
+   *
+   * @param gson The {@link Gson} instance used for the deserialization.
+   * @param body The response body, which will be closed once the value was read.
+   * @param type The {@link Type} of the result, which may be a {@link Class} or a generic type.
+   * @param <T> The type of the result object.
+   * @return The deserialized value.
+   * @throws IOException The stream could not be read.
+   */
+  static <T> T decode(Gson gson, InputStream body, Type type) throws IOException {
+    if (body == null) {
+      return null;
+    }
+
+    try (JsonReader reader = new JsonReader(new InputStreamReader(body, UTF_8))) {
+      // Gson's default for fromJson(String) is a lenient parser, which is kept to remain backwards compatible
+      reader.setLenient(true);
+      final T result = gson.fromJson(reader, type);
+
+      if (result != null && reader.peek() != JsonToken.END_DOCUMENT) {
+        throw new JsonSyntaxException("JSON document was not fully consumed.");
+      }
+
+      return result;
     }
   }
 }
@@ -0,0 +1,144 @@
+package org.restonfire;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Configuration of the automatic retry of a {@link FirebaseRestDatabase}'s idempotent requests. <code>GET</code>,
+ * <code>PUT</code> and <code>DELETE</code> requests that failed with a retryable status code or exception are sent
+ * again after an exponential backoff with full jitter, until the maximum number of attempts is reached.
+ * <code>PATCH</code> requests are only retried if they are marked as safe, and <code>POST</code> requests, which
+ * create a new child with every attempt, are never retried.<br>
+ * <br>
+ * The retries are limited by a budget of the database: every request adds the configured percentage of a retry to
+ * the budget, and every retry takes a whole retry out of it. Once the budget is exhausted the failures are passed
+ * on, so the retries cannot multiply the load of a Firebase outage.
+ *
+ * @see BaseFirebaseRestDatabaseFactory#setRetrySettings(RetrySettings)
+ */
+public final class RetrySettings {
+
+  /**
+   * The status codes retried by default: 429 (Too Many Requests), 500, 502, 503 and 504.
+   */
+  public static final Set<Integer> DEFAULT_RETRYABLE_STATUS_CODES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(429, 500, 502, 503, 504)));
+
+  /**
+   * The exceptions retried by default, including their subclasses: {@link IOException}, i.e. a connection reset,
+   * and {@link TimeoutException}.
+   */
+  public static final Set<Class<? extends Throwable>> DEFAULT_RETRYABLE_EXCEPTIONS = Collections.unmodifiableSet(new HashSet<Class<? extends Throwable>>(Arrays.asList(IOException.class, TimeoutException.class)));
+
+  private final int maxAttempts;
+  private final long initialDelay;
+  private final long maxDelay;
+  private final TimeUnit timeUnit;
+  private final int retryBudgetPercent;
+  private final Set<Integer> retryableStatusCodes;
+  private final Set<Class<? extends Throwable>> retryableExceptions;
+  private final boolean patchRetryable;
+
+  /**
+   * Creates the retry settings with the {@link #DEFAULT_RETRYABLE_STATUS_CODES} and
+   * {@link #DEFAULT_RETRYABLE_EXCEPTIONS}, which do not retry <code>PATCH</code> requests.
+   *
+   * @see #RetrySettings(int, long, long, TimeUnit, int, Set, Set, boolean)
+   */
+  public RetrySettings(int maxAttempts, long initialDelay, long maxDelay, TimeUnit timeUnit, int retryBudgetPercent) {
+    this(maxAttempts, initialDelay, maxDelay, timeUnit, retryBudgetPercent, DEFAULT_RETRYABLE_STATUS_CODES, DEFAULT_RETRYABLE_EXCEPTIONS, false);
+  }
+
+  /**
+   * Creates the retry settings.
+   *
+   * @param maxAttempts The maximum number of attempts of a request, including the first attempt.
+   * @param initialDelay The upper bound of the delay before the first retry, which doubles with every retry.
+   * @param maxDelay The maximum delay before a retry, which also caps the delay requested by a
+   *                 <code>Retry-After</code> header.
+   * @param timeUnit The {@link TimeUnit} of the <code>initialDelay</code> and <code>maxDelay</code> parameters.
+   * @param retryBudgetPercent The retries allowed in percent of the requests, i.e. 10 allows one retry for every ten
+   *                           requests.
+   * @param retryableStatusCodes The response status codes that are retried.
+   * @param retryableExceptions The exceptions that are retried, including their subclasses.
+   * @param patchRetryable <code>true</code> if <code>PATCH</code> requests are safe to retry, which is the case as
+   *                       long as the updates only set absolute values.
+   */
+  public RetrySettings(
+    int maxAttempts,
+    long initialDelay,
+    long maxDelay,
+    TimeUnit timeUnit,
+    int retryBudgetPercent,
+    Set<Integer> retryableStatusCodes,
+    Set<Class<? extends Throwable>> retryableExceptions,
+    boolean patchRetryable) {
+
+    if (maxAttempts <= 0) {
+      throw new IllegalArgumentException("maxAttempts must be greater than 0");
+    }
+    if (initialDelay < 0) {
+      throw new IllegalArgumentException("initialDelay cannot be negative");
+    }
+    if (maxDelay < initialDelay) {
+      throw new IllegalArgumentException("maxDelay cannot be less than initialDelay");
+    }
+    if (timeUnit == null) {
+      throw new IllegalArgumentException("timeUnit cannot be null");
+    }
+    if (retryBudgetPercent < 0) {
+      throw new IllegalArgumentException("retryBudgetPercent cannot be negative");
+    }
+    if (retryableStatusCodes == null) {
+      throw new IllegalArgumentException("retryableStatusCodes cannot be null");
+    }
+    if (retryableExceptions == null) {
+      throw new IllegalArgumentException("retryableExceptions cannot be null");
+    }
+
+    this.maxAttempts = maxAttempts;
+    this.initialDelay = initialDelay;
+    this.maxDelay = maxDelay;
+    this.timeUnit = timeUnit;
+    this.retryBudgetPercent = retryBudgetPercent;
+    this.retryableStatusCodes = Collections.unmodifiableSet(new HashSet<>(retryableStatusCodes));
+    this.retryableExceptions = Collections.unmodifiableSet(new HashSet<>(retryableExceptions));
+    this.patchRetryable = patchRetryable;
+  }
+
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  public long getInitialDelay() {
+    return initialDelay;
+  }
+
+  public long getMaxDelay() {
+    return maxDelay;
+  }
+
+  public TimeUnit getTimeUnit() {
+    return timeUnit;
+  }
+
+  public int getRetryBudgetPercent() {
+    return retryBudgetPercent;
+  }
+
+  public Set<Integer> getRetryableStatusCodes() {
+    return retryableStatusCodes;
+  }
+
+  public Set<Class<? extends Throwable>> getRetryableExceptions() {
+    return retryableExceptions;
+  }
+
+  public boolean isPatchRetryable() {
+    return patchRetryable;
+  }
+}
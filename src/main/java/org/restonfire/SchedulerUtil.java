@@ -0,0 +1,34 @@
+package org.restonfire;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Utility class for the delayed execution of tasks, i.e. retries after a backoff period. All tasks are executed
+ * on a single daemon thread, so they are expected to be short and non-blocking.
+ */
+final class SchedulerUtil {
+
+  private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      final Thread thread = new Thread(runnable, "rest-on-fire-scheduler-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  private SchedulerUtil() {
+    // do nothing
+  }
+
+  public static ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit timeUnit) {
+    return SCHEDULER.schedule(task, delay, timeUnit);
+  }
+}
@@ -0,0 +1,79 @@
+package org.restonfire;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.FailCallback;
+import org.jdeferred.ProgressCallback;
+import org.jdeferred.Promise;
+import org.jdeferred.impl.DeferredObject;
+import org.restonfire.exceptions.FirebaseRuntimeException;
+import org.restonfire.responses.StreamingEvent;
+import org.restonfire.responses.StreamingEventData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Utility class for creating {@link StreamingEvent} objects from decoded event data.
+ */
+final class StreamingEventUtil {
+
+  private static final Logger LOG = LoggerFactory.getLogger(StreamingEventUtil.class);
+
+  private StreamingEventUtil() {
+    // do nothing
+  }
+
+  public static StreamingEvent createEvent(Gson gson, StreamingEvent.EventType eventType, String path, JsonElement data) {
+    final JsonObject eventData = new JsonObject();
+    eventData.addProperty("path", path);
+    eventData.add("data", data == null ? JsonNull.INSTANCE : data);
+
+    // JsonElement.toString() keeps the null values of removed children, unlike the serialization through Gson
+    return new StreamingEvent(gson, eventType, eventData.toString());
+  }
+
+  /**
+   * Forwards the events of the given promise after their data was decoded into the given type. The events are decoded
+   * by the thread publishing them and the result is memoized by the event, so consumers retrieving the data with the
+   * same {@link TypeToken} do not decode it again.
+   */
+  public static <T> Promise<Void, FirebaseRuntimeException, StreamingEvent> decodeEvents(
+    Promise<Void, FirebaseRuntimeException, StreamingEvent> source,
+    final TypeToken<StreamingEventData<T>> typeToken) {
+
+    final DeferredObject<Void, FirebaseRuntimeException, StreamingEvent> deferred = new DeferredObject<>();
+
+    source
+      .progress(new ProgressCallback<StreamingEvent>() {
+        @Override
+        public void onProgress(StreamingEvent event) {
+          try {
+            event.getEventData(typeToken);
+          } catch (JsonParseException e) {
+            // The consumer will receive the error once it retrieves the data of the event
+            LOG.warn("Failed to decode event data into type {}", typeToken, e);
+          }
+          deferred.notify(event);
+        }
+      })
+      .done(new DoneCallback<Void>() {
+        @Override
+        public void onDone(Void result) {
+          deferred.resolve(result);
+        }
+      })
+      .fail(new FailCallback<FirebaseRuntimeException>() {
+        @Override
+        public void onFail(FirebaseRuntimeException error) {
+          deferred.reject(error);
+        }
+      });
+
+    return deferred.promise();
+  }
+}
@@ -0,0 +1,21 @@
+package org.restonfire;
+
+/**
+ * Callback interface for {@link FirebaseRestReference#transaction(Class, TransactionHandler)}. The handler
+ * calculates the new value of a location based on its current value.<br>
+ * <br>
+ * The handler may be invoked multiple times for a single transaction, if the value was modified by another
+ * client in the meantime. It should therefore not have any side effects.
+ *
+ * @param <T> The type of the value at the location.
+ */
+public interface TransactionHandler<T> {
+
+  /**
+   * Calculates the new value of the location. Throwing an exception aborts the transaction.
+   *
+   * @param currentValue The current value of the location, which may be <code>null</code> if no data exists.
+   * @return The new value to be written to the location. Returning <code>null</code> removes the data.
+   */
+  T doTransaction(T currentValue);
+}
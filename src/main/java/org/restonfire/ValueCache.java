@@ -0,0 +1,192 @@
+package org.restonfire;
+
+import java.lang.reflect.Type;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread-safe LRU cache for decoded values, keyed by the path of the reference and the requested result type.
+ * Entries expire after the configured time to live and are invalidated whenever a write is issued to the same
+ * location, one of its ancestors or one of its descendants. The keys are additionally indexed in a {@link PathTrie},
+ * so an invalidation only visits the path of the written location and its subtree instead of all entries.<br>
+ * <br>
+ * Every invalidation increments a generation counter. A value is only stored if no invalidation occurred while
+ * its request was in flight, which prevents a slow read from re-populating the cache with a value that was
+ * already overwritten.
+ */
+final class ValueCache {
+
+  private static final ValueCache DISABLED = new ValueCache();
+
+  private final boolean enabled;
+  private final int maximumSize;
+  private final long timeToLiveNanos;
+  private final LinkedHashMap<Key, CachedValue> entries;
+  private final PathTrie<Key> keysByPath = new PathTrie<>();
+
+  private long generation;
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+
+  private ValueCache() {
+    this.enabled = false;
+    this.maximumSize = 0;
+    this.timeToLiveNanos = 0;
+    this.entries = new LinkedHashMap<>();
+  }
+
+  ValueCache(ValueCacheSettings settings) {
+    this.enabled = true;
+    this.maximumSize = settings.getMaximumSize();
+    this.timeToLiveNanos = settings.getTimeUnit().toNanos(settings.getTimeToLive());
+    this.entries = new LinkedHashMap<Key, CachedValue>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, CachedValue> eldest) {
+        if (size() > maximumSize) {
+          keysByPath.remove(eldest.getKey().path, eldest.getKey());
+          evictionCount++;
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Returns the cache instance for databases that have no cache configured. All lookups of this instance
+   * are misses and no values are stored.
+   */
+  static ValueCache disabled() {
+    return DISABLED;
+  }
+
+  static ValueCache create(ValueCacheSettings settings) {
+    return settings == null ? DISABLED : new ValueCache(settings);
+  }
+
+  boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Returns the cached entry for the given location and type, or <code>null</code> if no valid entry exists.
+   * The entry's value itself may be <code>null</code> if no data existed at the location.
+   */
+  synchronized CachedValue get(String path, Type type) {
+    if (!enabled) {
+      return null;
+    }
+
+    final Key key = new Key(PathUtil.trimPath(path), type);
+    final CachedValue entry = entries.get(key);
+
+    if (entry != null && System.nanoTime() - entry.createdAt > timeToLiveNanos) {
+      entries.remove(key);
+      keysByPath.remove(key.path, key);
+      evictionCount++;
+      missCount++;
+      return null;
+    }
+
+    if (entry == null) {
+      missCount++;
+    } else {
+      hitCount++;
+    }
+
+    return entry;
+  }
+
+  /**
+   * Returns the current generation, which has to be passed to {@link #put(String, Type, Object, long)} once
+   * the value was retrieved.
+   */
+  synchronized long getGeneration() {
+    return generation;
+  }
+
+  synchronized void put(String path, Type type, Object value, long requestGeneration) {
+    if (!enabled || requestGeneration != generation) {
+      return;
+    }
+
+    final Key key = new Key(PathUtil.trimPath(path), type);
+    if (entries.put(key, new CachedValue(value, System.nanoTime())) == null) {
+      keysByPath.add(key.path, key);
+    }
+  }
+
+  /**
+   * Removes all entries for the given location, its ancestors and its descendants.
+   */
+  synchronized void invalidate(String path) {
+    if (!enabled) {
+      return;
+    }
+
+    generation++;
+
+    for (Key key : keysByPath.removeRelated(path)) {
+      entries.remove(key);
+    }
+  }
+
+  synchronized ValueCacheStatistics getStatistics() {
+    return new ValueCacheStatistics(hitCount, missCount, evictionCount, entries.size());
+  }
+
+  @Override
+  public String toString() {
+    return enabled
+      ? "ValueCache{maximumSize=" + maximumSize + ", timeToLive=" + TimeUnit.NANOSECONDS.toMillis(timeToLiveNanos) + "ms}"
+      : "ValueCache{disabled}";
+  }
+
+  /**
+   * A cached value.
+   */
+  static final class CachedValue {
+    private final Object value;
+    private final long createdAt;
+
+    private CachedValue(Object value, long createdAt) {
+      this.value = value;
+      this.createdAt = createdAt;
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> T getValue() {
+      return (T) value;
+    }
+  }
+
+  private static final class Key {
+    private final String path;
+    private final Type type;
+
+    private Key(String path, Type type) {
+      this.path = path;
+      this.type = type;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+
+      final Key other = (Key) o;
+      return path.equals(other.path) && type.equals(other.type);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * path.hashCode() + type.hashCode();
+    }
+  }
+}
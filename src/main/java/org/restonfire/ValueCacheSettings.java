@@ -0,0 +1,55 @@
+package org.restonfire;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration of the optional read-through cache for {@link FirebaseRestReference#getValue(Class)} requests.
+ * Each {@link FirebaseRestDatabase} created by a factory configured with these settings maintains its own cache,
+ * which is invalidated by all writes issued through the same database instance.<br>
+ * <br>
+ * <b>Note:</b> Cached values are shared between all callers of <code>getValue()</code> and must not be modified.
+ *
+ * @see BaseFirebaseRestDatabaseFactory#setValueCacheSettings(ValueCacheSettings)
+ */
+public final class ValueCacheSettings {
+
+  private final int maximumSize;
+  private final long timeToLive;
+  private final TimeUnit timeUnit;
+
+  /**
+   * Creates the cache settings.
+   *
+   * @param maximumSize The maximum number of values kept in the cache. The least recently used value is evicted
+   *                    once the cache is full.
+   * @param timeToLive The duration a value remains valid after it was retrieved from Firebase.
+   * @param timeUnit The {@link TimeUnit} of the <code>timeToLive</code> parameter.
+   */
+  public ValueCacheSettings(int maximumSize, long timeToLive, TimeUnit timeUnit) {
+    if (maximumSize <= 0) {
+      throw new IllegalArgumentException("maximumSize must be greater than 0");
+    }
+    if (timeToLive <= 0) {
+      throw new IllegalArgumentException("timeToLive must be greater than 0");
+    }
+    if (timeUnit == null) {
+      throw new IllegalArgumentException("timeUnit cannot be null");
+    }
+
+    this.maximumSize = maximumSize;
+    this.timeToLive = timeToLive;
+    this.timeUnit = timeUnit;
+  }
+
+  public int getMaximumSize() {
+    return maximumSize;
+  }
+
+  public long getTimeToLive() {
+    return timeToLive;
+  }
+
+  public TimeUnit getTimeUnit() {
+    return timeUnit;
+  }
+}
@@ -0,0 +1,54 @@
+package org.restonfire;
+
+/**
+ * Point-in-time snapshot of the counters of a {@link FirebaseRestDatabase}'s value cache.
+ *
+ * @see FirebaseRestDatabase#getValueCacheStatistics()
+ */
+public final class ValueCacheStatistics {
+
+  private final long hitCount;
+  private final long missCount;
+  private final long evictionCount;
+  private final int size;
+
+  public ValueCacheStatistics(long hitCount, long missCount, long evictionCount, int size) {
+    this.hitCount = hitCount;
+    this.missCount = missCount;
+    this.evictionCount = evictionCount;
+    this.size = size;
+  }
+
+  /**
+   * @return The number of <code>getValue()</code> calls served from the cache.
+   */
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * @return The number of <code>getValue()</code> calls that required a request to Firebase.
+   */
+  public long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * @return The number of values removed because the cache was full or the value had expired.
+   */
+  public long getEvictionCount() {
+    return evictionCount;
+  }
+
+  /**
+   * @return The number of values currently held by the cache.
+   */
+  public int getSize() {
+    return size;
+  }
+
+  @Override
+  public String toString() {
+    return "ValueCacheStatistics{hits=" + hitCount + ", misses=" + missCount + ", evictions=" + evictionCount + ", size=" + size + '}';
+  }
+}
@@ -0,0 +1,73 @@
+package org.restonfire;
+
+/**
+ * The measurements of a round of a {@link FirebaseRestDatabase}'s warmup.
+ *
+ * @see FirebaseRestDatabase#warmUp(WarmupSettings)
+ */
+public final class WarmupResult {
+
+  private final int round;
+  private final int completedCount;
+  private final int failedCount;
+  private final double p99LatencyMillis;
+  private final boolean stable;
+  private final long elapsedMillis;
+
+  public WarmupResult(int round, int completedCount, int failedCount, double p99LatencyMillis, boolean stable, long elapsedMillis) {
+    this.round = round;
+    this.completedCount = completedCount;
+    this.failedCount = failedCount;
+    this.p99LatencyMillis = p99LatencyMillis;
+    this.stable = stable;
+    this.elapsedMillis = elapsedMillis;
+  }
+
+  /**
+   * @return The number of the round, starting with 1.
+   */
+  public int getRound() {
+    return round;
+  }
+
+  /**
+   * @return The number of requests of the round that received a response, regardless of its status code.
+   */
+  public int getCompletedCount() {
+    return completedCount;
+  }
+
+  /**
+   * @return The number of requests of the round that failed to connect or to receive a response.
+   */
+  public int getFailedCount() {
+    return failedCount;
+  }
+
+  /**
+   * @return The 99th percentile of the latencies of the round's completed requests in milliseconds.
+   */
+  public double getP99LatencyMillis() {
+    return p99LatencyMillis;
+  }
+
+  /**
+   * @return <code>true</code> if the p99 latency of the round differs by less than 20% from the previous round.
+   */
+  public boolean isStable() {
+    return stable;
+  }
+
+  /**
+   * @return The time in milliseconds since the warmup was started.
+   */
+  public long getElapsedMillis() {
+    return elapsedMillis;
+  }
+
+  @Override
+  public String toString() {
+    return "WarmupResult{round=" + round + ", completed=" + completedCount + ", failed=" + failedCount
+      + ", p99LatencyMillis=" + p99LatencyMillis + ", stable=" + stable + ", elapsedMillis=" + elapsedMillis + '}';
+  }
+}
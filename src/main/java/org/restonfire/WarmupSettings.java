@@ -0,0 +1,57 @@
+package org.restonfire;
+
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Configuration of the warmup of a {@link FirebaseRestDatabase}. The warmup sends rounds of concurrent, shallow
+ * requests to the root of the database, so the first round opens the configured number of pooled connections,
+ * including their DNS lookup and TLS handshake, and the following rounds measure the latency of the warm connections.
+ * The warmup ends once the p99 latency of a round differs by less than 20% from the previous round, or after the
+ * maximum number of rounds.
+ *
+ * @see FirebaseRestDatabase#warmUp(WarmupSettings)
+ */
+public final class WarmupSettings {
+
+  private final int connectionCount;
+  private final int maxRounds;
+  private final List<Type> primedTypes;
+
+  /**
+   * Creates the warmup settings.
+   *
+   * @param connectionCount The number of concurrent requests per round, which is the number of connections opened
+   *                        by the first round. The connections are only retained if the pool of the
+   *                        {@link org.restonfire.transport.HttpTransport} allows that many idle connections.
+   * @param maxRounds The maximum number of rounds, at least 2 rounds are required to detect a stable latency.
+   * @param primedTypes The types whose Gson type adapters are created before the first round, i.e. the classes
+   *                    passed to <code>getValue()</code> or the types of a <code>TypeToken</code>.
+   */
+  public WarmupSettings(int connectionCount, int maxRounds, Type... primedTypes) {
+    if (connectionCount <= 0) {
+      throw new IllegalArgumentException("connectionCount must be greater than 0");
+    }
+    if (maxRounds <= 0) {
+      throw new IllegalArgumentException("maxRounds must be greater than 0");
+    }
+
+    this.connectionCount = connectionCount;
+    this.maxRounds = maxRounds;
+    this.primedTypes = Collections.unmodifiableList(Arrays.asList(primedTypes));
+  }
+
+  public int getConnectionCount() {
+    return connectionCount;
+  }
+
+  public int getMaxRounds() {
+    return maxRounds;
+  }
+
+  public List<Type> getPrimedTypes() {
+    return primedTypes;
+  }
+}
@@ -0,0 +1,325 @@
+package org.restonfire;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import org.jdeferred.Deferred;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.FailCallback;
+import org.jdeferred.Promise;
+import org.jdeferred.impl.DeferredObject;
+import org.restonfire.exceptions.FirebaseRestException;
+import org.restonfire.exceptions.FirebaseRuntimeException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coalescing of <code>set</code> and <code>update</code> requests to the same location. The first write to an idle
+ * location is held back for the configured window. All writes issued during the window, or while the previous write
+ * to the location is in flight, are merged into a single pending write, which is sent once the location becomes
+ * idle again. Every caller's promise is settled with the result of the request that included its write.<br>
+ * <br>
+ * A <code>set</code> replaces the pending write, while the children of an <code>update</code> are applied to
+ * the pending value of a <code>set</code> or merged with the children of a pending <code>update</code>. The writes
+ * that cannot be coalesced wait for the pending writes of the related locations, see {@link #awaitWrites(String)}.
+ */
+final class WriteCoalescer {
+
+  private static final WriteCoalescer DISABLED = new WriteCoalescer(false, 0);
+
+  private final boolean enabled;
+  private final long windowNanos;
+  private final Map<String, LocationWrites> locations = new HashMap<>();
+
+  private long submittedCount;
+  private long absorbedCount;
+  private long sentCount;
+
+  private WriteCoalescer(boolean enabled, long windowNanos) {
+    this.enabled = enabled;
+    this.windowNanos = windowNanos;
+  }
+
+  WriteCoalescer(WriteCoalescingSettings settings) {
+    this(true, settings.getTimeUnit().toNanos(settings.getWindow()));
+  }
+
+  static WriteCoalescer disabled() {
+    return DISABLED;
+  }
+
+  static WriteCoalescer create(WriteCoalescingSettings settings) {
+    return settings == null ? DISABLED : new WriteCoalescer(settings);
+  }
+
+  boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Adds a write to the pending write of the given location.
+   *
+   * @param path The trimmed path of the location.
+   * @param set <code>true</code> for a <code>set</code>, <code>false</code> for an <code>update</code> request.
+   * @param value The serialized value, which must be a JSON object for an <code>update</code>.
+   * @param result The result the promise will be resolved with.
+   * @param request The request used to send the merged write, if this is the last write before it is sent.
+   */
+  <T> Promise<T, FirebaseRuntimeException, Void> submit(String path, boolean set, JsonElement value, T result, Request request) {
+    final Deferred<T, FirebaseRuntimeException, Void> deferred = new DeferredObject<>();
+    final boolean sendNow;
+
+    synchronized (this) {
+      submittedCount++;
+
+      LocationWrites location = locations.get(path);
+      if (location == null) {
+        location = new LocationWrites();
+        locations.put(path, location);
+      }
+
+      if (location.pending == null) {
+        location.pending = new PendingWrite();
+      } else {
+        absorbedCount++;
+      }
+
+      location.pending.add(set, value);
+      location.pending.request = request;
+      location.pending.callers.add(new Caller<>(deferred, result));
+
+      sendNow = scheduleIfIdle(path, location);
+    }
+
+    if (sendNow) {
+      send(path);
+    }
+
+    return deferred.promise();
+  }
+
+  /**
+   * Waits for the writes of the given location, its ancestors and its descendants, which are pending or in flight at
+   * the time of the call, so a write that cannot be coalesced is not sent before them.
+   *
+   * @param path The trimmed path of the location.
+   * @return A promise resolved once these writes completed, regardless of their result.
+   */
+  Promise<Void, FirebaseRuntimeException, Void> awaitWrites(String path) {
+    final Deferred<Void, FirebaseRuntimeException, Void> deferred = new DeferredObject<>();
+
+    synchronized (this) {
+      final List<PendingWrite> writes = new ArrayList<>();
+      for (Map.Entry<String, LocationWrites> entry : locations.entrySet()) {
+        if (PathUtil.isSameOrAncestor(entry.getKey(), path) || PathUtil.isSameOrAncestor(path, entry.getKey())) {
+          // The pending write of a location is sent after its write in flight
+          final LocationWrites location = entry.getValue();
+          writes.add(location.pending != null ? location.pending : location.inFlight);
+        }
+      }
+
+      final AtomicInteger remaining = new AtomicInteger(writes.size());
+      for (PendingWrite write : writes) {
+        write.listeners.add(new Runnable() {
+          @Override
+          public void run() {
+            if (remaining.decrementAndGet() == 0) {
+              deferred.resolve(null);
+            }
+          }
+        });
+      }
+
+      if (!writes.isEmpty()) {
+        return deferred.promise();
+      }
+    }
+
+    return deferred.resolve(null).promise();
+  }
+
+  synchronized WriteCoalescingStatistics getStatistics() {
+    return new WriteCoalescingStatistics(submittedCount, absorbedCount, sentCount);
+  }
+
+  /**
+   * @return <code>true</code> if the pending write must be sent right away.
+   */
+  private boolean scheduleIfIdle(final String path, LocationWrites location) {
+    if (location.inFlight != null || location.scheduled) {
+      return false;
+    }
+    if (windowNanos == 0) {
+      return true;
+    }
+
+    location.scheduled = true;
+    SchedulerUtil.schedule(new Runnable() {
+      @Override
+      public void run() {
+        send(path);
+      }
+    }, windowNanos, TimeUnit.NANOSECONDS);
+    return false;
+  }
+
+  private void send(final String path) {
+    final PendingWrite write;
+
+    synchronized (this) {
+      final LocationWrites location = locations.get(path);
+      location.scheduled = false;
+      write = location.pending;
+      location.pending = null;
+      location.inFlight = write;
+      sentCount++;
+    }
+
+    final Promise<Void, FirebaseRuntimeException, Void> promise;
+    try {
+      promise = write.request.execute(write.set, write.getValue());
+    } catch (RuntimeException ex) {
+      // The write may be sent by the scheduler thread, so the exception is passed to the callers instead of thrown
+      onCompleted(path);
+      final FirebaseRuntimeException error = ex instanceof FirebaseRuntimeException
+        ? (FirebaseRuntimeException) ex
+        : new FirebaseRestException(FirebaseRuntimeException.ErrorCode.RequestFailed, "The REST request failed", ex);
+      for (Caller<?> caller : write.callers) {
+        caller.deferred.reject(error);
+      }
+      notifyListeners(write);
+      return;
+    }
+
+    promise
+      .done(new DoneCallback<Void>() {
+        @Override
+        public void onDone(Void result) {
+          onCompleted(path);
+          for (Caller<?> caller : write.callers) {
+            caller.resolve();
+          }
+          notifyListeners(write);
+        }
+      })
+      .fail(new FailCallback<FirebaseRuntimeException>() {
+        @Override
+        public void onFail(FirebaseRuntimeException ex) {
+          onCompleted(path);
+          for (Caller<?> caller : write.callers) {
+            caller.deferred.reject(ex);
+          }
+          notifyListeners(write);
+        }
+      });
+  }
+
+  private void onCompleted(String path) {
+    final boolean sendNow;
+
+    synchronized (this) {
+      final LocationWrites location = locations.get(path);
+      location.inFlight = null;
+
+      if (location.pending == null) {
+        locations.remove(path);
+        return;
+      }
+
+      sendNow = scheduleIfIdle(path, location);
+    }
+
+    if (sendNow) {
+      send(path);
+    }
+  }
+
+  private void notifyListeners(PendingWrite write) {
+    final List<Runnable> listeners;
+    synchronized (this) {
+      listeners = new ArrayList<>(write.listeners);
+    }
+
+    for (Runnable listener : listeners) {
+      listener.run();
+    }
+  }
+
+  /**
+   * The request sending the merged write of a location.
+   */
+  interface Request {
+    /**
+     * @param set <code>true</code> if the value must be sent as a <code>set</code>, <code>false</code> as an
+     *            <code>update</code> request.
+     */
+    Promise<Void, FirebaseRuntimeException, Void> execute(boolean set, JsonElement value);
+  }
+
+  private static final class LocationWrites {
+    private PendingWrite pending;
+    private boolean scheduled;
+    private PendingWrite inFlight;
+  }
+
+  private static final class PendingWrite {
+    private final List<Caller<?>> callers = new ArrayList<>();
+    // guarded by the coalescer, the listeners waiting for the completion of the write
+    private final List<Runnable> listeners = new ArrayList<>();
+    private final Map<String, JsonElement> updates = new LinkedHashMap<>();
+    private boolean set;
+    private JsonElement setValue;
+    private Request request;
+
+    private void add(boolean isSet, JsonElement value) {
+      if (isSet) {
+        set = true;
+        setValue = value;
+        updates.clear();
+        return;
+      }
+
+      for (Map.Entry<String, JsonElement> child : value.getAsJsonObject().entrySet()) {
+        final String childPath = PathUtil.trimPath(child.getKey());
+        if (set) {
+          final JsonElement merged = JsonTreeUtil.set(setValue, childPath, child.getValue());
+          setValue = merged == null ? JsonNull.INSTANCE : merged;
+        } else {
+          JsonTreeUtil.addMultiPathWrite(updates, childPath, child.getValue());
+        }
+      }
+    }
+
+    private JsonElement getValue() {
+      if (set) {
+        return setValue;
+      }
+
+      final JsonObject value = new JsonObject();
+      for (Map.Entry<String, JsonElement> update : updates.entrySet()) {
+        value.add(update.getKey(), update.getValue());
+      }
+      return value;
+    }
+  }
+
+  private static final class Caller<T> {
+    private final Deferred<T, FirebaseRuntimeException, Void> deferred;
+    private final T result;
+
+    private Caller(Deferred<T, FirebaseRuntimeException, Void> deferred, T result) {
+      this.deferred = deferred;
+      this.result = result;
+    }
+
+    private void resolve() {
+      deferred.resolve(result);
+    }
+  }
+}
@@ -0,0 +1,49 @@
+package org.restonfire;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration of the optional coalescing of {@link FirebaseRestReference#setValue(Object)} and
+ * {@link FirebaseRestReference#updateValue(Object)} requests. Writes to the same location are held back for the
+ * duration of the window, as well as while a previous write to the location is in flight, and are merged into a
+ * single request: the last value wins for <code>setValue()</code>, while the children of
+ * <code>updateValue()</code> calls are merged by key.<br>
+ * <br>
+ * <code>removeValue()</code> is coalesced like a <code>setValue(null)</code>. Transactions, <code>push()</code> and
+ * <code>updateValue()</code> calls with a value that is not an object are not coalesced. They are sent once the
+ * writes to the same location, its ancestors and its descendants, which were issued before them, completed.
+ *
+ * @see BaseFirebaseRestDatabaseFactory#setWriteCoalescingSettings(WriteCoalescingSettings)
+ */
+public final class WriteCoalescingSettings {
+
+  private final long window;
+  private final TimeUnit timeUnit;
+
+  /**
+   * Creates the write coalescing settings.
+   *
+   * @param window The duration the first write to an idle location is held back to absorb further writes. A window
+   *               of 0 only coalesces the writes issued while a previous write to the location is in flight.
+   * @param timeUnit The {@link TimeUnit} of the <code>window</code> parameter.
+   */
+  public WriteCoalescingSettings(long window, TimeUnit timeUnit) {
+    if (window < 0) {
+      throw new IllegalArgumentException("window cannot be negative");
+    }
+    if (timeUnit == null) {
+      throw new IllegalArgumentException("timeUnit cannot be null");
+    }
+
+    this.window = window;
+    this.timeUnit = timeUnit;
+  }
+
+  public long getWindow() {
+    return window;
+  }
+
+  public TimeUnit getTimeUnit() {
+    return timeUnit;
+  }
+}
@@ -0,0 +1,45 @@
+package org.restonfire;
+
+/**
+ * Point-in-time snapshot of the counters of a {@link FirebaseRestDatabase}'s write coalescing.
+ *
+ * @see FirebaseRestDatabase#getWriteCoalescingStatistics()
+ */
+public final class WriteCoalescingStatistics {
+
+  private final long submittedCount;
+  private final long absorbedCount;
+  private final long sentCount;
+
+  public WriteCoalescingStatistics(long submittedCount, long absorbedCount, long sentCount) {
+    this.submittedCount = submittedCount;
+    this.absorbedCount = absorbedCount;
+    this.sentCount = sentCount;
+  }
+
+  /**
+   * @return The number of <code>setValue()</code> and <code>updateValue()</code> calls that were coalesced.
+   */
+  public long getSubmittedCount() {
+    return submittedCount;
+  }
+
+  /**
+   * @return The number of writes that were merged into a pending write instead of being sent on their own.
+   */
+  public long getAbsorbedCount() {
+    return absorbedCount;
+  }
+
+  /**
+   * @return The number of merged write requests sent to Firebase.
+   */
+  public long getSentCount() {
+    return sentCount;
+  }
+
+  @Override
+  public String toString() {
+    return "WriteCoalescingStatistics{submitted=" + submittedCount + ", absorbed=" + absorbedCount + ", sent=" + sentCount + '}';
+  }
+}
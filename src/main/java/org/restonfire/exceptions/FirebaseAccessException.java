@@ -1,9 +1,6 @@
 package org.restonfire.exceptions;
 
-import com.ning.http.client.HttpResponseStatus;
-import com.ning.http.client.Response;
-
-import java.io.IOException;
+import org.restonfire.transport.HttpStatus;
 
 /**
  * Exception thrown if the operation on a Firebase reference was not permitted
@@ -13,11 +10,7 @@ public final class FirebaseAccessException extends FirebaseRuntimeException {
 
   public static final String ERROR_MESSAGE = "The access to the reference '%s' was not permitted. Status code: %s";
 
-  public FirebaseAccessException(Response response)  throws IOException {
-    super(ErrorCode.AccessViolation, String.format(ERROR_MESSAGE, response.getUri(), response.getStatusCode()));
-  }
-
-  public FirebaseAccessException(HttpResponseStatus responseStatus) {
+  public FirebaseAccessException(HttpStatus responseStatus) {
     super(ErrorCode.AccessViolation, String.format(ERROR_MESSAGE, responseStatus.getUri(), responseStatus.getStatusCode()));
   }
 
@@ -0,0 +1,11 @@
+package org.restonfire.exceptions;
+
+/**
+ * The files of a {@link org.restonfire.FirebaseEventJournal} could not be read or written.
+ */
+public final class FirebaseJournalException extends FirebaseRuntimeException {
+
+  public FirebaseJournalException(ErrorCode errorCode, String message, Throwable cause) {
+    super(errorCode, message, cause);
+  }
+}
@@ -0,0 +1,12 @@
+package org.restonfire.exceptions;
+
+/**
+ * A request was rejected before it was sent to Firebase, i.e. because the concurrency limit of the database was
+ * reached and the request could not be queued.
+ */
+public final class FirebaseRequestRejectedException extends FirebaseRuntimeException {
+
+  public FirebaseRequestRejectedException(ErrorCode errorCode, String message) {
+    super(errorCode, message);
+  }
+}
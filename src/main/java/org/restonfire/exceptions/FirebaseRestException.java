@@ -1,9 +1,6 @@
 package org.restonfire.exceptions;
 
-import com.ning.http.client.HttpResponseStatus;
-import com.ning.http.client.Response;
-
-import java.io.IOException;
+import org.restonfire.transport.HttpStatus;
 
 /**
  * A request to Firebase's REST API failed with an unexpected status code.
@@ -12,11 +9,7 @@ public final class FirebaseRestException extends FirebaseRuntimeException {
 
   private static final String ERROR_MESSAGE = "The REST request to '%s' failed with the following status code: %s";
 
-  public FirebaseRestException(ErrorCode errorCode, Response response) throws IOException {
-    super(errorCode, String.format(ERROR_MESSAGE, response.getUri(), response.getStatusCode()));
-  }
-
-  public FirebaseRestException(ErrorCode errorCode, HttpResponseStatus responseStatus) {
+  public FirebaseRestException(ErrorCode errorCode, HttpStatus responseStatus) {
     super(errorCode, String.format(ERROR_MESSAGE, responseStatus.getUri(), responseStatus.getStatusCode()));
   }
 
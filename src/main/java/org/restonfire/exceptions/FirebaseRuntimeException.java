@@ -38,6 +38,22 @@ public abstract class FirebaseRuntimeException extends RuntimeException {
     EventStreamListenerAlreadyActive,
     EventStreamListenerNotActive,
     QueryParamAlreadySet,
-    EventStreamRequestFailed
+    EventStreamRequestFailed,
+    TransactionAborted,
+    TransactionRetriesExceeded,
+    LocalMirrorAlreadyActive,
+    LocalMirrorNotActive,
+    LocalMirrorNotSynced,
+    ChildIterationInterrupted,
+    ValueHasNoChildren,
+    WriteBatchAlreadyCommitted,
+    EventStreamMultiplexerClosed,
+    EventDeliveryQueueOverflow,
+    EventStreamStalled,
+    EventJournalClosed,
+    EventJournalIOFailure,
+    WarmupFailed,
+    RequestFailed,
+    ConcurrencyLimitExceeded
   }
 }
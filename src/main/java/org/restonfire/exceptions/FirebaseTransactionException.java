@@ -0,0 +1,16 @@
+package org.restonfire.exceptions;
+
+/**
+ * A transaction could not be completed, either because it was aborted by its handler or
+ * because the location was modified concurrently too many times.
+ */
+public final class FirebaseTransactionException extends FirebaseRuntimeException {
+
+  public FirebaseTransactionException(ErrorCode errorCode, String message) {
+    super(errorCode, message);
+  }
+
+  public FirebaseTransactionException(ErrorCode errorCode, String message, Throwable cause) {
+    super(errorCode, message, cause);
+  }
+}
@@ -0,0 +1,26 @@
+package org.restonfire.responses;
+
+/**
+ * Simple Pojo holding a value retrieved from Firebase together with the ETag of the location at the time of
+ * the request. The ETag can be used to detect changes to the location or to make conditional writes.
+ *
+ * @param <T> The type of the value.
+ * @see <a href="https://firebase.google.com/docs/reference/rest/database/#section-conditional-requests">Firebase Conditional Requests Documentation</a>
+ */
+public final class ETaggedValue<T> {
+  private final T value;
+  private final String eTag;
+
+  public ETaggedValue(T value, String eTag) {
+    this.value = value;
+    this.eTag = eTag;
+  }
+
+  public T getValue() {
+    return value;
+  }
+
+  public String getETag() {
+    return eTag;
+  }
+}
@@ -3,25 +3,60 @@ package org.restonfire.responses;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
 /**
  * Simple Pojo for deseriazation of the Firebase streaming event using REST.
  * The underlying event data can be retrieved in a serialized or deserialized form,
- * using the {@link Gson} instance to convert the data string.
+ * using the {@link Gson} instance to convert the data string.<br>
+ * <br>
+ * The deserialized data is memoized per requested type, so all consumers of the same event share the result of a
+ * single conversion. The returned objects must therefore be treated as read-only.
  */
 public class StreamingEvent {
 
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final DecodedData[] NO_DECODED_DATA = new DecodedData[0];
+
   private final Gson gson;
 
   private final EventType eventType;
-  private final String eventData;
+  private final byte[] eventDataBytes;
+  private volatile String eventData;
+  private volatile DecodedData[] decodedData = NO_DECODED_DATA;
 
   public StreamingEvent(Gson gson, EventType eventType, String eventData) {
     this.gson = gson;
 
     this.eventType = eventType;
+    this.eventDataBytes = null;
     this.eventData = eventData;
   }
 
+  private StreamingEvent(Gson gson, EventType eventType, byte[] eventDataBytes) {
+    this.gson = gson;
+
+    this.eventType = eventType;
+    this.eventDataBytes = eventDataBytes;
+  }
+
+  /**
+   * Creates an event from the UTF-8 encoded data as it was received from the REST API. The data is only converted to a
+   * string once it is requested, so consumers forwarding the raw bytes do not pay for the conversion.
+   *
+   * @param gson The {@link Gson} instance used to deserialize the data.
+   * @param eventType The {@link EventType} of the event.
+   * @param eventData The UTF-8 encoded JSON data of the event, which must not be modified afterwards.
+   *
+   * @return The {@link StreamingEvent} for the given data.
+   */
+  public static StreamingEvent fromBytes(Gson gson, EventType eventType, byte[] eventData) {
+    return new StreamingEvent(gson, eventType, eventData);
+  }
+
   /**
    * Returns the {@link EventType} for the individual event. Note that some types have been
    * renamed to match the corresponding {@link org.restonfire.FirebaseRestReference} interface
@@ -41,7 +76,28 @@ public class StreamingEvent {
    * @return A JSON String representing the path and the value for this event.
    */
   public String getSerialzedEventData() {
-    return eventData;
+    String result = eventData;
+    if (result == null && eventDataBytes != null) {
+      result = new String(eventDataBytes, UTF_8);
+      eventData = result;
+    }
+    return result;
+  }
+
+  /**
+   * Returns the UTF-8 encoded data value as it was returned by the REST API, without deserializing it. This allows for
+   * forwarding the data to other systems without the overhead of the JSON conversion.
+   *
+   * @return A read-only {@link ByteBuffer} of the JSON data representing the path and the value for this event,
+   *         or null if the event does not have any data.
+   */
+  public ByteBuffer getEventDataBuffer() {
+    if (eventDataBytes != null) {
+      return ByteBuffer.wrap(eventDataBytes).asReadOnlyBuffer();
+    }
+
+    final String serializedData = eventData;
+    return serializedData == null ? null : ByteBuffer.wrap(serializedData.getBytes(UTF_8)).asReadOnlyBuffer();
   }
 
   /**
@@ -50,13 +106,12 @@ public class StreamingEvent {
    * as {@link java.util.Map}&lt;String, Object&gt; and {@link Integer} values will be returned as {@link Double}.
    *
    * @return The {@link StreamingEventData} object containing the relative path and the value of the event.
+   *         The object is shared with other consumers of the event and must not be modified.
    *
    * @see <a href="http://stackoverflow.com/questions/21920436/object-autoconvert-to-double-with-serialization-gson">A more detailed explanation</a>
    */
   public StreamingEventData getEventData() {
-    return eventType == EventType.Set || eventType == EventType.Update
-      ? gson.fromJson(eventData, StreamingEventData.class)
-      : null;
+    return getDecodedData(StreamingEventData.class);
   }
 
   /**
@@ -70,11 +125,32 @@ public class StreamingEvent {
    * @param <T> The type of the actual data node.
    *
    * @return The {@link StreamingEventData} object containing the relative path and the value of the event.
+   *         The object is shared with other consumers of the event and must not be modified.
    */
   public <T> StreamingEventData<T> getEventData(TypeToken<StreamingEventData<T>> typeToken) {
-    return eventType == EventType.Set || eventType == EventType.Update
-      ? gson.<StreamingEventData<T>>fromJson(eventData, typeToken.getType())
-      : null;
+    return getDecodedData(typeToken.getType());
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T getDecodedData(Type type) {
+    if (eventType != EventType.Set && eventType != EventType.Update) {
+      return null;
+    }
+
+    final DecodedData[] current = decodedData;
+    for (DecodedData entry : current) {
+      if (entry.type.equals(type)) {
+        return (T) entry.value;
+      }
+    }
+
+    // Concurrent consumers may decode the same type more than once, the last result wins
+    final Object value = gson.fromJson(getSerialzedEventData(), type);
+    final DecodedData[] updated = Arrays.copyOf(decodedData, decodedData.length + 1);
+    updated[updated.length - 1] = new DecodedData(type, value);
+    decodedData = updated;
+
+    return (T) value;
   }
 
   /**
@@ -87,6 +163,22 @@ public class StreamingEvent {
     Update,
     KeepAlive,
     Cancel,
-    Expired
+    Expired,
+    /**
+     * Published after an event stream was reopened by the automatic reconnect. Changes may have been missed while
+     * the stream was disconnected, so the next <code>Set</code> event contains the complete value of the location
+     * and replaces all previously received data.
+     */
+    Resync
+  }
+
+  private static final class DecodedData {
+    private final Type type;
+    private final Object value;
+
+    private DecodedData(Type type, Object value) {
+      this.type = type;
+      this.value = value;
+    }
   }
 }
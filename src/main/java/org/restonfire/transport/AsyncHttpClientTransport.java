@@ -0,0 +1,231 @@
+package org.restonfire.transport;
+
+import com.ning.http.client.AsyncCompletionHandler;
+import com.ning.http.client.AsyncHandler;
+import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.HttpResponseBodyPart;
+import com.ning.http.client.HttpResponseHeaders;
+import com.ning.http.client.HttpResponseStatus;
+import com.ning.http.client.ListenableFuture;
+import com.ning.http.client.Response;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * {@link HttpTransport} implementation using the {@link AsyncHttpClient}, which is the default transport of the
+ * {@link org.restonfire.BaseFirebaseRestDatabaseFactory}. The callbacks are invoked by the I/O threads of the client.
+ */
+public final class AsyncHttpClientTransport implements HttpTransport {
+
+  private final AsyncHttpClient asyncHttpClient;
+
+  /**
+   * @param asyncHttpClient The {@link AsyncHttpClient} instance sending the requests, which is closed together with
+   *                        the transport.
+   */
+  public AsyncHttpClientTransport(AsyncHttpClient asyncHttpClient) {
+    this.asyncHttpClient = asyncHttpClient;
+  }
+
+  @Override
+  public HttpCall execute(HttpRequest request, final HttpResponseHandler handler) {
+    final ListenableFuture<Void> future = prepare(request).execute(new AsyncCompletionHandler<Void>() {
+
+      private HttpResponseStatus status;
+      private boolean aborted;
+
+      @Override
+      public AsyncHandler.STATE onStatusReceived(HttpResponseStatus responseStatus) throws Exception {
+        status = responseStatus;
+        return super.onStatusReceived(responseStatus);
+      }
+
+      @Override
+      public AsyncHandler.STATE onHeadersReceived(final HttpResponseHeaders headers) throws Exception {
+        final boolean proceed = handler.onHeadersReceived(new Status(status), new HttpHeaders() {
+          @Override
+          public String getHeader(String name) {
+            return headers.getHeaders().getFirstValue(name);
+          }
+        });
+
+        if (!proceed) {
+          // The client completes aborted requests without a body, which is not passed to the handler
+          aborted = true;
+          return AsyncHandler.STATE.ABORT;
+        }
+        return super.onHeadersReceived(headers);
+      }
+
+      @Override
+      public Void onCompleted(Response response) throws Exception {
+        if (!aborted) {
+          handler.onCompleted(new CompletedResponse(response));
+        }
+        return null;
+      }
+
+      @Override
+      public void onThrowable(Throwable t) {
+        handler.onThrowable(t);
+      }
+    });
+
+    return new HttpCall() {
+      @Override
+      public void cancel() {
+        // The client closes the connection even if the request is done, when it may already serve another request
+        if (!future.isDone()) {
+          future.cancel(true);
+        }
+      }
+    };
+  }
+
+  @Override
+  public HttpStream stream(HttpRequest request, final HttpStreamHandler handler) {
+    final ListenableFuture<Void> future = prepare(request).execute(new AsyncHandler<Void>() {
+      @Override
+      public void onThrowable(Throwable t) {
+        handler.onThrowable(t);
+      }
+
+      @Override
+      public STATE onBodyPartReceived(HttpResponseBodyPart bodyPart) throws Exception {
+        final byte[] bytes = bodyPart.getBodyPartBytes();
+        handler.onBodyPartReceived(bytes, 0, bytes.length);
+        return STATE.CONTINUE;
+      }
+
+      @Override
+      public STATE onStatusReceived(HttpResponseStatus responseStatus) throws Exception {
+        return handler.onStatusReceived(new Status(responseStatus)) ? STATE.CONTINUE : STATE.ABORT;
+      }
+
+      @Override
+      public STATE onHeadersReceived(HttpResponseHeaders headers) throws Exception {
+        return STATE.CONTINUE;
+      }
+
+      @Override
+      public Void onCompleted() throws Exception {
+        handler.onCompleted();
+        return null;
+      }
+    });
+
+    return new HttpStream() {
+      @Override
+      public void close() {
+        future.done();
+      }
+
+      @Override
+      public void cancel() {
+        future.cancel(true);
+      }
+    };
+  }
+
+  @Override
+  public void close() {
+    asyncHttpClient.close();
+  }
+
+  private AsyncHttpClient.BoundRequestBuilder prepare(HttpRequest request) {
+    final AsyncHttpClient.BoundRequestBuilder requestBuilder;
+    switch (request.getMethod()) {
+      case HttpRequest.GET:
+        requestBuilder = asyncHttpClient.prepareGet(request.getUrl());
+        break;
+      case HttpRequest.POST:
+        requestBuilder = asyncHttpClient.preparePost(request.getUrl());
+        break;
+      case HttpRequest.PUT:
+        requestBuilder = asyncHttpClient.preparePut(request.getUrl());
+        break;
+      case HttpRequest.PATCH:
+        requestBuilder = asyncHttpClient.preparePatch(request.getUrl());
+        break;
+      case HttpRequest.DELETE:
+        requestBuilder = asyncHttpClient.prepareDelete(request.getUrl());
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported HTTP method: " + request.getMethod());
+    }
+
+    if (request.getBody() != null) {
+      requestBuilder.setBody(request.getBody());
+    }
+    for (Map.Entry<String, String> param : request.getQueryParams()) {
+      requestBuilder.addQueryParam(param.getKey(), param.getValue());
+    }
+    for (Map.Entry<String, String> header : request.getHeaders()) {
+      requestBuilder.addHeader(header.getKey(), header.getValue());
+    }
+    if (request.isFollowRedirects()) {
+      requestBuilder.setFollowRedirects(true);
+    }
+
+    return requestBuilder;
+  }
+
+  /**
+   * {@link HttpStatus} of the {@link AsyncHttpClient}.
+   */
+  private static final class Status implements HttpStatus {
+    private final HttpResponseStatus status;
+
+    private Status(HttpResponseStatus status) {
+      this.status = status;
+    }
+
+    @Override
+    public String getUri() {
+      return String.valueOf(status.getUri());
+    }
+
+    @Override
+    public int getStatusCode() {
+      return status.getStatusCode();
+    }
+  }
+
+  /**
+   * {@link HttpResponse} of the {@link AsyncHttpClient}.
+   */
+  private static final class CompletedResponse implements HttpResponse {
+    private final Response response;
+
+    private CompletedResponse(Response response) {
+      this.response = response;
+    }
+
+    @Override
+    public String getUri() {
+      return String.valueOf(response.getUri());
+    }
+
+    @Override
+    public int getStatusCode() {
+      return response.getStatusCode();
+    }
+
+    @Override
+    public String getHeader(String name) {
+      return response.getHeader(name);
+    }
+
+    @Override
+    public String getResponseBody() throws IOException {
+      return response.getResponseBody();
+    }
+
+    @Override
+    public InputStream getResponseBodyAsStream() throws IOException {
+      return response.getResponseBodyAsStream();
+    }
+  }
+}
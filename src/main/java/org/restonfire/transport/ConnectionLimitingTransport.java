@@ -0,0 +1,255 @@
+package org.restonfire.transport;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link HttpTransport} decorator limiting the number of requests in flight per host. Requests exceeding the limit
+ * are queued and sent in order once a previous request of the same host completed, so a burst of concurrent
+ * requests is served by the delegate's pooled keep-alive connections instead of opening, and handshaking, a new
+ * connection for every request. A queued request that is cancelled is removed from the queue. The handler of a
+ * request is notified by {@link HttpResponseHandler#onRequestSent()} once it is passed on to the delegate.<br>
+ * <br>
+ * Streams are passed on to the delegate without counting towards the limit, since they occupy their connection
+ * until they are closed.
+ */
+public final class ConnectionLimitingTransport implements HttpTransport {
+
+  private final HttpTransport delegate;
+  private final int maxRequestsPerHost;
+  private final ConcurrentMap<String, Host> hosts = new ConcurrentHashMap<>();
+
+  /**
+   * @param delegate The {@link HttpTransport} sending the requests, which is closed together with this transport.
+   * @param maxRequestsPerHost The maximum number of requests in flight per host, which is the maximum number of
+   *                           connections the delegate opens to a host for these requests.
+   */
+  public ConnectionLimitingTransport(HttpTransport delegate, int maxRequestsPerHost) {
+    if (maxRequestsPerHost <= 0) {
+      throw new IllegalArgumentException("The maximum number of requests per host must be positive");
+    }
+
+    this.delegate = delegate;
+    this.maxRequestsPerHost = maxRequestsPerHost;
+  }
+
+  @Override
+  public HttpCall execute(HttpRequest request, HttpResponseHandler handler) {
+    final String hostKey;
+    try {
+      hostKey = getHostKey(request.getUrl());
+    } catch (MalformedURLException e) {
+      handler.onThrowable(e);
+      // The request failed, so there is nothing to cancel
+      return new PendingRequest(null, request, handler);
+    }
+
+    Host host = hosts.get(hostKey);
+    if (host == null) {
+      final Host newHost = new Host();
+      host = hosts.putIfAbsent(hostKey, newHost);
+      if (host == null) {
+        host = newHost;
+      }
+    }
+
+    final PendingRequest pendingRequest = new PendingRequest(host, request, handler);
+    host.submit(pendingRequest);
+    return pendingRequest;
+  }
+
+  @Override
+  public HttpStream stream(HttpRequest request, HttpStreamHandler handler) {
+    return delegate.stream(request, handler);
+  }
+
+  /**
+   * Closes the delegate and fails the queued requests with a {@link CancellationException}.
+   */
+  @Override
+  public void close() {
+    for (Host host : hosts.values()) {
+      host.cancelQueued();
+    }
+    delegate.close();
+  }
+
+  /**
+   * @return The number of requests waiting for a request of the same host to complete.
+   */
+  public int getQueuedRequestCount() {
+    int count = 0;
+    for (Host host : hosts.values()) {
+      count += host.getQueuedCount();
+    }
+    return count;
+  }
+
+  private static String getHostKey(String url) throws MalformedURLException {
+    final URL parsedUrl = new URL(url);
+    final int port = parsedUrl.getPort() == -1 ? parsedUrl.getDefaultPort() : parsedUrl.getPort();
+    return parsedUrl.getProtocol() + "://" + parsedUrl.getHost().toLowerCase() + ":" + port;
+  }
+
+  /**
+   * The requests in flight and the queued requests of a host.
+   */
+  private final class Host {
+    private final Queue<PendingRequest> queue = new ArrayDeque<>();
+    private int inFlight;
+
+    private void submit(PendingRequest request) {
+      synchronized (this) {
+        if (inFlight >= maxRequestsPerHost) {
+          queue.add(request);
+          return;
+        }
+        inFlight++;
+      }
+
+      send(request);
+    }
+
+    private void release() {
+      final PendingRequest next;
+      synchronized (this) {
+        next = queue.poll();
+        if (next == null) {
+          inFlight--;
+          return;
+        }
+      }
+
+      // The released slot is passed on to the next request
+      send(next);
+    }
+
+    private void cancelQueued() {
+      final List<PendingRequest> cancelled;
+      synchronized (this) {
+        cancelled = new ArrayList<>(queue);
+        queue.clear();
+      }
+
+      for (PendingRequest request : cancelled) {
+        request.handler.onThrowable(new CancellationException("The transport was closed"));
+      }
+    }
+
+    private synchronized int getQueuedCount() {
+      return queue.size();
+    }
+
+    /**
+     * @return <code>true</code> if the request was removed from the queue before it was sent.
+     */
+    private synchronized boolean dequeue(PendingRequest request) {
+      return queue.remove(request);
+    }
+
+    private void send(PendingRequest request) {
+      final HttpCall call;
+      try {
+        request.handler.onRequestSent();
+        call = delegate.execute(request.request, new ReleasingHandler(this, request.handler));
+      } catch (RuntimeException e) {
+        release();
+        request.handler.onThrowable(e);
+        return;
+      }
+
+      request.call = call;
+      if (request.cancelled) {
+        // cancel() was invoked while the request was sent
+        call.cancel();
+      }
+    }
+  }
+
+  /**
+   * A request, which is cancelled in the queue or by the delegate once it was sent.
+   */
+  private static final class PendingRequest implements HttpCall {
+    private final Host host;
+    private final HttpRequest request;
+    private final HttpResponseHandler handler;
+    private volatile HttpCall call;
+    private volatile boolean cancelled;
+
+    private PendingRequest(Host host, HttpRequest request, HttpResponseHandler handler) {
+      this.host = host;
+      this.request = request;
+      this.handler = handler;
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+      if (host != null && host.dequeue(this)) {
+        handler.onThrowable(new CancellationException("The request was cancelled"));
+        return;
+      }
+
+      final HttpCall current = call;
+      if (current != null) {
+        current.cancel();
+      }
+    }
+  }
+
+  /**
+   * {@link HttpResponseHandler} releasing the slot of its request once the response was received, before the
+   * response is passed on, so the next request is sent without waiting for the response to be processed.
+   */
+  private static final class ReleasingHandler extends HttpResponseHandler {
+    private final Host host;
+    private final HttpResponseHandler handler;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private ReleasingHandler(Host host, HttpResponseHandler handler) {
+      this.host = host;
+      this.handler = handler;
+    }
+
+    @Override
+    public void onRequestSent() {
+      handler.onRequestSent();
+    }
+
+    @Override
+    public boolean onHeadersReceived(HttpStatus status, HttpHeaders headers) {
+      final boolean proceed = handler.onHeadersReceived(status, headers);
+      if (!proceed) {
+        // No further callback is invoked for aborted requests
+        release();
+      }
+      return proceed;
+    }
+
+    @Override
+    public void onCompleted(HttpResponse response) {
+      release();
+      handler.onCompleted(response);
+    }
+
+    @Override
+    public void onThrowable(Throwable t) {
+      release();
+      handler.onThrowable(t);
+    }
+
+    private void release() {
+      if (released.compareAndSet(false, true)) {
+        host.release();
+      }
+    }
+  }
+}
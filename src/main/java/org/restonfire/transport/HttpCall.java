@@ -0,0 +1,15 @@
+package org.restonfire.transport;
+
+/**
+ * A request sent by {@link HttpTransport#execute(HttpRequest, HttpResponseHandler)}, which can be cancelled while its
+ * response is outstanding.
+ */
+public interface HttpCall {
+
+  /**
+   * Cancels the request and closes its connection, which is reported as a
+   * {@link java.util.concurrent.CancellationException} to the {@link HttpResponseHandler#onThrowable(Throwable)}
+   * callback. Has no effect if the response was already passed on, the request was aborted or it failed.
+   */
+  void cancel();
+}
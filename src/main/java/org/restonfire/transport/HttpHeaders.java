@@ -0,0 +1,13 @@
+package org.restonfire.transport;
+
+/**
+ * The headers of a response, which are known before its body was received.
+ */
+public interface HttpHeaders {
+
+  /**
+   * @param name The case-insensitive name of the header.
+   * @return The value of the header, or <code>null</code> if the response does not contain the header.
+   */
+  String getHeader(String name);
+}
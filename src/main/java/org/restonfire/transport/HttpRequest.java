@@ -0,0 +1,119 @@
+package org.restonfire.transport;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <b>Non-thread safe</b> description of a request to Firebase, which is sent by an {@link HttpTransport}. A request
+ * must not be modified once it was passed to the transport.
+ */
+public final class HttpRequest {
+
+  public static final String GET = "GET";
+  public static final String POST = "POST";
+  public static final String PUT = "PUT";
+  public static final String PATCH = "PATCH";
+  public static final String DELETE = "DELETE";
+
+  private final String method;
+  private final String url;
+  private final List<Map.Entry<String, String>> queryParams = new ArrayList<>();
+  private final List<Map.Entry<String, String>> headers = new ArrayList<>();
+  private String body;
+  private boolean followRedirects;
+
+  /**
+   * @param method The HTTP method, i.e. {@link #GET}.
+   * @param url The URL of the request without any query parameters.
+   */
+  public HttpRequest(String method, String url) {
+    this.method = method;
+    this.url = url;
+  }
+
+  public HttpRequest addQueryParam(String name, String value) {
+    queryParams.add(new AbstractMap.SimpleImmutableEntry<>(name, value));
+    return this;
+  }
+
+  public HttpRequest addHeader(String name, String value) {
+    headers.add(new AbstractMap.SimpleImmutableEntry<>(name, value));
+    return this;
+  }
+
+  public HttpRequest setBody(String body) {
+    this.body = body;
+    return this;
+  }
+
+  public HttpRequest setFollowRedirects(boolean followRedirects) {
+    this.followRedirects = followRedirects;
+    return this;
+  }
+
+  public String getMethod() {
+    return method;
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  /**
+   * @return The query parameters in the order they were added, without any encoding applied.
+   */
+  public List<Map.Entry<String, String>> getQueryParams() {
+    return Collections.unmodifiableList(queryParams);
+  }
+
+  public List<Map.Entry<String, String>> getHeaders() {
+    return Collections.unmodifiableList(headers);
+  }
+
+  /**
+   * @return The UTF-8 encoded body of the request, or <code>null</code> if the request has no body.
+   */
+  public String getBody() {
+    return body;
+  }
+
+  public boolean isFollowRedirects() {
+    return followRedirects;
+  }
+
+  /**
+   * @return The URL of the request including its URL encoded query parameters.
+   */
+  public String getUrlWithQueryParams() {
+    if (queryParams.isEmpty()) {
+      return url;
+    }
+
+    final StringBuilder result = new StringBuilder(url);
+    char separator = url.indexOf('?') < 0 ? '?' : '&';
+    for (Map.Entry<String, String> param : queryParams) {
+      result.append(separator).append(encode(param.getKey())).append('=').append(encode(param.getValue()));
+      separator = '&';
+    }
+    return result.toString();
+  }
+
+  @Override
+  public String toString() {
+    return method + " " + url;
+  }
+
+  private static String encode(String value) {
+    try {
+      // URLEncoder encodes for forms, which differs from the query encoding for spaces only
+      return URLEncoder.encode(value, "UTF-8").replace("+", "%20");
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException("UTF-8 is not supported", e);
+    }
+  }
+}
@@ -0,0 +1,22 @@
+package org.restonfire.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A response, whose complete body was received.
+ */
+public interface HttpResponse extends HttpStatus, HttpHeaders {
+
+  /**
+   * @return The body decoded as UTF-8, or an empty {@link String} if the response has no body.
+   * @throws IOException The body could not be read.
+   */
+  String getResponseBody() throws IOException;
+
+  /**
+   * @return The body as a stream, which avoids creating a {@link String} copy of large bodies.
+   * @throws IOException The body could not be read.
+   */
+  InputStream getResponseBodyAsStream() throws IOException;
+}
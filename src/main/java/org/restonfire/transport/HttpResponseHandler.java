@@ -0,0 +1,46 @@
+package org.restonfire.transport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Receives the response of a request sent by {@link HttpTransport#execute(HttpRequest, HttpResponseHandler)}.
+ * Exactly one of {@link #onCompleted(HttpResponse)} and {@link #onThrowable(Throwable)} is invoked, unless the
+ * request was aborted by {@link #onHeadersReceived(HttpStatus, HttpHeaders)}.
+ */
+public abstract class HttpResponseHandler {
+
+  private static final Logger LOG = LoggerFactory.getLogger(HttpResponseHandler.class);
+
+  /**
+   * Invoked by a transport that queues its requests, once the request left the queue and is passed on to be sent,
+   * so a latency measured by the handler does not include the time the request waited. The default implementation
+   * does nothing.
+   */
+  public void onRequestSent() {
+    // no-op by default
+  }
+
+  /**
+   * Invoked once the status and the headers of the response were received, before its body is read.
+   *
+   * @return <code>false</code> to abort the request without reading the body, in which case no further callback is
+   * invoked. The default implementation continues the request.
+   */
+  public boolean onHeadersReceived(HttpStatus status, HttpHeaders headers) {
+    return true;
+  }
+
+  /**
+   * Invoked once the complete response was received, regardless of its status code.
+   */
+  public abstract void onCompleted(HttpResponse response);
+
+  /**
+   * Invoked if the request could not be sent or its response could not be received. The default implementation
+   * logs the failure.
+   */
+  public void onThrowable(Throwable t) {
+    LOG.debug("HTTP request failed", t);
+  }
+}
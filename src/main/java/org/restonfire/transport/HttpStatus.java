@@ -0,0 +1,14 @@
+package org.restonfire.transport;
+
+/**
+ * The status of a response, which is known before its headers and body were received.
+ */
+public interface HttpStatus {
+
+  /**
+   * @return The URL of the request, which may differ from the requested URL if a redirect was followed.
+   */
+  String getUri();
+
+  int getStatusCode();
+}
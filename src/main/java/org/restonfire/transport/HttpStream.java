@@ -0,0 +1,18 @@
+package org.restonfire.transport;
+
+/**
+ * The connection of a streamed response, returned by {@link HttpTransport#stream(HttpRequest, HttpStreamHandler)}.
+ */
+public interface HttpStream {
+
+  /**
+   * Closes the connection, which is reported to the {@link HttpStreamHandler#onCompleted()} callback.
+   */
+  void close();
+
+  /**
+   * Cancels the connection, which is reported as a failure to the {@link HttpStreamHandler#onThrowable(Throwable)}
+   * callback.
+   */
+  void cancel();
+}
@@ -0,0 +1,34 @@
+package org.restonfire.transport;
+
+/**
+ * Receives the response of a request sent by {@link HttpTransport#stream(HttpRequest, HttpStreamHandler)} while it
+ * is being received. All callbacks of a stream are invoked by the same thread at a time, and exactly one of
+ * {@link #onCompleted()} and {@link #onThrowable(Throwable)} is invoked once the stream ended, unless it was aborted
+ * by {@link #onStatusReceived(HttpStatus)}.
+ */
+public interface HttpStreamHandler {
+
+  /**
+   * Invoked once the status of the response was received.
+   *
+   * @return <code>false</code> to abort the request without reading the body, in which case no further callback is
+   * invoked.
+   */
+  boolean onStatusReceived(HttpStatus status);
+
+  /**
+   * Invoked for every part of the body in the order it was received. The bytes must not be accessed once the
+   * callback returned, as the transport may reuse the array for the next part.
+   */
+  void onBodyPartReceived(byte[] bytes, int offset, int length);
+
+  /**
+   * Invoked once the server closed the connection or the stream was closed by {@link HttpStream#close()}.
+   */
+  void onCompleted();
+
+  /**
+   * Invoked if the request failed, the connection was lost or the stream was cancelled by {@link HttpStream#cancel()}.
+   */
+  void onThrowable(Throwable t);
+}
@@ -0,0 +1,39 @@
+package org.restonfire.transport;
+
+import java.io.Closeable;
+
+/**
+ * The HTTP client used by a {@link org.restonfire.FirebaseRestDatabase} to send its requests to Firebase.
+ * Implementations must be thread safe, as the requests of all locations of a database share the transport, and
+ * invoke the callbacks of a request on a thread of their own, never on the thread issuing the request.
+ *
+ * @see AsyncHttpClientTransport
+ * @see UrlConnectionTransport
+ */
+public interface HttpTransport extends Closeable {
+
+  /**
+   * Sends the request and reads the complete response body.
+   *
+   * @param request The request to be sent.
+   * @param handler The {@link HttpResponseHandler} receiving the response or the failure of the request.
+   * @return The {@link HttpCall} to cancel the request.
+   */
+  HttpCall execute(HttpRequest request, HttpResponseHandler handler);
+
+  /**
+   * Sends the request and passes the response body on in parts as it is received, until the server closes the
+   * connection or the returned {@link HttpStream} is closed.
+   *
+   * @param request The request to be sent.
+   * @param handler The {@link HttpStreamHandler} receiving the parts of the response.
+   * @return The {@link HttpStream} to close the connection.
+   */
+  HttpStream stream(HttpRequest request, HttpStreamHandler handler);
+
+  /**
+   * Releases the threads and connections of the transport. Requests must not be sent afterwards.
+   */
+  @Override
+  void close();
+}
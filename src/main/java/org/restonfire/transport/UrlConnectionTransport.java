@@ -0,0 +1,380 @@
+package org.restonfire.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link HttpTransport} implementation using the {@link HttpURLConnection} of the JDK, for applications that do not
+ * want to depend on the Netty based {@link com.ning.http.client.AsyncHttpClient}. The connections are pooled by the
+ * JDK's keep-alive cache, whose size is configured by the <code>http.maxConnections</code> system property.<br>
+ * <br>
+ * Since the {@link HttpURLConnection} is blocking, every request occupies a daemon thread of the transport until its
+ * response was received, and every open {@link HttpStream} occupies a thread until it was closed. The callbacks are
+ * invoked by these threads.<br>
+ * <br>
+ * <b>Note:</b> The {@link HttpURLConnection} does not support the <code>PATCH</code> method, so these requests are
+ * sent as <code>POST</code> requests with the <code>X-HTTP-Method-Override</code> header supported by Firebase.
+ */
+public final class UrlConnectionTransport implements HttpTransport {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final String METHOD_OVERRIDE_HEADER = "X-HTTP-Method-Override";
+  private static final int BUFFER_SIZE = 8 * 1024;
+  private static final long DEFAULT_CONNECT_TIMEOUT_SECONDS = 10;
+  private static final long DEFAULT_READ_TIMEOUT_SECONDS = 60;
+
+  private final int connectTimeoutMillis;
+  private final int readTimeoutMillis;
+  private final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      final Thread thread = new Thread(runnable, "rest-on-fire-http-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  /**
+   * Creates a transport with a connect timeout of 10 seconds and a read timeout of 60 seconds.
+   */
+  public UrlConnectionTransport() {
+    this(DEFAULT_CONNECT_TIMEOUT_SECONDS, DEFAULT_READ_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+  }
+
+  /**
+   * @param connectTimeout The maximum time to establish a connection, or 0 to wait indefinitely.
+   * @param readTimeout The maximum time to wait for the next data of a response, or 0 to wait indefinitely. The
+   *                    timeout does not apply to streams, whose stall detection is configured by the
+   *                    {@link org.restonfire.EventStreamWatchdogSettings}.
+   * @param timeUnit The {@link TimeUnit} of the timeouts.
+   */
+  public UrlConnectionTransport(long connectTimeout, long readTimeout, TimeUnit timeUnit) {
+    if (connectTimeout < 0 || readTimeout < 0) {
+      throw new IllegalArgumentException("The timeouts must not be negative");
+    }
+
+    this.connectTimeoutMillis = (int) Math.min(Integer.MAX_VALUE, timeUnit.toMillis(connectTimeout));
+    this.readTimeoutMillis = (int) Math.min(Integer.MAX_VALUE, timeUnit.toMillis(readTimeout));
+  }
+
+  @Override
+  public HttpCall execute(HttpRequest request, HttpResponseHandler handler) {
+    final Call call = new Call(request, handler);
+    executor.execute(call);
+    return call;
+  }
+
+  @Override
+  public HttpStream stream(HttpRequest request, HttpStreamHandler handler) {
+    final Stream stream = new Stream(request, handler);
+    executor.execute(stream);
+    return stream;
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  private HttpURLConnection open(HttpRequest request, int readTimeout) throws IOException {
+    final HttpURLConnection connection = createConnection(request, readTimeout);
+    send(connection, request);
+    return connection;
+  }
+
+  /**
+   * Creates the connection of the request, which is not connected before it is sent.
+   */
+  private HttpURLConnection createConnection(HttpRequest request, int readTimeout) throws IOException {
+    final HttpURLConnection connection = (HttpURLConnection) new URL(request.getUrlWithQueryParams()).openConnection();
+    connection.setConnectTimeout(connectTimeoutMillis);
+    connection.setReadTimeout(readTimeout);
+    connection.setInstanceFollowRedirects(request.isFollowRedirects());
+    connection.setUseCaches(false);
+
+    if (HttpRequest.PATCH.equals(request.getMethod())) {
+      connection.setRequestMethod(HttpRequest.POST);
+      connection.setRequestProperty(METHOD_OVERRIDE_HEADER, HttpRequest.PATCH);
+    } else {
+      connection.setRequestMethod(request.getMethod());
+    }
+
+    for (Map.Entry<String, String> header : request.getHeaders()) {
+      connection.addRequestProperty(header.getKey(), header.getValue());
+    }
+    return connection;
+  }
+
+  private static void send(HttpURLConnection connection, HttpRequest request) throws IOException {
+    if (request.getBody() != null) {
+      final byte[] body = request.getBody().getBytes(UTF_8);
+      connection.setDoOutput(true);
+      connection.setFixedLengthStreamingMode(body.length);
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(body);
+      }
+    }
+
+    // Sends the request and blocks until the status and headers were received
+    connection.getResponseCode();
+  }
+
+  private static void disconnect(HttpURLConnection connection) {
+    if (connection != null) {
+      connection.disconnect();
+    }
+  }
+
+  private static InputStream getBodyStream(HttpURLConnection connection, int statusCode) throws IOException {
+    return statusCode >= HttpURLConnection.HTTP_BAD_REQUEST ? connection.getErrorStream() : connection.getInputStream();
+  }
+
+  private static byte[] readBody(HttpURLConnection connection, int statusCode) throws IOException {
+    final InputStream in = getBodyStream(connection, statusCode);
+    if (in == null) {
+      return new byte[0];
+    }
+
+    // The stream must be read completely, so the connection can be reused for the next request
+    try (InputStream body = in) {
+      final ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(connection.getContentLength(), BUFFER_SIZE));
+      final byte[] buffer = new byte[BUFFER_SIZE];
+      int read;
+      while ((read = body.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+      return out.toByteArray();
+    }
+  }
+
+  /**
+   * {@link HttpResponse} of a {@link HttpURLConnection}, whose headers are available once the request was sent.
+   */
+  private static final class Response implements HttpResponse {
+    private final HttpURLConnection connection;
+    private final byte[] body;
+
+    private Response(HttpURLConnection connection, byte[] body) {
+      this.connection = connection;
+      this.body = body;
+    }
+
+    @Override
+    public String getUri() {
+      return connection.getURL().toString();
+    }
+
+    @Override
+    public int getStatusCode() {
+      try {
+        return connection.getResponseCode();
+      } catch (IOException e) {
+        // The response code was already read by open(), so it is cached by the connection
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public String getHeader(String name) {
+      return connection.getHeaderField(name);
+    }
+
+    @Override
+    public String getResponseBody() {
+      return new String(body, UTF_8);
+    }
+
+    @Override
+    public InputStream getResponseBodyAsStream() {
+      return new ByteArrayInputStream(body);
+    }
+  }
+
+  /**
+   * {@link HttpCall} sending a request and reading its response on a thread of the transport.
+   */
+  private final class Call implements HttpCall, Runnable {
+
+    private static final int PENDING = 0;
+    private static final int DONE = 1;
+    private static final int CANCELLED = 2;
+
+    private final HttpRequest request;
+    private final HttpResponseHandler handler;
+    private final AtomicInteger state = new AtomicInteger(PENDING);
+    private volatile HttpURLConnection connection;
+
+    private Call(HttpRequest request, HttpResponseHandler handler) {
+      this.request = request;
+      this.handler = handler;
+    }
+
+    @Override
+    public void run() {
+      final HttpResponse response;
+      try {
+        connection = createConnection(request, readTimeoutMillis);
+        if (state.get() == CANCELLED) {
+          // Cancelled before the connection was visible to cancel()
+          onCancelled();
+          return;
+        }
+
+        send(connection, request);
+        final Response head = new Response(connection, null);
+        if (!handler.onHeadersReceived(head, head)) {
+          state.compareAndSet(PENDING, DONE);
+          connection.disconnect();
+          return;
+        }
+
+        response = new Response(connection, readBody(connection, head.getStatusCode()));
+      } catch (IOException | RuntimeException e) {
+        // Unchecked exceptions are thrown by an invalid request, by the handler, or by the connection if it is closed
+        // while the response is awaited
+        if (state.compareAndSet(PENDING, DONE)) {
+          disconnect(connection);
+          handler.onThrowable(e);
+        } else {
+          // The connection was closed by cancel()
+          onCancelled();
+        }
+        return;
+      }
+
+      if (state.compareAndSet(PENDING, DONE)) {
+        handler.onCompleted(response);
+      } else {
+        onCancelled();
+      }
+    }
+
+    @Override
+    public void cancel() {
+      if (state.compareAndSet(PENDING, CANCELLED)) {
+        final HttpURLConnection current = connection;
+        if (current != null) {
+          // Closes the socket, so the blocked read of the call's thread fails
+          current.disconnect();
+        }
+      }
+    }
+
+    private void onCancelled() {
+      handler.onThrowable(new CancellationException("The request was cancelled"));
+    }
+  }
+
+  /**
+   * {@link HttpStream} reading the body of a response on a thread of the transport until it was closed.
+   */
+  private final class Stream implements HttpStream, Runnable {
+
+    private static final int OPEN = 0;
+    private static final int CLOSED = 1;
+    private static final int CANCELLED = 2;
+
+    private final HttpRequest request;
+    private final HttpStreamHandler handler;
+    private final AtomicInteger state = new AtomicInteger(OPEN);
+    private volatile HttpURLConnection connection;
+
+    private Stream(HttpRequest request, HttpStreamHandler handler) {
+      this.request = request;
+      this.handler = handler;
+    }
+
+    @Override
+    public void run() {
+      try {
+        connection = open(request, 0);
+        if (state.get() != OPEN) {
+          // Closed while the connection was established
+          connection.disconnect();
+          finish(null);
+          return;
+        }
+
+        final Response status = new Response(connection, null);
+        if (!handler.onStatusReceived(status)) {
+          connection.disconnect();
+          return;
+        }
+
+        read(getBodyStream(connection, status.getStatusCode()));
+        finish(null);
+      } catch (IOException | RuntimeException e) {
+        // Unchecked exceptions are thrown by an invalid request or by the handler, which may leave the stream open
+        disconnect(connection);
+        finish(e);
+      }
+    }
+
+    @Override
+    public void close() {
+      stop(CLOSED);
+    }
+
+    @Override
+    public void cancel() {
+      stop(CANCELLED);
+    }
+
+    private void read(InputStream in) throws IOException {
+      if (in == null) {
+        return;
+      }
+
+      try (InputStream body = in) {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while (state.get() == OPEN && (read = body.read(buffer)) != -1) {
+          handler.onBodyPartReceived(buffer, 0, read);
+        }
+      }
+    }
+
+    private void stop(int newState) {
+      if (state.compareAndSet(OPEN, newState)) {
+        final HttpURLConnection current = connection;
+        if (current != null) {
+          // Closes the socket, so the blocked read of the stream's thread fails
+          current.disconnect();
+        }
+      }
+    }
+
+    private void finish(Exception error) {
+      switch (state.get()) {
+        case CLOSED:
+          handler.onCompleted();
+          break;
+        case CANCELLED:
+          handler.onThrowable(new CancellationException("The stream was cancelled"));
+          break;
+        default:
+          if (error != null) {
+            handler.onThrowable(error);
+          } else {
+            handler.onCompleted();
+          }
+          break;
+      }
+    }
+  }
+}
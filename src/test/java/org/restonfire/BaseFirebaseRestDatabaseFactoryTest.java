@@ -5,6 +5,10 @@ import com.google.gson.GsonBuilder;
 import com.ning.http.client.AsyncHttpClient;
 import org.junit.Test;
 import org.restonfire.testutils.AbstractMockTestCase;
+import org.restonfire.testutils.RecordingTransport;
+import org.restonfire.transport.HttpTransport;
+
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
 
@@ -33,6 +37,62 @@ public class BaseFirebaseRestDatabaseFactoryTest extends AbstractMockTestCase {
     executeCreateTest(fbBaseUrl, null);
   }
 
+  @Test
+  public void testGetReference_withTransport() {
+    final FirebaseRestDatabase namespace = new BaseFirebaseRestDatabaseFactory(mock(HttpTransport.class), gson).create(fbBaseUrl, fbAccessToken);
+
+    assertEquals(fbBaseUrl + PathUtil.FORWARD_SLASH + path, namespace.getReference(path).getReferenceUrl());
+  }
+
+  @Test
+  public void testGetReference_withMaxRequestsPerHost() {
+    ((BaseFirebaseRestDatabaseFactory) factory).setMaxRequestsPerHost(10);
+    executeCreateTest(fbBaseUrl, fbAccessToken);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSetMaxRequestsPerHost_negative() {
+    ((BaseFirebaseRestDatabaseFactory) factory).setMaxRequestsPerHost(-1);
+  }
+
+  @Test
+  public void testCreate_withConcurrencyLimitSettings() {
+    ((BaseFirebaseRestDatabaseFactory) factory).setConcurrencyLimitSettings(new ConcurrencyLimitSettings(8, 1, 32, 100, 1, 1, TimeUnit.SECONDS));
+    final FirebaseRestDatabase database = factory.create(fbBaseUrl, fbAccessToken);
+
+    assertEquals(8, database.getConcurrencyLimitStatistics().getLimit());
+    assertEquals(0, factory.create(fbBaseUrl, fbAccessToken).getConcurrencyLimitStatistics().getInFlightCount());
+  }
+
+  @Test
+  public void testWarmUp_bypassesConcurrencyLimit() throws Exception {
+    final RecordingTransport transport = new RecordingTransport();
+    final BaseFirebaseRestDatabaseFactory limitedFactory = new BaseFirebaseRestDatabaseFactory(transport, gson);
+    limitedFactory.setConcurrencyLimitSettings(new ConcurrencyLimitSettings(1, 1, 1, 0, 1, 1, TimeUnit.SECONDS));
+    final FirebaseRestDatabase database = limitedFactory.create(fbBaseUrl, fbAccessToken);
+
+    database.warmUp(new WarmupSettings(4, 2));
+
+    transport.awaitRequests(4);
+    assertEquals(0, database.getConcurrencyLimitStatistics().getInFlightCount());
+    assertEquals(0, database.getConcurrencyLimitStatistics().getRejectedCount());
+  }
+
+  @Test
+  public void testGetReference_withRetrySettings() {
+    ((BaseFirebaseRestDatabaseFactory) factory).setRetrySettings(new RetrySettings(3, 100, 1000, TimeUnit.MILLISECONDS, 10));
+    executeCreateTest(fbBaseUrl, fbAccessToken);
+  }
+
+  @Test
+  public void testCreate_withHedgingSettings() {
+    ((BaseFirebaseRestDatabaseFactory) factory).setHedgingSettings(new HedgingSettings(95, 10, 500, TimeUnit.MILLISECONDS, 5));
+    final FirebaseRestDatabase database = factory.create(fbBaseUrl, fbAccessToken);
+
+    assertEquals(500, database.getHedgingStatistics().getHedgeDelayMillis(), 0);
+    assertEquals(0, database.getHedgingStatistics().getRequestCount());
+  }
+
   private void executeCreateTest(String fbBaseUrl, String fbAccessToken) {
     FirebaseRestDatabase namespace = factory.create(fbBaseUrl, fbAccessToken);
 
@@ -0,0 +1,327 @@
+package org.restonfire;
+
+import org.jmock.Expectations;
+import org.junit.Test;
+import org.restonfire.exceptions.FirebaseRequestRejectedException;
+import org.restonfire.exceptions.FirebaseRuntimeException;
+import org.restonfire.testutils.AbstractMockTestCase;
+import org.restonfire.testutils.RecordingHandler;
+import org.restonfire.testutils.RecordingTransport;
+import org.restonfire.transport.HttpCall;
+import org.restonfire.transport.HttpHeaders;
+import org.restonfire.transport.HttpRequest;
+import org.restonfire.transport.HttpResponse;
+import org.restonfire.transport.HttpResponseHandler;
+import org.restonfire.transport.HttpStatus;
+import org.restonfire.transport.HttpStream;
+import org.restonfire.transport.HttpStreamHandler;
+import org.restonfire.transport.HttpTransport;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link ConcurrencyLimiter} class.
+ */
+public class ConcurrencyLimiterTest extends AbstractMockTestCase {
+
+  private static final String URL = "https://mynamespace.firebaseio.com/a.json";
+
+  private final RecordingTransport delegate = new RecordingTransport();
+  private ConcurrencyLimiter limiter;
+
+  @Test
+  public void testExecute_queuedUntilReleased() {
+    final HttpTransport transport = createTransport(2, 2, 2, 1, TimeUnit.MINUTES);
+    final RecordingHandler first = execute(transport);
+    execute(transport);
+    final RecordingHandler third = execute(transport);
+
+    assertEquals(2, delegate.getHandlers().size());
+    assertEquals(1, getStatistics().getQueuedCount());
+    assertEquals(2, getStatistics().getInFlightCount());
+
+    final HttpResponse response = mock(HttpResponse.class);
+    delegate.getHandlers().get(0).onCompleted(response);
+    assertSame(response, first.getResponse());
+
+    // the released slot is used by the queued request
+    assertEquals(3, delegate.getHandlers().size());
+    assertEquals(0, getStatistics().getQueuedCount());
+    assertEquals(2, getStatistics().getInFlightCount());
+
+    delegate.getHandlers().get(2).onCompleted(response);
+    assertSame(response, third.getResponse());
+    assertEquals(1, getStatistics().getInFlightCount());
+  }
+
+  @Test
+  public void testExecute_queueFull() {
+    final HttpTransport transport = createTransport(1, 1, 1, 1, TimeUnit.MINUTES);
+    execute(transport);
+    execute(transport);
+    final RecordingHandler rejected = execute(transport);
+
+    assertRejected(rejected);
+    assertEquals(1, delegate.getHandlers().size());
+    assertEquals(1, getStatistics().getRejectedCount());
+  }
+
+  @Test
+  public void testExecute_queueWaitElapsed() throws Exception {
+    final HttpTransport transport = createTransport(1, 1, 1, 10, TimeUnit.MILLISECONDS);
+    execute(transport);
+    final RecordingHandler queued = execute(transport);
+
+    final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+    while (queued.getError() == null && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+
+    assertRejected(queued);
+    assertEquals(0, getStatistics().getQueuedCount());
+    assertEquals(1, getStatistics().getRejectedCount());
+
+    // the rejected request is not sent once the slot is released
+    delegate.getHandlers().get(0).onCompleted(mock(HttpResponse.class));
+    assertEquals(1, delegate.getHandlers().size());
+  }
+
+  @Test
+  public void testExecute_cancelledRequestDoesNotDecreaseLimit() {
+    final HttpTransport transport = createTransport(2, 1, 2, 1, TimeUnit.MINUTES);
+    final RecordingHandler handler = new RecordingHandler();
+    final HttpCall call = transport.execute(new HttpRequest(HttpRequest.GET, URL), handler);
+
+    call.cancel();
+
+    assertTrue(delegate.isCancelled(0));
+    assertTrue(handler.getError() instanceof CancellationException);
+    assertEquals(0, getStatistics().getInFlightCount());
+    assertEquals(2, getStatistics().getLimit());
+  }
+
+  @Test
+  public void testExecute_cancelQueued() {
+    final HttpTransport transport = createTransport(1, 1, 1, 1, TimeUnit.MINUTES);
+    execute(transport);
+    final RecordingHandler handler = new RecordingHandler();
+    final HttpCall call = transport.execute(new HttpRequest(HttpRequest.GET, URL), handler);
+
+    call.cancel();
+
+    assertTrue(handler.getError() instanceof CancellationException);
+    assertEquals(0, getStatistics().getQueuedCount());
+
+    // the cancelled request is not sent once the slot is released
+    delegate.getHandlers().get(0).onCompleted(mock(HttpResponse.class));
+    assertEquals(1, delegate.getHandlers().size());
+  }
+
+  @Test
+  public void testLimit_increasedWhileUtilized() {
+    final HttpTransport transport = createTransport(1, 1, 2, 1, TimeUnit.MINUTES);
+    execute(transport);
+    execute(transport);
+
+    delegate.getHandlers().get(0).onCompleted(mock(HttpResponse.class));
+
+    assertEquals(2, getStatistics().getLimit());
+    assertEquals(2, delegate.getHandlers().size());
+    execute(transport);
+    assertEquals(3, delegate.getHandlers().size());
+  }
+
+  @Test
+  public void testLimit_notIncreasedWhileUnderutilized() {
+    final HttpTransport transport = createTransport(4, 1, 8, 1, TimeUnit.MINUTES);
+    execute(transport);
+
+    delegate.getHandlers().get(0).onCompleted(mock(HttpResponse.class));
+
+    assertEquals(4, getStatistics().getLimit());
+  }
+
+  @Test
+  public void testLimit_decreasedOnOverload() {
+    final HttpTransport transport = createTransport(10, 5, 10, 1, TimeUnit.MINUTES);
+    final RecordingHandler failed = execute(transport);
+    execute(transport);
+    final RecordingHandler aborted = new RecordingHandler() {
+      @Override
+      public boolean onHeadersReceived(HttpStatus status, HttpHeaders headers) {
+        return false;
+      }
+    };
+    transport.execute(new HttpRequest(HttpRequest.GET, URL), aborted);
+
+    final IOException error = new IOException("Connection reset");
+    delegate.getHandlers().get(0).onThrowable(error);
+    assertSame(error, failed.getError());
+    assertEquals(9, getStatistics().getLimit());
+
+    final HttpStatus serviceUnavailable = mock(HttpStatus.class, "serviceUnavailable");
+    final HttpStatus tooManyRequests = mock(HttpStatus.class, "tooManyRequests");
+    addExpectations(new Expectations() {{
+      allowing(serviceUnavailable).getStatusCode(); will(returnValue(503));
+      allowing(tooManyRequests).getStatusCode(); will(returnValue(429));
+    }});
+
+    // 9 * 0.9 = 8.1
+    assertTrue(delegate.getHandlers().get(1).onHeadersReceived(serviceUnavailable, null));
+    delegate.getHandlers().get(1).onCompleted(mock(HttpResponse.class));
+    assertEquals(8, getStatistics().getLimit());
+
+    // 8.1 * 0.9 = 7.29
+    assertFalse(delegate.getHandlers().get(2).onHeadersReceived(tooManyRequests, null));
+    assertEquals(7, getStatistics().getLimit());
+    assertEquals(0, getStatistics().getInFlightCount());
+  }
+
+  @Test
+  public void testLimit_decreasedOnLatency() {
+    final HttpTransport transport = createLimiter(new ConcurrencyLimitSettings(2, 1, 2, 1, 1, TimeUnit.MINUTES.toNanos(1), TimeUnit.NANOSECONDS)).decorate(delegate);
+    execute(transport);
+
+    delegate.getHandlers().get(0).onCompleted(mock(HttpResponse.class));
+
+    assertEquals(1, getStatistics().getLimit());
+  }
+
+  @Test
+  public void testLimit_latencyMeasuredUntilHeaders() throws Exception {
+    final HttpTransport transport = createLimiter(new ConcurrencyLimitSettings(2, 1, 2, 1, 200, 1, TimeUnit.MILLISECONDS)).decorate(delegate);
+    execute(transport);
+
+    assertTrue(delegate.getHandlers().get(0).onHeadersReceived(createStatus(200), null));
+    // the download of the body does not count towards the latency
+    Thread.sleep(300);
+    delegate.getHandlers().get(0).onCompleted(mock(HttpResponse.class));
+
+    assertEquals(2, getStatistics().getLimit());
+  }
+
+  @Test
+  public void testLimit_latencyExcludesQueueOfDelegate() throws Exception {
+    final HttpTransport transport = createLimiter(new ConcurrencyLimitSettings(2, 1, 2, 1, 200, 1, TimeUnit.MILLISECONDS)).decorate(delegate);
+    execute(transport);
+
+    // the request waited in a queue of the delegate before it was sent
+    Thread.sleep(300);
+    delegate.getHandlers().get(0).onRequestSent();
+    assertTrue(delegate.getHandlers().get(0).onHeadersReceived(createStatus(200), null));
+    delegate.getHandlers().get(0).onCompleted(mock(HttpResponse.class));
+
+    assertEquals(2, getStatistics().getLimit());
+  }
+
+  @Test
+  public void testLimit_minLimit() {
+    final HttpTransport transport = createTransport(1, 1, 1, 1, TimeUnit.MINUTES);
+    execute(transport);
+
+    delegate.getHandlers().get(0).onThrowable(new IOException());
+
+    assertEquals(1, getStatistics().getLimit());
+  }
+
+  @Test
+  public void testExecute_delegateFailed() {
+    final HttpTransport transport = createLimiter(new ConcurrencyLimitSettings(1, 1, 1, 1, 1, 1, TimeUnit.MINUTES)).decorate(new RecordingTransport() {
+      @Override
+      public HttpCall execute(HttpRequest request, HttpResponseHandler handler) {
+        throw new IllegalStateException();
+      }
+    });
+
+    final RecordingHandler handler = execute(transport);
+
+    assertTrue(handler.getError() instanceof IllegalStateException);
+    assertEquals(0, getStatistics().getInFlightCount());
+    assertEquals(1, getStatistics().getLimit());
+  }
+
+  @Test
+  public void testClose() {
+    final HttpTransport transport = createTransport(1, 1, 1, 1, TimeUnit.MINUTES);
+    execute(transport);
+    final RecordingHandler queued = execute(transport);
+
+    transport.close();
+
+    assertTrue(delegate.isClosed());
+    assertTrue(queued.getError() instanceof CancellationException);
+  }
+
+  @Test
+  public void testStream() {
+    final HttpTransport streamDelegate = mock(HttpTransport.class);
+    final HttpStream stream = mock(HttpStream.class);
+    final HttpStreamHandler handler = mock(HttpStreamHandler.class);
+    final HttpRequest request = new HttpRequest(HttpRequest.GET, URL);
+
+    addExpectations(new Expectations() {{
+      oneOf(streamDelegate).stream(request, handler); will(returnValue(stream));
+    }});
+
+    assertSame(stream, createLimiter(new ConcurrencyLimitSettings(1, 1, 1, 0, 1, 1, TimeUnit.MINUTES)).decorate(streamDelegate).stream(request, handler));
+  }
+
+  @Test
+  public void testDisabled() {
+    assertFalse(ConcurrencyLimiter.disabled().isEnabled());
+    assertSame(ConcurrencyLimiter.disabled(), ConcurrencyLimiter.create(null));
+    assertSame(delegate, ConcurrencyLimiter.disabled().decorate(delegate));
+    assertEquals(0, ConcurrencyLimiter.disabled().getStatistics().getLimit());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSettings_invalidInitialLimit() {
+    new ConcurrencyLimitSettings(11, 1, 10, 0, 1, 1, TimeUnit.SECONDS);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSettings_invalidMinLimit() {
+    new ConcurrencyLimitSettings(1, 0, 10, 0, 1, 1, TimeUnit.SECONDS);
+  }
+
+  private HttpTransport createTransport(int initialLimit, int minLimit, int maxLimit, long maxQueueWait, TimeUnit timeUnit) {
+    // the latency threshold of one minute is not exceeded by any request
+    return createLimiter(new ConcurrencyLimitSettings(initialLimit, minLimit, maxLimit, 1, timeUnit.convert(1, TimeUnit.MINUTES), maxQueueWait, timeUnit)).decorate(delegate);
+  }
+
+  private ConcurrencyLimiter createLimiter(ConcurrencyLimitSettings settings) {
+    limiter = ConcurrencyLimiter.create(settings);
+    assertTrue(limiter.isEnabled());
+    return limiter;
+  }
+
+  private ConcurrencyLimitStatistics getStatistics() {
+    return limiter.getStatistics();
+  }
+
+  private RecordingHandler execute(HttpTransport transport) {
+    final RecordingHandler handler = new RecordingHandler();
+    transport.execute(new HttpRequest(HttpRequest.GET, URL), handler);
+    return handler;
+  }
+
+  private HttpStatus createStatus(final int statusCode) {
+    final HttpStatus status = mock(HttpStatus.class);
+    addExpectations(new Expectations() {{
+      allowing(status).getStatusCode(); will(returnValue(statusCode));
+    }});
+    return status;
+  }
+
+  private static void assertRejected(RecordingHandler handler) {
+    assertTrue(handler.getError() instanceof FirebaseRequestRejectedException);
+    assertEquals(FirebaseRuntimeException.ErrorCode.ConcurrencyLimitExceeded, ((FirebaseRuntimeException) handler.getError()).getErrorCode());
+  }
+}
@@ -0,0 +1,138 @@
+package org.restonfire;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import org.apache.commons.lang3.mutable.MutableObject;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.FailCallback;
+import org.jdeferred.ProgressCallback;
+import org.junit.Test;
+import org.restonfire.exceptions.FirebaseRuntimeException;
+import org.restonfire.testutils.AbstractMockTestCase;
+import org.restonfire.testutils.RecordingTransport;
+import org.restonfire.transport.HttpRequest;
+import org.restonfire.transport.HttpResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link DatabaseWarmup} class.
+ */
+public class DatabaseWarmupTest extends AbstractMockTestCase {
+
+  private static final String DATABASE_URL = "https://mynamespace.firebaseio.com";
+
+  private final Gson gson = new GsonBuilder().create();
+  private final RecordingTransport transport = new RecordingTransport();
+  private final MutableObject<WarmupResult> capturedResult = new MutableObject<>();
+  private final MutableObject<FirebaseRuntimeException> capturedError = new MutableObject<>();
+  private final List<WarmupResult> rounds = new ArrayList<>();
+
+  @Test
+  public void testWarmUp_maxRounds() {
+    start(new WarmupSettings(3, 2, SampleData.class, new TypeToken<Map<String, SampleData>>() { }.getType()));
+
+    assertEquals(3, transport.getHandlers().size());
+    final HttpRequest request = transport.getRequests().get(0);
+    assertEquals(DATABASE_URL + "/.json", request.getUrl());
+    assertEquals("auth", request.getQueryParams().get(0).getKey());
+    assertEquals("shallow", request.getQueryParams().get(1).getKey());
+
+    completeRequests(0, 3);
+    assertEquals(1, rounds.size());
+    assertEquals(1, rounds.get(0).getRound());
+    assertEquals(3, rounds.get(0).getCompletedCount());
+    assertFalse(rounds.get(0).isStable());
+    assertNull(capturedResult.getValue());
+
+    // the second round is sent once the first round completed
+    assertEquals(6, transport.getHandlers().size());
+    completeRequests(3, 5);
+    transport.getHandlers().get(5).onThrowable(new IOException("Connection reset"));
+
+    final WarmupResult result = capturedResult.getValue();
+    assertEquals(2, result.getRound());
+    assertEquals(2, result.getCompletedCount());
+    assertEquals(1, result.getFailedCount());
+    assertTrue(result.getP99LatencyMillis() >= 0);
+    assertEquals(6, transport.getHandlers().size());
+    assertNull(capturedError.getValue());
+  }
+
+  @Test
+  public void testWarmUp_singleRound() {
+    start(new WarmupSettings(2, 1));
+    completeRequests(0, 2);
+
+    assertEquals(1, capturedResult.getValue().getRound());
+    assertFalse(capturedResult.getValue().isStable());
+  }
+
+  @Test
+  public void testWarmUp_allRequestsFailed() {
+    start(new WarmupSettings(2, 3));
+    transport.getHandlers().get(0).onThrowable(new IOException("Connection refused"));
+    transport.getHandlers().get(1).onThrowable(new IOException("Connection refused"));
+
+    assertEquals(FirebaseRuntimeException.ErrorCode.WarmupFailed, capturedError.getValue().getErrorCode());
+    assertTrue(capturedError.getValue().getCause() instanceof IOException);
+    assertNull(capturedResult.getValue());
+    assertEquals(2, transport.getHandlers().size());
+  }
+
+  @Test
+  public void testIsStable() {
+    assertFalse(DatabaseWarmup.isStable(-1, 10));
+    assertTrue(DatabaseWarmup.isStable(10, 10));
+    assertTrue(DatabaseWarmup.isStable(10, 8.5));
+    assertTrue(DatabaseWarmup.isStable(10, 11.5));
+    assertFalse(DatabaseWarmup.isStable(10, 7));
+    assertFalse(DatabaseWarmup.isStable(100, 130));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSettings_invalidConnectionCount() {
+    new WarmupSettings(0, 1);
+  }
+
+  private void start(WarmupSettings settings) {
+    new DatabaseWarmup(transport, gson, DATABASE_URL, "token", settings).start()
+      .progress(new ProgressCallback<WarmupResult>() {
+        @Override
+        public void onProgress(WarmupResult progress) {
+          rounds.add(progress);
+        }
+      })
+      .done(new DoneCallback<WarmupResult>() {
+        @Override
+        public void onDone(WarmupResult result) {
+          capturedResult.setValue(result);
+        }
+      })
+      .fail(new FailCallback<FirebaseRuntimeException>() {
+        @Override
+        public void onFail(FirebaseRuntimeException result) {
+          capturedError.setValue(result);
+        }
+      });
+  }
+
+  private void completeRequests(int from, int to) {
+    for (int i = from; i < to; i++) {
+      transport.getHandlers().get(i).onCompleted(mock(HttpResponse.class, "response" + i));
+    }
+  }
+
+  private static final class SampleData {
+    private String name;
+  }
+}
@@ -0,0 +1,291 @@
+package org.restonfire;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.reflect.TypeToken;
+import org.apache.commons.lang3.mutable.MutableObject;
+import org.jdeferred.AlwaysCallback;
+import org.jdeferred.ProgressCallback;
+import org.jdeferred.Promise;
+import org.jdeferred.impl.DeferredObject;
+import org.junit.Test;
+import org.restonfire.exceptions.FirebaseRuntimeException;
+import org.restonfire.responses.StreamingEvent;
+import org.restonfire.responses.StreamingEventData;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for EventDelivery.
+ */
+public class EventDeliveryTest {
+
+  private static final TypeToken<StreamingEventData<JsonElement>> EVENT_DATA_TYPE = new TypeToken<StreamingEventData<JsonElement>>() { };
+
+  private final Gson gson = new GsonBuilder().create();
+  private final ManualExecutor executor = new ManualExecutor();
+
+  private final DeferredObject<Void, FirebaseRuntimeException, StreamingEvent> source = new DeferredObject<>();
+  private final List<String> deliveredEvents = new ArrayList<>();
+  private final List<String> deliveredData = new ArrayList<>();
+  private final MutableObject<Promise.State> capturedState = new MutableObject<>();
+  private final MutableObject<FirebaseRuntimeException> capturedOverflow = new MutableObject<>();
+
+  @Test
+  public void testDisabled() {
+    assertFalse(EventDelivery.disabled().isEnabled());
+    assertSame(EventDelivery.disabled(), EventDelivery.create(null, gson));
+    assertEquals(0, EventDelivery.disabled().getStatistics().getDeliveredCount());
+  }
+
+  @Test
+  public void testDeliver_publishedByExecutor() {
+    final EventDelivery delivery = deliver(10, EventDeliverySettings.OverflowPolicy.FailStream);
+
+    source.notify(createEvent("a"));
+    source.notify(new StreamingEvent(gson, StreamingEvent.EventType.Resync, null));
+    source.notify(createEvent("b"));
+    source.resolve(null);
+
+    assertTrue(deliveredEvents.isEmpty());
+    assertNull(capturedState.getValue());
+    assertEquals(3, delivery.getStatistics().getQueuedCount());
+    assertEquals(1, executor.tasks.size());
+
+    executor.runAll();
+
+    assertEquals(Arrays.asList("/a", "Resync", "/b"), deliveredEvents);
+    assertEquals(Promise.State.RESOLVED, capturedState.getValue());
+
+    final EventDeliveryStatistics statistics = delivery.getStatistics();
+    assertEquals(0, statistics.getQueuedCount());
+    assertEquals(0, statistics.getMaxDeliveryLagMillis());
+    assertEquals(3, statistics.getDeliveredCount());
+    assertEquals(0, statistics.getDroppedCount());
+  }
+
+  @Test
+  public void testDeliver_batchesYieldExecutor() {
+    deliver(1000, EventDeliverySettings.OverflowPolicy.FailStream);
+
+    for (int i = 0; i < 100; i++) {
+      source.notify(createEvent(String.valueOf(i)));
+    }
+
+    executor.runNext();
+    assertEquals(64, deliveredEvents.size());
+    assertEquals(1, executor.tasks.size());
+
+    executor.runAll();
+    assertEquals(100, deliveredEvents.size());
+  }
+
+  @Test
+  public void testDeliver_dropOldest() {
+    final EventDelivery delivery = deliver(2, EventDeliverySettings.OverflowPolicy.DropOldest);
+
+    source.notify(createEvent("a"));
+    source.notify(new StreamingEvent(gson, StreamingEvent.EventType.Resync, null));
+    source.notify(createEvent("b"));
+    source.notify(createEvent("c"));
+    executor.runAll();
+
+    assertEquals(Arrays.asList("Resync", "/b", "/c"), deliveredEvents);
+    assertEquals(1, delivery.getStatistics().getDroppedCount());
+    assertNull(capturedOverflow.getValue());
+  }
+
+  @Test
+  public void testDeliver_failStream() {
+    final EventDelivery delivery = deliver(1, EventDeliverySettings.OverflowPolicy.FailStream);
+
+    source.notify(createEvent("a"));
+    source.notify(createEvent("b"));
+
+    assertNotNull(capturedOverflow.getValue());
+    assertEquals(FirebaseRuntimeException.ErrorCode.EventDeliveryQueueOverflow, capturedOverflow.getValue().getErrorCode());
+
+    // The stream is rejected by the overflow handler, which completes the queue
+    source.reject(capturedOverflow.getValue());
+    executor.runAll();
+
+    assertEquals(Collections.singletonList("/a"), deliveredEvents);
+    assertEquals(Promise.State.REJECTED, capturedState.getValue());
+
+    final EventDeliveryStatistics statistics = delivery.getStatistics();
+    assertEquals(1, statistics.getDroppedCount());
+    assertEquals(1, statistics.getFailedStreamCount());
+  }
+
+  @Test
+  public void testDeliver_block() throws Exception {
+    deliver(1, EventDeliverySettings.OverflowPolicy.Block);
+    source.notify(createEvent("a"));
+
+    final CountDownLatch blockedEventOffered = new CountDownLatch(1);
+    final Thread producer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        source.notify(createEvent("b"));
+        blockedEventOffered.countDown();
+      }
+    });
+    producer.start();
+
+    assertFalse(blockedEventOffered.await(100, TimeUnit.MILLISECONDS));
+
+    executor.runNext();
+    assertTrue(blockedEventOffered.await(5, TimeUnit.SECONDS));
+    producer.join();
+
+    executor.runAll();
+    assertEquals(Arrays.asList("/a", "/b"), deliveredEvents);
+  }
+
+  @Test
+  public void testConflate_sameLocation() {
+    final EventDelivery delivery = deliver(10, EventDeliverySettings.OverflowPolicy.FailStream, true);
+
+    source.notify(createEvent(StreamingEvent.EventType.Set, "/a", "1"));
+    source.notify(createEvent(StreamingEvent.EventType.Set, "/b", "{\"x\":1}"));
+    source.notify(createEvent(StreamingEvent.EventType.Set, "/a", "2"));
+    source.notify(createEvent(StreamingEvent.EventType.Update, "/b", "{\"y\":2}"));
+    source.notify(createEvent(StreamingEvent.EventType.Update, "/c", "{\"x\":1}"));
+    source.notify(createEvent(StreamingEvent.EventType.Update, "/c", "{\"y\":{\"z\":1}}"));
+    source.notify(createEvent(StreamingEvent.EventType.Update, "/c", "{\"y/z\":2}"));
+
+    assertEquals(3, delivery.getStatistics().getQueuedCount());
+    executor.runAll();
+
+    assertEquals(Arrays.asList("Set /a 2", "Set /b {\"x\":1,\"y\":2}", "Update /c {\"x\":1,\"y\":{\"z\":2}}"), deliveredData);
+    assertEquals(4, delivery.getStatistics().getConflatedCount());
+  }
+
+  @Test
+  public void testConflate_overlappingLocations() {
+    final EventDelivery delivery = deliver(10, EventDeliverySettings.OverflowPolicy.FailStream, true);
+
+    source.notify(createEvent(StreamingEvent.EventType.Set, "/a/x", "1"));
+    source.notify(createEvent(StreamingEvent.EventType.Set, "/a", "{\"x\":2}"));
+    source.notify(createEvent(StreamingEvent.EventType.Set, "/a/x", "3"));
+    source.notify(createEvent(StreamingEvent.EventType.Set, "/a", "{\"x\":4}"));
+    executor.runAll();
+
+    assertEquals(Arrays.asList("Set /a/x 1", "Set /a {\"x\":2}", "Set /a/x 3", "Set /a {\"x\":4}"), deliveredData);
+    assertEquals(0, delivery.getStatistics().getConflatedCount());
+
+    // The indexes are cleared once the events were published
+    source.notify(createEvent(StreamingEvent.EventType.Set, "/a/x", "5"));
+    source.notify(createEvent(StreamingEvent.EventType.Set, "/a/x", "6"));
+    executor.runAll();
+
+    assertEquals("Set /a/x 6", deliveredData.get(deliveredData.size() - 1));
+    assertEquals(1, delivery.getStatistics().getConflatedCount());
+  }
+
+  @Test
+  public void testConflate_notAcrossResync() {
+    final EventDelivery delivery = deliver(10, EventDeliverySettings.OverflowPolicy.FailStream, true);
+
+    source.notify(createEvent(StreamingEvent.EventType.Update, "/a", "{\"x\":1}"));
+    source.notify(new StreamingEvent(gson, StreamingEvent.EventType.Resync, null));
+    source.notify(createEvent(StreamingEvent.EventType.Update, "/a", "{\"y\":2}"));
+    executor.runAll();
+
+    assertEquals(Arrays.asList("Update /a {\"x\":1}", "Resync", "Update /a {\"y\":2}"), deliveredData);
+    assertEquals(0, delivery.getStatistics().getConflatedCount());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSettings_invalidCapacity() {
+    new EventDeliverySettings(0, EventDeliverySettings.OverflowPolicy.Block, executor);
+  }
+
+  private EventDelivery deliver(int capacity, EventDeliverySettings.OverflowPolicy overflowPolicy) {
+    return deliver(capacity, overflowPolicy, false);
+  }
+
+  private EventDelivery deliver(int capacity, EventDeliverySettings.OverflowPolicy overflowPolicy, boolean conflating) {
+    final EventDelivery delivery = EventDelivery.create(new EventDeliverySettings(capacity, overflowPolicy, executor, conflating), gson);
+
+    delivery.deliver(source.promise(), new EventDelivery.OverflowHandler() {
+      @Override
+      public void onOverflow(FirebaseRuntimeException error) {
+        capturedOverflow.setValue(error);
+      }
+    })
+      .progress(new ProgressCallback<StreamingEvent>() {
+        @Override
+        public void onProgress(StreamingEvent event) {
+          if (event.getEventType() == StreamingEvent.EventType.Resync) {
+            deliveredEvents.add("Resync");
+            deliveredData.add("Resync");
+          } else {
+            final StreamingEventData<JsonElement> eventData = event.getEventData(EVENT_DATA_TYPE);
+            deliveredEvents.add(eventData.getPath());
+            deliveredData.add(event.getEventType() + " " + eventData.getPath() + " " + eventData.getData());
+          }
+        }
+      })
+      .always(new AlwaysCallback<Void, FirebaseRuntimeException>() {
+        @Override
+        public void onAlways(Promise.State state, Void resolved, FirebaseRuntimeException rejected) {
+          capturedState.setValue(state);
+        }
+      });
+
+    return delivery;
+  }
+
+  private StreamingEvent createEvent(String key) {
+    return createEvent(StreamingEvent.EventType.Set, "/" + key, "1");
+  }
+
+  private StreamingEvent createEvent(StreamingEvent.EventType eventType, String path, String data) {
+    return new StreamingEvent(gson, eventType, "{\"path\": \"" + path + "\", \"data\": " + data + "}");
+  }
+
+  /**
+   * Executor running the submitted tasks on demand.
+   */
+  private static final class ManualExecutor implements Executor {
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+
+    @Override
+    public synchronized void execute(Runnable command) {
+      tasks.add(command);
+    }
+
+    void runNext() {
+      final Runnable task;
+      synchronized (this) {
+        task = tasks.poll();
+      }
+      task.run();
+    }
+
+    void runAll() {
+      while (true) {
+        final Runnable task;
+        synchronized (this) {
+          task = tasks.poll();
+        }
+        if (task == null) {
+          return;
+        }
+        task.run();
+      }
+    }
+  }
+}
@@ -0,0 +1,141 @@
+package org.restonfire;
+
+import org.junit.Test;
+import org.restonfire.responses.StreamingEvent;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for EventStreamParser.
+ */
+public class EventStreamParserTest {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final List<StreamingEvent.EventType> eventTypes = new ArrayList<>();
+  private final List<String> eventData = new ArrayList<>();
+
+  private final EventStreamParser parser = new EventStreamParser(new EventStreamParser.EventHandler() {
+    @Override
+    public void onEvent(StreamingEvent.EventType eventType, byte[] data) {
+      eventTypes.add(eventType);
+      eventData.add(new String(data, UTF_8));
+    }
+  });
+
+  @Test
+  public void testParse_singleEvent() {
+    parse("event: put\ndata: {\"path\":\"/\",\"data\":1}\n\n");
+
+    assertEvents(StreamingEvent.EventType.Set, "{\"path\":\"/\",\"data\":1}");
+  }
+
+  @Test
+  public void testParse_allEventTypes() {
+    parse("event: put\ndata: 1\n\nevent: patch\ndata: 2\n\nevent: keep-alive\ndata: null\n\n"
+      + "event: cancel\ndata: null\n\nevent: auth_revoked\ndata: null\n\n");
+
+    assertEquals(5, eventTypes.size());
+    assertEquals(StreamingEvent.EventType.Set, eventTypes.get(0));
+    assertEquals(StreamingEvent.EventType.Update, eventTypes.get(1));
+    assertEquals(StreamingEvent.EventType.KeepAlive, eventTypes.get(2));
+    assertEquals(StreamingEvent.EventType.Cancel, eventTypes.get(3));
+    assertEquals(StreamingEvent.EventType.Expired, eventTypes.get(4));
+  }
+
+  @Test
+  public void testParse_incompleteEventIsNotDispatched() {
+    parse("event: put\ndata: 1\n");
+
+    assertTrue(eventTypes.isEmpty());
+
+    parse("\n");
+
+    assertEvents(StreamingEvent.EventType.Set, "1");
+  }
+
+  @Test
+  public void testParse_eventSplitAtEveryByte() {
+    final byte[] stream = "event: put\r\ndata: {\"path\":\"/\u00e4\",\r\ndata: \"data\":1}\r\n\r\nevent: patch\rdata: 2\r\r".getBytes(UTF_8);
+
+    for (byte value : stream) {
+      parser.parse(new byte[]{value});
+    }
+
+    assertEquals(2, eventTypes.size());
+    assertEquals(StreamingEvent.EventType.Set, eventTypes.get(0));
+    assertEquals("{\"path\":\"/\u00e4\",\n\"data\":1}", eventData.get(0));
+    assertEquals(StreamingEvent.EventType.Update, eventTypes.get(1));
+    assertEquals("2", eventData.get(1));
+  }
+
+  @Test
+  public void testParse_multiLineData() {
+    parse("event: put\ndata: {\"path\":\"/\",\ndata:\"data\":1}\n\n");
+
+    assertEvents(StreamingEvent.EventType.Set, "{\"path\":\"/\",\n\"data\":1}");
+  }
+
+  @Test
+  public void testParse_offsetAndLength() {
+    final byte[] bytes = "xxevent: put\ndata: 1\n\nxx".getBytes(UTF_8);
+
+    parser.parse(bytes, 2, bytes.length - 4);
+
+    assertEvents(StreamingEvent.EventType.Set, "1");
+  }
+
+  @Test
+  public void testParse_commentsAndUnknownFieldsAreIgnored() {
+    parse(": comment\nid: 1\nevent: put\nretry: 1000\ndata: 1\n\n");
+
+    assertEvents(StreamingEvent.EventType.Set, "1");
+  }
+
+  @Test
+  public void testParse_caseInsensitiveEventName() {
+    parse("event: Keep-Alive \ndata: null\n\n");
+
+    assertEvents(StreamingEvent.EventType.KeepAlive, "null");
+  }
+
+  @Test
+  public void testParse_unknownEventIsIgnored() {
+    parse("event: unknown\ndata: 1\n\nevent: put\ndata: 2\n\n");
+
+    assertEvents(StreamingEvent.EventType.Set, "2");
+  }
+
+  @Test
+  public void testParse_eventWithoutDataIsIgnored() {
+    parse("event: put\n\n\n\ndata: 1\n\n");
+
+    assertTrue(eventTypes.isEmpty());
+  }
+
+  @Test
+  public void testParse_largeEvent() {
+    final StringBuilder data = new StringBuilder();
+    for (int i = 0; i < 10000; i++) {
+      data.append(i);
+    }
+
+    parse("event: put\ndata: " + data + "\n\n");
+
+    assertEvents(StreamingEvent.EventType.Set, data.toString());
+  }
+
+  private void parse(String chunk) {
+    parser.parse(chunk.getBytes(UTF_8));
+  }
+
+  private void assertEvents(StreamingEvent.EventType expectedType, String expectedData) {
+    assertEquals(1, eventTypes.size());
+    assertEquals(expectedType, eventTypes.get(0));
+    assertEquals(expectedData, eventData.get(0));
+  }
+}
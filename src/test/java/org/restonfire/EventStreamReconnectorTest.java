@@ -0,0 +1,78 @@
+package org.restonfire;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for EventStreamReconnector.
+ */
+public class EventStreamReconnectorTest {
+
+  private final EventStreamReconnector reconnector = EventStreamReconnector.create(new EventStreamReconnectSettings(0, 0, TimeUnit.MILLISECONDS, 2));
+
+  @Test
+  public void testScheduleReconnect_concurrencyLimit() throws Exception {
+    final AtomicInteger started = new AtomicInteger();
+    final CountDownLatch twoStarted = new CountDownLatch(2);
+    final CountDownLatch thirdStarted = new CountDownLatch(3);
+
+    final Runnable reconnect = new Runnable() {
+      @Override
+      public void run() {
+        started.incrementAndGet();
+        twoStarted.countDown();
+        thirdStarted.countDown();
+      }
+    };
+
+    reconnector.scheduleReconnect(1, reconnect);
+    reconnector.scheduleReconnect(1, reconnect);
+    reconnector.scheduleReconnect(1, reconnect);
+
+    assertTrue(twoStarted.await(5, TimeUnit.SECONDS));
+    waitForWaitingReconnects(1);
+    assertEquals(2, started.get());
+    assertEquals(2, reconnector.getActiveReconnects());
+
+    reconnector.release();
+
+    assertTrue(thirdStarted.await(5, TimeUnit.SECONDS));
+    assertEquals(3, started.get());
+    assertEquals(2, reconnector.getActiveReconnects());
+    assertEquals(0, reconnector.getWaitingReconnects());
+
+    reconnector.release();
+    reconnector.release();
+    assertEquals(0, reconnector.getActiveReconnects());
+  }
+
+  @Test
+  public void testDisabled() {
+    assertFalse(EventStreamReconnector.disabled().isEnabled());
+    assertSame(EventStreamReconnector.disabled(), EventStreamReconnector.create(null));
+    assertTrue(reconnector.isEnabled());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSettings_invalidConcurrencyLimit() {
+    new EventStreamReconnectSettings(0, 0, TimeUnit.MILLISECONDS, 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSettings_maxDelayLessThanInitialDelay() {
+    new EventStreamReconnectSettings(10, 1, TimeUnit.MILLISECONDS, 1);
+  }
+
+  private void waitForWaitingReconnects(int expected) throws InterruptedException {
+    final long timeout = System.currentTimeMillis() + 5000;
+    while (reconnector.getWaitingReconnects() != expected && System.currentTimeMillis() < timeout) {
+      Thread.sleep(10);
+    }
+    assertEquals(expected, reconnector.getWaitingReconnects());
+  }
+}
@@ -0,0 +1,123 @@
+package org.restonfire;
+
+import com.google.gson.reflect.TypeToken;
+import org.jdeferred.impl.DeferredObject;
+import org.jmock.Expectations;
+import org.jmock.Sequence;
+import org.junit.Test;
+import org.restonfire.exceptions.FirebaseAccessException;
+import org.restonfire.exceptions.FirebaseRuntimeException;
+import org.restonfire.testdata.SampleData;
+import org.restonfire.testutils.AbstractMockTestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for FirebaseChildIterator.
+ */
+public class FirebaseChildIteratorTest extends AbstractMockTestCase {
+
+  private final FirebaseRestReference reference = mock(FirebaseRestReference.class);
+  private final FirebaseRestQuery query = mock(FirebaseRestQuery.class);
+
+  @Test
+  public void testIteration_multiplePages() {
+    final Sequence pages = context.sequence("pages");
+
+    addExpectations(new Expectations() {{
+      allowing(reference).getReferenceUrl(); will(returnValue("https://mynamespace.firebaseio.com/foo"));
+      allowing(reference).query(); will(returnValue(query));
+      allowing(query).orderByKey(); will(returnValue(query));
+
+      oneOf(query).limitToFirst(2); inSequence(pages); will(returnValue(query));
+      oneOf(query).run(with(any(TypeToken.class))); inSequence(pages); will(returnValue(resolvedPage("b", "a")));
+
+      // subsequent pages start at the last key of the previous page
+      oneOf(query).limitToFirst(3); inSequence(pages); will(returnValue(query));
+      oneOf(query).startAt("b"); inSequence(pages); will(returnValue(query));
+      oneOf(query).run(with(any(TypeToken.class))); inSequence(pages); will(returnValue(resolvedPage("d", "b", "c")));
+
+      oneOf(query).limitToFirst(3); inSequence(pages); will(returnValue(query));
+      oneOf(query).startAt("d"); inSequence(pages); will(returnValue(query));
+      oneOf(query).run(with(any(TypeToken.class))); inSequence(pages); will(returnValue(resolvedPage("d", "e")));
+    }});
+
+    final Iterator<Map.Entry<String, SampleData>> iterator = new FirebaseChildIterator<>(reference, SampleData.class, 2, 1);
+
+    final List<String> keys = new ArrayList<>();
+    while (iterator.hasNext()) {
+      final Map.Entry<String, SampleData> entry = iterator.next();
+      assertEquals(new SampleData(entry.getKey(), 1), entry.getValue());
+      keys.add(entry.getKey());
+    }
+
+    assertEquals(Arrays.asList("a", "b", "c", "d", "e"), keys);
+  }
+
+  @Test
+  public void testIteration_emptyCollection() {
+    addExpectations(new Expectations() {{
+      allowing(reference).getReferenceUrl(); will(returnValue("https://mynamespace.firebaseio.com/foo"));
+      allowing(reference).query(); will(returnValue(query));
+      allowing(query).orderByKey(); will(returnValue(query));
+      oneOf(query).limitToFirst(10); will(returnValue(query));
+      oneOf(query).run(with(any(TypeToken.class))); will(returnValue(new DeferredObject<>().resolve(null)));
+    }});
+
+    final Iterator<Map.Entry<String, SampleData>> iterator = new FirebaseChildIterator<>(reference, SampleData.class, 10, 2);
+
+    assertFalse(iterator.hasNext());
+    try {
+      iterator.next();
+      fail("next() should fail after the last child");
+    } catch (NoSuchElementException ex) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testIteration_failedRequest() {
+    final FirebaseAccessException exception = new FirebaseAccessException("https://mynamespace.firebaseio.com/foo");
+
+    addExpectations(new Expectations() {{
+      allowing(reference).getReferenceUrl(); will(returnValue("https://mynamespace.firebaseio.com/foo"));
+      allowing(reference).query(); will(returnValue(query));
+      allowing(query).orderByKey(); will(returnValue(query));
+      oneOf(query).limitToFirst(10); will(returnValue(query));
+      oneOf(query).run(with(any(TypeToken.class))); will(returnValue(new DeferredObject<Object, FirebaseRuntimeException, Void>().reject(exception)));
+    }});
+
+    final Iterator<Map.Entry<String, SampleData>> iterator = new FirebaseChildIterator<>(reference, SampleData.class, 10, 2);
+
+    try {
+      iterator.hasNext();
+      fail("hasNext() should fail for a rejected page request");
+    } catch (FirebaseRuntimeException ex) {
+      assertSame(exception, ex);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidPageSize() {
+    new FirebaseChildIterator<>(reference, SampleData.class, 0, 1);
+  }
+
+  private DeferredObject<Map<String, SampleData>, FirebaseRuntimeException, Void> resolvedPage(String... keys) {
+    final Map<String, SampleData> page = new LinkedHashMap<>();
+    for (String key : keys) {
+      page.put(key, new SampleData(key, 1));
+    }
+
+    final DeferredObject<Map<String, SampleData>, FirebaseRuntimeException, Void> deferred = new DeferredObject<>();
+    deferred.resolve(page);
+    return deferred;
+  }
+}
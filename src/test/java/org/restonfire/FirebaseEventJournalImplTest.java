@@ -0,0 +1,219 @@
+package org.restonfire;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.reflect.TypeToken;
+import org.jdeferred.impl.DeferredObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.restonfire.exceptions.FirebaseInvalidStateException;
+import org.restonfire.exceptions.FirebaseRuntimeException;
+import org.restonfire.responses.StreamingEvent;
+import org.restonfire.responses.StreamingEventData;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for {@link FirebaseEventJournalImpl} class.
+ */
+public class FirebaseEventJournalImplTest {
+
+  private static final TypeToken<StreamingEventData<JsonElement>> EVENT_DATA_TYPE = new TypeToken<StreamingEventData<JsonElement>>() { };
+  private static final int SEGMENT_SIZE = 4096;
+
+  private final Gson gson = new GsonBuilder().create();
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testAppendAndReplay() {
+    final FirebaseEventJournal journal = openJournal(SEGMENT_SIZE * 10);
+
+    assertEquals(0, journal.append(createEvent(StreamingEvent.EventType.Set, "/", "{\"a\":1}")));
+    assertEquals(1, journal.append(new StreamingEvent(gson, StreamingEvent.EventType.Resync, null)));
+    assertEquals(2, journal.append(createEvent(StreamingEvent.EventType.Update, "/a", "{\"b\":\"\u00e4\"}")));
+    assertEquals(0, journal.getFirstSequence());
+    assertEquals(3, journal.getNextSequence());
+
+    final FirebaseEventJournal.Cursor cursor = journal.replay(0);
+
+    final EventJournalEntry first = cursor.next();
+    assertEquals(0, first.getSequence());
+    assertEquals("/", first.getPath());
+    assertEquals(StreamingEvent.EventType.Set, first.getEvent().getEventType());
+    assertEquals("{\"a\":1}", first.getEvent().getEventData(EVENT_DATA_TYPE).getData().toString());
+    assertTrue(first.getReceivedAtMillis() > 0);
+
+    final EventJournalEntry resync = cursor.next();
+    assertEquals(StreamingEvent.EventType.Resync, resync.getEvent().getEventType());
+    assertEquals("", resync.getPath());
+    assertNull(resync.getEvent().getSerialzedEventData());
+
+    final EventJournalEntry update = cursor.next();
+    assertEquals("/a", update.getPath());
+    assertEquals("\u00e4", update.getEvent().getEventData(EVENT_DATA_TYPE).getData().getAsJsonObject().get("b").getAsString());
+
+    assertNull(cursor.next());
+    assertEquals(3, cursor.getPosition());
+
+    cursor.seek(2);
+    assertEquals(2, cursor.next().getSequence());
+  }
+
+  @Test
+  public void testReplay_acrossSegments() {
+    final FirebaseEventJournal journal = openJournal(SEGMENT_SIZE * 100);
+    appendEvents(journal, 500);
+
+    assertTrue(folder.getRoot().listFiles().length > 1);
+
+    final FirebaseEventJournal.Cursor cursor = journal.replay(123);
+    for (int i = 123; i < 500; i++) {
+      final EventJournalEntry entry = cursor.next();
+      assertEquals(i, entry.getSequence());
+      assertEquals("/child" + i, entry.getPath());
+    }
+    assertNull(cursor.next());
+  }
+
+  @Test
+  public void testOpenCursor_positionSurvivesRestart() {
+    FirebaseEventJournal journal = openJournal(SEGMENT_SIZE * 100);
+    appendEvents(journal, 100);
+
+    FirebaseEventJournal.Cursor cursor = journal.openCursor("consumer-1");
+    for (int i = 0; i < 40; i++) {
+      cursor.next();
+    }
+    cursor.commit();
+    cursor.next();
+    journal.close();
+
+    journal = openJournal(SEGMENT_SIZE * 100);
+    assertEquals(100, journal.getNextSequence());
+
+    cursor = journal.openCursor("consumer-1");
+    assertEquals(40, cursor.getPosition());
+    assertEquals(40, cursor.next().getSequence());
+    assertEquals(0, journal.openCursor("consumer-2").getPosition());
+
+    assertEquals(100, journal.append(createEvent(StreamingEvent.EventType.Set, "/", "1")));
+  }
+
+  @Test
+  public void testRetention_bySize() {
+    final FirebaseEventJournal journal = openJournal(SEGMENT_SIZE * 2);
+    final FirebaseEventJournal.Cursor cursor = journal.replay(0);
+    appendEvents(journal, 500);
+
+    assertTrue(journal.getFirstSequence() > 0);
+    assertTrue(folder.getRoot().listFiles().length <= 2);
+
+    // The removed events are skipped
+    assertEquals(journal.getFirstSequence(), cursor.next().getSequence());
+  }
+
+  @Test
+  public void testRecovery_incompleteRecordIsDiscarded() throws Exception {
+    FirebaseEventJournal journal = openJournal(SEGMENT_SIZE * 10);
+    appendEvents(journal, 3);
+    journal.close();
+
+    // Corrupts the last record, as if the process crashed while writing it
+    final File segment = folder.getRoot().listFiles()[0];
+    try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+      file.seek(EventJournalSegment.getRecordSize("/child0", createEvent(StreamingEvent.EventType.Set, "/child0", "0").getSerialzedEventData().getBytes("UTF-8")) * 2 + 20);
+      file.write(0xFF);
+    }
+
+    journal = openJournal(SEGMENT_SIZE * 10);
+    assertEquals(2, journal.getNextSequence());
+    assertEquals(2, journal.append(createEvent(StreamingEvent.EventType.Set, "/new", "1")));
+
+    final FirebaseEventJournal.Cursor cursor = journal.replay(0);
+    assertEquals("/child0", cursor.next().getPath());
+    assertEquals("/child1", cursor.next().getPath());
+    assertEquals("/new", cursor.next().getPath());
+    assertNull(cursor.next());
+  }
+
+  @Test
+  public void testAppend_eventLargerThanSegment() {
+    final FirebaseEventJournal journal = openJournal(SEGMENT_SIZE * 10);
+    final StringBuilder value = new StringBuilder("\"");
+    for (int i = 0; i < SEGMENT_SIZE; i++) {
+      value.append('x');
+    }
+    value.append('"');
+
+    journal.append(createEvent(StreamingEvent.EventType.Set, "/large", value.toString()));
+    journal.append(createEvent(StreamingEvent.EventType.Set, "/small", "1"));
+
+    // the empty first segment was replaced by a segment large enough for the record
+    assertEquals(0, journal.getFirstSequence());
+
+    final FirebaseEventJournal.Cursor cursor = journal.replay(0);
+    assertEquals("/large", cursor.next().getPath());
+    assertEquals("/small", cursor.next().getPath());
+  }
+
+  @Test
+  public void testRecord() {
+    final FirebaseEventJournal journal = openJournal(SEGMENT_SIZE * 10);
+    final DeferredObject<Void, FirebaseRuntimeException, StreamingEvent> deferred = new DeferredObject<>();
+    journal.record(deferred.promise());
+
+    deferred.notify(createEvent(StreamingEvent.EventType.Set, "/", "1"));
+    deferred.notify(new StreamingEvent(gson, StreamingEvent.EventType.KeepAlive, "null"));
+    deferred.notify(createEvent(StreamingEvent.EventType.Update, "/", "{\"a\":2}"));
+
+    assertEquals(2, journal.getNextSequence());
+  }
+
+  @Test
+  public void testAppend_closed() {
+    final FirebaseEventJournal journal = openJournal(SEGMENT_SIZE * 10);
+    journal.append(createEvent(StreamingEvent.EventType.Set, "/", "1"));
+    journal.close();
+
+    try {
+      journal.append(createEvent(StreamingEvent.EventType.Set, "/", "2"));
+      fail("Expected exception");
+    } catch (FirebaseInvalidStateException e) {
+      assertEquals(FirebaseRuntimeException.ErrorCode.EventJournalClosed, e.getErrorCode());
+    }
+
+    assertEquals("/", journal.replay(0).next().getPath());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testOpenCursor_invalidName() {
+    openJournal(SEGMENT_SIZE * 10).openCursor("../other");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSettings_maxSizeLessThanSegmentSize() {
+    new EventJournalSettings(folder.getRoot(), SEGMENT_SIZE, SEGMENT_SIZE - 1, 1, TimeUnit.DAYS);
+  }
+
+  private FirebaseEventJournal openJournal(long maxSize) {
+    return new FirebaseEventJournalImpl(gson, new EventJournalSettings(folder.getRoot(), SEGMENT_SIZE, maxSize, 1, TimeUnit.DAYS));
+  }
+
+  private void appendEvents(FirebaseEventJournal journal, int count) {
+    for (int i = 0; i < count; i++) {
+      journal.append(createEvent(StreamingEvent.EventType.Set, "/child" + i, String.valueOf(i)));
+    }
+  }
+
+  private StreamingEvent createEvent(StreamingEvent.EventType eventType, String path, String data) {
+    return new StreamingEvent(gson, eventType, "{\"path\":\"" + path + "\",\"data\":" + data + "}");
+  }
+}
@@ -0,0 +1,338 @@
+package org.restonfire;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.reflect.TypeToken;
+import com.ning.http.client.AsyncCompletionHandler;
+import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.Response;
+import com.ning.http.client.uri.Uri;
+import org.apache.commons.lang3.mutable.MutableObject;
+import org.jdeferred.AlwaysCallback;
+import org.jdeferred.ProgressCallback;
+import org.jdeferred.Promise;
+import org.jdeferred.impl.DeferredObject;
+import org.jmock.Expectations;
+import org.junit.Test;
+import org.restonfire.exceptions.FirebaseAccessException;
+import org.restonfire.exceptions.FirebaseInvalidStateException;
+import org.restonfire.exceptions.FirebaseRuntimeException;
+import org.restonfire.responses.StreamingEvent;
+import org.restonfire.responses.StreamingEventData;
+import org.restonfire.testutils.AbstractMockTestCase;
+import org.restonfire.testutils.MockObjectHelper;
+import org.restonfire.transport.AsyncHttpClientTransport;
+import org.restonfire.transport.HttpTransport;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for FirebaseEventStreamMultiplexerImpl.
+ */
+public class FirebaseEventStreamMultiplexerImplTest extends AbstractMockTestCase {
+
+  private static final TypeToken<StreamingEventData<JsonElement>> EVENT_DATA_TYPE = new TypeToken<StreamingEventData<JsonElement>>() { };
+
+  private final AsyncHttpClient asyncHttpClient = mock(AsyncHttpClient.class);
+  private final HttpTransport transport = new AsyncHttpClientTransport(asyncHttpClient);
+  private final AsyncHttpClient.BoundRequestBuilder requestBuilder = mock(AsyncHttpClient.BoundRequestBuilder.class);
+  private final FirebaseRestEventStream connection = mock(FirebaseRestEventStream.class);
+
+  private final Gson gson = new GsonBuilder().create();
+  private final String fbBaseUrl = "https://mynamespace.firebaseio.com";
+
+  private final DeferredObject<Void, FirebaseRuntimeException, StreamingEvent> connectionDeferred = new DeferredObject<>();
+  private final MutableObject<AsyncCompletionHandler<Void>> capturedCompletionHandler = new MutableObject<>();
+
+  private final FirebaseEventStreamMultiplexerImpl multiplexer = new FirebaseEventStreamMultiplexerImpl(
+    transport,
+    gson,
+    fbBaseUrl,
+    null,
+    "/foo/",
+    connection
+  );
+
+  @Test
+  public void testGetReferenceUrl() {
+    assertEquals(fbBaseUrl + "/foo", multiplexer.getReferenceUrl());
+    assertEquals(fbBaseUrl + "/foo", multiplexer.getEventStream("").getReferenceUrl());
+    assertEquals(fbBaseUrl + "/foo/a/b", multiplexer.getEventStream("/a/b/").getReferenceUrl());
+  }
+
+  @Test
+  public void testNavigation() {
+    final FirebaseRestEventStream parent = mock(FirebaseRestEventStream.class, "parent");
+    final FirebaseRestEventStream root = mock(FirebaseRestEventStream.class, "root");
+    addExpectations(new Expectations() {{
+      oneOf(connection).getParent(); will(returnValue(parent));
+      oneOf(connection).getRoot(); will(returnValue(root));
+    }});
+
+    final FirebaseRestEventStream stream = multiplexer.getEventStream("a");
+
+    assertEquals(fbBaseUrl + "/foo/a/b", stream.child("b").getReferenceUrl());
+    assertEquals(fbBaseUrl + "/foo", stream.getParent().getReferenceUrl());
+    assertSame(parent, stream.getParent().getParent());
+    assertSame(root, stream.getRoot());
+  }
+
+  @Test
+  public void testStartListening_sharedConnection() {
+    expectStartListening();
+
+    multiplexer.getEventStream("a").startListening();
+    multiplexer.getEventStream("b").startListening();
+    multiplexer.getEventStream("b").startListening();
+
+    assertEquals(3, multiplexer.getListenerCount());
+  }
+
+  @Test
+  public void testStartListening_alreadyActive() {
+    expectStartListening();
+
+    final FirebaseRestEventStream stream = multiplexer.getEventStream("a");
+    stream.startListening();
+
+    try {
+      stream.startListening();
+      fail("The stream should not be started twice");
+    } catch (FirebaseInvalidStateException ex) {
+      assertEquals(FirebaseRuntimeException.ErrorCode.EventStreamListenerAlreadyActive, ex.getErrorCode());
+    }
+  }
+
+  @Test
+  public void testDispatch_set() {
+    expectStartListening();
+
+    final List<String> rootEvents = listen("");
+    final List<String> aEvents = listen("a");
+    final List<String> axEvents = listen("a/x");
+    final List<String> cEvents = listen("c");
+
+    connectionDeferred.notify(createEvent(StreamingEvent.EventType.Set, "/", "{\"a\":{\"x\":1},\"b\":2}"));
+    connectionDeferred.notify(createEvent(StreamingEvent.EventType.Set, "/a/x", "5"));
+    connectionDeferred.notify(createEvent(StreamingEvent.EventType.Set, "/b", "3"));
+
+    assertEquals(Arrays.asList("Set / {\"a\":{\"x\":1},\"b\":2}", "Set /a/x 5", "Set /b 3"), rootEvents);
+    assertEquals(Arrays.asList("Set / {\"x\":1}", "Set /x 5"), aEvents);
+    assertEquals(Arrays.asList("Set / 1", "Set / 5"), axEvents);
+    assertEquals(Collections.singletonList("Set / null"), cEvents);
+  }
+
+  @Test
+  public void testDispatch_update() {
+    expectStartListening();
+
+    final List<String> rootEvents = listen("");
+    final List<String> aEvents = listen("a");
+    final List<String> axEvents = listen("a/x");
+    final List<String> byEvents = listen("b/y");
+    final List<String> cEvents = listen("c");
+
+    connectionDeferred.notify(createEvent(StreamingEvent.EventType.Set, "/", "null"));
+    connectionDeferred.notify(createEvent(StreamingEvent.EventType.Update, "/", "{\"a/x\":3,\"b\":{\"y\":true},\"d\":null}"));
+    connectionDeferred.notify(createEvent(StreamingEvent.EventType.Update, "/a", "{\"z\":4}"));
+
+    assertEquals(Arrays.asList("Set / null", "Update / {\"a/x\":3,\"b\":{\"y\":true},\"d\":null}", "Update /a {\"z\":4}"), rootEvents);
+    assertEquals(Arrays.asList("Set / null", "Update / {\"x\":3}", "Update / {\"z\":4}"), aEvents);
+    assertEquals(Arrays.asList("Set / null", "Set / 3"), axEvents);
+    assertEquals(Arrays.asList("Set / null", "Set / true"), byEvents);
+    assertEquals(Collections.singletonList("Set / null"), cEvents);
+  }
+
+  @Test
+  public void testLateListener_initialValue() throws Exception {
+    expectStartListening();
+    final List<String> aEvents = listen("a");
+    connectionDeferred.notify(createEvent(StreamingEvent.EventType.Set, "/", "{\"a\":1,\"b\":2}"));
+
+    final String requestUrl = fbBaseUrl + "/foo/b.json";
+    addExpectations(new Expectations() {{
+      oneOf(asyncHttpClient).prepareGet(requestUrl); will(returnValue(requestBuilder));
+      oneOf(requestBuilder).execute(with(aNonNull(AsyncCompletionHandler.class))); will(MockObjectHelper.capture(capturedCompletionHandler));
+    }});
+    final List<String> bEvents = listen("b");
+
+    connectionDeferred.notify(createEvent(StreamingEvent.EventType.Set, "/b", "3"));
+    assertTrue(bEvents.isEmpty());
+
+    capturedCompletionHandler.getValue().onCompleted(createResponse(requestUrl, HttpURLConnection.HTTP_OK, "2"));
+
+    assertEquals(Arrays.asList("Set / 2", "Set / 3"), bEvents);
+    assertEquals(Collections.singletonList("Set / 1"), aEvents);
+  }
+
+  @Test
+  public void testLateListener_initialValueFailed() throws Exception {
+    expectStartListening();
+    listen("a");
+    connectionDeferred.notify(createEvent(StreamingEvent.EventType.Set, "/", "{\"a\":1}"));
+
+    final String requestUrl = fbBaseUrl + "/foo/b.json";
+    addExpectations(new Expectations() {{
+      oneOf(asyncHttpClient).prepareGet(requestUrl); will(returnValue(requestBuilder));
+      oneOf(requestBuilder).execute(with(aNonNull(AsyncCompletionHandler.class))); will(MockObjectHelper.capture(capturedCompletionHandler));
+    }});
+    final MutableObject<FirebaseRuntimeException> capturedException = new MutableObject<>();
+    final List<String> bEvents = listen("b", capturedException);
+
+    connectionDeferred.notify(createEvent(StreamingEvent.EventType.Set, "/b", "3"));
+    capturedCompletionHandler.getValue().onCompleted(createResponse(requestUrl, HttpURLConnection.HTTP_FORBIDDEN, null));
+
+    assertTrue(bEvents.isEmpty());
+    assertTrue(capturedException.getValue() instanceof FirebaseAccessException);
+    assertEquals(1, multiplexer.getListenerCount());
+  }
+
+  @Test
+  public void testStopListening() {
+    expectStartListening();
+
+    final FirebaseRestEventStream stream = multiplexer.getEventStream("a");
+    final MutableObject<Promise.State> capturedState = new MutableObject<>();
+    stream.startListening().always(new AlwaysCallback<Void, FirebaseRuntimeException>() {
+      @Override
+      public void onAlways(Promise.State state, Void resolved, FirebaseRuntimeException rejected) {
+        capturedState.setValue(state);
+      }
+    });
+    final List<String> bEvents = listen("b");
+
+    stream.stopListening();
+
+    assertEquals(Promise.State.RESOLVED, capturedState.getValue());
+    assertEquals(1, multiplexer.getListenerCount());
+
+    connectionDeferred.notify(createEvent(StreamingEvent.EventType.Set, "/", "{\"b\":1}"));
+    assertEquals(Collections.singletonList("Set / 1"), bEvents);
+
+    try {
+      stream.stopListening();
+      fail("The stream should not be stopped twice");
+    } catch (FirebaseInvalidStateException ex) {
+      assertEquals(FirebaseRuntimeException.ErrorCode.EventStreamListenerNotActive, ex.getErrorCode());
+    }
+  }
+
+  @Test
+  public void testResync() {
+    expectStartListening();
+
+    final List<String> aEvents = listen("a");
+    connectionDeferred.notify(createEvent(StreamingEvent.EventType.Set, "/", "{\"a\":1}"));
+    connectionDeferred.notify(new StreamingEvent(gson, StreamingEvent.EventType.Resync, null));
+
+    // No initial value request while the complete value is pending
+    listen("b");
+
+    connectionDeferred.notify(createEvent(StreamingEvent.EventType.Set, "/", "{\"a\":2}"));
+
+    assertEquals(Arrays.asList("Set / 1", "Resync", "Set / 2"), aEvents);
+  }
+
+  @Test
+  public void testConnectionFailure() {
+    expectStartListening();
+
+    final MutableObject<FirebaseRuntimeException> capturedException = new MutableObject<>();
+    listen("a", capturedException);
+    final FirebaseAccessException exception = new FirebaseAccessException("url");
+
+    addExpectations(new Expectations() {{
+      oneOf(connection).stopListening();
+    }});
+    connectionDeferred.reject(exception);
+
+    assertSame(exception, capturedException.getValue());
+    assertEquals(0, multiplexer.getListenerCount());
+  }
+
+  @Test
+  public void testClose() {
+    expectStartListening();
+
+    final MutableObject<Promise.State> capturedState = new MutableObject<>();
+    multiplexer.getEventStream("a").startListening().always(new AlwaysCallback<Void, FirebaseRuntimeException>() {
+      @Override
+      public void onAlways(Promise.State state, Void resolved, FirebaseRuntimeException rejected) {
+        capturedState.setValue(state);
+      }
+    });
+
+    addExpectations(new Expectations() {{
+      oneOf(connection).stopListening();
+    }});
+    multiplexer.close();
+
+    assertEquals(Promise.State.RESOLVED, capturedState.getValue());
+    assertEquals(0, multiplexer.getListenerCount());
+
+    try {
+      multiplexer.getEventStream("b").startListening();
+      fail("The multiplexer should not accept listeners after it was closed");
+    } catch (FirebaseInvalidStateException ex) {
+      assertEquals(FirebaseRuntimeException.ErrorCode.EventStreamMultiplexerClosed, ex.getErrorCode());
+    }
+  }
+
+  private void expectStartListening() {
+    addExpectations(new Expectations() {{
+      oneOf(connection).startListening(); will(returnValue(connectionDeferred.promise()));
+    }});
+  }
+
+  private List<String> listen(String path) {
+    return listen(path, new MutableObject<FirebaseRuntimeException>());
+  }
+
+  private List<String> listen(String path, final MutableObject<FirebaseRuntimeException> capturedException) {
+    final List<String> events = new ArrayList<>();
+    multiplexer.getEventStream(path).startListening()
+      .progress(new ProgressCallback<StreamingEvent>() {
+        @Override
+        public void onProgress(StreamingEvent event) {
+          final StreamingEventData<JsonElement> eventData = event.getEventData(EVENT_DATA_TYPE);
+          events.add(eventData == null
+            ? event.getEventType().name()
+            : event.getEventType() + " " + eventData.getPath() + " " + eventData.getData());
+        }
+      })
+      .always(new AlwaysCallback<Void, FirebaseRuntimeException>() {
+        @Override
+        public void onAlways(Promise.State state, Void resolved, FirebaseRuntimeException rejected) {
+          capturedException.setValue(rejected);
+        }
+      });
+
+    return events;
+  }
+
+  private StreamingEvent createEvent(StreamingEvent.EventType eventType, String path, String data) {
+    return new StreamingEvent(gson, eventType, "{\"path\": \"" + path + "\", \"data\": " + data + "}");
+  }
+
+  private Response createResponse(final String url, final int statusCode, final String responseBody) throws IOException {
+    final Response response = mock(Response.class, String.format("Response(%s, %d)", url, statusCode));
+    addExpectations(new Expectations() {{
+      allowing(response).getUri(); will(returnValue(Uri.create(url)));
+      allowing(response).getStatusCode(); will(returnValue(statusCode));
+      allowing(response).getResponseBody(); will(returnValue(responseBody));
+      allowing(response).getResponseBodyAsStream(); will(returnValue(responseBody == null ? null : new ByteArrayInputStream(responseBody.getBytes(Charset.forName("UTF-8")))));
+    }});
+
+    return response;
+  }
+}
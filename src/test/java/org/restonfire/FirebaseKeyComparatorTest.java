@@ -0,0 +1,41 @@
+package org.restonfire;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test class for FirebaseKeyComparator.
+ */
+public class FirebaseKeyComparatorTest {
+
+  @Test
+  public void testCompare() {
+    final List<String> keys = new ArrayList<>(Arrays.asList("b", "10", "a", "-5", "2", "012", "A", "2147483648"));
+    Collections.sort(keys, FirebaseKeyComparator.INSTANCE);
+
+    assertEquals(Arrays.asList("-5", "2", "10", "012", "2147483648", "A", "a", "b"), keys);
+  }
+
+  @Test
+  public void testTryParseInt() {
+    assertEquals(Integer.valueOf(0), FirebaseKeyComparator.tryParseInt("0"));
+    assertEquals(Integer.valueOf(-12), FirebaseKeyComparator.tryParseInt("-12"));
+    assertEquals(Integer.valueOf(Integer.MAX_VALUE), FirebaseKeyComparator.tryParseInt("2147483647"));
+    assertEquals(Integer.valueOf(Integer.MIN_VALUE), FirebaseKeyComparator.tryParseInt("-2147483648"));
+
+    assertNull(FirebaseKeyComparator.tryParseInt(""));
+    assertNull(FirebaseKeyComparator.tryParseInt("-"));
+    assertNull(FirebaseKeyComparator.tryParseInt("-0"));
+    assertNull(FirebaseKeyComparator.tryParseInt("01"));
+    assertNull(FirebaseKeyComparator.tryParseInt("1a"));
+    assertNull(FirebaseKeyComparator.tryParseInt("2147483648"));
+    assertNull(FirebaseKeyComparator.tryParseInt("-2147483649"));
+  }
+}
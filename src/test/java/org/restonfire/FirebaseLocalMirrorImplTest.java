@@ -0,0 +1,189 @@
+package org.restonfire;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.apache.commons.lang3.mutable.MutableObject;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.FailCallback;
+import org.jdeferred.impl.DeferredObject;
+import org.jmock.Expectations;
+import org.junit.Before;
+import org.junit.Test;
+import org.restonfire.exceptions.FirebaseAccessException;
+import org.restonfire.exceptions.FirebaseInvalidStateException;
+import org.restonfire.exceptions.FirebaseRuntimeException;
+import org.restonfire.responses.StreamingEvent;
+import org.restonfire.testdata.SampleData;
+import org.restonfire.testutils.AbstractMockTestCase;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for FirebaseLocalMirrorImpl.
+ */
+public class FirebaseLocalMirrorImplTest extends AbstractMockTestCase {
+
+  private final FirebaseRestEventStream eventStream = mock(FirebaseRestEventStream.class);
+  private final Gson gson = new GsonBuilder().create();
+
+  private final DeferredObject<Void, FirebaseRuntimeException, StreamingEvent> streamDeferred = new DeferredObject<>();
+
+  private final FirebaseLocalMirrorImpl mirror = new FirebaseLocalMirrorImpl(gson, eventStream);
+
+  @Before
+  public void setUp() {
+    addExpectations(new Expectations() {{
+      allowing(eventStream).getReferenceUrl(); will(returnValue("https://mynamespace.firebaseio.com/foo"));
+    }});
+  }
+
+  @Test
+  public void testGetValue_notSynced() {
+    try {
+      mirror.getValue("", Object.class);
+      fail("The mirror should not be readable before it was started");
+    } catch (FirebaseInvalidStateException ex) {
+      assertEquals(FirebaseRuntimeException.ErrorCode.LocalMirrorNotSynced, ex.getErrorCode());
+    }
+  }
+
+  @Test
+  public void testStart_initialValue() {
+    final MutableObject<FirebaseLocalMirror> capturedResult = new MutableObject<>();
+
+    expectStartListening();
+    mirror.start().done(new DoneCallback<FirebaseLocalMirror>() {
+      @Override
+      public void onDone(FirebaseLocalMirror result) {
+        capturedResult.setValue(result);
+      }
+    });
+
+    assertFalse(mirror.isSynced());
+    assertNull(capturedResult.getValue());
+
+    streamDeferred.notify(createEvent(StreamingEvent.EventType.Set, "/", "{\"foo\": {\"aString\": \"abc\", \"anInt\": 1}}"));
+
+    assertTrue(mirror.isSynced());
+    assertSame(mirror, capturedResult.getValue());
+    assertEquals(new SampleData("abc", 1), mirror.getValue("foo", SampleData.class));
+    assertEquals("abc", mirror.getValue("/foo/aString", String.class));
+    assertNull(mirror.getValue("bar", SampleData.class));
+  }
+
+  @Test
+  public void testStart_alreadyActive() {
+    expectStartListening();
+    mirror.start();
+
+    try {
+      mirror.start();
+      fail("The mirror should not be started twice");
+    } catch (FirebaseInvalidStateException ex) {
+      assertEquals(FirebaseRuntimeException.ErrorCode.LocalMirrorAlreadyActive, ex.getErrorCode());
+    }
+  }
+
+  @Test
+  public void testEvents_setAndUpdate() {
+    expectStartListening();
+    mirror.start();
+
+    streamDeferred.notify(createEvent(StreamingEvent.EventType.Set, "/", "{\"a\": {\"aString\": \"abc\", \"anInt\": 1}, \"b\": 2}"));
+    streamDeferred.notify(createEvent(StreamingEvent.EventType.Set, "/a/anInt", "5"));
+    assertEquals(new SampleData("abc", 5), mirror.getValue("a", SampleData.class));
+
+    streamDeferred.notify(createEvent(StreamingEvent.EventType.Update, "/a", "{\"aString\": \"xyz\"}"));
+    assertEquals(new SampleData("xyz", 5), mirror.getValue("a", SampleData.class));
+
+    streamDeferred.notify(createEvent(StreamingEvent.EventType.Set, "/b", "null"));
+    assertNull(mirror.getValue("b", Double.class));
+
+    final Map<?, ?> root = mirror.getValue("", Map.class);
+    assertEquals(1, root.size());
+  }
+
+  @Test
+  public void testEvents_resync() {
+    expectStartListening();
+    mirror.start();
+
+    streamDeferred.notify(createEvent(StreamingEvent.EventType.Set, "/", "{\"a\": 1, \"b\": 2}"));
+    streamDeferred.notify(new StreamingEvent(gson, StreamingEvent.EventType.Resync, null));
+
+    assertFalse(mirror.isSynced());
+
+    streamDeferred.notify(createEvent(StreamingEvent.EventType.Set, "/", "{\"a\": 3}"));
+
+    assertTrue(mirror.isSynced());
+    assertEquals(Double.valueOf(3), mirror.getValue("a", Double.class));
+    assertNull(mirror.getValue("b", Double.class));
+  }
+
+  @Test
+  public void testStreamFailure_beforeInitialValue() {
+    final MutableObject<FirebaseRuntimeException> capturedException = new MutableObject<>();
+    final FirebaseAccessException exception = new FirebaseAccessException("url");
+
+    expectStartListening();
+    mirror.start().fail(new FailCallback<FirebaseRuntimeException>() {
+      @Override
+      public void onFail(FirebaseRuntimeException result) {
+        capturedException.setValue(result);
+      }
+    });
+
+    streamDeferred.reject(exception);
+
+    assertSame(exception, capturedException.getValue());
+    assertFalse(mirror.isSynced());
+  }
+
+  @Test
+  public void testStreamFailure_afterInitialValue() {
+    expectStartListening();
+    mirror.start();
+
+    streamDeferred.notify(createEvent(StreamingEvent.EventType.Set, "/", "1"));
+    assertTrue(mirror.isSynced());
+
+    streamDeferred.reject(new FirebaseAccessException("url"));
+    assertFalse(mirror.isSynced());
+  }
+
+  @Test
+  public void testStop() {
+    expectStartListening();
+    mirror.start();
+    streamDeferred.notify(createEvent(StreamingEvent.EventType.Set, "/", "1"));
+
+    addExpectations(new Expectations() {{
+      oneOf(eventStream).stopListening();
+    }});
+    mirror.stop();
+
+    assertFalse(mirror.isSynced());
+  }
+
+  @Test
+  public void testStop_notActive() {
+    try {
+      mirror.stop();
+      fail("The mirror should not be stopped before it was started");
+    } catch (FirebaseInvalidStateException ex) {
+      assertEquals(FirebaseRuntimeException.ErrorCode.LocalMirrorNotActive, ex.getErrorCode());
+    }
+  }
+
+  private void expectStartListening() {
+    addExpectations(new Expectations() {{
+      oneOf(eventStream).startListening(); will(returnValue(streamDeferred.promise()));
+    }});
+  }
+
+  private StreamingEvent createEvent(StreamingEvent.EventType eventType, String path, String data) {
+    return new StreamingEvent(gson, eventType, "{\"path\": \"" + path + "\", \"data\": " + data + "}");
+  }
+}
@@ -2,21 +2,25 @@ package org.restonfire;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.ning.http.client.AsyncHttpClient;
-import org.jmock.Expectations;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.restonfire.testutils.AbstractMockTestCase;
+import org.restonfire.transport.HttpTransport;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Test class for FirebaseRestNamespaceImpl.
  */
 public class FirebaseRestDatabaseImplTest extends AbstractMockTestCase {
 
-  private final AsyncHttpClient asyncHttpClient = mock(AsyncHttpClient.class);
-  private final AsyncHttpClient.BoundRequestBuilder requestBuilder = mock(AsyncHttpClient.BoundRequestBuilder.class);
+  private final HttpTransport transport = mock(HttpTransport.class);
 
   private final Gson gson = new GsonBuilder().create();
 
@@ -24,7 +28,10 @@ public class FirebaseRestDatabaseImplTest extends AbstractMockTestCase {
   private final String fbBaseUrl = "https://mynamespace.firebaseio.com";
   private final String fbAccessToken = "someAccessToken";
 
-  private final FirebaseRestDatabaseImpl namespace = new FirebaseRestDatabaseImpl(asyncHttpClient, gson, fbBaseUrl, fbAccessToken);
+  private final FirebaseRestDatabaseImpl namespace = new FirebaseRestDatabaseImpl(transport, gson, fbBaseUrl, fbAccessToken);
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
 
   @Test
   public void testGetReference() {
@@ -36,19 +43,47 @@ public class FirebaseRestDatabaseImplTest extends AbstractMockTestCase {
 
   @Test
   public void testGetEventStream() {
-    addExpectations(new Expectations() {{
-      oneOf(asyncHttpClient).prepareGet("https://mynamespace.firebaseio.com/foo/bar.json"); will(returnValue(requestBuilder));
-      oneOf(requestBuilder).addHeader("Accept", "text/event-stream"); will(returnValue(requestBuilder));
-      oneOf(requestBuilder).addQueryParam("auth", fbAccessToken); will(returnValue(requestBuilder));
-      oneOf(requestBuilder).setFollowRedirects(true); will(returnValue(requestBuilder));
-    }});
-
     FirebaseRestEventStream result = namespace.getEventStream(path);
 
     assertNotNull(result);
     assertEquals(fbBaseUrl + PathUtil.FORWARD_SLASH + path, result.getReferenceUrl());
   }
 
+  @Test
+  public void testGetLocalMirror() {
+    FirebaseLocalMirror result = namespace.getLocalMirror(path);
+
+    assertNotNull(result);
+    assertEquals(fbBaseUrl + PathUtil.FORWARD_SLASH + path, result.getReferenceUrl());
+  }
+
+  @Test
+  public void testOpenEventJournal() {
+    final File directory = new File(folder.getRoot(), "journal");
+    FirebaseEventJournal result = namespace.openEventJournal(new EventJournalSettings(directory, 4096, 8192, 1, TimeUnit.HOURS));
+
+    assertNotNull(result);
+    assertTrue(directory.isDirectory());
+    assertEquals(0, result.getNextSequence());
+  }
+
+  @Test
+  public void testGetEventStreamMultiplexer() {
+    FirebaseEventStreamMultiplexer result = namespace.getEventStreamMultiplexer(path);
+
+    assertNotNull(result);
+    assertEquals(fbBaseUrl + PathUtil.FORWARD_SLASH + path, result.getReferenceUrl());
+    assertEquals(0, result.getListenerCount());
+  }
+
+  @Test
+  public void testCreateWriteBatch() {
+    FirebaseWriteBatch result = namespace.createWriteBatch();
+
+    assertNotNull(result);
+    assertEquals(0, result.size());
+  }
+
   @Test
   public void testGetSecurityRules() {
     FirebaseSecurityRulesReference result = namespace.getSecurityRules();
@@ -2,6 +2,7 @@ package org.restonfire;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
 import com.ning.http.client.*;
 import com.ning.http.client.providers.jdk.ResponseBodyPart;
 import org.apache.commons.lang3.mutable.MutableObject;
@@ -9,6 +10,8 @@ import org.hamcrest.beans.HasPropertyWithValue;
 import org.hamcrest.core.Is;
 import org.jdeferred.*;
 import org.jmock.Expectations;
+import org.jmock.api.Invocation;
+import org.jmock.lib.action.CustomAction;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
@@ -19,11 +22,19 @@ import org.restonfire.responses.StreamingEvent;
 import org.restonfire.responses.StreamingEventData;
 import org.restonfire.testutils.AbstractMockTestCase;
 import org.restonfire.testutils.MockObjectHelper;
+import org.restonfire.transport.AsyncHttpClientTransport;
+import org.restonfire.transport.HttpTransport;
 
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.UnknownHostException;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import static org.junit.Assert.*;
@@ -34,6 +45,7 @@ import static org.junit.Assert.*;
 public class FirebaseRestEventStreamImplTest extends AbstractMockTestCase {
 
   private final AsyncHttpClient asyncHttpClient = mock(AsyncHttpClient.class);
+  private final HttpTransport transport = new AsyncHttpClientTransport(asyncHttpClient);
   private final AsyncHttpClient.BoundRequestBuilder requestBuilder = mock(AsyncHttpClient.BoundRequestBuilder.class);
   private final ListenableFuture<Void> listenableFuture = mock(ListenableFuture.class);
 
@@ -56,7 +68,6 @@ public class FirebaseRestEventStreamImplTest extends AbstractMockTestCase {
   public void testGetRoot() {
     FirebaseRestEventStreamImpl eventStream = createEventStream();
 
-    expectEventStreamCreation(fbBaseUrl + PathUtil.FORWARD_SLASH + FirebaseDocumentLocation.JSON_SUFFIX);
     assertEquals(fbBaseUrl + PathUtil.FORWARD_SLASH, eventStream.getRoot().getReferenceUrl());
   }
 
@@ -64,7 +75,6 @@ public class FirebaseRestEventStreamImplTest extends AbstractMockTestCase {
   public void testGetParent() {
     FirebaseRestEventStreamImpl eventStream = createEventStream();
 
-    expectEventStreamCreation(fbBaseUrl + PathUtil.FORWARD_SLASH + "foo" + FirebaseDocumentLocation.JSON_SUFFIX);
     assertEquals(fbBaseUrl + PathUtil.FORWARD_SLASH + "foo", eventStream.getParent().getReferenceUrl());
   }
 
@@ -72,11 +82,7 @@ public class FirebaseRestEventStreamImplTest extends AbstractMockTestCase {
   public void testChild() {
     FirebaseRestEventStreamImpl eventStream = createEventStream();
 
-    expectEventStreamCreation(fbReferenceUrl + "/test" + FirebaseDocumentLocation.JSON_SUFFIX);
     assertEquals(fbBaseUrl + PathUtil.FORWARD_SLASH + path + PathUtil.FORWARD_SLASH + "test", eventStream.child("test").getReferenceUrl());
-    assertIsSatisfied();
-
-    expectEventStreamCreation(fbReferenceUrl + "/test/something" + FirebaseDocumentLocation.JSON_SUFFIX);
     assertEquals(fbBaseUrl + PathUtil.FORWARD_SLASH + path + PathUtil.FORWARD_SLASH + "test/something", eventStream.child("test/something/").getReferenceUrl());
   }
 
@@ -188,6 +194,323 @@ public class FirebaseRestEventStreamImplTest extends AbstractMockTestCase {
     executeSuccessfulEventRetrievalTest(createEventStream());
   }
 
+  @Test
+  public void testStartListening_eventsSplitAcrossBodyParts() throws Exception {
+    FirebaseRestEventStreamImpl eventStream = createEventStream();
+
+    expectListenerStart();
+    Promise<Void, FirebaseRuntimeException, StreamingEvent> result = eventStream.startListening();
+
+    final List<Object> receivedData = new ArrayList<>();
+    result.progress(new ProgressCallback<StreamingEvent>() {
+      @Override
+      public void onProgress(StreamingEvent progress) {
+        receivedData.add(progress.getEventData().getData());
+      }
+    });
+
+    sendBodyPart("event: put\ndata: {path: '/', data: 1}\n\nevent: keep-alive\ndata: null\n\nevent: pa");
+    assertEquals(1, receivedData.size());
+
+    sendBodyPart("tch\ndata: {path: '/',\ndata:  data: 2}\n");
+    assertEquals(1, receivedData.size());
+
+    sendBodyPart("\nevent: cancel\ndata: null\n\nevent: put\ndata: {path: '/', data: 3}\n\n");
+
+    assertEquals(2, receivedData.size());
+    assertEquals(1.0, receivedData.get(0));
+    assertEquals(2.0, receivedData.get(1));
+    assertEquals(Promise.State.REJECTED, result.state());
+  }
+
+  @Test
+  public void testStartListening_typedEventsDecodedOnce() throws Exception {
+    FirebaseRestEventStreamImpl eventStream = createEventStream();
+    final TypeToken<StreamingEventData<Integer>> typeToken = new TypeToken<StreamingEventData<Integer>>() { };
+
+    expectListenerStart();
+    Promise<Void, FirebaseRuntimeException, StreamingEvent> result = eventStream.startListening(typeToken);
+
+    final List<StreamingEventData<Integer>> receivedData = new ArrayList<>();
+    final ProgressCallback<StreamingEvent> callback = new ProgressCallback<StreamingEvent>() {
+      @Override
+      public void onProgress(StreamingEvent progress) {
+        receivedData.add(progress.getEventData(typeToken));
+      }
+    };
+    result.progress(callback).progress(callback);
+
+    sendBodyPart("event: put\ndata: {\"path\": \"/\", \"data\": 1}\n\nevent: patch\ndata: {\"path\": \"/\", \"data\": invalid\n\n");
+
+    assertEquals(2, receivedData.size());
+    assertEquals(Integer.valueOf(1), receivedData.get(0).getData());
+    assertSame(receivedData.get(0), receivedData.get(1));
+    assertEquals(Promise.State.PENDING, result.state());
+  }
+
+  @Test
+  public void testDelivery_overflowFailsStream() throws Exception {
+    final List<Runnable> tasks = new ArrayList<>();
+    final Executor executor = new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        tasks.add(command);
+      }
+    };
+    FirebaseRestEventStreamImpl eventStream = createEventStream(new DatabaseResources(
+      ValueCache.disabled(),
+      new RequestCoalescer(false),
+      WriteCoalescer.disabled(),
+      EventStreamReconnector.disabled(),
+      EventDelivery.create(new EventDeliverySettings(1, EventDeliverySettings.OverflowPolicy.FailStream, executor), gson),
+      EventStreamWatchdog.disabled(),
+      ConcurrencyLimiter.disabled(),
+      RequestHedger.disabled()
+    ));
+
+    expectListenerStart();
+    Promise<Void, FirebaseRuntimeException, StreamingEvent> result = eventStream.startListening();
+
+    final List<Object> receivedData = new ArrayList<>();
+    final MutableObject<FirebaseRuntimeException> capturedException = new MutableObject<>();
+    result
+      .progress(new ProgressCallback<StreamingEvent>() {
+        @Override
+        public void onProgress(StreamingEvent progress) {
+          receivedData.add(progress.getEventData().getData());
+        }
+      })
+      .fail(new FailCallback<FirebaseRuntimeException>() {
+        @Override
+        public void onFail(FirebaseRuntimeException rejected) {
+          capturedException.setValue(rejected);
+        }
+      });
+
+    sendEvent("put", "{path: '/', data: 1}", false);
+    assertTrue(receivedData.isEmpty());
+
+    addExpectations(new Expectations() {{
+      oneOf(listenableFuture).done();
+    }});
+    sendEvent("put", "{path: '/', data: 2}", false);
+    assertEquals(Promise.State.PENDING, result.state());
+
+    while (!tasks.isEmpty()) {
+      tasks.remove(0).run();
+    }
+
+    assertEquals(1, receivedData.size());
+    assertEquals(FirebaseRuntimeException.ErrorCode.EventDeliveryQueueOverflow, capturedException.getValue().getErrorCode());
+
+    // The closed connection neither reconnects nor settles the promise again
+    capturedRequestHandler.getValue().onCompleted();
+  }
+
+  @Test
+  public void testStatistics() throws Exception {
+    FirebaseRestEventStreamImpl eventStream = createEventStream();
+    assertEquals(-1, eventStream.getStatistics().getMillisSinceLastActivity());
+
+    expectListenerStart();
+    eventStream.startListening();
+
+    sendEvent("put", "{path: '/', data: 1}", false);
+    sendEvent("keep-alive", "null", false);
+    sendEvent("patch", "{path: '/', data: {a: 2}}", false);
+    sendEvent("put", "{path: '/', data: 3}", false);
+
+    EventStreamStatistics statistics = eventStream.getStatistics();
+    assertEquals(2, statistics.getEventCount(StreamingEvent.EventType.Set));
+    assertEquals(1, statistics.getEventCount(StreamingEvent.EventType.Update));
+    assertEquals(1, statistics.getEventCount(StreamingEvent.EventType.KeepAlive));
+    assertEquals(0, statistics.getEventCount(StreamingEvent.EventType.Cancel));
+    assertTrue(statistics.getBytesReceived() > 0);
+    assertTrue(statistics.getMillisSinceLastActivity() >= 0);
+    assertEquals(0, statistics.getReconnectCount());
+
+    capturedRequestHandler.getValue().onCompleted();
+    assertEquals(-1, eventStream.getStatistics().getMillisSinceLastActivity());
+  }
+
+  @Test
+  public void testWatchdog_stalledConnectionIsClosed() throws Exception {
+    FirebaseRestEventStreamImpl eventStream = createWatchedEventStream(50);
+
+    expectListenerStart();
+    Promise<Void, FirebaseRuntimeException, StreamingEvent> result = eventStream.startListening();
+
+    final CountDownLatch cancelled = new CountDownLatch(1);
+    addExpectations(new Expectations() {{
+      oneOf(listenableFuture).cancel(true); will(new CustomAction("cancel connection") {
+        @Override
+        public Object invoke(Invocation invocation) throws Throwable {
+          capturedRequestHandler.getValue().onThrowable(new CancellationException());
+          cancelled.countDown();
+          return true;
+        }
+      });
+    }});
+
+    final MutableObject<FirebaseRuntimeException> capturedError = new MutableObject<>();
+    result.fail(new FailCallback<FirebaseRuntimeException>() {
+      @Override
+      public void onFail(FirebaseRuntimeException error) {
+        capturedError.setValue(error);
+      }
+    });
+
+    assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+
+    assertEquals(Promise.State.REJECTED, result.state());
+    assertEquals(FirebaseRuntimeException.ErrorCode.EventStreamStalled, capturedError.getValue().getErrorCode());
+    assertEquals(1, eventStream.getStatistics().getStallCount());
+  }
+
+  @Test
+  public void testWatchdog_keepAliveKeepsConnectionOpen() throws Exception {
+    FirebaseRestEventStreamImpl eventStream = createWatchedEventStream(200);
+
+    expectListenerStart();
+    Promise<Void, FirebaseRuntimeException, StreamingEvent> result = eventStream.startListening();
+
+    for (int i = 0; i < 10; i++) {
+      Thread.sleep(40);
+      sendEvent("keep-alive", "null", false);
+    }
+
+    assertEquals(Promise.State.PENDING, result.state());
+    assertEquals(0, eventStream.getStatistics().getStallCount());
+
+    addExpectations(new Expectations() {{
+      oneOf(listenableFuture).done();
+    }});
+    eventStream.stopListening();
+    capturedRequestHandler.getValue().onCompleted();
+
+    assertEquals(Promise.State.RESOLVED, result.state());
+  }
+
+  @Test
+  public void testReconnect_resyncAfterConnectionClosed() throws Exception {
+    FirebaseRestEventStreamImpl eventStream = createReconnectingEventStream();
+
+    expectListenerStart();
+    Promise<Void, FirebaseRuntimeException, StreamingEvent> result = eventStream.startListening();
+
+    final List<StreamingEvent.EventType> receivedEvents = new ArrayList<>();
+    result.progress(new ProgressCallback<StreamingEvent>() {
+      @Override
+      public void onProgress(StreamingEvent progress) {
+        receivedEvents.add(progress.getEventType());
+      }
+    });
+
+    final AsyncHandler<Void> firstHandler = capturedRequestHandler.getValue();
+    firstHandler.onStatusReceived(createResponseStatus(fbReferenceUrl, HttpURLConnection.HTTP_OK));
+    sendEvent("put", "{path: '/', data: 1}", false);
+
+    expectListenerStart();
+    firstHandler.onThrowable(new IOException("Connection reset"));
+
+    final AsyncHandler<Void> secondHandler = waitForNewRequestHandler(firstHandler);
+    assertEquals(Promise.State.PENDING, result.state());
+
+    expectListenerStart();
+    secondHandler.onStatusReceived(createResponseStatus(fbReferenceUrl, HttpURLConnection.HTTP_BAD_GATEWAY));
+    secondHandler.onCompleted();
+
+    final AsyncHandler<Void> thirdHandler = waitForNewRequestHandler(secondHandler);
+    thirdHandler.onStatusReceived(createResponseStatus(fbReferenceUrl, HttpURLConnection.HTTP_OK));
+    sendEvent("put", "{path: '/', data: 2}", false);
+
+    assertEquals(3, receivedEvents.size());
+    assertEquals(StreamingEvent.EventType.Set, receivedEvents.get(0));
+    assertEquals(StreamingEvent.EventType.Resync, receivedEvents.get(1));
+    assertEquals(StreamingEvent.EventType.Set, receivedEvents.get(2));
+
+    addExpectations(new Expectations() {{
+      oneOf(listenableFuture).done();
+    }});
+    eventStream.stopListening();
+    thirdHandler.onCompleted();
+
+    assertEquals(Promise.State.RESOLVED, result.state());
+  }
+
+  @Test
+  public void testReconnect_accessViolationIsNotRetried() throws Exception {
+    FirebaseRestEventStreamImpl eventStream = createReconnectingEventStream();
+
+    expectListenerStart();
+    Promise<Void, FirebaseRuntimeException, StreamingEvent> result = eventStream.startListening();
+
+    capturedRequestHandler.getValue().onStatusReceived(createResponseStatus(fbReferenceUrl, HttpURLConnection.HTTP_FORBIDDEN));
+    capturedRequestHandler.getValue().onCompleted();
+
+    assertEquals(Promise.State.REJECTED, result.state());
+  }
+
+  @Test
+  public void testReconnect_clientErrorIsNotRetried() throws Exception {
+    FirebaseRestEventStreamImpl eventStream = createReconnectingEventStream();
+
+    expectListenerStart();
+    Promise<Void, FirebaseRuntimeException, StreamingEvent> result = eventStream.startListening();
+
+    final MutableObject<FirebaseRuntimeException> capturedError = new MutableObject<>();
+    result.fail(new FailCallback<FirebaseRuntimeException>() {
+      @Override
+      public void onFail(FirebaseRuntimeException error) {
+        capturedError.setValue(error);
+      }
+    });
+
+    assertEquals(AsyncHandler.STATE.ABORT, capturedRequestHandler.getValue().onStatusReceived(createResponseStatus(fbReferenceUrl, HttpURLConnection.HTTP_BAD_REQUEST)));
+
+    assertEquals(Promise.State.REJECTED, result.state());
+    assertEquals(FirebaseRuntimeException.ErrorCode.UnsupportedStatusCode, capturedError.getValue().getErrorCode());
+  }
+
+  @Test
+  public void testReconnect_tooManyRequestsIsRetried() throws Exception {
+    FirebaseRestEventStreamImpl eventStream = createReconnectingEventStream();
+
+    expectListenerStart();
+    Promise<Void, FirebaseRuntimeException, StreamingEvent> result = eventStream.startListening();
+
+    final AsyncHandler<Void> firstHandler = capturedRequestHandler.getValue();
+    expectListenerStart();
+    firstHandler.onStatusReceived(createResponseStatus(fbReferenceUrl, 429));
+
+    final AsyncHandler<Void> secondHandler = waitForNewRequestHandler(firstHandler);
+    assertEquals(Promise.State.PENDING, result.state());
+
+    addExpectations(new Expectations() {{
+      oneOf(listenableFuture).done();
+    }});
+    eventStream.stopListening();
+    secondHandler.onCompleted();
+
+    assertEquals(Promise.State.RESOLVED, result.state());
+  }
+
+  @Test
+  public void testReconnect_stopWhileReconnecting() throws Exception {
+    final FirebaseRestEventStreamImpl eventStream = createReconnectingEventStream();
+
+    expectListenerStart();
+    Promise<Void, FirebaseRuntimeException, StreamingEvent> result = eventStream.startListening();
+
+    // The scheduler thread blocks on the stream's monitor, so the reconnect observes the stopped stream
+    synchronized (eventStream) {
+      capturedRequestHandler.getValue().onCompleted();
+      eventStream.stopListening();
+    }
+
+    assertEquals(Promise.State.RESOLVED, result.state());
+  }
+
   @Test
   public void testStartListening_listeningAlreadyStarted() throws Exception {
     FirebaseRestEventStreamImpl eventStream = createEventStream();
@@ -282,9 +605,16 @@ public class FirebaseRestEventStreamImplTest extends AbstractMockTestCase {
     );
   }
 
+  private void sendBodyPart(String content) throws Exception {
+    assertEquals(
+      AsyncHandler.STATE.CONTINUE,
+      capturedRequestHandler.getValue().onBodyPartReceived(new ResponseBodyPart(content.getBytes(Charset.forName("UTF-8")), false))
+    );
+  }
+
   private HttpResponseBodyPart createBodyPart(String eventType, String data, boolean isLastPart) {
     return new ResponseBodyPart(
-      String.format("event: %s\ndata: %s", eventType, data).getBytes(Charset.forName("UTF-8")),
+      String.format("event: %s\ndata: %s\n\n", eventType, data).getBytes(Charset.forName("UTF-8")),
       isLastPart);
   }
 
@@ -330,14 +660,44 @@ public class FirebaseRestEventStreamImplTest extends AbstractMockTestCase {
   }
 
   private FirebaseRestEventStreamImpl createEventStream() {
-    expectEventStreamCreation(getFirebaseRestUrl());
+    return createEventStream(DatabaseResources.createDefault());
+  }
+
+  private FirebaseRestEventStreamImpl createReconnectingEventStream() {
+    return createEventStream(new DatabaseResources(
+      ValueCache.disabled(),
+      new RequestCoalescer(false),
+      WriteCoalescer.disabled(),
+      EventStreamReconnector.create(new EventStreamReconnectSettings(0, 0, TimeUnit.MILLISECONDS, 1)),
+      EventDelivery.disabled(),
+      EventStreamWatchdog.disabled(),
+      ConcurrencyLimiter.disabled(),
+      RequestHedger.disabled()
+    ));
+  }
+
+  private FirebaseRestEventStreamImpl createWatchedEventStream(long timeoutMillis) {
+    return createEventStream(new DatabaseResources(
+      ValueCache.disabled(),
+      new RequestCoalescer(false),
+      WriteCoalescer.disabled(),
+      EventStreamReconnector.disabled(),
+      EventDelivery.disabled(),
+      EventStreamWatchdog.create(new EventStreamWatchdogSettings(timeoutMillis, TimeUnit.MILLISECONDS)),
+      ConcurrencyLimiter.disabled(),
+      RequestHedger.disabled()
+    ));
+  }
+
+  private FirebaseRestEventStreamImpl createEventStream(DatabaseResources resources) {
 
     FirebaseRestEventStreamImpl result = new FirebaseRestEventStreamImpl(
-      asyncHttpClient,
+      transport,
       gson,
       fbBaseUrl,
       null,
-      path
+      path,
+      resources
     );
 
     assertIsSatisfied();
@@ -345,18 +705,23 @@ public class FirebaseRestEventStreamImplTest extends AbstractMockTestCase {
     return result;
   }
 
-  private void expectEventStreamCreation(final String referenceUrl) {
+  private void expectListenerStart() {
     addExpectations(new Expectations() {{
-      oneOf(asyncHttpClient).prepareGet(referenceUrl); will(returnValue(requestBuilder));
+      oneOf(asyncHttpClient).prepareGet(getFirebaseRestUrl()); will(returnValue(requestBuilder));
       oneOf(requestBuilder).addHeader("Accept", "text/event-stream"); will(returnValue(requestBuilder));
       oneOf(requestBuilder).setFollowRedirects(true); will(returnValue(requestBuilder));
+      oneOf(requestBuilder).execute(with(aNonNull(AsyncHandler.class))); will(doAll(MockObjectHelper.capture(capturedRequestHandler), returnValue(listenableFuture)));
     }});
   }
 
-  private void expectListenerStart() {
-    addExpectations(new Expectations() {{
-      oneOf(requestBuilder).execute(with(aNonNull(AsyncHandler.class))); will(doAll(MockObjectHelper.capture(capturedRequestHandler), returnValue(listenableFuture)));
-    }});
+  private AsyncHandler<Void> waitForNewRequestHandler(AsyncHandler<Void> previousHandler) throws InterruptedException {
+    final long timeout = System.currentTimeMillis() + 5000;
+    while (capturedRequestHandler.getValue() == previousHandler && System.currentTimeMillis() < timeout) {
+      Thread.sleep(10);
+    }
+
+    assertNotSame(previousHandler, capturedRequestHandler.getValue());
+    return capturedRequestHandler.getValue();
   }
 
   private HttpResponseStatus createResponseStatus(final String url, final int statusCode) throws IOException {
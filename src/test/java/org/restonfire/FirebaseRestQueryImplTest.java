@@ -2,6 +2,7 @@ package org.restonfire;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
 import com.ning.http.client.AsyncCompletionHandler;
 import com.ning.http.client.AsyncHttpClient;
 import com.ning.http.client.Param;
@@ -19,10 +20,15 @@ import org.restonfire.exceptions.FirebaseRuntimeException;
 import org.restonfire.testdata.SampleData;
 import org.restonfire.testutils.AbstractMockTestCase;
 import org.restonfire.testutils.MockObjectHelper;
+import org.restonfire.transport.AsyncHttpClientTransport;
+import org.restonfire.transport.HttpTransport;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.HttpURLConnection;
-import java.util.Arrays;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
@@ -32,6 +38,8 @@ import static org.junit.Assert.fail;
  */
 public class FirebaseRestQueryImplTest extends AbstractMockTestCase {
 
+  private final AsyncHttpClient asyncHttpClient = mock(AsyncHttpClient.class);
+  private final HttpTransport transport = new AsyncHttpClientTransport(asyncHttpClient);
   private final AsyncHttpClient.BoundRequestBuilder requestBuilder = mock(AsyncHttpClient.BoundRequestBuilder.class);
 
   private final Gson gson = new GsonBuilder().create();
@@ -40,7 +48,7 @@ public class FirebaseRestQueryImplTest extends AbstractMockTestCase {
   private final String referenceUrl = "https://mynamespace.firebaseio.com/some/path";
   private final SampleData sampleData = new SampleData("foobar", 123);
 
-  private final FirebaseRestQueryImpl query = new FirebaseRestQueryImpl(gson, requestBuilder, referenceUrl);
+  private final FirebaseRestQueryImpl query = new FirebaseRestQueryImpl(gson, transport, referenceUrl, null);
 
   @Test
   public void testStartAt_StringValue() {
@@ -176,6 +184,28 @@ public class FirebaseRestQueryImplTest extends AbstractMockTestCase {
     query.run(String.class);
   }
 
+  @Test
+  public void testRunQuery_newRequestForEveryRun() {
+    final AsyncHttpClient.BoundRequestBuilder secondRequestBuilder = mock(AsyncHttpClient.BoundRequestBuilder.class, "secondRequestBuilder");
+    final Param[] params = {new Param("orderBy", gson.toJson("$key")), new Param("limitToFirst", gson.toJson(10))};
+
+    query.orderByKey().limitToFirst(10);
+
+    expectRequestexecution(params);
+    query.run(String.class);
+    assertIsSatisfied();
+
+    // the params of the first run must not be added to the request of the second run again
+    addExpectations(new Expectations() {{
+      oneOf(asyncHttpClient).prepareGet(referenceUrl); will(returnValue(secondRequestBuilder));
+      for (Param param : params) {
+        oneOf(secondRequestBuilder).addQueryParam(param.getName(), param.getValue()); will(returnValue(secondRequestBuilder));
+      }
+      oneOf(secondRequestBuilder).execute(with(any(AsyncCompletionHandler.class)));
+    }});
+    query.run(String.class);
+  }
+
   @Test
   public void testRunQuery_success() throws Exception {
     final SampleData expectedSampleData = new SampleData("aValue", 123);
@@ -201,6 +231,29 @@ public class FirebaseRestQueryImplTest extends AbstractMockTestCase {
     capturedCompletionHandler.getValue().onCompleted(response);
   }
 
+  @Test
+  public void testRunQuery_typeToken() throws Exception {
+    final Map<String, SampleData> expectedResult = new HashMap<>();
+    expectedResult.put("a", new SampleData("aValue", 123));
+    expectedResult.put("b", new SampleData("bValue", 456));
+    final MutableObject<Map<String, SampleData>> capturedResult = new MutableObject<>();
+
+    expectGetRequest();
+
+    query.run(new TypeToken<Map<String, SampleData>>() { }).then(new DoneCallback<Map<String, SampleData>>() {
+      @Override
+      public void onDone(Map<String, SampleData> result) {
+        capturedResult.setValue(result);
+      }
+    });
+
+    Response response = createResponse(referenceUrl, HttpURLConnection.HTTP_OK, gson.toJson(expectedResult));
+
+    capturedCompletionHandler.getValue().onCompleted(response);
+
+    assertEquals(expectedResult, capturedResult.getValue());
+  }
+
   @Test
   public void testRunQuery_forbidden() throws Exception {
     expectGetRequest();
@@ -284,6 +337,7 @@ public class FirebaseRestQueryImplTest extends AbstractMockTestCase {
 
   private void expectGetRequest() {
     addExpectations(new Expectations() {{
+      oneOf(asyncHttpClient).prepareGet(referenceUrl); will(returnValue(requestBuilder));
       oneOf(requestBuilder).execute(with(aNonNull(AsyncCompletionHandler.class))); will(MockObjectHelper.capture(capturedCompletionHandler));
     }});
   }
@@ -294,6 +348,7 @@ public class FirebaseRestQueryImplTest extends AbstractMockTestCase {
       allowing(response).getUri(); will(returnValue(Uri.create(url)));
       allowing(response).getStatusCode(); will(returnValue(statusCode));
       allowing(response).getResponseBody(); will(returnValue(responseBody));
+      allowing(response).getResponseBodyAsStream(); will(returnValue(responseBody == null ? null : new ByteArrayInputStream(responseBody.getBytes(Charset.forName("UTF-8")))));
     }});
 
     return response;
@@ -303,13 +358,16 @@ public class FirebaseRestQueryImplTest extends AbstractMockTestCase {
     expectParams(params);
 
     addExpectations(new Expectations() {{
+      oneOf(asyncHttpClient).prepareGet(referenceUrl); will(returnValue(requestBuilder));
       oneOf(requestBuilder).execute(with(any(AsyncCompletionHandler.class))); will(MockObjectHelper.capture(capturedCompletionHandler));
     }});
   }
 
   private void expectParams(final Param[] params) {
     addExpectations(new Expectations() {{
-      oneOf(requestBuilder).addQueryParams(with(MockObjectHelper.elementsAreEqual(Arrays.asList(params))));
+      for (Param param : params) {
+        oneOf(requestBuilder).addQueryParam(param.getName(), param.getValue()); will(returnValue(requestBuilder));
+      }
     }});
   }
 }
@@ -2,8 +2,12 @@ package org.restonfire;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
 import com.ning.http.client.AsyncCompletionHandler;
+import com.ning.http.client.AsyncHandler;
 import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.FluentCaseInsensitiveStringsMap;
+import com.ning.http.client.HttpResponseStatus;
 import com.ning.http.client.Response;
 import com.ning.http.client.uri.Uri;
 import org.apache.commons.lang3.mutable.MutableObject;
@@ -15,14 +19,24 @@ import org.junit.Test;
 import org.restonfire.exceptions.FirebaseAccessException;
 import org.restonfire.exceptions.FirebaseRestException;
 import org.restonfire.exceptions.FirebaseRuntimeException;
+import org.restonfire.exceptions.FirebaseTransactionException;
+import org.restonfire.fakes.FakeResponseHeaders;
+import org.restonfire.responses.ETaggedValue;
 import org.restonfire.responses.PushResponse;
 import org.restonfire.testdata.SampleData;
 import org.restonfire.testutils.AbstractMockTestCase;
 import org.restonfire.testutils.MockObjectHelper;
+import org.restonfire.transport.AsyncHttpClientTransport;
+import org.restonfire.transport.HttpTransport;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.HttpURLConnection;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 
@@ -32,6 +46,7 @@ import static org.junit.Assert.*;
 public class FirebaseRestReferenceImplTest extends AbstractMockTestCase {
 
   private final AsyncHttpClient asyncHttpClient = mock(AsyncHttpClient.class);
+  private final HttpTransport transport = new AsyncHttpClientTransport(asyncHttpClient);
   private final AsyncHttpClient.BoundRequestBuilder requestBuilder = mock(AsyncHttpClient.BoundRequestBuilder.class);
 
   private final Gson gson = new GsonBuilder().create();
@@ -43,7 +58,7 @@ public class FirebaseRestReferenceImplTest extends AbstractMockTestCase {
   private final MutableObject<AsyncCompletionHandler<Void>> capturedCompletionHandler = new MutableObject<>();
 
   private final FirebaseRestReferenceImpl ref = new FirebaseRestReferenceImpl(
-    asyncHttpClient,
+    transport,
     gson,
     fbBaseUrl,
     null,
@@ -101,6 +116,25 @@ public class FirebaseRestReferenceImplTest extends AbstractMockTestCase {
     executedFailedRequestTest(ref.getValue(SampleData.class), HttpURLConnection.HTTP_OK, FirebaseRestException.class, "{aString: 'abc', anInt: 'foo'}", FirebaseRuntimeException.ErrorCode.ResponseDeserializationFailure);
   }
 
+  @Test
+  public void testGetValue_requestFailed() throws Exception {
+    final MutableObject<FirebaseRuntimeException> capturedError = new MutableObject<>();
+    final IOException cause = new IOException("Connection reset");
+
+    expectGetRequest();
+    ref.getValue(SampleData.class).fail(new FailCallback<FirebaseRuntimeException>() {
+      @Override
+      public void onFail(FirebaseRuntimeException result) {
+        capturedError.setValue(result);
+      }
+    });
+
+    capturedCompletionHandler.getValue().onThrowable(cause);
+
+    assertEquals(FirebaseRuntimeException.ErrorCode.RequestFailed, capturedError.getValue().getErrorCode());
+    assertSame(cause, capturedError.getValue().getCause());
+  }
+
   @Test
   public void testGetValue_success() throws Exception {
     executeSuccessfulGetValueRequest(ref);
@@ -110,7 +144,7 @@ public class FirebaseRestReferenceImplTest extends AbstractMockTestCase {
   public void testGetValue_success_withAccessToken() throws Exception {
     final String fbAccessToken = "fbAccessToken";
     final FirebaseRestReferenceImpl refWithToken = new FirebaseRestReferenceImpl(
-      asyncHttpClient,
+      transport,
       gson,
       fbBaseUrl,
       fbAccessToken,
@@ -125,6 +159,242 @@ public class FirebaseRestReferenceImplTest extends AbstractMockTestCase {
   }
 
   @Test
+  public void testGetValue_typeToken() throws Exception {
+    final Map<String, SampleData> expectedResult = new HashMap<>();
+    expectedResult.put("a", new SampleData("aValue", 123));
+    expectedResult.put("b", new SampleData("bValue", 456));
+    final MutableObject<Map<String, SampleData>> capturedResult = new MutableObject<>();
+
+    expectGetRequest();
+
+    ref.getValue(new TypeToken<Map<String, SampleData>>() { }).then(new DoneCallback<Map<String, SampleData>>() {
+      @Override
+      public void onDone(Map<String, SampleData> result) {
+        capturedResult.setValue(result);
+      }
+    });
+
+    capturedCompletionHandler.getValue().onCompleted(createResponse(fbReferenceUrl, HttpURLConnection.HTTP_OK, gson.toJson(expectedResult)));
+
+    assertEquals(expectedResult, capturedResult.getValue());
+  }
+
+  @Test
+  public void testGetValue_cached() throws Exception {
+    final FirebaseRestReferenceImpl cachedRef = createCachedReference();
+
+    executeSuccessfulGetValueRequest(cachedRef);
+    assertIsSatisfied();
+
+    // the second request must be served from the cache without any HTTP request
+    executeCachedGetValueRequest(cachedRef.getParent().child("bar"));
+  }
+
+  @Test
+  public void testGetValue_cacheInvalidatedBySetValue() throws Exception {
+    final FirebaseRestReferenceImpl cachedRef = createCachedReference();
+
+    executeSuccessfulGetValueRequest(cachedRef);
+
+    addExpectations(new Expectations() {{
+      oneOf(asyncHttpClient).preparePut(fbBaseUrl + "/foo" + FirebaseDocumentLocation.JSON_SUFFIX); will(returnValue(requestBuilder));
+      oneOf(requestBuilder).setBody(gson.toJson(sampleData)); will(returnValue(requestBuilder));
+      oneOf(requestBuilder).execute(with(aNonNull(AsyncCompletionHandler.class))); will(MockObjectHelper.capture(capturedCompletionHandler));
+    }});
+    cachedRef.getParent().setValue(sampleData);
+    capturedCompletionHandler.getValue().onCompleted(createResponse(fbBaseUrl + "/foo", HttpURLConnection.HTTP_OK, gson.toJson(sampleData)));
+    assertIsSatisfied();
+
+    // the cached value was invalidated by the write to the parent location
+    capturedCompletionHandler.setValue(null);
+    expectGetRequest();
+    cachedRef.getValue(SampleData.class);
+    assertNotNull(capturedCompletionHandler.getValue());
+  }
+
+  @Test
+  public void testGetValue_inFlightRequestDetachedBySetValue() throws Exception {
+    final FirebaseRestReferenceImpl coalescingRef = new FirebaseRestReferenceImpl(
+      transport,
+      gson,
+      fbBaseUrl,
+      null,
+      path,
+      new DatabaseResources(ValueCache.disabled(), new RequestCoalescer(true), WriteCoalescer.disabled(), EventStreamReconnector.disabled(), EventDelivery.disabled(), EventStreamWatchdog.disabled(), ConcurrencyLimiter.disabled(), RequestHedger.disabled())
+    );
+
+    expectGetRequest();
+    final Promise<SampleData, FirebaseRuntimeException, Void> first = coalescingRef.getValue(SampleData.class);
+    final AsyncCompletionHandler<Void> firstHandler = capturedCompletionHandler.getValue();
+
+    addExpectations(new Expectations() {{
+      oneOf(asyncHttpClient).preparePut(fbBaseUrl + "/foo" + FirebaseDocumentLocation.JSON_SUFFIX); will(returnValue(requestBuilder));
+      oneOf(requestBuilder).setBody(gson.toJson(sampleData)); will(returnValue(requestBuilder));
+      oneOf(requestBuilder).execute(with(aNonNull(AsyncCompletionHandler.class))); will(MockObjectHelper.capture(capturedCompletionHandler));
+    }});
+    coalescingRef.getParent().setValue(sampleData);
+    capturedCompletionHandler.getValue().onCompleted(createResponse(fbBaseUrl + "/foo", HttpURLConnection.HTTP_OK, gson.toJson(sampleData)));
+    assertIsSatisfied();
+
+    // the read issued after the write must not join the read sent before it
+    capturedCompletionHandler.setValue(null);
+    expectGetRequest();
+    final Promise<SampleData, FirebaseRuntimeException, Void> second = coalescingRef.getValue(SampleData.class);
+    assertIsSatisfied();
+    assertNotSame(first, second);
+
+    firstHandler.onCompleted(createResponse(fbReferenceUrl, HttpURLConnection.HTTP_OK, gson.toJson(sampleData)));
+    assertEquals(Promise.State.RESOLVED, first.state());
+    assertEquals(Promise.State.PENDING, second.state());
+  }
+
+  @Test
+  public void testGetValueWithETag_forbidden() throws Exception {
+    expectETagGetRequest();
+    executedForbiddenRequestTest(ref.getValueWithETag(SampleData.class));
+  }
+
+  @Test
+  public void testGetValueWithETag_success() throws Exception {
+    final MutableObject<ETaggedValue<SampleData>> capturedResult = new MutableObject<>();
+
+    expectETagGetRequest();
+    ref.getValueWithETag(SampleData.class).then(new DoneCallback<ETaggedValue<SampleData>>() {
+      @Override
+      public void onDone(ETaggedValue<SampleData> result) {
+        capturedResult.setValue(result);
+      }
+    });
+
+    capturedCompletionHandler.getValue().onCompleted(createETagResponse(HttpURLConnection.HTTP_OK, gson.toJson(sampleData), "eTag1"));
+
+    assertEquals(sampleData, capturedResult.getValue().getValue());
+    assertEquals("eTag1", capturedResult.getValue().getETag());
+  }
+
+  @Test
+  public void testGetValueIfChanged_unchanged() throws Exception {
+    final ETaggedValue<SampleData> previousValue = new ETaggedValue<>(sampleData, "eTag1");
+    final MutableObject<ETaggedValue<SampleData>> capturedResult = new MutableObject<>();
+
+    expectETagGetRequest();
+    ref.getValueIfChanged(SampleData.class, previousValue).then(new DoneCallback<ETaggedValue<SampleData>>() {
+      @Override
+      public void onDone(ETaggedValue<SampleData> result) {
+        capturedResult.setValue(result);
+      }
+    });
+
+    final AsyncCompletionHandler<Void> handler = capturedCompletionHandler.getValue();
+    assertEquals(AsyncHandler.STATE.CONTINUE, handler.onStatusReceived(createResponseStatus(HttpURLConnection.HTTP_OK)));
+    assertEquals(AsyncHandler.STATE.ABORT, handler.onHeadersReceived(createResponseHeaders("eTag1")));
+    assertSame(previousValue, capturedResult.getValue());
+
+    // the aborted request completes without a body, which must be ignored
+    handler.onCompleted(createResponse(fbReferenceUrl, HttpURLConnection.HTTP_OK, null));
+    assertSame(previousValue, capturedResult.getValue());
+  }
+
+  @Test
+  public void testGetValueIfChanged_changed() throws Exception {
+    final SampleData newSampleData = new SampleData("changed", 456);
+    final MutableObject<ETaggedValue<SampleData>> capturedResult = new MutableObject<>();
+
+    expectETagGetRequest();
+    ref.getValueIfChanged(SampleData.class, new ETaggedValue<>(sampleData, "eTag1")).then(new DoneCallback<ETaggedValue<SampleData>>() {
+      @Override
+      public void onDone(ETaggedValue<SampleData> result) {
+        capturedResult.setValue(result);
+      }
+    });
+
+    final AsyncCompletionHandler<Void> handler = capturedCompletionHandler.getValue();
+    assertEquals(AsyncHandler.STATE.CONTINUE, handler.onStatusReceived(createResponseStatus(HttpURLConnection.HTTP_OK)));
+    assertEquals(AsyncHandler.STATE.CONTINUE, handler.onHeadersReceived(createResponseHeaders("eTag2")));
+    assertNull(capturedResult.getValue());
+
+    handler.onCompleted(createETagResponse(HttpURLConnection.HTTP_OK, gson.toJson(newSampleData), "eTag2"));
+    assertEquals(newSampleData, capturedResult.getValue().getValue());
+    assertEquals("eTag2", capturedResult.getValue().getETag());
+  }
+
+  @Test
+  public void testTransaction_success() throws Exception {
+    final SampleData newSampleData = new SampleData("foobar", 124);
+    final MutableObject<SampleData> capturedResult = new MutableObject<>();
+
+    expectETagGetRequest();
+    ref.transaction(SampleData.class, new IncrementingTransactionHandler()).then(new DoneCallback<SampleData>() {
+      @Override
+      public void onDone(SampleData result) {
+        capturedResult.setValue(result);
+      }
+    });
+
+    expectConditionalSetRequest(newSampleData, "eTag1");
+    capturedCompletionHandler.getValue().onCompleted(createETagResponse(HttpURLConnection.HTTP_OK, gson.toJson(sampleData), "eTag1"));
+
+    capturedCompletionHandler.getValue().onCompleted(createResponse(fbReferenceUrl, HttpURLConnection.HTTP_OK, gson.toJson(newSampleData)));
+    assertEquals(newSampleData, capturedResult.getValue());
+  }
+
+  @Test
+  public void testTransaction_retriedOnConflict() throws Exception {
+    final SampleData concurrentSampleData = new SampleData("foobar", 200);
+    final SampleData newSampleData = new SampleData("foobar", 201);
+    final MutableObject<SampleData> capturedResult = new MutableObject<>();
+
+    expectETagGetRequest();
+    ref.transaction(SampleData.class, new IncrementingTransactionHandler()).then(new DoneCallback<SampleData>() {
+      @Override
+      public void onDone(SampleData result) {
+        capturedResult.setValue(result);
+      }
+    });
+
+    expectConditionalSetRequest(new SampleData("foobar", 124), "eTag1");
+    capturedCompletionHandler.getValue().onCompleted(createETagResponse(HttpURLConnection.HTTP_OK, gson.toJson(sampleData), "eTag1"));
+
+    // the conflicting response contains the latest value, which is used for the retry after a short delay
+    final AsyncCompletionHandler<Void> firstAttemptHandler = capturedCompletionHandler.getValue();
+    expectConditionalSetRequest(newSampleData, "eTag2");
+    firstAttemptHandler.onCompleted(createETagResponse(HttpURLConnection.HTTP_PRECON_FAILED, gson.toJson(concurrentSampleData), "eTag2"));
+    assertNull(capturedResult.getValue());
+
+    waitForNewCompletionHandler(firstAttemptHandler).onCompleted(createResponse(fbReferenceUrl, HttpURLConnection.HTTP_OK, gson.toJson(newSampleData)));
+    assertEquals(newSampleData, capturedResult.getValue());
+  }
+
+  @Test
+  public void testTransaction_aborted() throws Exception {
+    final MutableObject<FirebaseRuntimeException> capturedException = new MutableObject<>();
+
+    expectETagGetRequest();
+    ref.transaction(SampleData.class, new TransactionHandler<SampleData>() {
+      @Override
+      public SampleData doTransaction(SampleData currentValue) {
+        throw new IllegalStateException("abort");
+      }
+    }).fail(new FailCallback<FirebaseRuntimeException>() {
+      @Override
+      public void onFail(FirebaseRuntimeException result) {
+        capturedException.setValue(result);
+      }
+    });
+
+    capturedCompletionHandler.getValue().onCompleted(createETagResponse(HttpURLConnection.HTTP_OK, gson.toJson(sampleData), "eTag1"));
+
+    assertEquals(FirebaseTransactionException.class, capturedException.getValue().getClass());
+    assertEquals(FirebaseRuntimeException.ErrorCode.TransactionAborted, capturedException.getValue().getErrorCode());
+  }
+
+  @Test
+  public void testTransaction_forbidden() throws Exception {
+    expectETagGetRequest();
+    executedForbiddenRequestTest(ref.transaction(SampleData.class, new IncrementingTransactionHandler()));
+  }
+
+    @Test
   public void testGetShallowValue_forbidden() throws Exception {
     expectGetRequest();
     expectShallowParam();
@@ -162,7 +432,7 @@ public class FirebaseRestReferenceImplTest extends AbstractMockTestCase {
   public void testGetShallowValue_success_withAccessToken() throws Exception {
     final String fbAccessToken = "fbAccessToken";
     final FirebaseRestReferenceImpl refWithToken = new FirebaseRestReferenceImpl(
-      asyncHttpClient,
+      transport,
       gson,
       fbBaseUrl,
       fbAccessToken,
@@ -599,7 +869,125 @@ public class FirebaseRestReferenceImplTest extends AbstractMockTestCase {
     capturedCompletionHandler.getValue().onCompleted(response);
   }
 
-  private <TResult> void executedRequestWithUnsupportedResponseTest(Promise<TResult, FirebaseRuntimeException, Void> result, int responseCode) throws Exception {
+  private void executeCachedGetValueRequest(FirebaseRestReference restReference) {
+    final MutableObject<SampleData> capturedResult = new MutableObject<>();
+
+    restReference.getValue(SampleData.class).then(new DoneCallback<SampleData>() {
+      @Override
+      public void onDone(SampleData result) {
+        capturedResult.setValue(result);
+      }
+    });
+
+    assertEquals(new SampleData("aValue", 123), capturedResult.getValue());
+  }
+
+  @Test
+  public void testSetValue_coalesced() throws Exception {
+    final FirebaseRestReferenceImpl coalescingRef = createCoalescingReference(path, WriteCoalescer.create(new WriteCoalescingSettings(0, TimeUnit.MILLISECONDS)));
+    final SampleData secondData = new SampleData("second", 2);
+    final SampleData thirdData = new SampleData("third", 3);
+
+    expectSetRequest(sampleData);
+    final Promise<SampleData, FirebaseRuntimeException, Void> first = coalescingRef.setValue(sampleData);
+    final AsyncCompletionHandler<Void> firstHandler = capturedCompletionHandler.getValue();
+
+    final Promise<SampleData, FirebaseRuntimeException, Void> second = coalescingRef.setValue(secondData);
+    final Promise<SampleData, FirebaseRuntimeException, Void> third = coalescingRef.setValue(thirdData);
+    assertIsSatisfied();
+
+    expectSetRequest(thirdData);
+    firstHandler.onCompleted(createResponse(fbReferenceUrl, HttpURLConnection.HTTP_OK, gson.toJson(sampleData)));
+
+    assertEquals(Promise.State.RESOLVED, first.state());
+    assertEquals(Promise.State.PENDING, second.state());
+
+    capturedCompletionHandler.getValue().onCompleted(createResponse(getFirebaseRestUrl(), HttpURLConnection.HTTP_OK, gson.toJson(thirdData)));
+
+    assertEquals(Promise.State.RESOLVED, second.state());
+    assertEquals(Promise.State.RESOLVED, third.state());
+  }
+
+  @Test
+  public void testSetValue_coalescedWithUntrimmedPath() throws Exception {
+    final WriteCoalescer writeCoalescer = WriteCoalescer.create(new WriteCoalescingSettings(0, TimeUnit.MILLISECONDS));
+    final SampleData secondData = new SampleData("second", 2);
+
+    expectSetRequest(sampleData);
+    createCoalescingReference(path, writeCoalescer).setValue(sampleData);
+    createCoalescingReference("/" + path + "/", writeCoalescer).setValue(secondData);
+    createCoalescingReference(path, writeCoalescer).setValue(secondData);
+
+    assertEquals(1, writeCoalescer.getStatistics().getAbsorbedCount());
+  }
+
+  @Test
+  public void testRemoveValue_coalescedAfterSetValue() throws Exception {
+    final FirebaseRestReferenceImpl coalescingRef = createCoalescingReference(path, WriteCoalescer.create(new WriteCoalescingSettings(0, TimeUnit.MILLISECONDS)));
+
+    expectSetRequest(sampleData);
+    final Promise<SampleData, FirebaseRuntimeException, Void> set = coalescingRef.setValue(sampleData);
+    final AsyncCompletionHandler<Void> setHandler = capturedCompletionHandler.getValue();
+
+    final Promise<Void, FirebaseRuntimeException, Void> remove = coalescingRef.removeValue();
+    assertIsSatisfied();
+
+    // the remove is sent as a set to null once the previous set completed
+    expectSetRequest(null);
+    setHandler.onCompleted(createResponse(fbReferenceUrl, HttpURLConnection.HTTP_OK, gson.toJson(sampleData)));
+    assertIsSatisfied();
+    assertEquals(Promise.State.RESOLVED, set.state());
+
+    capturedCompletionHandler.getValue().onCompleted(createResponse(getFirebaseRestUrl(), HttpURLConnection.HTTP_OK, "null"));
+    assertEquals(Promise.State.RESOLVED, remove.state());
+  }
+
+  @Test
+  public void testTransaction_waitsForCoalescedSetValue() throws Exception {
+    final FirebaseRestReferenceImpl coalescingRef = createCoalescingReference(path, WriteCoalescer.create(new WriteCoalescingSettings(0, TimeUnit.MILLISECONDS)));
+    final SampleData newSampleData = new SampleData("foobar", 124);
+
+    expectSetRequest(sampleData);
+    coalescingRef.setValue(sampleData);
+    final AsyncCompletionHandler<Void> setHandler = capturedCompletionHandler.getValue();
+
+    final Promise<SampleData, FirebaseRuntimeException, Void> transaction = coalescingRef.transaction(SampleData.class, new IncrementingTransactionHandler());
+    assertIsSatisfied();
+
+    // the transaction reads the value once the set completed
+    expectETagGetRequest();
+    setHandler.onCompleted(createResponse(getFirebaseRestUrl(), HttpURLConnection.HTTP_OK, gson.toJson(sampleData)));
+    assertIsSatisfied();
+
+    expectConditionalSetRequest(newSampleData, "eTag1");
+    capturedCompletionHandler.getValue().onCompleted(createETagResponse(HttpURLConnection.HTTP_OK, gson.toJson(sampleData), "eTag1"));
+    capturedCompletionHandler.getValue().onCompleted(createResponse(fbReferenceUrl, HttpURLConnection.HTTP_OK, gson.toJson(newSampleData)));
+    assertEquals(Promise.State.RESOLVED, transaction.state());
+  }
+
+  private FirebaseRestReferenceImpl createCoalescingReference(String referencePath, WriteCoalescer writeCoalescer) {
+    return new FirebaseRestReferenceImpl(
+      transport,
+      gson,
+      fbBaseUrl,
+      null,
+      referencePath,
+      new DatabaseResources(ValueCache.disabled(), new RequestCoalescer(false), writeCoalescer, EventStreamReconnector.disabled(), EventDelivery.disabled(), EventStreamWatchdog.disabled(), ConcurrencyLimiter.disabled(), RequestHedger.disabled())
+    );
+  }
+
+  private FirebaseRestReferenceImpl createCachedReference() {
+    return new FirebaseRestReferenceImpl(
+      transport,
+      gson,
+      fbBaseUrl,
+      null,
+      path,
+      new DatabaseResources(ValueCache.create(new ValueCacheSettings(10, 1, TimeUnit.MINUTES)), new RequestCoalescer(false), WriteCoalescer.disabled(), EventStreamReconnector.disabled(), EventDelivery.disabled(), EventStreamWatchdog.disabled(), ConcurrencyLimiter.disabled(), RequestHedger.disabled())
+    );
+  }
+
+    private <TResult> void executedRequestWithUnsupportedResponseTest(Promise<TResult, FirebaseRuntimeException, Void> result, int responseCode) throws Exception {
     executedFailedRequestTest(result, responseCode, FirebaseRestException.class, null, FirebaseRuntimeException.ErrorCode.UnsupportedStatusCode);
   }
 
@@ -685,6 +1073,33 @@ public class FirebaseRestReferenceImplTest extends AbstractMockTestCase {
     }});
   }
 
+  private void expectETagGetRequest() {
+    addExpectations(new Expectations() {{
+      oneOf(asyncHttpClient).prepareGet(getFirebaseRestUrl()); will(returnValue(requestBuilder));
+      oneOf(requestBuilder).addHeader("X-Firebase-ETag", "true"); will(returnValue(requestBuilder));
+      oneOf(requestBuilder).execute(with(aNonNull(AsyncCompletionHandler.class))); will(MockObjectHelper.capture(capturedCompletionHandler));
+    }});
+  }
+
+  private <T> void expectConditionalSetRequest(final T data, final String eTag) {
+    addExpectations(new Expectations() {{
+      oneOf(asyncHttpClient).preparePut(getFirebaseRestUrl()); will(returnValue(requestBuilder));
+      oneOf(requestBuilder).setBody(gson.toJson(data)); will(returnValue(requestBuilder));
+      oneOf(requestBuilder).addHeader("if-match", eTag); will(returnValue(requestBuilder));
+      oneOf(requestBuilder).execute(with(aNonNull(AsyncCompletionHandler.class))); will(MockObjectHelper.capture(capturedCompletionHandler));
+    }});
+  }
+
+  private AsyncCompletionHandler<Void> waitForNewCompletionHandler(AsyncCompletionHandler<Void> previousHandler) throws InterruptedException {
+    final long timeout = System.currentTimeMillis() + 5000;
+    while (capturedCompletionHandler.getValue() == previousHandler && System.currentTimeMillis() < timeout) {
+      Thread.sleep(10);
+    }
+
+    assertNotSame(previousHandler, capturedCompletionHandler.getValue());
+    return capturedCompletionHandler.getValue();
+  }
+
   private void expectGetPriorityRequest() {
     addExpectations(new Expectations() {{
       oneOf(asyncHttpClient).prepareGet(getPriorityRestUrl()); will(returnValue(requestBuilder));
@@ -704,11 +1119,39 @@ public class FirebaseRestReferenceImplTest extends AbstractMockTestCase {
       allowing(response).getUri(); will(returnValue(Uri.create(url)));
       allowing(response).getStatusCode(); will(returnValue(statusCode));
       allowing(response).getResponseBody(); will(returnValue(responseBody));
+      allowing(response).getResponseBodyAsStream(); will(returnValue(responseBody == null ? null : new ByteArrayInputStream(responseBody.getBytes(Charset.forName("UTF-8")))));
+    }});
+
+    return response;
+  }
+
+  private Response createETagResponse(final int statusCode, final String responseBody, final String eTag) throws IOException {
+    final Response response = mock(Response.class, String.format("ETagResponse(%d, %s)", statusCode, eTag));
+    addExpectations(new Expectations() {{
+      allowing(response).getUri(); will(returnValue(Uri.create(fbReferenceUrl)));
+      allowing(response).getStatusCode(); will(returnValue(statusCode));
+      allowing(response).getHeader("ETag"); will(returnValue(eTag));
+      allowing(response).getResponseBodyAsStream(); will(returnValue(new ByteArrayInputStream(responseBody.getBytes(Charset.forName("UTF-8")))));
     }});
 
     return response;
   }
 
+  private HttpResponseStatus createResponseStatus(final int statusCode) {
+    final HttpResponseStatus status = mock(HttpResponseStatus.class);
+    addExpectations(new Expectations() {{
+      allowing(status).getStatusCode(); will(returnValue(statusCode));
+    }});
+
+    return status;
+  }
+
+  private FakeResponseHeaders createResponseHeaders(String eTag) {
+    final FluentCaseInsensitiveStringsMap headers = new FluentCaseInsensitiveStringsMap();
+    headers.add("ETag", Collections.singletonList(eTag));
+    return new FakeResponseHeaders(headers);
+  }
+
   private String getPriorityRestUrl() {
     return fbReferenceUrl + "/.priority" + FirebaseDocumentLocation.JSON_SUFFIX;
   }
@@ -716,4 +1159,11 @@ public class FirebaseRestReferenceImplTest extends AbstractMockTestCase {
   private String getFirebaseRestUrl() {
     return fbReferenceUrl + FirebaseDocumentLocation.JSON_SUFFIX;
   }
+
+  private static final class IncrementingTransactionHandler implements TransactionHandler<SampleData> {
+    @Override
+    public SampleData doTransaction(SampleData currentValue) {
+      return new SampleData(currentValue.aString, currentValue.anInt + 1);
+    }
+  }
 }
@@ -18,9 +18,13 @@ import org.restonfire.exceptions.FirebaseRuntimeException;
 import org.restonfire.responses.FirebaseSecurityRules;
 import org.restonfire.testutils.AbstractMockTestCase;
 import org.restonfire.testutils.MockObjectHelper;
+import org.restonfire.transport.AsyncHttpClientTransport;
+import org.restonfire.transport.HttpTransport;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.HttpURLConnection;
+import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -32,6 +36,7 @@ import static org.junit.Assert.*;
 public class FirebaseSecurityRulesReferenceImplTest extends AbstractMockTestCase {
 
   private final AsyncHttpClient asyncHttpClient = mock(AsyncHttpClient.class);
+  private final HttpTransport transport = new AsyncHttpClientTransport(asyncHttpClient);
   private final AsyncHttpClient.BoundRequestBuilder requestBuilder = mock(AsyncHttpClient.BoundRequestBuilder.class);
 
   private final Gson gson = new GsonBuilder().create();
@@ -41,7 +46,7 @@ public class FirebaseSecurityRulesReferenceImplTest extends AbstractMockTestCase
   private final MutableObject<AsyncCompletionHandler<Void>> capturedCompletionHandler = new MutableObject<>();
 
   private final FirebaseSecurityRulesReferenceImpl ref = new FirebaseSecurityRulesReferenceImpl(
-    asyncHttpClient,
+    transport,
     fbBaseUrl,
     null
   );
@@ -203,6 +208,7 @@ public class FirebaseSecurityRulesReferenceImplTest extends AbstractMockTestCase
       allowing(response).getUri(); will(returnValue(Uri.create(url)));
       allowing(response).getStatusCode(); will(returnValue(statusCode));
       allowing(response).getResponseBody(); will(returnValue(responseBody));
+      allowing(response).getResponseBodyAsStream(); will(returnValue(responseBody == null ? null : new ByteArrayInputStream(responseBody.getBytes(Charset.forName("UTF-8")))));
     }});
 
     return response;
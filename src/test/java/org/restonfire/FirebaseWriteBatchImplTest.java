@@ -0,0 +1,247 @@
+package org.restonfire;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.ning.http.client.AsyncCompletionHandler;
+import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.Response;
+import com.ning.http.client.uri.Uri;
+import org.apache.commons.lang3.mutable.MutableObject;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.FailCallback;
+import org.jdeferred.Promise;
+import org.jmock.Expectations;
+import org.junit.Test;
+import org.restonfire.exceptions.FirebaseAccessException;
+import org.restonfire.exceptions.FirebaseInvalidStateException;
+import org.restonfire.exceptions.FirebaseRuntimeException;
+import org.restonfire.testdata.SampleData;
+import org.restonfire.testutils.AbstractMockTestCase;
+import org.restonfire.testutils.MockObjectHelper;
+import org.restonfire.transport.AsyncHttpClientTransport;
+import org.restonfire.transport.HttpTransport;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for FirebaseWriteBatchImpl.
+ */
+public class FirebaseWriteBatchImplTest extends AbstractMockTestCase {
+
+  private final AsyncHttpClient asyncHttpClient = mock(AsyncHttpClient.class);
+  private final HttpTransport transport = new AsyncHttpClientTransport(asyncHttpClient);
+  private final AsyncHttpClient.BoundRequestBuilder requestBuilder = mock(AsyncHttpClient.BoundRequestBuilder.class);
+
+  private final Gson gson = new GsonBuilder().create();
+  private final String fbBaseUrl = "https://mynamespace.firebaseio.com";
+  private final SampleData sampleData = new SampleData("foobar", 123);
+
+  private final MutableObject<AsyncCompletionHandler<Void>> capturedCompletionHandler = new MutableObject<>();
+
+  private final FirebaseWriteBatchImpl batch = new FirebaseWriteBatchImpl(
+    transport,
+    gson,
+    fbBaseUrl,
+    null,
+    DatabaseResources.createDefault()
+  );
+
+  @Test
+  public void testCommit_emptyBatch() {
+    Promise<Void, FirebaseRuntimeException, Void> result = batch.commit();
+
+    assertEquals(Promise.State.RESOLVED, result.state());
+  }
+
+  @Test
+  public void testCommit_singleWrite() throws Exception {
+    expectPatchRequest("/foo.json", "{\"bar\":{\"aString\":\"foobar\",\"anInt\":123}}");
+
+    batch.setValue("/foo/bar/", sampleData);
+
+    executeSuccessfulCommit("/foo");
+  }
+
+  @Test
+  public void testCommit_commonAncestor() throws Exception {
+    expectPatchRequest("/users.json", "{\"alice/name\":\"Alice\",\"bob/profile/name\":\"Bob\",\"carol\":null}");
+
+    batch
+      .setValue("users/alice/name", "Alice")
+      .setValue("users/bob/profile/name", "Bob")
+      .removeValue("users/carol");
+
+    assertEquals(3, batch.size());
+    executeSuccessfulCommit("/users");
+  }
+
+  @Test
+  public void testCommit_rootAsCommonAncestor() throws Exception {
+    expectPatchRequest("/.json", "{\"users/alice\":null,\"posts/post1/author\":\"alice\"}");
+
+    batch
+      .removeValue("users/alice")
+      .setValue("posts/post1/author", "alice");
+
+    executeSuccessfulCommit("/");
+  }
+
+  @Test
+  public void testCommit_writeToRoot() throws Exception {
+    addExpectations(new Expectations() {{
+      oneOf(asyncHttpClient).preparePut(fbBaseUrl + "/.json"); will(returnValue(requestBuilder));
+      oneOf(requestBuilder).setBody("{\"foo\":\"bar\"}"); will(returnValue(requestBuilder));
+      oneOf(requestBuilder).execute(with(aNonNull(AsyncCompletionHandler.class))); will(MockObjectHelper.capture(capturedCompletionHandler));
+    }});
+
+    Map<String, Object> value = new LinkedHashMap<>();
+    value.put("foo", "bar");
+    batch.setValue("/", value);
+
+    executeSuccessfulCommit("/");
+  }
+
+  @Test
+  public void testCommit_updateValueExpandsChildren() throws Exception {
+    expectPatchRequest("/foo.json", "{\"bar/aString\":\"foobar\",\"bar/anInt\":123,\"baz\":true}");
+
+    batch
+      .updateValue("foo/bar", sampleData)
+      .setValue("foo/baz", true);
+
+    assertEquals(3, batch.size());
+    executeSuccessfulCommit("/foo");
+  }
+
+  @Test
+  public void testCommit_ancestorWriteReplacesDescendants() throws Exception {
+    expectPatchRequest("/foo.json", "{\"baz\":1,\"bar\":\"new\"}");
+
+    batch
+      .setValue("foo/bar/a", 1)
+      .setValue("foo/bar/b", 2)
+      .setValue("foo/baz", 1)
+      .setValue("foo/bar", "new");
+
+    assertEquals(2, batch.size());
+    executeSuccessfulCommit("/foo");
+  }
+
+  @Test
+  public void testCommit_descendantWriteModifiesAncestorValue() throws Exception {
+    expectPatchRequest("/foo.json", "{\"bar\":{\"aString\":\"changed\",\"anInt\":123,\"child\":{\"x\":1}},\"baz\":null}");
+
+    batch
+      .setValue("foo/bar", sampleData)
+      .removeValue("foo/baz")
+      .setValue("foo/bar/aString", "changed")
+      .setValue("foo/bar/child/x", 1);
+
+    assertEquals(2, batch.size());
+    executeSuccessfulCommit("/foo");
+  }
+
+  @Test
+  public void testCommit_descendantRemovalOfRemovedLocation() throws Exception {
+    expectPatchRequest("/foo.json", "{\"bar\":null,\"baz\":1}");
+
+    batch
+      .removeValue("foo/bar")
+      .removeValue("foo/bar/child")
+      .setValue("foo/baz", 1);
+
+    executeSuccessfulCommit("/foo");
+  }
+
+  @Test
+  public void testCommit_forbidden() throws Exception {
+    expectPatchRequest("/foo.json", "{\"bar\":1,\"baz\":2}");
+
+    batch
+      .setValue("foo/bar", 1)
+      .setValue("foo/baz", 2);
+
+    batch.commit()
+      .done(new DoneCallback<Void>() {
+        @Override
+        public void onDone(Void result) {
+          fail("The promise should not have been resolved");
+        }
+      })
+      .fail(new FailCallback<FirebaseRuntimeException>() {
+        @Override
+        public void onFail(FirebaseRuntimeException result) {
+          assertEquals(FirebaseAccessException.class, result.getClass());
+          assertEquals(FirebaseRuntimeException.ErrorCode.AccessViolation, result.getErrorCode());
+        }
+      });
+
+    capturedCompletionHandler.getValue().onCompleted(createResponse(fbBaseUrl + "/foo", HttpURLConnection.HTTP_FORBIDDEN, null));
+  }
+
+  @Test
+  public void testCommit_alreadyCommitted() {
+    batch.commit();
+
+    try {
+      batch.setValue("foo", 1);
+      fail("Expected exception was not thrown");
+    } catch (FirebaseInvalidStateException ex) {
+      assertEquals(FirebaseRuntimeException.ErrorCode.WriteBatchAlreadyCommitted, ex.getErrorCode());
+    }
+
+    try {
+      batch.commit();
+      fail("Expected exception was not thrown");
+    } catch (FirebaseInvalidStateException ex) {
+      assertEquals(FirebaseRuntimeException.ErrorCode.WriteBatchAlreadyCommitted, ex.getErrorCode());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUpdateValue_noObject() {
+    batch.updateValue("foo", "bar");
+  }
+
+  private void executeSuccessfulCommit(String path) throws Exception {
+    Promise<Void, FirebaseRuntimeException, Void> result = batch.commit();
+
+    result.fail(new FailCallback<FirebaseRuntimeException>() {
+      @Override
+      public void onFail(FirebaseRuntimeException result) {
+        fail("The promise should not have been rejected");
+      }
+    });
+
+    capturedCompletionHandler.getValue().onCompleted(createResponse(fbBaseUrl + path, HttpURLConnection.HTTP_OK, "{}"));
+
+    assertEquals(Promise.State.RESOLVED, result.state());
+  }
+
+  private void expectPatchRequest(final String requestPath, final String body) {
+    addExpectations(new Expectations() {{
+      oneOf(asyncHttpClient).preparePatch(fbBaseUrl + requestPath); will(returnValue(requestBuilder));
+      oneOf(requestBuilder).setBody(body); will(returnValue(requestBuilder));
+      oneOf(requestBuilder).execute(with(aNonNull(AsyncCompletionHandler.class))); will(MockObjectHelper.capture(capturedCompletionHandler));
+    }});
+  }
+
+  private Response createResponse(final String url, final int statusCode, final String responseBody) throws IOException {
+    final Response response = mock(Response.class, String.format("Response(%s, %d)", url, statusCode));
+    addExpectations(new Expectations() {{
+      allowing(response).getUri(); will(returnValue(Uri.create(url)));
+      allowing(response).getStatusCode(); will(returnValue(statusCode));
+      allowing(response).getResponseBody(); will(returnValue(responseBody));
+      allowing(response).getResponseBodyAsStream(); will(returnValue(responseBody == null ? null : new ByteArrayInputStream(responseBody.getBytes(Charset.forName("UTF-8")))));
+    }});
+
+    return response;
+  }
+}
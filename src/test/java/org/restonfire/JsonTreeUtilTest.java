@@ -0,0 +1,66 @@
+package org.restonfire;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test class for JsonTreeUtil.
+ */
+public class JsonTreeUtilTest {
+
+  private final JsonParser parser = new JsonParser();
+
+  @Test
+  public void testGet() {
+    final JsonElement root = parse("{a: {b: 1, c: {d: 'foo'}}}");
+
+    assertEquals(root, JsonTreeUtil.get(root, ""));
+    assertEquals(root, JsonTreeUtil.get(root, "/"));
+    assertEquals(parse("1"), JsonTreeUtil.get(root, "/a/b"));
+    assertEquals(parse("{d: 'foo'}"), JsonTreeUtil.get(root, "a/c/"));
+    assertNull(JsonTreeUtil.get(root, "a/x"));
+    assertNull(JsonTreeUtil.get(root, "a/b/c"));
+    assertNull(JsonTreeUtil.get(null, "a"));
+  }
+
+  @Test
+  public void testSet() {
+    assertEquals(parse("{a: 1}"), JsonTreeUtil.set(null, "/", parse("{a: 1}")));
+    assertEquals(parse("{a: {b: 2}}"), JsonTreeUtil.set(parse("{a: 1}"), "/a/b", parse("2")));
+    assertEquals(parse("{a: 1, b: {c: true}}"), JsonTreeUtil.set(parse("{a: 1}"), "b/c", parse("true")));
+    assertEquals(parse("'foo'"), JsonTreeUtil.set(parse("{a: 1}"), "", parse("'foo'")));
+  }
+
+  @Test
+  public void testSet_removesEmptyLocations() {
+    assertEquals(parse("{a: 1}"), JsonTreeUtil.set(parse("{a: 1, b: 2}"), "b", JsonNull.INSTANCE));
+    assertEquals(parse("{a: 1}"), JsonTreeUtil.set(parse("{a: 1, b: {c: 2}}"), "b/c", JsonNull.INSTANCE));
+    assertEquals(parse("{a: 1}"), JsonTreeUtil.set(parse("{a: 1, b: 2}"), "b", new JsonObject()));
+    assertNull(JsonTreeUtil.set(parse("{a: {b: 1}}"), "a/b", null));
+    assertNull(JsonTreeUtil.set(parse("{a: 1}"), "", JsonNull.INSTANCE));
+  }
+
+  @Test
+  public void testUpdate() {
+    final JsonElement root = parse("{a: {b: 1, c: 2}, d: 3}");
+
+    assertEquals(
+      parse("{a: {b: 5, c: 2, e: {f: 6}}, d: 3}"),
+      JsonTreeUtil.update(root, "/a", parse("{b: 5, 'e/f': 6}").getAsJsonObject())
+    );
+    assertEquals(
+      parse("{a: {b: 5, e: {f: 6}}}"),
+      JsonTreeUtil.update(root, "/", parse("{d: null, 'a/c': null}").getAsJsonObject())
+    );
+  }
+
+  private JsonElement parse(String json) {
+    return parser.parse(json);
+  }
+}
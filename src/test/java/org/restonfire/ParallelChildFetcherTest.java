@@ -0,0 +1,174 @@
+package org.restonfire;
+
+import org.apache.commons.lang3.mutable.MutableObject;
+import org.jdeferred.Deferred;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.FailCallback;
+import org.jdeferred.ProgressCallback;
+import org.jdeferred.impl.DeferredObject;
+import org.jmock.Expectations;
+import org.junit.Before;
+import org.junit.Test;
+import org.restonfire.exceptions.FirebaseAccessException;
+import org.restonfire.exceptions.FirebaseInvalidStateException;
+import org.restonfire.exceptions.FirebaseRuntimeException;
+import org.restonfire.testdata.SampleData;
+import org.restonfire.testutils.AbstractMockTestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for ParallelChildFetcher.
+ */
+public class ParallelChildFetcherTest extends AbstractMockTestCase {
+
+  private final FirebaseRestReference reference = mock(FirebaseRestReference.class, "reference");
+
+  private final MutableObject<Map<String, SampleData>> capturedResult = new MutableObject<>();
+  private final MutableObject<FirebaseRuntimeException> capturedException = new MutableObject<>();
+  private final List<String> receivedKeys = new ArrayList<>();
+
+  @Before
+  public void setUp() {
+    addExpectations(new Expectations() {{
+      allowing(reference).getReferenceUrl(); will(returnValue("https://mynamespace.firebaseio.com/foo"));
+    }});
+  }
+
+  @Test
+  public void testFetch_boundedConcurrency() {
+    final DeferredObject<SampleData, FirebaseRuntimeException, Void> childA = expectChildRequest("a");
+    final DeferredObject<SampleData, FirebaseRuntimeException, Void> childB = expectChildRequest("b");
+    expectShallowRequest(resolvedKeys("b", "a", "c"));
+
+    fetch(2, true);
+    assertIsSatisfied();
+
+    // the third child is only requested once one of the first two requests completed
+    final DeferredObject<SampleData, FirebaseRuntimeException, Void> childC = expectChildRequest("c");
+    childB.resolve(new SampleData("b", 2));
+    assertIsSatisfied();
+
+    childC.resolve(new SampleData("c", 3));
+    assertNull(capturedResult.getValue());
+
+    childA.resolve(new SampleData("a", 1));
+
+    assertEquals(Arrays.asList("b", "c", "a"), receivedKeys);
+    assertEquals(Arrays.asList("a", "b", "c"), new ArrayList<>(capturedResult.getValue().keySet()));
+    assertEquals(new SampleData("a", 1), capturedResult.getValue().get("a"));
+  }
+
+  @Test
+  public void testFetch_withoutMerge() {
+    final DeferredObject<Object, FirebaseRuntimeException, Void> shallowValue = new DeferredObject<>();
+    expectShallowRequest(shallowValue);
+    expectChildRequest("a").resolve(new SampleData("a", 1));
+
+    fetch(4, false);
+    shallowValue.resolve(Collections.singletonMap("a", true));
+
+    assertEquals(Arrays.asList("a"), receivedKeys);
+    assertNull(capturedResult.getValue());
+    assertNull(capturedException.getValue());
+  }
+
+  @Test
+  public void testFetch_noChildren() {
+    expectShallowRequest(new DeferredObject<Object, FirebaseRuntimeException, Void>().resolve(null));
+
+    fetch(4, true);
+
+    assertTrue(capturedResult.getValue().isEmpty());
+  }
+
+  @Test
+  public void testFetch_primitiveValue() {
+    expectShallowRequest(new DeferredObject<Object, FirebaseRuntimeException, Void>().resolve("foo"));
+
+    fetch(4, true);
+
+    assertEquals(FirebaseInvalidStateException.class, capturedException.getValue().getClass());
+    assertEquals(FirebaseRuntimeException.ErrorCode.ValueHasNoChildren, capturedException.getValue().getErrorCode());
+  }
+
+  @Test
+  public void testFetch_failedChildRequest() {
+    final FirebaseAccessException exception = new FirebaseAccessException("https://mynamespace.firebaseio.com/foo/b");
+    final DeferredObject<SampleData, FirebaseRuntimeException, Void> childA = expectChildRequest("a");
+    final DeferredObject<SampleData, FirebaseRuntimeException, Void> childB = expectChildRequest("b");
+    expectShallowRequest(resolvedKeys("a", "b", "c"));
+
+    fetch(2, true);
+
+    // no further children are requested after the first failure
+    childB.reject(exception);
+    childA.resolve(new SampleData("a", 1));
+
+    assertSame(exception, capturedException.getValue());
+    assertNull(capturedResult.getValue());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidConcurrency() {
+    new ParallelChildFetcher<>(reference, SampleData.class, 0, true);
+  }
+
+  private void fetch(int maxConcurrentRequests, boolean mergeResult) {
+    new ParallelChildFetcher<>(reference, SampleData.class, maxConcurrentRequests, mergeResult).fetch()
+      .progress(new ProgressCallback<Map.Entry<String, SampleData>>() {
+        @Override
+        public void onProgress(Map.Entry<String, SampleData> child) {
+          receivedKeys.add(child.getKey());
+        }
+      })
+      .done(new DoneCallback<Map<String, SampleData>>() {
+        @Override
+        public void onDone(Map<String, SampleData> result) {
+          capturedResult.setValue(result);
+        }
+      })
+      .fail(new FailCallback<FirebaseRuntimeException>() {
+        @Override
+        public void onFail(FirebaseRuntimeException result) {
+          capturedException.setValue(result);
+        }
+      });
+  }
+
+  private void expectShallowRequest(final Deferred<Object, FirebaseRuntimeException, Void> shallowValue) {
+    addExpectations(new Expectations() {{
+      oneOf(reference).getShallowValue(); will(returnValue(shallowValue.promise()));
+    }});
+  }
+
+  private DeferredObject<SampleData, FirebaseRuntimeException, Void> expectChildRequest(final String key) {
+    final FirebaseRestReference child = mock(FirebaseRestReference.class, "child-" + key);
+    final DeferredObject<SampleData, FirebaseRuntimeException, Void> deferred = new DeferredObject<>();
+
+    addExpectations(new Expectations() {{
+      oneOf(reference).child(key); will(returnValue(child));
+      oneOf(child).getValue(SampleData.class); will(returnValue(deferred.promise()));
+    }});
+
+    return deferred;
+  }
+
+  private DeferredObject<Object, FirebaseRuntimeException, Void> resolvedKeys(String... keys) {
+    final Map<String, Boolean> shallowValue = new LinkedHashMap<>();
+    for (String key : keys) {
+      shallowValue.put(key, true);
+    }
+
+    final DeferredObject<Object, FirebaseRuntimeException, Void> deferred = new DeferredObject<>();
+    deferred.resolve(shallowValue);
+    return deferred;
+  }
+}
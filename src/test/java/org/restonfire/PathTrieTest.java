@@ -0,0 +1,121 @@
+package org.restonfire;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for PathTrie.
+ */
+public class PathTrieTest {
+
+  private final PathTrie<String> trie = new PathTrie<>();
+
+  @Test
+  public void testSplit() {
+    assertArrayEquals(new String[0], PathTrie.split(""));
+    assertArrayEquals(new String[0], PathTrie.split("/"));
+    assertArrayEquals(new String[] {"foo"}, PathTrie.split("/foo/"));
+    assertArrayEquals(new String[] {"foo", "bar"}, PathTrie.split("foo/bar"));
+  }
+
+  @Test
+  public void testAdd() {
+    trie.add("", "root");
+    trie.add("/foo/bar", "a");
+    trie.add("foo/bar/", "b");
+    trie.add("foo/baz", "c");
+
+    assertEquals(4, trie.size());
+    assertEquals(Collections.singletonList("root"), trie.getRoot().getValues());
+
+    final PathTrie.Node<String> foo = trie.getRoot().getChild("foo");
+    assertEquals("foo", foo.getSegment());
+    assertTrue(foo.getValues().isEmpty());
+    assertEquals(2, foo.getChildren().size());
+    assertEquals(Arrays.asList("a", "b"), foo.getChild("bar").getValues());
+    assertEquals(Collections.singletonList("c"), foo.getChild("baz").getValues());
+    assertNull(foo.getChild("qux"));
+  }
+
+  @Test
+  public void testRemove() {
+    trie.add("foo/bar", "a");
+    trie.add("foo/bar", "b");
+    trie.add("foo", "c");
+
+    assertFalse(trie.remove("foo/bar", "c"));
+    assertFalse(trie.remove("foo/bar/baz", "a"));
+
+    assertTrue(trie.remove("foo/bar", "a"));
+    assertNotNull(trie.getRoot().getChild("foo").getChild("bar"));
+
+    assertTrue(trie.remove("foo/bar", "b"));
+    assertNull(trie.getRoot().getChild("foo").getChild("bar"));
+
+    assertTrue(trie.remove("foo", "c"));
+    assertTrue(trie.getRoot().getChildren().isEmpty());
+    assertEquals(0, trie.size());
+  }
+
+  @Test
+  public void testRemoveRelated() {
+    trie.add("", "root");
+    trie.add("foo", "ancestor");
+    trie.add("foo/bar", "same");
+    trie.add("foo/bar/baz/qux", "descendant");
+    trie.add("foo/barbaz", "sibling");
+    trie.add("other", "other");
+
+    final List<String> removed = trie.removeRelated("/foo/bar/");
+
+    assertEquals(4, removed.size());
+    assertTrue(removed.containsAll(Arrays.asList("root", "ancestor", "same", "descendant")));
+    assertEquals(2, trie.size());
+    assertTrue(trie.values().containsAll(Arrays.asList("sibling", "other")));
+    assertNull(trie.getRoot().getChild("foo").getChild("bar"));
+  }
+
+  @Test
+  public void testRemoveRelated_missingLocation() {
+    trie.add("foo", "ancestor");
+    trie.add("foo/baz", "sibling");
+
+    assertEquals(Collections.singletonList("ancestor"), trie.removeRelated("foo/bar/qux"));
+    assertEquals(Collections.singletonList("sibling"), trie.values());
+
+    assertEquals(Collections.singletonList("sibling"), trie.removeRelated("foo/baz"));
+    assertEquals(0, trie.size());
+    assertTrue(trie.getRoot().getChildren().isEmpty());
+  }
+
+  @Test
+  public void testRemoveRelated_root() {
+    trie.add("foo/bar", "a");
+    trie.add("baz", "b");
+
+    assertEquals(2, trie.removeRelated("/").size());
+    assertEquals(0, trie.size());
+    assertTrue(trie.getRoot().getChildren().isEmpty());
+  }
+
+  @Test
+  public void testValuesAndClear() {
+    trie.add("foo/bar", "a");
+    trie.add("", "b");
+    trie.add("baz", "c");
+
+    assertEquals(3, trie.values().size());
+    assertTrue(trie.values().containsAll(Arrays.asList("a", "b", "c")));
+
+    trie.clear();
+
+    assertEquals(0, trie.size());
+    assertTrue(trie.values().isEmpty());
+    assertTrue(trie.getRoot().getChildren().isEmpty());
+  }
+}
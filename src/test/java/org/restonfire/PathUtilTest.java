@@ -5,6 +5,8 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Test class for PathUtil.
@@ -96,4 +98,27 @@ public class PathUtilTest {
     assertEquals(PATH, PathUtil.normalizePath(PATH));
     assertEquals(PATH, PathUtil.normalizePath(PATH_WITH_SLASH));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void trimPath() throws Exception {
+    assertEquals("", PathUtil.trimPath(""));
+    assertEquals("", PathUtil.trimPath("/"));
+    assertEquals("", PathUtil.trimPath("//"));
+    assertEquals(PATH, PathUtil.trimPath(PATH));
+    assertEquals(PATH, PathUtil.trimPath(PATH_WITH_SLASH));
+    assertEquals(PATH, PathUtil.trimPath("/" + PATH_WITH_SLASH));
+  }
+
+  @Test
+  public void isSameOrAncestor() throws Exception {
+    assertTrue(PathUtil.isSameOrAncestor("", PATH));
+    assertTrue(PathUtil.isSameOrAncestor("", ""));
+    assertTrue(PathUtil.isSameOrAncestor(SINGLE_PATH, PATH));
+    assertTrue(PathUtil.isSameOrAncestor(PATH, PATH));
+
+    assertFalse(PathUtil.isSameOrAncestor(PATH, SINGLE_PATH));
+    assertFalse(PathUtil.isSameOrAncestor(PATH, ""));
+    assertFalse(PathUtil.isSameOrAncestor("fo", PATH));
+    assertFalse(PathUtil.isSameOrAncestor("foo/b", PATH));
+  }
+}
@@ -1,20 +1,22 @@
 package org.restonfire;
 
-import com.ning.http.client.AsyncHttpClient;
-import org.jmock.Expectations;
 import org.junit.Test;
-import org.restonfire.RequestBuilderUtil;
-import org.restonfire.testutils.AbstractMockTestCase;
+import org.restonfire.transport.HttpRequest;
 
-import static org.junit.Assert.assertSame;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Test class for RequestBuilderUtil.
  */
-public class RequestBuilderUtilTest extends AbstractMockTestCase {
-
-  private final AsyncHttpClient asyncHttpClient = mock(AsyncHttpClient.class);
-  private final AsyncHttpClient.BoundRequestBuilder requestBuilder = mock(AsyncHttpClient.BoundRequestBuilder.class);
+public class RequestBuilderUtilTest {
 
   private final String referenceUrl = "https://www.some-domain.com";
   private final String fbAccessToken = "someAccessToken";
@@ -22,111 +24,107 @@ public class RequestBuilderUtilTest extends AbstractMockTestCase {
 
   @Test
   public void testCreateGet() {
-    addExpectations(new Expectations() {{
-      oneOf(asyncHttpClient).prepareGet(referenceUrl); will(returnValue(requestBuilder));
-      oneOf(requestBuilder).addQueryParam("auth", fbAccessToken); will(returnValue(requestBuilder));
-    }});
-
-    assertSame(requestBuilder, RequestBuilderUtil.createGet(asyncHttpClient, referenceUrl, fbAccessToken));
+    assertRequest(RequestBuilderUtil.createGet(referenceUrl, fbAccessToken), HttpRequest.GET, null, auth());
   }
 
   @Test
   public void testCreateGet_noAccessToken() {
-    addExpectations(new Expectations() {{
-      oneOf(asyncHttpClient).prepareGet(referenceUrl); will(returnValue(requestBuilder));
-    }});
-
-    assertSame(requestBuilder, RequestBuilderUtil.createGet(asyncHttpClient, referenceUrl, null));
+    assertRequest(RequestBuilderUtil.createGet(referenceUrl, null), HttpRequest.GET, null, noParams());
   }
 
   @Test
   public void testCreateGet_emptyAccessToken() {
-    addExpectations(new Expectations() {{
-      oneOf(asyncHttpClient).prepareGet(referenceUrl); will(returnValue(requestBuilder));
-    }});
+    assertRequest(RequestBuilderUtil.createGet(referenceUrl, ""), HttpRequest.GET, null, noParams());
+  }
+
+  @Test
+  public void testCreateETagGet() {
+    final HttpRequest request = RequestBuilderUtil.createETagGet(referenceUrl, fbAccessToken);
 
-    assertSame(requestBuilder, RequestBuilderUtil.createGet(asyncHttpClient, referenceUrl, ""));
+    assertRequest(request, HttpRequest.GET, null, auth());
+    assertEquals(Collections.singletonList(entry("X-Firebase-ETag", "true")), request.getHeaders());
   }
 
   @Test
-  public void testCreatePost() {
-    addExpectations(new Expectations() {{
-      oneOf(asyncHttpClient).preparePost(referenceUrl); will(returnValue(requestBuilder));
-      oneOf(requestBuilder).setBody(body); will(returnValue(requestBuilder));
-      oneOf(requestBuilder).addQueryParam("auth", fbAccessToken); will(returnValue(requestBuilder));
-    }});
+  public void testCreateConditionalPut() {
+    final HttpRequest request = RequestBuilderUtil.createConditionalPut(referenceUrl, fbAccessToken, body, "someETag");
 
-    assertSame(requestBuilder, RequestBuilderUtil.createPost(asyncHttpClient, referenceUrl, fbAccessToken, body));
+    assertRequest(request, HttpRequest.PUT, body, auth());
+    assertEquals(Collections.singletonList(entry("if-match", "someETag")), request.getHeaders());
+    assertTrue(RequestBuilderUtil.isConditional(request));
+    assertFalse(RequestBuilderUtil.isConditional(RequestBuilderUtil.createPut(referenceUrl, fbAccessToken, body)));
   }
 
   @Test
-  public void testCreatePost_noAccessToken() {
-    addExpectations(new Expectations() {{
-      oneOf(asyncHttpClient).preparePost(referenceUrl); will(returnValue(requestBuilder));
-      oneOf(requestBuilder).setBody(body); will(returnValue(requestBuilder));
-    }});
+  public void testCreatePost() {
+    assertRequest(RequestBuilderUtil.createPost(referenceUrl, fbAccessToken, body), HttpRequest.POST, body, auth());
+  }
 
-    assertSame(requestBuilder, RequestBuilderUtil.createPost(asyncHttpClient, referenceUrl, null, body));
+  @Test
+  public void testCreatePost_noAccessToken() {
+    assertRequest(RequestBuilderUtil.createPost(referenceUrl, null, body), HttpRequest.POST, body, noParams());
   }
 
   @Test
   public void testCreatePatch() {
-    addExpectations(new Expectations() {{
-      oneOf(asyncHttpClient).preparePatch(referenceUrl); will(returnValue(requestBuilder));
-      oneOf(requestBuilder).setBody(body); will(returnValue(requestBuilder));
-      oneOf(requestBuilder).addQueryParam("auth", fbAccessToken); will(returnValue(requestBuilder));
-    }});
-
-    assertSame(requestBuilder, RequestBuilderUtil.createPatch(asyncHttpClient, referenceUrl, fbAccessToken, body));
+    assertRequest(RequestBuilderUtil.createPatch(referenceUrl, fbAccessToken, body), HttpRequest.PATCH, body, auth());
   }
 
   @Test
   public void testCreatePatch_noAccessToken() {
-    addExpectations(new Expectations() {{
-      oneOf(asyncHttpClient).preparePatch(referenceUrl); will(returnValue(requestBuilder));
-      oneOf(requestBuilder).setBody(body); will(returnValue(requestBuilder));
-    }});
-
-    assertSame(requestBuilder, RequestBuilderUtil.createPatch(asyncHttpClient, referenceUrl, null, body));
+    assertRequest(RequestBuilderUtil.createPatch(referenceUrl, null, body), HttpRequest.PATCH, body, noParams());
   }
 
   @Test
   public void testCreatePut() {
-    addExpectations(new Expectations() {{
-      oneOf(asyncHttpClient).preparePut(referenceUrl); will(returnValue(requestBuilder));
-      oneOf(requestBuilder).setBody(body); will(returnValue(requestBuilder));
-      oneOf(requestBuilder).addQueryParam("auth", fbAccessToken); will(returnValue(requestBuilder));
-    }});
-
-    assertSame(requestBuilder, RequestBuilderUtil.createPut(asyncHttpClient, referenceUrl, fbAccessToken, body));
+    assertRequest(RequestBuilderUtil.createPut(referenceUrl, fbAccessToken, body), HttpRequest.PUT, body, auth());
   }
 
   @Test
   public void testCreatePut_noAccessToken() {
-    addExpectations(new Expectations() {{
-      oneOf(asyncHttpClient).preparePut(referenceUrl); will(returnValue(requestBuilder));
-      oneOf(requestBuilder).setBody(body); will(returnValue(requestBuilder));
-    }});
-
-    assertSame(requestBuilder, RequestBuilderUtil.createPut(asyncHttpClient, referenceUrl, null, body));
+    assertRequest(RequestBuilderUtil.createPut(referenceUrl, null, body), HttpRequest.PUT, body, noParams());
   }
 
   @Test
   public void testCreateDelete() {
-    addExpectations(new Expectations() {{
-      oneOf(asyncHttpClient).prepareDelete(referenceUrl); will(returnValue(requestBuilder));
-      oneOf(requestBuilder).addQueryParam("auth", fbAccessToken); will(returnValue(requestBuilder));
-    }});
-
-    assertSame(requestBuilder, RequestBuilderUtil.createDelete(asyncHttpClient, referenceUrl, fbAccessToken));
+    assertRequest(RequestBuilderUtil.createDelete(referenceUrl, fbAccessToken), HttpRequest.DELETE, null, auth());
   }
 
   @Test
   public void testCreateDelete_noAccessToken() {
-    addExpectations(new Expectations() {{
-      oneOf(asyncHttpClient).prepareDelete(referenceUrl); will(returnValue(requestBuilder));
-    }});
+    assertRequest(RequestBuilderUtil.createDelete(referenceUrl, null), HttpRequest.DELETE, null, noParams());
+  }
+
+  @Test
+  public void testGetUrlWithQueryParams() {
+    final HttpRequest request = RequestBuilderUtil.createGet(referenceUrl, fbAccessToken)
+      .addQueryParam("orderBy", "\"$key\"")
+      .addQueryParam("startAt", "\"a b&c\"");
+
+    assertEquals(
+      referenceUrl + "?auth=someAccessToken&orderBy=%22%24key%22&startAt=%22a%20b%26c%22",
+      request.getUrlWithQueryParams()
+    );
+    assertEquals(referenceUrl, RequestBuilderUtil.createGet(referenceUrl, null).getUrlWithQueryParams());
+  }
+
+  private void assertRequest(HttpRequest request, String method, String expectedBody, List<Map.Entry<String, String>> queryParams) {
+    assertEquals(method, request.getMethod());
+    assertEquals(referenceUrl, request.getUrl());
+    assertEquals(expectedBody, request.getBody());
+    assertEquals(queryParams, request.getQueryParams());
+    assertFalse(request.isFollowRedirects());
+  }
+
+  private List<Map.Entry<String, String>> auth() {
+    return Arrays.asList(entry("auth", fbAccessToken));
+  }
+
+  private static List<Map.Entry<String, String>> noParams() {
+    return Collections.emptyList();
+  }
 
-    assertSame(requestBuilder, RequestBuilderUtil.createDelete(asyncHttpClient, referenceUrl, null));
+  private static Map.Entry<String, String> entry(String key, String value) {
+    return new AbstractMap.SimpleImmutableEntry<>(key, value);
   }
 }
@@ -0,0 +1,173 @@
+package org.restonfire;
+
+import org.apache.commons.lang3.mutable.MutableObject;
+import org.jdeferred.Deferred;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.FailCallback;
+import org.jdeferred.Promise;
+import org.jdeferred.impl.DeferredObject;
+import org.junit.Test;
+import org.restonfire.exceptions.FirebaseInvalidStateException;
+import org.restonfire.exceptions.FirebaseRuntimeException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for RequestCoalescer.
+ */
+public class RequestCoalescerTest {
+
+  private final RequestCoalescer coalescer = new RequestCoalescer(true);
+  private final List<Deferred<String, FirebaseRuntimeException, Void>> executedRequests = new ArrayList<>();
+
+  private final RequestCoalescer.Request<String> request = new RequestCoalescer.Request<String>() {
+    @Override
+    public Promise<String, FirebaseRuntimeException, Void> execute() {
+      final Deferred<String, FirebaseRuntimeException, Void> deferred = new DeferredObject<>();
+      executedRequests.add(deferred);
+      return deferred.promise();
+    }
+  };
+
+  @Test
+  public void testExecute_identicalRequestsShareResult() {
+    final Promise<String, FirebaseRuntimeException, Void> first = coalescer.execute("a", "key", request);
+    final Promise<String, FirebaseRuntimeException, Void> second = coalescer.execute("a", "key", request);
+
+    assertEquals(1, executedRequests.size());
+    assertEquals(1, coalescer.getCoalescedCount());
+
+    executedRequests.get(0).resolve("result");
+
+    assertEquals("result", getResult(first));
+    assertEquals("result", getResult(second));
+  }
+
+  @Test
+  public void testExecute_differentKeys() {
+    coalescer.execute("a", "key1", request);
+    coalescer.execute("a", "key2", request);
+
+    assertEquals(2, executedRequests.size());
+    assertEquals(0, coalescer.getCoalescedCount());
+  }
+
+  @Test
+  public void testExecute_newRequestAfterCompletion() {
+    coalescer.execute("a", "key", request);
+    executedRequests.get(0).resolve("first");
+
+    final Promise<String, FirebaseRuntimeException, Void> second = coalescer.execute("a", "key", request);
+
+    assertEquals(2, executedRequests.size());
+    executedRequests.get(1).resolve("second");
+    assertEquals("second", getResult(second));
+  }
+
+  @Test
+  public void testExecute_failureIsShared() {
+    final Promise<String, FirebaseRuntimeException, Void> first = coalescer.execute("a", "key", request);
+    final Promise<String, FirebaseRuntimeException, Void> second = coalescer.execute("a", "key", request);
+
+    final FirebaseInvalidStateException error = new FirebaseInvalidStateException(FirebaseRuntimeException.ErrorCode.UnsupportedStatusCode, "failed");
+    executedRequests.get(0).reject(error);
+
+    assertSame(error, getFailure(first));
+    assertSame(error, getFailure(second));
+
+    coalescer.execute("a", "key", request);
+    assertEquals(2, executedRequests.size());
+  }
+
+  @Test
+  public void testInvalidate_detachesRelatedPaths() {
+    final Promise<String, FirebaseRuntimeException, Void> same = coalescer.execute("/a/b/", "same", request);
+    coalescer.execute("a", "ancestor", request);
+    coalescer.execute("a/b/c", "descendant", request);
+    coalescer.execute("a/bc", "sibling", request);
+
+    coalescer.invalidate("a/b");
+
+    coalescer.execute("a/b", "same", request);
+    coalescer.execute("a", "ancestor", request);
+    coalescer.execute("a/b/c", "descendant", request);
+    coalescer.execute("a/bc", "sibling", request);
+
+    assertEquals(7, executedRequests.size());
+    assertEquals(1, coalescer.getCoalescedCount());
+
+    // the detached request still settles its own callers, but not the request that replaced it
+    executedRequests.get(0).resolve("before");
+    assertEquals("before", getResult(same));
+    coalescer.execute("a/b", "same", request);
+    assertEquals(7, executedRequests.size());
+    assertEquals(2, coalescer.getCoalescedCount());
+  }
+
+  @Test
+  public void testInvalidate_root() {
+    coalescer.execute("a/b", "key", request);
+
+    coalescer.invalidate("");
+    coalescer.execute("a/b", "key", request);
+
+    assertEquals(2, executedRequests.size());
+  }
+
+  @Test
+  public void testExecute_disabled() {
+    final RequestCoalescer disabledCoalescer = new RequestCoalescer(false);
+
+    disabledCoalescer.execute("a", "key", request);
+    disabledCoalescer.execute("a", "key", request);
+
+    assertEquals(2, executedRequests.size());
+    assertEquals(0, disabledCoalescer.getCoalescedCount());
+  }
+
+  @Test
+  public void testCreateKey() {
+    final Map<String, String> params = new LinkedHashMap<>();
+    params.put("orderBy", "\"$key\"");
+    params.put("limitToFirst", "10");
+
+    final Map<String, String> reversedParams = new LinkedHashMap<>();
+    reversedParams.put("limitToFirst", "10");
+    reversedParams.put("orderBy", "\"$key\"");
+
+    final String url = "https://mynamespace.firebaseio.com/foo.json";
+
+    assertEquals(RequestCoalescer.createKey(url, params, Map.class), RequestCoalescer.createKey(url, reversedParams, Map.class));
+    assertEquals(RequestCoalescer.createKey(url, null, Map.class), RequestCoalescer.createKey(url, new HashMap<String, String>(), Map.class));
+    assertNotEquals(RequestCoalescer.createKey(url, params, Map.class), RequestCoalescer.createKey(url, params, Object.class));
+    assertNotEquals(RequestCoalescer.createKey(url, params, Map.class), RequestCoalescer.createKey(url, null, Map.class));
+  }
+
+  private String getResult(Promise<String, FirebaseRuntimeException, Void> promise) {
+    final MutableObject<String> result = new MutableObject<>();
+    promise.done(new DoneCallback<String>() {
+      @Override
+      public void onDone(String value) {
+        result.setValue(value);
+      }
+    });
+    return result.getValue();
+  }
+
+  private FirebaseRuntimeException getFailure(Promise<String, FirebaseRuntimeException, Void> promise) {
+    final MutableObject<FirebaseRuntimeException> result = new MutableObject<>();
+    promise.fail(new FailCallback<FirebaseRuntimeException>() {
+      @Override
+      public void onFail(FirebaseRuntimeException value) {
+        result.setValue(value);
+      }
+    });
+    return result.getValue();
+  }
+}
@@ -0,0 +1,200 @@
+package org.restonfire;
+
+import org.junit.Test;
+import org.restonfire.testutils.AbstractMockTestCase;
+import org.restonfire.testutils.RecordingHandler;
+import org.restonfire.testutils.RecordingTransport;
+import org.restonfire.transport.HttpCall;
+import org.restonfire.transport.HttpRequest;
+import org.restonfire.transport.HttpResponse;
+import org.restonfire.transport.HttpStatus;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link RequestHedger} class.
+ */
+public class RequestHedgerTest extends AbstractMockTestCase {
+
+  private static final String URL = "https://mynamespace.firebaseio.com/a.json";
+
+  private final RecordingTransport delegate = new RecordingTransport();
+
+  @Test
+  public void testExecute_originalWins() {
+    final RequestHedger hedger = RequestHedger.create(new HedgingSettings(95, 1, 1, TimeUnit.MINUTES, 10));
+    final RecordingHandler handler = execute(hedger, HttpRequest.GET);
+
+    final HttpStatus status = mock(HttpStatus.class);
+    final HttpResponse response = mock(HttpResponse.class);
+    assertTrue(delegate.getHandlers().get(0).onHeadersReceived(status, null));
+    delegate.getHandlers().get(0).onCompleted(response);
+
+    assertSame(status, handler.getStatus());
+    assertSame(response, handler.getResponse());
+    assertEquals(1, delegate.getHandlers().size());
+    assertEquals(1, hedger.getStatistics().getRequestCount());
+    assertEquals(0, hedger.getStatistics().getHedgeCount());
+  }
+
+  @Test
+  public void testExecute_hedgeWins() throws Exception {
+    final RequestHedger hedger = createImmediateHedger(10);
+    final RecordingHandler handler = execute(hedger, HttpRequest.GET);
+    delegate.awaitRequests(2);
+
+    final HttpStatus status = mock(HttpStatus.class, "hedgeStatus");
+    final HttpResponse response = mock(HttpResponse.class);
+    assertTrue(delegate.getHandlers().get(1).onHeadersReceived(status, null));
+    delegate.getHandlers().get(1).onCompleted(response);
+
+    // the original request is cancelled, and aborted if its response arrives before the cancellation
+    assertTrue(delegate.isCancelled(0));
+    assertFalse(delegate.getHandlers().get(0).onHeadersReceived(mock(HttpStatus.class, "originalStatus"), null));
+
+    assertSame(status, handler.getStatus());
+    assertSame(response, handler.getResponse());
+    assertNull(handler.getError());
+    assertSame(delegate.getRequests().get(0), delegate.getRequests().get(1));
+
+    final HedgingStatistics statistics = hedger.getStatistics();
+    assertEquals(1, statistics.getHedgeCount());
+    assertEquals(1, statistics.getHedgeWinCount());
+    assertEquals(1, statistics.getHedgeRate(), 0);
+    assertEquals(1, statistics.getHedgeWinRate(), 0);
+  }
+
+  @Test
+  public void testExecute_originalWinsAgainstHedge() throws Exception {
+    final RequestHedger hedger = createImmediateHedger(10);
+    final RecordingHandler handler = execute(hedger, HttpRequest.GET);
+    delegate.awaitRequests(2);
+
+    final HttpResponse response = mock(HttpResponse.class);
+    assertTrue(delegate.getHandlers().get(0).onHeadersReceived(mock(HttpStatus.class), null));
+    delegate.getHandlers().get(0).onCompleted(response);
+
+    assertTrue(delegate.isCancelled(1));
+    assertFalse(delegate.isCancelled(0));
+    assertSame(response, handler.getResponse());
+    assertNull(handler.getError());
+    assertEquals(0, hedger.getStatistics().getHedgeWinCount());
+  }
+
+  @Test
+  public void testCancel() {
+    final RequestHedger hedger = RequestHedger.create(new HedgingSettings(95, 1, 1, TimeUnit.MINUTES, 10));
+    final RecordingHandler handler = new RecordingHandler();
+    final HttpCall call = hedger.decorate(delegate).execute(new HttpRequest(HttpRequest.GET, URL), handler);
+
+    call.cancel();
+
+    assertTrue(delegate.isCancelled(0));
+    assertTrue(handler.getError() instanceof CancellationException);
+    assertEquals(1, delegate.getHandlers().size());
+  }
+
+  @Test
+  public void testExecute_originalFailedWhileHedgePending() throws Exception {
+    final RequestHedger hedger = createImmediateHedger(10);
+    final RecordingHandler handler = execute(hedger, HttpRequest.GET);
+    delegate.awaitRequests(2);
+
+    delegate.getHandlers().get(0).onThrowable(new IOException("Connection reset"));
+    assertNull(handler.getError());
+
+    final HttpResponse response = mock(HttpResponse.class);
+    delegate.getHandlers().get(1).onCompleted(response);
+    assertSame(response, handler.getResponse());
+  }
+
+  @Test
+  public void testExecute_allAttemptsFailed() throws Exception {
+    final RequestHedger hedger = createImmediateHedger(10);
+    final RecordingHandler handler = execute(hedger, HttpRequest.GET);
+    delegate.awaitRequests(2);
+
+    delegate.getHandlers().get(1).onThrowable(new IOException("Connection refused"));
+    assertNull(handler.getError());
+
+    final IOException error = new IOException("Connection reset");
+    delegate.getHandlers().get(0).onThrowable(error);
+    assertSame(error, handler.getError());
+  }
+
+  @Test
+  public void testExecute_notHedged() {
+    final RequestHedger hedger = createImmediateHedger(10);
+    final RecordingHandler handler = execute(hedger, HttpRequest.PUT);
+
+    assertSame(handler, delegate.getHandlers().get(0));
+    assertEquals(0, hedger.getStatistics().getRequestCount());
+  }
+
+  @Test
+  public void testExecute_budgetExhausted() throws Exception {
+    final RequestHedger hedger = createImmediateHedger(0);
+    for (int i = 1; i <= 10; i++) {
+      execute(hedger, HttpRequest.GET);
+      delegate.awaitRequests(2 * i);
+    }
+
+    execute(hedger, HttpRequest.GET);
+    final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+    while (hedger.getStatistics().getBudgetExhaustedCount() == 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(1);
+    }
+
+    assertEquals(1, hedger.getStatistics().getBudgetExhaustedCount());
+    assertEquals(10, hedger.getStatistics().getHedgeCount());
+    assertEquals(21, delegate.getHandlers().size());
+  }
+
+  @Test
+  public void testRecordLatency_percentile() {
+    final RequestHedger hedger = RequestHedger.create(new HedgingSettings(50, 10, 40, TimeUnit.MILLISECONDS, 10));
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(40), hedger.getHedgeDelayNanos());
+
+    for (int i = 1; i <= RequestHedger.DELAY_UPDATE_INTERVAL; i++) {
+      hedger.recordLatency(TimeUnit.MILLISECONDS.toNanos(i));
+    }
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(RequestHedger.DELAY_UPDATE_INTERVAL / 2), hedger.getHedgeDelayNanos());
+
+    // the median of the window drops below the minimum delay
+    for (int i = 1; i <= RequestHedger.DELAY_UPDATE_INTERVAL; i++) {
+      hedger.recordLatency(TimeUnit.MILLISECONDS.toNanos(1));
+    }
+    assertEquals(TimeUnit.MILLISECONDS.toNanos(10), hedger.getHedgeDelayNanos());
+  }
+
+  @Test
+  public void testDisabled() {
+    assertFalse(RequestHedger.disabled().isEnabled());
+    assertSame(RequestHedger.disabled(), RequestHedger.create(null));
+    assertSame(delegate, RequestHedger.disabled().decorate(delegate));
+    assertEquals(0, RequestHedger.disabled().getStatistics().getHedgeRate(), 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSettings_invalidPercentile() {
+    new HedgingSettings(0, 0, 0, TimeUnit.MILLISECONDS, 10);
+  }
+
+  private static RequestHedger createImmediateHedger(int hedgeBudgetPercent) {
+    return RequestHedger.create(new HedgingSettings(95, 0, 0, TimeUnit.MILLISECONDS, hedgeBudgetPercent));
+  }
+
+  private RecordingHandler execute(RequestHedger hedger, String method) {
+    final RecordingHandler handler = new RecordingHandler();
+    hedger.decorate(delegate).execute(new HttpRequest(method, URL), handler);
+    return handler;
+  }
+}
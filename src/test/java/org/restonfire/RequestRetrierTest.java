@@ -0,0 +1,215 @@
+package org.restonfire;
+
+import org.jmock.Expectations;
+import org.junit.Test;
+import org.restonfire.testutils.AbstractMockTestCase;
+import org.restonfire.testutils.RecordingHandler;
+import org.restonfire.testutils.RecordingTransport;
+import org.restonfire.transport.HttpCall;
+import org.restonfire.transport.HttpHeaders;
+import org.restonfire.transport.HttpRequest;
+import org.restonfire.transport.HttpResponse;
+import org.restonfire.transport.HttpStatus;
+import org.restonfire.transport.HttpTransport;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.util.Collections;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link RequestRetrier} class.
+ */
+public class RequestRetrierTest extends AbstractMockTestCase {
+
+  private static final String URL = "https://mynamespace.firebaseio.com/a.json";
+
+  private final RecordingTransport delegate = new RecordingTransport();
+  private final RequestRetrier retrier = RequestRetrier.create(new RetrySettings(3, 0, 0, TimeUnit.MILLISECONDS, 10));
+  private final HttpTransport transport = retrier.decorate(delegate);
+
+  @Test
+  public void testExecute_retryableStatusCode() throws Exception {
+    final RecordingHandler handler = execute(HttpRequest.GET);
+
+    assertFalse(delegate.getHandlers().get(0).onHeadersReceived(createStatus(503), null));
+    delegate.awaitRequests(2);
+
+    final HttpStatus ok = createStatus(200);
+    final HttpResponse response = mock(HttpResponse.class);
+    assertTrue(delegate.getHandlers().get(1).onHeadersReceived(ok, null));
+    delegate.getHandlers().get(1).onCompleted(response);
+
+    assertSame(ok, handler.getStatus());
+    assertSame(response, handler.getResponse());
+    assertSame(delegate.getRequests().get(0), delegate.getRequests().get(1));
+  }
+
+  @Test
+  public void testExecute_maxAttempts() throws Exception {
+    final RecordingHandler handler = execute(HttpRequest.PUT);
+
+    for (int attempt = 1; attempt < 3; attempt++) {
+      assertFalse(delegate.getHandlers().get(attempt - 1).onHeadersReceived(createStatus(500), null));
+      delegate.awaitRequests(attempt + 1);
+    }
+
+    // the last attempt is passed on
+    final HttpStatus serverError = createStatus(500);
+    assertTrue(delegate.getHandlers().get(2).onHeadersReceived(serverError, null));
+    assertSame(serverError, handler.getStatus());
+    assertEquals(3, delegate.getHandlers().size());
+  }
+
+  @Test
+  public void testExecute_nonRetryableStatusCode() {
+    final RecordingHandler handler = execute(HttpRequest.GET);
+    final HttpStatus forbidden = createStatus(403);
+
+    assertTrue(delegate.getHandlers().get(0).onHeadersReceived(forbidden, null));
+    assertSame(forbidden, handler.getStatus());
+  }
+
+  @Test
+  public void testExecute_retryableException() throws Exception {
+    final RecordingHandler handler = execute(HttpRequest.DELETE);
+
+    delegate.getHandlers().get(0).onThrowable(new ConnectException("Connection refused"));
+    delegate.awaitRequests(2);
+    assertNull(handler.getError());
+
+    final IllegalStateException error = new IllegalStateException();
+    delegate.getHandlers().get(1).onThrowable(error);
+    assertSame(error, handler.getError());
+  }
+
+  @Test
+  public void testExecute_cancel() {
+    // the cancellation is not retried, although it is a retryable exception
+    final RequestRetrier runtimeRetrier = RequestRetrier.create(new RetrySettings(2, 0, 0, TimeUnit.MILLISECONDS, 10,
+      RetrySettings.DEFAULT_RETRYABLE_STATUS_CODES, Collections.<Class<? extends Throwable>>singleton(RuntimeException.class), false));
+    final RecordingHandler handler = new RecordingHandler();
+    final HttpCall call = runtimeRetrier.decorate(delegate).execute(new HttpRequest(HttpRequest.GET, URL), handler);
+
+    call.cancel();
+
+    assertTrue(delegate.isCancelled(0));
+    assertTrue(handler.getError() instanceof CancellationException);
+    assertEquals(RequestRetrier.MAX_RETRY_BUDGET, runtimeRetrier.getBudget(), 0);
+  }
+
+  @Test
+  public void testExecute_notIdempotent() {
+    final RecordingHandler postHandler = execute(HttpRequest.POST);
+    final RecordingHandler patchHandler = execute(HttpRequest.PATCH);
+
+    assertSame(postHandler, delegate.getHandlers().get(0));
+    assertSame(patchHandler, delegate.getHandlers().get(1));
+  }
+
+  @Test
+  public void testExecute_conditionalPutNotRetried() {
+    final RecordingHandler handler = new RecordingHandler();
+    transport.execute(RequestBuilderUtil.createConditionalPut(URL, null, "1", "someETag"), handler);
+
+    // The connection is reset after Firebase applied the request, a retry would fail with status code 412
+    final IOException error = new IOException("Connection reset");
+    delegate.getHandlers().get(0).onThrowable(error);
+
+    assertSame(error, handler.getError());
+    assertEquals(1, delegate.getHandlers().size());
+    assertEquals(RequestRetrier.MAX_RETRY_BUDGET, retrier.getBudget(), 0);
+  }
+
+  @Test
+  public void testExecute_patchRetryable() throws Exception {
+    final RequestRetrier patchRetrier = RequestRetrier.create(new RetrySettings(2, 0, 0, TimeUnit.MILLISECONDS, 10,
+      RetrySettings.DEFAULT_RETRYABLE_STATUS_CODES, Collections.<Class<? extends Throwable>>singleton(IOException.class), true));
+    patchRetrier.decorate(delegate).execute(new HttpRequest(HttpRequest.PATCH, URL), new RecordingHandler());
+
+    delegate.getHandlers().get(0).onThrowable(new IOException("Connection reset"));
+    delegate.awaitRequests(2);
+  }
+
+  @Test
+  public void testExecute_budgetExhausted() throws Exception {
+    final RequestRetrier budgetRetrier = RequestRetrier.create(new RetrySettings(2, 0, 0, TimeUnit.MILLISECONDS, 0));
+    final HttpTransport budgetTransport = budgetRetrier.decorate(delegate);
+    final int retries = (int) RequestRetrier.MAX_RETRY_BUDGET;
+
+    for (int i = 0; i < retries; i++) {
+      budgetTransport.execute(new HttpRequest(HttpRequest.GET, URL), new RecordingHandler());
+      delegate.getHandlers().get(delegate.getHandlers().size() - 1).onThrowable(new IOException());
+      delegate.awaitRequests(2 * (i + 1));
+    }
+    assertEquals(0, budgetRetrier.getBudget(), 0);
+
+    final RecordingHandler handler = new RecordingHandler();
+    budgetTransport.execute(new HttpRequest(HttpRequest.GET, URL), handler);
+    final IOException error = new IOException();
+    delegate.getHandlers().get(delegate.getHandlers().size() - 1).onThrowable(error);
+
+    assertSame(error, handler.getError());
+    assertEquals(2 * retries + 1, delegate.getHandlers().size());
+  }
+
+  @Test
+  public void testBudget_deposit() {
+    transport.execute(new HttpRequest(HttpRequest.GET, URL), new RecordingHandler());
+    assertEquals(RequestRetrier.MAX_RETRY_BUDGET, retrier.getBudget(), 0);
+
+    delegate.getHandlers().get(0).onHeadersReceived(createStatus(503), null);
+    assertEquals(RequestRetrier.MAX_RETRY_BUDGET - 1, retrier.getBudget(), 0);
+
+    transport.execute(new HttpRequest(HttpRequest.GET, URL), new RecordingHandler());
+    assertEquals(RequestRetrier.MAX_RETRY_BUDGET - 0.9, retrier.getBudget(), 0.0001);
+  }
+
+  @Test
+  public void testGetRetryAfterNanos() {
+    final HttpHeaders headers = mock(HttpHeaders.class);
+    addExpectations(new Expectations() {{
+      oneOf(headers).getHeader("Retry-After"); will(returnValue(" 2"));
+      oneOf(headers).getHeader("Retry-After"); will(returnValue("Wed, 21 Oct 2026 07:28:00 GMT"));
+      oneOf(headers).getHeader("Retry-After"); will(returnValue(null));
+    }});
+
+    assertEquals(TimeUnit.SECONDS.toNanos(2), RequestRetrier.getRetryAfterNanos(headers));
+    assertEquals(0, RequestRetrier.getRetryAfterNanos(headers));
+    assertEquals(0, RequestRetrier.getRetryAfterNanos(headers));
+    assertEquals(0, RequestRetrier.getRetryAfterNanos(null));
+  }
+
+  @Test
+  public void testDisabled() {
+    assertFalse(RequestRetrier.disabled().isEnabled());
+    assertSame(RequestRetrier.disabled(), RequestRetrier.create(null));
+    assertSame(delegate, RequestRetrier.disabled().decorate(delegate));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSettings_invalidMaxAttempts() {
+    new RetrySettings(0, 0, 0, TimeUnit.MILLISECONDS, 10);
+  }
+
+  private RecordingHandler execute(String method) {
+    final RecordingHandler handler = new RecordingHandler();
+    transport.execute(new HttpRequest(method, URL), handler);
+    return handler;
+  }
+
+  private HttpStatus createStatus(final int statusCode) {
+    final HttpStatus status = mock(HttpStatus.class, "status" + statusCode + "_" + delegate.getHandlers().size());
+    addExpectations(new Expectations() {{
+      allowing(status).getStatusCode(); will(returnValue(statusCode));
+    }});
+    return status;
+  }
+}
@@ -0,0 +1,76 @@
+package org.restonfire;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import org.junit.Test;
+import org.restonfire.testdata.SampleData;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test class for RestUtil.
+ */
+public class RestUtilTest {
+
+  private final Gson gson = new GsonBuilder().create();
+
+  @Test
+  public void testDecode_object() throws IOException {
+    final SampleData sampleData = new SampleData("foo", 42);
+
+    assertEquals(sampleData, RestUtil.decode(gson, toStream(gson.toJson(sampleData)), SampleData.class));
+  }
+
+  @Test
+  public void testDecode_primitive() throws IOException {
+    assertEquals(Double.valueOf(1.5), RestUtil.decode(gson, toStream("1.5"), Double.class));
+    assertEquals("foo", RestUtil.decode(gson, toStream("\"foo\""), String.class));
+  }
+
+  @Test
+  public void testDecode_genericType() throws IOException {
+    final Map<String, SampleData> value = new HashMap<>();
+    value.put("a", new SampleData("foo", 42));
+    value.put("b", new SampleData("bar", 43));
+
+    final Map<String, SampleData> result = RestUtil.decode(gson, toStream(gson.toJson(value)), new TypeToken<Map<String, SampleData>>() { }.getType());
+
+    assertEquals(value, result);
+    assertEquals(SampleData.class, result.get("a").getClass());
+  }
+
+  @Test
+  public void testDecode_nullValue() throws IOException {
+    assertNull(RestUtil.decode(gson, toStream("null"), SampleData.class));
+  }
+
+  @Test
+  public void testDecode_emptyBody() throws IOException {
+    assertNull(RestUtil.decode(gson, toStream(""), SampleData.class));
+    assertNull(RestUtil.decode(gson, null, SampleData.class));
+  }
+
+  @Test(expected = JsonSyntaxException.class)
+  public void testDecode_trailingContent() throws IOException {
+    RestUtil.decode(gson, toStream("{aString: 'abc', anInt: 1} {}"), SampleData.class);
+  }
+
+  @Test(expected = JsonSyntaxException.class)
+  public void testDecode_invalidType() throws IOException {
+    RestUtil.decode(gson, toStream("{aString: 'abc', anInt: 'foo'}"), SampleData.class);
+  }
+
+  private InputStream toStream(String body) {
+    return new ByteArrayInputStream(body.getBytes(Charset.forName("UTF-8")));
+  }
+}
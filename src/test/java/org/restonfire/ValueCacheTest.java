@@ -0,0 +1,148 @@
+package org.restonfire;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for ValueCache.
+ */
+public class ValueCacheTest {
+
+  private final ValueCache cache = ValueCache.create(new ValueCacheSettings(2, 1, TimeUnit.HOURS));
+
+  @Test
+  public void testDisabled() {
+    final ValueCache disabled = ValueCache.disabled();
+
+    disabled.put("foo", String.class, "bar", disabled.getGeneration());
+
+    assertFalse(disabled.isEnabled());
+    assertNull(disabled.get("foo", String.class));
+    assertEquals(0, disabled.getStatistics().getMissCount());
+    assertSame(disabled, ValueCache.create(null));
+  }
+
+  @Test
+  public void testGet_hitAndMiss() {
+    assertNull(cache.get("foo/bar", String.class));
+
+    cache.put("foo/bar", String.class, "value", cache.getGeneration());
+
+    assertEquals("value", cache.get("/foo/bar/", String.class).getValue());
+    assertNull(cache.get("foo/bar", Object.class));
+
+    final ValueCacheStatistics statistics = cache.getStatistics();
+    assertEquals(1, statistics.getHitCount());
+    assertEquals(2, statistics.getMissCount());
+    assertEquals(1, statistics.getSize());
+  }
+
+  @Test
+  public void testGet_nullValue() {
+    cache.put("foo", String.class, null, cache.getGeneration());
+
+    final ValueCache.CachedValue result = cache.get("foo", String.class);
+    assertNotNull(result);
+    assertNull(result.getValue());
+  }
+
+  @Test
+  public void testGet_expired() throws Exception {
+    final ValueCache shortLivedCache = ValueCache.create(new ValueCacheSettings(2, 1, TimeUnit.MILLISECONDS));
+    shortLivedCache.put("foo", String.class, "value", shortLivedCache.getGeneration());
+
+    Thread.sleep(5);
+
+    assertNull(shortLivedCache.get("foo", String.class));
+    assertEquals(1, shortLivedCache.getStatistics().getEvictionCount());
+    assertEquals(0, shortLivedCache.getStatistics().getSize());
+  }
+
+  @Test
+  public void testPut_evictsLeastRecentlyUsed() {
+    cache.put("a", String.class, "a", cache.getGeneration());
+    cache.put("b", String.class, "b", cache.getGeneration());
+    cache.get("a", String.class);
+    cache.put("c", String.class, "c", cache.getGeneration());
+
+    assertNotNull(cache.get("a", String.class));
+    assertNull(cache.get("b", String.class));
+    assertNotNull(cache.get("c", String.class));
+    assertEquals(1, cache.getStatistics().getEvictionCount());
+  }
+
+  @Test
+  public void testPut_ignoredAfterInvalidation() {
+    final long generation = cache.getGeneration();
+
+    cache.invalidate("unrelated/path");
+    cache.put("foo", String.class, "stale", generation);
+
+    assertNull(cache.get("foo", String.class));
+  }
+
+  @Test
+  public void testInvalidate_relatedPaths() {
+    cache.put("foo", String.class, "ancestor", cache.getGeneration());
+    cache.put("foo/bar/baz", String.class, "descendant", cache.getGeneration());
+
+    cache.invalidate("foo/bar");
+
+    assertNull(cache.get("foo", String.class));
+    assertNull(cache.get("foo/bar/baz", String.class));
+  }
+
+  @Test
+  public void testInvalidate_unrelatedPaths() {
+    cache.put("foo/barbaz", String.class, "sibling", cache.getGeneration());
+    cache.put("other", String.class, "other", cache.getGeneration());
+
+    cache.invalidate("foo/bar");
+
+    assertEquals("sibling", cache.get("foo/barbaz", String.class).getValue());
+    assertEquals("other", cache.get("other", String.class).getValue());
+  }
+
+  @Test
+  public void testInvalidate_root() {
+    cache.put("foo", String.class, "value", cache.getGeneration());
+
+    cache.invalidate("/");
+
+    assertNull(cache.get("foo", String.class));
+  }
+
+  @Test
+  public void testInvalidate_allTypesOfLocation() {
+    cache.put("foo", String.class, "value", cache.getGeneration());
+    cache.put("foo", Integer.class, 1, cache.getGeneration());
+
+    cache.invalidate("foo");
+
+    assertNull(cache.get("foo", String.class));
+    assertNull(cache.get("foo", Integer.class));
+    assertEquals(0, cache.getStatistics().getSize());
+  }
+
+  @Test
+  public void testInvalidate_afterEviction() {
+    cache.put("foo/a", String.class, "a", cache.getGeneration());
+    cache.put("foo/b", String.class, "b", cache.getGeneration());
+    cache.put("other", String.class, "other", cache.getGeneration());
+
+    cache.invalidate("foo");
+    cache.put("foo/a", String.class, "a", cache.getGeneration());
+
+    assertEquals(2, cache.getStatistics().getSize());
+    assertEquals("a", cache.get("foo/a", String.class).getValue());
+    assertEquals("other", cache.get("other", String.class).getValue());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSettings_invalidSize() {
+    new ValueCacheSettings(0, 1, TimeUnit.SECONDS);
+  }
+}
@@ -0,0 +1,269 @@
+package org.restonfire;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import org.apache.commons.lang3.mutable.MutableObject;
+import org.jdeferred.Deferred;
+import org.jdeferred.DoneCallback;
+import org.jdeferred.FailCallback;
+import org.jdeferred.Promise;
+import org.jdeferred.impl.DeferredObject;
+import org.junit.Test;
+import org.restonfire.exceptions.FirebaseInvalidStateException;
+import org.restonfire.exceptions.FirebaseRestException;
+import org.restonfire.exceptions.FirebaseRuntimeException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test class for WriteCoalescer.
+ */
+public class WriteCoalescerTest {
+
+  private final Gson gson = new Gson();
+  private final WriteCoalescer coalescer = WriteCoalescer.create(new WriteCoalescingSettings(0, TimeUnit.MILLISECONDS));
+  private final List<ExecutedRequest> executedRequests = Collections.synchronizedList(new ArrayList<ExecutedRequest>());
+
+  private final WriteCoalescer.Request request = new WriteCoalescer.Request() {
+    @Override
+    public Promise<Void, FirebaseRuntimeException, Void> execute(boolean set, JsonElement value) {
+      final ExecutedRequest executedRequest = new ExecutedRequest(set, value.toString());
+      executedRequests.add(executedRequest);
+      return executedRequest.deferred.promise();
+    }
+  };
+
+  @Test
+  public void testSubmit_idleLocationIsSentImmediately() {
+    final Promise<String, FirebaseRuntimeException, Void> result = submitSet("foo", "first");
+
+    assertEquals(1, executedRequests.size());
+    assertTrue(executedRequests.get(0).set);
+    assertEquals("\"first\"", executedRequests.get(0).body);
+
+    executedRequests.get(0).deferred.resolve(null);
+    assertEquals("first", getResult(result));
+  }
+
+  @Test
+  public void testSubmit_setsWhileInFlightAreMergedLastWins() {
+    final Promise<String, FirebaseRuntimeException, Void> first = submitSet("foo", "first");
+    final Promise<String, FirebaseRuntimeException, Void> second = submitSet("foo", "second");
+    final Promise<String, FirebaseRuntimeException, Void> third = submitSet("foo", "third");
+
+    assertEquals(1, executedRequests.size());
+
+    executedRequests.get(0).deferred.resolve(null);
+    assertEquals("first", getResult(first));
+    assertNull(getResult(second));
+
+    assertEquals(2, executedRequests.size());
+    assertEquals("\"third\"", executedRequests.get(1).body);
+
+    executedRequests.get(1).deferred.resolve(null);
+    assertEquals("second", getResult(second));
+    assertEquals("third", getResult(third));
+
+    final WriteCoalescingStatistics statistics = coalescer.getStatistics();
+    assertEquals(3, statistics.getSubmittedCount());
+    assertEquals(1, statistics.getAbsorbedCount());
+    assertEquals(2, statistics.getSentCount());
+  }
+
+  @Test
+  public void testSubmit_updatesAreMergedByKey() {
+    submitSet("foo", "blocking");
+    submitUpdate("foo", "{\"a\":1,\"b\":{\"x\":1}}");
+    submitUpdate("foo", "{\"a\":2,\"b/y\":2,\"c\":3}");
+
+    executedRequests.get(0).deferred.resolve(null);
+
+    assertEquals(2, executedRequests.size());
+    assertFalse(executedRequests.get(1).set);
+    assertEquals("{\"b\":{\"x\":1,\"y\":2},\"a\":2,\"c\":3}", executedRequests.get(1).body);
+  }
+
+  @Test
+  public void testSubmit_updateIsAppliedToPendingSet() {
+    submitSet("foo", "blocking");
+    submit("foo", true, "{\"a\":1,\"b\":2}");
+    submitUpdate("foo", "{\"b\":null,\"c\":3}");
+
+    executedRequests.get(0).deferred.resolve(null);
+
+    assertTrue(executedRequests.get(1).set);
+    assertEquals("{\"a\":1,\"c\":3}", executedRequests.get(1).body);
+  }
+
+  @Test
+  public void testSubmit_setReplacesPendingUpdate() {
+    submitSet("foo", "blocking");
+    submitUpdate("foo", "{\"a\":1}");
+    submitSet("foo", "replaced");
+
+    executedRequests.get(0).deferred.resolve(null);
+
+    assertTrue(executedRequests.get(1).set);
+    assertEquals("\"replaced\"", executedRequests.get(1).body);
+  }
+
+  @Test
+  public void testSubmit_differentLocationsAreIndependent() {
+    submitSet("foo", "first");
+    submitSet("bar", "second");
+
+    assertEquals(2, executedRequests.size());
+    assertEquals(0, coalescer.getStatistics().getAbsorbedCount());
+  }
+
+  @Test
+  public void testSubmit_failureRejectsAllMergedCallers() {
+    submitSet("foo", "blocking");
+    final Promise<String, FirebaseRuntimeException, Void> second = submitSet("foo", "second");
+    final Promise<String, FirebaseRuntimeException, Void> third = submitSet("foo", "third");
+
+    executedRequests.get(0).deferred.resolve(null);
+
+    final FirebaseInvalidStateException error = new FirebaseInvalidStateException(FirebaseRuntimeException.ErrorCode.UnsupportedStatusCode, "failed");
+    executedRequests.get(1).deferred.reject(error);
+
+    assertSame(error, getFailure(second));
+    assertSame(error, getFailure(third));
+
+    submitSet("foo", "fourth");
+    assertEquals(3, executedRequests.size());
+  }
+
+  @Test
+  public void testSubmit_requestThrowsRejectsAllMergedCallers() {
+    final IllegalStateException error = new IllegalStateException("closed");
+    final WriteCoalescer.Request failingRequest = new WriteCoalescer.Request() {
+      @Override
+      public Promise<Void, FirebaseRuntimeException, Void> execute(boolean set, JsonElement value) {
+        throw error;
+      }
+    };
+    submitSet("foo", "blocking");
+    final Promise<String, FirebaseRuntimeException, Void> second = coalescer.submit("foo", true, gson.toJsonTree("second"), "second", failingRequest);
+    final Promise<String, FirebaseRuntimeException, Void> third = coalescer.submit("foo", true, gson.toJsonTree("third"), "third", failingRequest);
+
+    executedRequests.get(0).deferred.resolve(null);
+
+    final FirebaseRuntimeException failure = getFailure(second);
+    assertTrue(failure instanceof FirebaseRestException);
+    assertEquals(FirebaseRuntimeException.ErrorCode.RequestFailed, failure.getErrorCode());
+    assertSame(error, failure.getCause());
+    assertSame(failure, getFailure(third));
+
+    // the location is idle again
+    submitSet("foo", "fourth");
+    assertEquals(2, executedRequests.size());
+  }
+
+  @Test
+  public void testSubmit_window() throws Exception {
+    final WriteCoalescer windowCoalescer = WriteCoalescer.create(new WriteCoalescingSettings(50, TimeUnit.MILLISECONDS));
+
+    final Promise<String, FirebaseRuntimeException, Void> first = windowCoalescer.submit("foo", true, gson.toJsonTree("first"), "first", request);
+    final Promise<String, FirebaseRuntimeException, Void> second = windowCoalescer.submit("foo", true, gson.toJsonTree("second"), "second", request);
+
+    assertEquals(0, executedRequests.size());
+
+    final long timeout = System.currentTimeMillis() + 5000;
+    while (executedRequests.isEmpty() && System.currentTimeMillis() < timeout) {
+      Thread.sleep(10);
+    }
+
+    assertEquals(1, executedRequests.size());
+    assertEquals("\"second\"", executedRequests.get(0).body);
+
+    executedRequests.get(0).deferred.resolve(null);
+    assertEquals("first", getResult(first));
+    assertEquals("second", getResult(second));
+  }
+
+  @Test
+  public void testAwaitWrites_waitsForRelatedLocations() {
+    submitSet("foo", "first");
+    submitSet("foo", "second");
+    submitSet("foo/bar", "child");
+    submitSet("other", "unrelated");
+
+    final Promise<Void, FirebaseRuntimeException, Void> awaited = coalescer.awaitWrites("foo");
+    assertEquals(Promise.State.PENDING, awaited.state());
+
+    // the pending write of "foo" is sent after its write in flight
+    executedRequests.get(0).deferred.resolve(null);
+    executedRequests.get(1).deferred.resolve(null);
+    assertEquals(Promise.State.PENDING, awaited.state());
+
+    executedRequests.get(3).deferred.reject(new FirebaseInvalidStateException(FirebaseRuntimeException.ErrorCode.UnsupportedStatusCode, "failed"));
+    assertEquals(Promise.State.RESOLVED, awaited.state());
+    assertEquals("\"second\"", executedRequests.get(3).body);
+  }
+
+  @Test
+  public void testAwaitWrites_idle() {
+    submitSet("other", "unrelated");
+
+    assertEquals(Promise.State.RESOLVED, coalescer.awaitWrites("foo").state());
+  }
+
+  @Test
+  public void testDisabled() {
+    assertFalse(WriteCoalescer.disabled().isEnabled());
+    assertSame(WriteCoalescer.disabled(), WriteCoalescer.create(null));
+    assertTrue(coalescer.isEnabled());
+  }
+
+  private Promise<String, FirebaseRuntimeException, Void> submitSet(String path, String value) {
+    return coalescer.submit(path, true, gson.toJsonTree(value), value, request);
+  }
+
+  private Promise<String, FirebaseRuntimeException, Void> submitUpdate(String path, String json) {
+    return submit(path, false, json);
+  }
+
+  private Promise<String, FirebaseRuntimeException, Void> submit(String path, boolean set, String json) {
+    return coalescer.submit(path, set, new JsonParser().parse(json), json, request);
+  }
+
+  private String getResult(Promise<String, FirebaseRuntimeException, Void> promise) {
+    final MutableObject<String> result = new MutableObject<>();
+    promise.done(new DoneCallback<String>() {
+      @Override
+      public void onDone(String value) {
+        result.setValue(value);
+      }
+    });
+    return result.getValue();
+  }
+
+  private FirebaseRuntimeException getFailure(Promise<String, FirebaseRuntimeException, Void> promise) {
+    final MutableObject<FirebaseRuntimeException> result = new MutableObject<>();
+    promise.fail(new FailCallback<FirebaseRuntimeException>() {
+      @Override
+      public void onFail(FirebaseRuntimeException value) {
+        result.setValue(value);
+      }
+    });
+    return result.getValue();
+  }
+
+  private static final class ExecutedRequest {
+    private final boolean set;
+    private final String body;
+    private final Deferred<Void, FirebaseRuntimeException, Void> deferred = new DeferredObject<>();
+
+    private ExecutedRequest(boolean set, String body) {
+      this.set = set;
+      this.body = body;
+    }
+  }
+}
@@ -8,8 +8,21 @@ import org.apache.commons.lang3.NotImplementedException;
  * Mock class for HttpResponseHeaders.
  */
 public class FakeResponseHeaders extends HttpResponseHeaders {
+  private final FluentCaseInsensitiveStringsMap headers;
+
+  public FakeResponseHeaders() {
+    this(null);
+  }
+
+  public FakeResponseHeaders(FluentCaseInsensitiveStringsMap headers) {
+    this.headers = headers;
+  }
+
   @Override
   public FluentCaseInsensitiveStringsMap getHeaders() {
-    throw new NotImplementedException("getHeaders");
+    if (headers == null) {
+      throw new NotImplementedException("getHeaders");
+    }
+    return headers;
   }
 }
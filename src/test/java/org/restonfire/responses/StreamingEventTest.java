@@ -6,10 +6,15 @@ import com.google.gson.reflect.TypeToken;
 import org.junit.Test;
 import org.restonfire.testdata.SampleData;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Unit tests for {@link StreamingEvent}.
@@ -34,13 +39,13 @@ public class StreamingEventTest {
 
   @Test
   public void testGetEventData_set_deserializedValues() {
-    assertEquals(intAsDouble, (Object) createRespose(StreamingEvent.EventType.Set, intResponseStr).getEventData().getData());
+    assertEquals(intAsDouble, createRespose(StreamingEvent.EventType.Set, intResponseStr).getEventData().getData());
     assertEquals(sampleDataAsMap, createRespose(StreamingEvent.EventType.Set, sampleDataString).getEventData().getData());
   }
 
   @Test
   public void testGetEventData_update_deserializedValues() {
-    assertEquals(intAsDouble, (Object) createRespose(StreamingEvent.EventType.Update, intResponseStr).getEventData().getData());
+    assertEquals(intAsDouble, createRespose(StreamingEvent.EventType.Update, intResponseStr).getEventData().getData());
     assertEquals(sampleDataAsMap, createRespose(StreamingEvent.EventType.Update, sampleDataString).getEventData().getData());
   }
 
@@ -62,6 +67,35 @@ public class StreamingEventTest {
     assertEquals("/", createRespose(StreamingEvent.EventType.Update, intResponseStr).getEventData().getPath());
   }
 
+  @Test
+  public void testGetEventData_memoizedPerType() {
+    final StreamingEvent event = createRespose(StreamingEvent.EventType.Set, sampleDataString);
+    final StreamingEventData<SampleData> typedData = event.getEventData(new TypeToken<StreamingEventData<SampleData>>() { });
+
+    assertSame(typedData, event.getEventData(new TypeToken<StreamingEventData<SampleData>>() { }));
+    assertSame(event.getEventData(), event.getEventData());
+    assertNotSame(typedData, event.getEventData());
+    assertEquals(sampleDataAsMap, event.getEventData().getData());
+  }
+
+  @Test
+  public void testGetEventDataBuffer_fromBytes() {
+    final byte[] bytes = sampleDataString.getBytes(Charset.forName("UTF-8"));
+    final StreamingEvent event = StreamingEvent.fromBytes(gson, StreamingEvent.EventType.Set, bytes);
+
+    final ByteBuffer buffer = event.getEventDataBuffer();
+    assertTrue(buffer.isReadOnly());
+    assertEquals(ByteBuffer.wrap(bytes), buffer);
+
+    assertEquals(sampleDataString, event.getSerialzedEventData());
+    assertEquals(sampleData, event.getEventData(new TypeToken<StreamingEventData<SampleData>>() { }).getData());
+  }
+
+  @Test
+  public void testGetEventDataBuffer_fromString() {
+    assertEquals(ByteBuffer.wrap(intResponseStr.getBytes(Charset.forName("UTF-8"))), createRespose(StreamingEvent.EventType.Set, intResponseStr).getEventDataBuffer());
+    assertNull(createRespose(StreamingEvent.EventType.Resync, null).getEventDataBuffer());
+  }
 
   private StreamingEvent createRespose(StreamingEvent.EventType eventType, String eventData) {
     return new StreamingEvent(gson, eventType, eventData);
@@ -0,0 +1,54 @@
+package org.restonfire.testutils;
+
+import org.restonfire.transport.HttpHeaders;
+import org.restonfire.transport.HttpResponse;
+import org.restonfire.transport.HttpResponseHandler;
+import org.restonfire.transport.HttpStatus;
+
+/**
+ * {@link HttpResponseHandler} recording the result of a request.
+ */
+public class RecordingHandler extends HttpResponseHandler {
+
+  private volatile boolean sent;
+  private volatile HttpStatus status;
+  private volatile HttpResponse response;
+  private volatile Throwable error;
+
+  @Override
+  public void onRequestSent() {
+    sent = true;
+  }
+
+  @Override
+  public boolean onHeadersReceived(HttpStatus status, HttpHeaders headers) {
+    this.status = status;
+    return true;
+  }
+
+  @Override
+  public void onCompleted(HttpResponse response) {
+    this.response = response;
+  }
+
+  @Override
+  public void onThrowable(Throwable t) {
+    this.error = t;
+  }
+
+  public boolean isSent() {
+    return sent;
+  }
+
+  public HttpStatus getStatus() {
+    return status;
+  }
+
+  public HttpResponse getResponse() {
+    return response;
+  }
+
+  public Throwable getError() {
+    return error;
+  }
+}
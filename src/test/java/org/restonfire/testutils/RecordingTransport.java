@@ -0,0 +1,99 @@
+package org.restonfire.testutils;
+
+import org.restonfire.transport.HttpCall;
+import org.restonfire.transport.HttpRequest;
+import org.restonfire.transport.HttpResponseHandler;
+import org.restonfire.transport.HttpStream;
+import org.restonfire.transport.HttpStreamHandler;
+import org.restonfire.transport.HttpTransport;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * {@link HttpTransport} recording the requests sent to it, whose responses are passed to the recorded handlers by
+ * the test. The requests may be sent by other threads, i.e. the retries and hedged requests of the scheduler thread.
+ */
+public class RecordingTransport implements HttpTransport {
+
+  private final List<HttpRequest> requests = new CopyOnWriteArrayList<>();
+  private final List<HttpResponseHandler> handlers = new CopyOnWriteArrayList<>();
+  private final List<RecordingCall> calls = new CopyOnWriteArrayList<>();
+  private volatile boolean closed;
+
+  @Override
+  public HttpCall execute(HttpRequest request, HttpResponseHandler handler) {
+    final RecordingCall call = new RecordingCall(handler);
+    requests.add(request);
+    handlers.add(handler);
+    calls.add(call);
+    return call;
+  }
+
+  @Override
+  public HttpStream stream(HttpRequest request, HttpStreamHandler handler) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+  }
+
+  public List<HttpRequest> getRequests() {
+    return requests;
+  }
+
+  public List<HttpResponseHandler> getHandlers() {
+    return handlers;
+  }
+
+  public boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * @return <code>true</code> if the request with the given index was cancelled.
+   */
+  public boolean isCancelled(int index) {
+    return calls.get(index).cancelled;
+  }
+
+  /**
+   * Waits up to 5 seconds until the given number of requests was sent.
+   */
+  public void awaitRequests(int count) throws InterruptedException {
+    final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+    while (handlers.size() < count && System.currentTimeMillis() < deadline) {
+      Thread.sleep(1);
+    }
+    assertEquals(count, handlers.size());
+  }
+
+  /**
+   * {@link HttpCall} reporting its cancellation to the handler, as the transports do.
+   */
+  private static final class RecordingCall implements HttpCall {
+    private final HttpResponseHandler handler;
+    private volatile boolean cancelled;
+
+    private RecordingCall(HttpResponseHandler handler) {
+      this.handler = handler;
+    }
+
+    @Override
+    public void cancel() {
+      synchronized (this) {
+        if (cancelled) {
+          return;
+        }
+        cancelled = true;
+      }
+      handler.onThrowable(new CancellationException());
+    }
+  }
+}
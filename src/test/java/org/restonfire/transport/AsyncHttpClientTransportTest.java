@@ -0,0 +1,218 @@
+package org.restonfire.transport;
+
+import com.ning.http.client.AsyncCompletionHandler;
+import com.ning.http.client.AsyncHandler;
+import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.HttpResponseBodyPart;
+import com.ning.http.client.HttpResponseStatus;
+import com.ning.http.client.ListenableFuture;
+import com.ning.http.client.Response;
+import org.apache.commons.lang3.mutable.MutableObject;
+import org.jmock.Expectations;
+import org.junit.Test;
+import org.restonfire.testutils.AbstractMockTestCase;
+import org.restonfire.testutils.MockObjectHelper;
+
+import java.net.HttpURLConnection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link AsyncHttpClientTransport} class.
+ */
+public class AsyncHttpClientTransportTest extends AbstractMockTestCase {
+
+  private static final String URL = "https://mynamespace.firebaseio.com/foo.json";
+
+  private final AsyncHttpClient asyncHttpClient = mock(AsyncHttpClient.class);
+  private final AsyncHttpClient.BoundRequestBuilder requestBuilder = mock(AsyncHttpClient.BoundRequestBuilder.class);
+
+  private final AsyncHttpClientTransport transport = new AsyncHttpClientTransport(asyncHttpClient);
+
+  @Test
+  public void testExecute() throws Exception {
+    final MutableObject<AsyncCompletionHandler<Void>> capturedHandler = new MutableObject<>();
+    final MutableObject<HttpResponse> capturedResponse = new MutableObject<>();
+    final Response response = mock(Response.class);
+
+    addExpectations(new Expectations() {{
+      oneOf(asyncHttpClient).preparePatch(URL); will(returnValue(requestBuilder));
+      oneOf(requestBuilder).setBody("{}"); will(returnValue(requestBuilder));
+      oneOf(requestBuilder).addQueryParam("auth", "token"); will(returnValue(requestBuilder));
+      oneOf(requestBuilder).addHeader("X-Firebase-ETag", "true"); will(returnValue(requestBuilder));
+      oneOf(requestBuilder).execute(with(any(AsyncCompletionHandler.class))); will(MockObjectHelper.capture(capturedHandler));
+      allowing(response).getStatusCode(); will(returnValue(HttpURLConnection.HTTP_OK));
+      allowing(response).getResponseBody(); will(returnValue("{}"));
+    }});
+
+    transport.execute(
+      new HttpRequest(HttpRequest.PATCH, URL).setBody("{}").addQueryParam("auth", "token").addHeader("X-Firebase-ETag", "true"),
+      new HttpResponseHandler() {
+        @Override
+        public void onCompleted(HttpResponse response) {
+          capturedResponse.setValue(response);
+        }
+      }
+    );
+
+    capturedHandler.getValue().onCompleted(response);
+    assertEquals(HttpURLConnection.HTTP_OK, capturedResponse.getValue().getStatusCode());
+    assertEquals("{}", capturedResponse.getValue().getResponseBody());
+  }
+
+  @Test
+  public void testExecute_aborted() throws Exception {
+    final MutableObject<AsyncCompletionHandler<Void>> capturedHandler = new MutableObject<>();
+    final MutableObject<HttpResponse> capturedResponse = new MutableObject<>();
+
+    expectGet(capturedHandler);
+    transport.execute(new HttpRequest(HttpRequest.GET, URL), new HttpResponseHandler() {
+      @Override
+      public boolean onHeadersReceived(HttpStatus status, HttpHeaders headers) {
+        return false;
+      }
+
+      @Override
+      public void onCompleted(HttpResponse response) {
+        capturedResponse.setValue(response);
+      }
+    });
+
+    final AsyncCompletionHandler<Void> handler = capturedHandler.getValue();
+    assertEquals(AsyncHandler.STATE.CONTINUE, handler.onStatusReceived(createStatus(HttpURLConnection.HTTP_OK)));
+    assertEquals(AsyncHandler.STATE.ABORT, handler.onHeadersReceived(null));
+
+    // the aborted request is completed by the client without a body
+    handler.onCompleted(mock(Response.class));
+    assertNull(capturedResponse.getValue());
+  }
+
+  @Test
+  public void testExecute_cancel() {
+    final ListenableFuture<Void> future = mock(ListenableFuture.class);
+    addExpectations(new Expectations() {{
+      oneOf(asyncHttpClient).prepareGet(URL); will(returnValue(requestBuilder));
+      oneOf(requestBuilder).execute(with(any(AsyncCompletionHandler.class))); will(returnValue(future));
+      oneOf(future).isDone(); will(returnValue(false));
+      oneOf(future).cancel(true); will(returnValue(true));
+      // the connection of a completed request is not closed
+      oneOf(future).isDone(); will(returnValue(true));
+    }});
+
+    final HttpCall call = transport.execute(new HttpRequest(HttpRequest.GET, URL), new HttpResponseHandler() {
+      @Override
+      public void onCompleted(HttpResponse response) {
+        // do nothing
+      }
+    });
+    call.cancel();
+    call.cancel();
+  }
+
+  @Test
+  public void testStream() throws Exception {
+    final MutableObject<AsyncHandler<Void>> capturedHandler = new MutableObject<>();
+    final ListenableFuture<Void> future = mock(ListenableFuture.class);
+    final HttpResponseBodyPart bodyPart = mock(HttpResponseBodyPart.class);
+    final RecordingStreamHandler streamHandler = new RecordingStreamHandler();
+
+    addExpectations(new Expectations() {{
+      oneOf(asyncHttpClient).prepareGet(URL); will(returnValue(requestBuilder));
+      oneOf(requestBuilder).setFollowRedirects(true); will(returnValue(requestBuilder));
+      oneOf(requestBuilder).execute(with(any(AsyncHandler.class)));
+      will(doAll(MockObjectHelper.capture(capturedHandler), returnValue(future)));
+      allowing(bodyPart).getBodyPartBytes(); will(returnValue(new byte[] {1, 2, 3}));
+    }});
+
+    final HttpStream stream = transport.stream(new HttpRequest(HttpRequest.GET, URL).setFollowRedirects(true), streamHandler);
+
+    final AsyncHandler<Void> handler = capturedHandler.getValue();
+    assertEquals(AsyncHandler.STATE.CONTINUE, handler.onStatusReceived(createStatus(HttpURLConnection.HTTP_OK)));
+    assertEquals(AsyncHandler.STATE.CONTINUE, handler.onBodyPartReceived(bodyPart));
+    assertEquals(3, streamHandler.receivedBytes);
+
+    addExpectations(new Expectations() {{
+      oneOf(future).done();
+      oneOf(future).cancel(true); will(returnValue(true));
+    }});
+    stream.close();
+    stream.cancel();
+
+    handler.onCompleted();
+    assertTrue(streamHandler.completed);
+  }
+
+  @Test
+  public void testStream_abortedByStatus() throws Exception {
+    final MutableObject<AsyncHandler<Void>> capturedHandler = new MutableObject<>();
+    final RecordingStreamHandler streamHandler = new RecordingStreamHandler();
+    streamHandler.accepted = false;
+
+    addExpectations(new Expectations() {{
+      oneOf(asyncHttpClient).prepareGet(URL); will(returnValue(requestBuilder));
+      oneOf(requestBuilder).execute(with(any(AsyncHandler.class))); will(MockObjectHelper.capture(capturedHandler));
+    }});
+
+    transport.stream(new HttpRequest(HttpRequest.GET, URL), streamHandler);
+
+    assertEquals(AsyncHandler.STATE.ABORT, capturedHandler.getValue().onStatusReceived(createStatus(HttpURLConnection.HTTP_UNAUTHORIZED)));
+    assertFalse(streamHandler.completed);
+  }
+
+  @Test
+  public void testClose() {
+    addExpectations(new Expectations() {{
+      oneOf(asyncHttpClient).close();
+    }});
+
+    transport.close();
+  }
+
+  private void expectGet(final MutableObject<AsyncCompletionHandler<Void>> capturedHandler) {
+    addExpectations(new Expectations() {{
+      oneOf(asyncHttpClient).prepareGet(URL); will(returnValue(requestBuilder));
+      oneOf(requestBuilder).execute(with(any(AsyncCompletionHandler.class))); will(MockObjectHelper.capture(capturedHandler));
+    }});
+  }
+
+  private HttpResponseStatus createStatus(final int statusCode) {
+    final HttpResponseStatus status = mock(HttpResponseStatus.class);
+    addExpectations(new Expectations() {{
+      allowing(status).getStatusCode(); will(returnValue(statusCode));
+    }});
+
+    return status;
+  }
+
+  /**
+   * {@link HttpStreamHandler} recording the callbacks it received.
+   */
+  private static final class RecordingStreamHandler implements HttpStreamHandler {
+    private boolean accepted = true;
+    private int receivedBytes;
+    private boolean completed;
+
+    @Override
+    public boolean onStatusReceived(HttpStatus status) {
+      return accepted;
+    }
+
+    @Override
+    public void onBodyPartReceived(byte[] bytes, int offset, int length) {
+      receivedBytes += length;
+    }
+
+    @Override
+    public void onCompleted() {
+      completed = true;
+    }
+
+    @Override
+    public void onThrowable(Throwable t) {
+      throw new AssertionError(t);
+    }
+  }
+}
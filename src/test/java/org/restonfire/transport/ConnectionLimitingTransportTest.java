@@ -0,0 +1,151 @@
+package org.restonfire.transport;
+
+import org.jmock.Expectations;
+import org.junit.Test;
+import org.restonfire.testutils.AbstractMockTestCase;
+import org.restonfire.testutils.RecordingHandler;
+import org.restonfire.testutils.RecordingTransport;
+
+import java.net.MalformedURLException;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link ConnectionLimitingTransport} class.
+ */
+public class ConnectionLimitingTransportTest extends AbstractMockTestCase {
+
+  private static final String HOST_URL = "https://mynamespace.firebaseio.com";
+
+  private final RecordingTransport delegate = new RecordingTransport();
+  private final ConnectionLimitingTransport transport = new ConnectionLimitingTransport(delegate, 2);
+
+  @Test
+  public void testExecute_queuedUntilReleased() {
+    final RecordingHandler first = execute(HOST_URL + "/a.json");
+    final RecordingHandler second = execute(HOST_URL + "/b.json");
+    final RecordingHandler third = execute(HOST_URL + "/c.json");
+
+    assertEquals(2, delegate.getHandlers().size());
+    assertEquals(1, transport.getQueuedRequestCount());
+
+    assertTrue(first.isSent());
+    assertFalse(third.isSent());
+
+    final HttpResponse response = mock(HttpResponse.class);
+    delegate.getHandlers().get(0).onCompleted(response);
+    assertSame(response, first.getResponse());
+
+    // the released slot is used by the queued request
+    assertTrue(third.isSent());
+    assertEquals(3, delegate.getHandlers().size());
+    assertEquals(HOST_URL + "/c.json", delegate.getRequests().get(2).getUrl());
+    assertEquals(0, transport.getQueuedRequestCount());
+
+    delegate.getHandlers().get(1).onThrowable(new IllegalStateException());
+    delegate.getHandlers().get(2).onCompleted(response);
+    assertTrue(second.getError() instanceof IllegalStateException);
+    assertSame(response, third.getResponse());
+
+    // all slots are free again
+    execute(HOST_URL + "/d.json");
+    execute(HOST_URL + "/e.json");
+    assertEquals(5, delegate.getHandlers().size());
+  }
+
+  @Test
+  public void testExecute_limitPerHost() {
+    execute(HOST_URL + "/a.json");
+    execute(HOST_URL + "/b.json");
+    execute("https://other.firebaseio.com/a.json");
+    execute("https://MYNAMESPACE.firebaseio.com:443/c.json");
+
+    assertEquals(3, delegate.getHandlers().size());
+    assertEquals(1, transport.getQueuedRequestCount());
+  }
+
+  @Test
+  public void testExecute_abortedRequestReleasesSlot() {
+    final HttpResponseHandler handler = new RecordingHandler() {
+      @Override
+      public boolean onHeadersReceived(HttpStatus status, HttpHeaders headers) {
+        return false;
+      }
+    };
+    transport.execute(new HttpRequest(HttpRequest.GET, HOST_URL + "/a.json"), handler);
+    execute(HOST_URL + "/b.json");
+    execute(HOST_URL + "/c.json");
+
+    delegate.getHandlers().get(0).onHeadersReceived(null, null);
+    assertEquals(3, delegate.getHandlers().size());
+  }
+
+  @Test
+  public void testExecute_cancel() {
+    final RecordingHandler sent = new RecordingHandler();
+    final RecordingHandler queued = new RecordingHandler();
+    final HttpCall sentCall = transport.execute(new HttpRequest(HttpRequest.GET, HOST_URL + "/a.json"), sent);
+    execute(HOST_URL + "/b.json");
+    final HttpCall queuedCall = transport.execute(new HttpRequest(HttpRequest.GET, HOST_URL + "/c.json"), queued);
+
+    queuedCall.cancel();
+    assertTrue(queued.getError() instanceof CancellationException);
+    assertEquals(0, transport.getQueuedRequestCount());
+
+    // the cancelled request releases its slot
+    sentCall.cancel();
+    assertTrue(delegate.isCancelled(0));
+    assertTrue(sent.getError() instanceof CancellationException);
+    execute(HOST_URL + "/d.json");
+    assertEquals(3, delegate.getHandlers().size());
+  }
+
+  @Test
+  public void testExecute_invalidUrl() {
+    final RecordingHandler handler = execute("invalid");
+
+    assertTrue(handler.getError() instanceof MalformedURLException);
+    assertEquals(0, delegate.getHandlers().size());
+  }
+
+  @Test
+  public void testStream() {
+    final HttpTransport streamDelegate = mock(HttpTransport.class);
+    final HttpStream stream = mock(HttpStream.class);
+    final HttpStreamHandler handler = mock(HttpStreamHandler.class);
+    final HttpRequest request = new HttpRequest(HttpRequest.GET, HOST_URL + "/a.json");
+
+    addExpectations(new Expectations() {{
+      oneOf(streamDelegate).stream(request, handler); will(returnValue(stream));
+    }});
+
+    assertSame(stream, new ConnectionLimitingTransport(streamDelegate, 1).stream(request, handler));
+  }
+
+  @Test
+  public void testClose() {
+    execute(HOST_URL + "/a.json");
+    execute(HOST_URL + "/b.json");
+    final RecordingHandler queued = execute(HOST_URL + "/c.json");
+
+    transport.close();
+
+    assertTrue(delegate.isClosed());
+    assertTrue(queued.getError() instanceof CancellationException);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructor_invalidLimit() {
+    new ConnectionLimitingTransport(delegate, 0);
+  }
+
+  private RecordingHandler execute(String url) {
+    final RecordingHandler handler = new RecordingHandler();
+    transport.execute(new HttpRequest(HttpRequest.GET, url), handler);
+    return handler;
+  }
+}
@@ -0,0 +1,355 @@
+package org.restonfire.transport;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link UrlConnectionTransport} class, using a HTTP server on the loopback interface.
+ */
+public class UrlConnectionTransportTest {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final long TIMEOUT_SECONDS = 10;
+
+  private final BlockingQueue<String> receivedRequests = new LinkedBlockingQueue<>();
+  private final CountDownLatch streamFinished = new CountDownLatch(1);
+  private final UrlConnectionTransport transport = new UrlConnectionTransport();
+  private HttpServer server;
+
+  @Before
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/value", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        receivedRequests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI()
+          + " " + exchange.getRequestHeaders().getFirst("X-HTTP-Method-Override")
+          + " " + readBody(exchange.getRequestBody()));
+
+        final byte[] body = "{\"a\":1}".getBytes(UTF_8);
+        exchange.getResponseHeaders().add("ETag", "eTag1");
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+          out.write(body);
+        }
+      }
+    });
+    server.createContext("/denied", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        final byte[] body = "{\"error\":\"Permission denied\"}".getBytes(UTF_8);
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_UNAUTHORIZED, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+          out.write(body);
+        }
+      }
+    });
+    server.createContext("/stalled", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        receivedRequests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI());
+        try {
+          // Does not respond until the client disconnected
+          streamFinished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } finally {
+          exchange.close();
+        }
+      }
+    });
+    server.createContext("/stream", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+          out.write("event: keep-alive\ndata: null\n\n".getBytes(UTF_8));
+          out.flush();
+          // Keeps the stream open until the client disconnected
+          streamFinished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } finally {
+          exchange.close();
+        }
+      }
+    });
+    server.start();
+  }
+
+  @After
+  public void tearDown() {
+    streamFinished.countDown();
+    transport.close();
+    server.stop(0);
+  }
+
+  @Test
+  public void testExecute_get() throws Exception {
+    final ResponseCollector collector = new ResponseCollector();
+    transport.execute(new HttpRequest(HttpRequest.GET, getUrl("/value")).addQueryParam("orderBy", "\"$key\""), collector);
+
+    final HttpResponse response = collector.await();
+    assertEquals(HttpURLConnection.HTTP_OK, response.getStatusCode());
+    assertEquals("eTag1", response.getHeader("ETag"));
+    assertEquals("{\"a\":1}", response.getResponseBody());
+    assertEquals("GET /value?orderBy=%22%24key%22 null ", receivedRequests.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testExecute_patch() throws Exception {
+    final ResponseCollector collector = new ResponseCollector();
+    transport.execute(new HttpRequest(HttpRequest.PATCH, getUrl("/value")).setBody("{\"b\":\"\u00e4\"}"), collector);
+
+    assertEquals(HttpURLConnection.HTTP_OK, collector.await().getStatusCode());
+    assertEquals("POST /value PATCH {\"b\":\"\u00e4\"}", receivedRequests.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testExecute_errorStatus() throws Exception {
+    final ResponseCollector collector = new ResponseCollector();
+    transport.execute(new HttpRequest(HttpRequest.GET, getUrl("/denied")), collector);
+
+    final HttpResponse response = collector.await();
+    assertEquals(HttpURLConnection.HTTP_UNAUTHORIZED, response.getStatusCode());
+    assertEquals("{\"error\":\"Permission denied\"}", response.getResponseBody());
+  }
+
+  @Test
+  public void testExecute_aborted() throws Exception {
+    final CountDownLatch headersReceived = new CountDownLatch(1);
+    final ResponseCollector collector = new ResponseCollector() {
+      @Override
+      public boolean onHeadersReceived(HttpStatus status, HttpHeaders headers) {
+        headersReceived.countDown();
+        return false;
+      }
+    };
+    transport.execute(new HttpRequest(HttpRequest.GET, getUrl("/value")), collector);
+
+    assertTrue(headersReceived.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertFalse(collector.done.await(100, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void testExecute_cancel() throws Exception {
+    final ResponseCollector collector = new ResponseCollector();
+    final HttpCall call = transport.execute(new HttpRequest(HttpRequest.GET, getUrl("/stalled")), collector);
+
+    assertNotNull(receivedRequests.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    call.cancel();
+
+    assertTrue(collector.done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertNull(collector.response);
+    assertTrue(collector.error instanceof CancellationException);
+  }
+
+  @Test
+  public void testExecute_cancelCompleted() throws Exception {
+    final ResponseCollector collector = new ResponseCollector();
+    final HttpCall call = transport.execute(new HttpRequest(HttpRequest.GET, getUrl("/value")), collector);
+
+    assertNotNull(collector.await());
+    call.cancel();
+    assertNull(collector.error);
+  }
+
+  @Test
+  public void testExecute_connectionRefused() throws Exception {
+    final ResponseCollector collector = new ResponseCollector();
+    server.stop(0);
+    transport.execute(new HttpRequest(HttpRequest.GET, getUrl("/value")), collector);
+
+    assertTrue(collector.done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertNull(collector.response);
+    assertTrue(collector.error instanceof IOException);
+  }
+
+  @Test
+  public void testExecute_invalidHeader() throws Exception {
+    final ResponseCollector collector = new ResponseCollector();
+    transport.execute(new HttpRequest(HttpRequest.GET, getUrl("/value")).addHeader("X-Test", "a\r\nb"), collector);
+
+    assertTrue(collector.done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertNull(collector.response);
+    assertTrue(collector.error instanceof IllegalArgumentException);
+  }
+
+  @Test
+  public void testExecute_handlerThrows() throws Exception {
+    final IllegalStateException error = new IllegalStateException("handler failed");
+    final ResponseCollector collector = new ResponseCollector() {
+      @Override
+      public boolean onHeadersReceived(HttpStatus status, HttpHeaders headers) {
+        throw error;
+      }
+    };
+    transport.execute(new HttpRequest(HttpRequest.GET, getUrl("/value")), collector);
+
+    assertTrue(collector.done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertSame(error, collector.error);
+  }
+
+  @Test
+  public void testStream_close() throws Exception {
+    final StreamCollector collector = new StreamCollector();
+    final HttpStream stream = transport.stream(new HttpRequest(HttpRequest.GET, getUrl("/stream")), collector);
+
+    assertEquals("event: keep-alive\ndata: null\n\n", collector.awaitBody(30));
+    assertEquals(HttpURLConnection.HTTP_OK, collector.statusCode);
+
+    stream.close();
+    assertTrue(collector.done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertTrue(collector.completed);
+    assertNull(collector.error);
+  }
+
+  @Test
+  public void testStream_cancel() throws Exception {
+    final StreamCollector collector = new StreamCollector();
+    final HttpStream stream = transport.stream(new HttpRequest(HttpRequest.GET, getUrl("/stream")), collector);
+
+    collector.awaitBody(30);
+    stream.cancel();
+
+    assertTrue(collector.done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertFalse(collector.completed);
+    assertTrue(collector.error instanceof CancellationException);
+  }
+
+  @Test
+  public void testStream_handlerThrows() throws Exception {
+    final IllegalStateException error = new IllegalStateException("handler failed");
+    final StreamCollector collector = new StreamCollector() {
+      @Override
+      public void onBodyPartReceived(byte[] bytes, int offset, int length) {
+        throw error;
+      }
+    };
+    transport.stream(new HttpRequest(HttpRequest.GET, getUrl("/stream")), collector);
+
+    assertTrue(collector.done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertFalse(collector.completed);
+    assertSame(error, collector.error);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConstructor_negativeTimeout() {
+    new UrlConnectionTransport(-1, 0, TimeUnit.SECONDS);
+  }
+
+  private String getUrl(String path) {
+    return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+  }
+
+  private static String readBody(InputStream in) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[1024];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+    return new String(out.toByteArray(), UTF_8);
+  }
+
+  /**
+   * {@link HttpResponseHandler} collecting the response of a request.
+   */
+  private static class ResponseCollector extends HttpResponseHandler {
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile HttpResponse response;
+    private volatile Throwable error;
+
+    @Override
+    public void onCompleted(HttpResponse response) {
+      this.response = response;
+      done.countDown();
+    }
+
+    @Override
+    public void onThrowable(Throwable t) {
+      this.error = t;
+      done.countDown();
+    }
+
+    HttpResponse await() throws Exception {
+      assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+      if (error != null) {
+        throw new AssertionError(error);
+      }
+      return response;
+    }
+  }
+
+  /**
+   * {@link HttpStreamHandler} collecting the body parts of a stream.
+   */
+  private static class StreamCollector implements HttpStreamHandler {
+    private final BlockingQueue<String> bodyParts = new LinkedBlockingQueue<>();
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile int statusCode;
+    private volatile boolean completed;
+    private volatile Throwable error;
+
+    /**
+     * Waits until the given number of bytes was received, since the server may split the body into multiple parts.
+     */
+    String awaitBody(int length) throws InterruptedException {
+      final StringBuilder body = new StringBuilder();
+      while (body.length() < length) {
+        final String bodyPart = bodyParts.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertNotNull(bodyPart);
+        body.append(bodyPart);
+      }
+      return body.toString();
+    }
+
+    @Override
+    public boolean onStatusReceived(HttpStatus status) {
+      statusCode = status.getStatusCode();
+      return true;
+    }
+
+    @Override
+    public void onBodyPartReceived(byte[] bytes, int offset, int length) {
+      bodyParts.add(new String(bytes, offset, length, UTF_8));
+    }
+
+    @Override
+    public void onCompleted() {
+      completed = true;
+      done.countDown();
+    }
+
+    @Override
+    public void onThrowable(Throwable t) {
+      error = t;
+      done.countDown();
+    }
+  }
+}